@@ -0,0 +1,95 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AbstractTableBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.tablesaw.api.Table;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ancestor for benchmarks that operate on a synthetic table.
+ * The table gets generated once per trial, using the parameters
+ * rows, columns, type mix and missing value ratio.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public abstract class AbstractTableBenchmark {
+
+  /** the seed for generating the data. */
+  public final static long SEED = 42;
+
+  /** the number of rows. */
+  @Param({"10000", "100000"})
+  public int rows;
+
+  /** the number of columns (excluding the key column). */
+  @Param({"10", "50"})
+  public int columns;
+
+  /** the type mix. */
+  @Param({SyntheticTables.MIX_NUMERIC, SyntheticTables.MIX_CATEGORICAL, SyntheticTables.MIX_MIXED})
+  public String typeMix;
+
+  /** the ratio of missing values. */
+  @Param({"0.0", "0.1"})
+  public double missing;
+
+  /** the generated table. */
+  protected Table m_Table;
+
+  /**
+   * Generates the table.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Setup(Level.Trial)
+  public void setUpTable() throws Exception {
+    m_Table = SyntheticTables.generate(rows, columns, typeMix, missing, SEED);
+    setUp();
+  }
+
+  /**
+   * Hook method for further initializations, after the table was generated.
+   * <br>
+   * Default implementation does nothing.
+   *
+   * @throws Exception	if setup fails
+   */
+  protected void setUp() throws Exception {
+  }
+}
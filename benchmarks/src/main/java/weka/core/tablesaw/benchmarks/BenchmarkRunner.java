@@ -0,0 +1,76 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BenchmarkRunner.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks and stores the results in JSON format, so that
+ * results from different commits can be compared.
+ * <br>
+ * The output file is "jmh-result-LABEL.json" in the directory specified
+ * by the "benchmark.output" system property (default: "target"), with the
+ * label taken from the "benchmark.label" system property (default: "current").
+ * All command-line arguments are passed through to JMH, e.g., a regular
+ * expression for selecting benchmarks or "-p rows=1000000" to override
+ * parameters.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class BenchmarkRunner {
+
+  /**
+   * Runs the benchmarks.
+   *
+   * @param args	the JMH command-line options
+   * @throws Exception	if running fails
+   */
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions		cmdline;
+    ChainedOptionsBuilder	builder;
+    File			outDir;
+    File			outFile;
+    String			label;
+
+    cmdline = new CommandLineOptions(args);
+    label   = System.getProperty("benchmark.label", "current");
+    outDir  = new File(System.getProperty("benchmark.output", "target"));
+    if (!outDir.exists() && !outDir.mkdirs())
+      throw new IllegalStateException("Failed to create output directory: " + outDir);
+    outFile = new File(outDir, "jmh-result-" + label + ".json");
+
+    builder = new OptionsBuilder()
+      .parent(cmdline)
+      .resultFormat(ResultFormatType.JSON)
+      .result(outFile.getAbsolutePath());
+    if (cmdline.getIncludes().isEmpty())
+      builder.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+
+    new Runner(builder.build()).run();
+    System.out.println("Results written to: " + outFile.getAbsolutePath());
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ColumnStoreLoaderBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+import tech.tablesaw.api.Table;
+import weka.core.Instances;
+import weka.core.converters.TablesawColumnStoreLoader;
+import weka.core.tablesaw.util.ColumnStore;
+import weka.core.tablesaw.util.OffHeapTable;
+
+import java.io.File;
+
+/**
+ * Benchmarks loading column stores with {@link TablesawColumnStoreLoader}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ColumnStoreLoaderBenchmark
+  extends AbstractTableBenchmark {
+
+  /** the schema file of the store to load. */
+  protected File m_File;
+
+  /**
+   * Writes the synthetic table to a temporary column store.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    OffHeapTable	table;
+
+    m_File = File.createTempFile("tablesaw-bench-", ColumnStore.EXTENSION);
+    table  = OffHeapTable.fromTable(m_Table);
+    try {
+      ColumnStore.write(table, m_File);
+    }
+    finally {
+      table.close();
+    }
+  }
+
+  /**
+   * Removes the temporary column store.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    File	dir;
+    File[]	files;
+
+    if (m_File == null)
+      return;
+    dir   = ColumnStore.getColumnsDir(m_File);
+    files = dir.listFiles();
+    if (files != null) {
+      for (File file: files)
+        file.delete();
+    }
+    dir.delete();
+    m_File.delete();
+  }
+
+  /**
+   * Opens the column store and converts it into a Tablesaw table.
+   *
+   * @return		the table
+   * @throws Exception	if opening fails
+   */
+  @Benchmark
+  public Table open() throws Exception {
+    OffHeapTable	table;
+
+    table = ColumnStore.open(m_File);
+    try {
+      return table.toTable();
+    }
+    finally {
+      table.close();
+    }
+  }
+
+  /**
+   * Loads the column store.
+   *
+   * @return		the loaded dataset
+   * @throws Exception	if loading fails
+   */
+  @Benchmark
+  public Instances load() throws Exception {
+    TablesawColumnStoreLoader	loader;
+
+    loader = new TablesawColumnStoreLoader();
+    loader.setSource(m_File);
+    return loader.getDataSet();
+  }
+}
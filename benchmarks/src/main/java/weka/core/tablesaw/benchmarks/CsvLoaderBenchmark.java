@@ -0,0 +1,77 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CsvLoaderBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+import tech.tablesaw.io.csv.CsvWriteOptions;
+import weka.core.Instances;
+import weka.core.converters.TablesawCsvLoader;
+
+import java.io.File;
+
+/**
+ * Benchmarks loading CSV files with {@link TablesawCsvLoader}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class CsvLoaderBenchmark
+  extends AbstractTableBenchmark {
+
+  /** the CSV file to load. */
+  protected File m_File;
+
+  /**
+   * Writes the synthetic table to a temporary CSV file.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    m_File = File.createTempFile("tablesaw-bench-", ".csv");
+    m_Table.write().csv(CsvWriteOptions.builder(m_File).header(true).build());
+  }
+
+  /**
+   * Removes the temporary CSV file.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (m_File != null)
+      m_File.delete();
+  }
+
+  /**
+   * Loads the CSV file.
+   *
+   * @return		the loaded dataset
+   * @throws Exception	if loading fails
+   */
+  @Benchmark
+  public Instances load() throws Exception {
+    TablesawCsvLoader	loader;
+
+    loader = new TablesawCsvLoader();
+    loader.setSource(m_File);
+    return loader.getDataSet();
+  }
+}
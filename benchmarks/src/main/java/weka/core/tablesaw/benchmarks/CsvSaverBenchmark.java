@@ -0,0 +1,82 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CsvSaverBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+import weka.core.Instances;
+import weka.core.TablesawUtils;
+import weka.core.converters.TablesawCsvSaver;
+
+import java.io.File;
+
+/**
+ * Benchmarks saving CSV files with {@link TablesawCsvSaver}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class CsvSaverBenchmark
+  extends AbstractTableBenchmark {
+
+  /** the dataset to save. */
+  protected Instances m_Data;
+
+  /** the output file. */
+  protected File m_File;
+
+  /**
+   * Converts the synthetic table into Instances.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    m_Data = TablesawUtils.tableToInstances(m_Table);
+    m_File = File.createTempFile("tablesaw-bench-", ".csv");
+  }
+
+  /**
+   * Removes the temporary CSV file.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (m_File != null)
+      m_File.delete();
+  }
+
+  /**
+   * Saves the dataset.
+   *
+   * @return		the size of the generated file
+   * @throws Exception	if saving fails
+   */
+  @Benchmark
+  public long save() throws Exception {
+    TablesawCsvSaver	saver;
+
+    saver = new TablesawCsvSaver();
+    saver.setInstances(m_Data);
+    saver.setFile(m_File);
+    saver.writeBatch();
+    return m_File.length();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DeriveColumnBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import tech.tablesaw.api.Table;
+import weka.core.Instances;
+import weka.core.TablesawUtils;
+import weka.core.tablesaw.DeriveColumn;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.AddExpression;
+
+/**
+ * Benchmarks {@link DeriveColumn} against Weka's {@link AddExpression}
+ * filter, which interprets the expression per instance. Both compute the
+ * same values from the first column ("c1"); for the categorical type mix,
+ * the expression uses its missing value indicator.
+ * <br>
+ * The column gets derived in place, as the operation replaces the column
+ * after the first invocation.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class DeriveColumnBenchmark
+  extends AbstractTableBenchmark {
+
+  /** the data as instances. */
+  protected Instances m_Data;
+
+  /** the configured operation. */
+  protected DeriveColumn m_Operation;
+
+  /** the expression for AddExpression. */
+  protected String m_AddExpression;
+
+  /**
+   * Converts the table and configures the expressions.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    m_Data      = TablesawUtils.tableToInstances(m_Table);
+    m_Operation = new DeriveColumn();
+    m_Operation.setName("derived");
+    // c1 is the second attribute, after the key column
+    if (typeMix.equals(SyntheticTables.MIX_CATEGORICAL)) {
+      m_Operation.setExpression("if(ismissing(c1), 1.5, 1)");
+      m_AddExpression = "ifelse(ismissing(a2), 1.5, 1)";
+    }
+    else {
+      m_Operation.setExpression("(c1 * c1 + 1) / (abs(c1) + 1)");
+      m_AddExpression = "(a2 * a2 + 1) / (abs(a2) + 1)";
+    }
+  }
+
+  /**
+   * Derives the column.
+   *
+   * @return		the table with the derived column
+   */
+  @Benchmark
+  public Table deriveColumn() {
+    return m_Operation.processTable(m_Table);
+  }
+
+  /**
+   * Adds the column with Weka's AddExpression filter.
+   *
+   * @return		the data with the added attribute
+   * @throws Exception	if filtering fails
+   */
+  @Benchmark
+  public Instances addExpression() throws Exception {
+    AddExpression	filter;
+
+    filter = new AddExpression();
+    filter.setName("derived");
+    filter.setExpression(m_AddExpression);
+    filter.setInputFormat(m_Data);
+    return Filter.useFilter(m_Data, filter);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InstancesToTableBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import tech.tablesaw.api.Table;
+import weka.core.Instances;
+import weka.core.TablesawUtils;
+
+/**
+ * Benchmarks the conversion of Weka Instances into a table.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class InstancesToTableBenchmark
+  extends AbstractTableBenchmark {
+
+  /** the dataset to convert. */
+  protected Instances m_Data;
+
+  /**
+   * Converts the synthetic table into Instances.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    m_Data = TablesawUtils.tableToInstances(m_Table);
+  }
+
+  /**
+   * Converts the dataset.
+   *
+   * @return		the generated table
+   */
+  @Benchmark
+  public Table instancesToTable() {
+    return TablesawUtils.instancesToTable(m_Data);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SyntheticTables.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic tables for the benchmarks.
+ * <br>
+ * Every table starts with a complete, low-cardinality string column called
+ * {@link #KEY_COLUMN}, followed by the requested number of columns named
+ * "c1", "c2", ..., whose types are determined by the type mix.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SyntheticTables {
+
+  /** the name of the key column. */
+  public final static String KEY_COLUMN = "key";
+
+  /** only numeric columns (double/int). */
+  public final static String MIX_NUMERIC = "numeric";
+
+  /** only string columns. */
+  public final static String MIX_CATEGORICAL = "categorical";
+
+  /** double, string, int and datetime columns. */
+  public final static String MIX_MIXED = "mixed";
+
+  /** the number of distinct values in the key column. */
+  public final static int KEY_CARDINALITY = 10;
+
+  /** the number of distinct values in the other string columns. */
+  public final static int STRING_CARDINALITY = 50;
+
+  /**
+   * Returns the column type for the specified column index.
+   *
+   * @param mix		the type mix
+   * @param index	the 0-based index of the column (excluding key)
+   * @return		the type: d=double, i=int, s=string, t=datetime
+   */
+  protected static char columnType(String mix, int index) {
+    if (mix.equals(MIX_NUMERIC))
+      return (index % 2 == 0) ? 'd' : 'i';
+    else if (mix.equals(MIX_CATEGORICAL))
+      return 's';
+    else if (mix.equals(MIX_MIXED))
+      return "dsit".charAt(index % 4);
+    else
+      throw new IllegalArgumentException("Unknown type mix: " + mix);
+  }
+
+  /**
+   * Generates a table.
+   *
+   * @param rows	the number of rows
+   * @param columns	the number of columns (excluding the key column)
+   * @param mix		the type mix, see MIX_* constants
+   * @param missing	the ratio of missing values (0-1) in the non-key columns
+   * @param seed	the seed for the random number generator
+   * @return		the table
+   */
+  public static Table generate(int rows, int columns, String mix, double missing, long seed) {
+    Random		rnd;
+    List<Column<?>>	cols;
+    StringColumn	key;
+    DoubleColumn	dcol;
+    IntColumn		icol;
+    StringColumn	scol;
+    DateTimeColumn	tcol;
+    LocalDateTime	start;
+    int			i;
+    int			n;
+    String		name;
+
+    rnd   = new Random(seed);
+    cols  = new ArrayList<Column<?>>();
+    start = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    key = StringColumn.create(KEY_COLUMN, rows);
+    for (n = 0; n < rows; n++)
+      key.set(n, "k" + rnd.nextInt(KEY_CARDINALITY));
+    cols.add(key);
+
+    for (i = 0; i < columns; i++) {
+      name = "c" + (i + 1);
+      switch (columnType(mix, i)) {
+	case 'd':
+	  dcol = DoubleColumn.create(name, rows);
+	  for (n = 0; n < rows; n++) {
+	    if (rnd.nextDouble() >= missing)
+	      dcol.set(n, rnd.nextGaussian() * 100);
+	  }
+	  cols.add(dcol);
+	  break;
+	case 'i':
+	  icol = IntColumn.create(name, rows);
+	  for (n = 0; n < rows; n++) {
+	    if (rnd.nextDouble() >= missing)
+	      icol.set(n, rnd.nextInt(1000));
+	  }
+	  cols.add(icol);
+	  break;
+	case 's':
+	  scol = StringColumn.create(name, rows);
+	  for (n = 0; n < rows; n++) {
+	    if (rnd.nextDouble() >= missing)
+	      scol.set(n, "v" + rnd.nextInt(STRING_CARDINALITY));
+	  }
+	  cols.add(scol);
+	  break;
+	case 't':
+	  tcol = DateTimeColumn.create(name, rows);
+	  for (n = 0; n < rows; n++) {
+	    if (rnd.nextDouble() >= missing)
+	      tcol.set(n, start.plusSeconds(rnd.nextInt(365 * 24 * 60 * 60)));
+	  }
+	  cols.add(tcol);
+	  break;
+      }
+    }
+
+    return Table.create("synthetic-" + rows + "x" + columns + "-" + mix, cols);
+  }
+}
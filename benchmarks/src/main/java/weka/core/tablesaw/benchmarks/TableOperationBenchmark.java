@@ -0,0 +1,129 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TableOperationBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import tech.tablesaw.api.Table;
+import weka.core.Utils;
+import weka.core.tablesaw.FittableTableOperation;
+import weka.core.tablesaw.TableOperation;
+import weka.core.tablesaw.util.MissingValueIndex;
+
+/**
+ * Benchmarks the table operations. Each operation is a separate
+ * parameter value, i.e., gets its own set of results.
+ * <br>
+ * The operations are specified as command-lines and may only refer to
+ * the columns generated by {@link SyntheticTables}, e.g., "key" or "c1".
+ * <br>
+ * Operations may modify the table they process (e.g., removing columns),
+ * therefore each invocation operates on a fresh copy of the generated table,
+ * made outside the measured region. Fittable operations get reset as well,
+ * so that each invocation includes the fitting.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TableOperationBenchmark
+  extends AbstractTableBenchmark {
+
+  /** the operation to benchmark (classname + options). */
+  @Param({
+    "weka.core.tablesaw.CountBy -column key",
+    "weka.core.tablesaw.CountBy -column key,c1,c2 -top-k 10",
+    "weka.core.tablesaw.Deduplicate",
+    "weka.core.tablesaw.Deduplicate -columns key,c1 -num-partitions 0",
+    "weka.core.tablesaw.Encode -columns key -top-k 10",
+    "weka.core.tablesaw.Encode -columns key -method ordinal",
+    "weka.core.tablesaw.First -num-rows 100",
+    "weka.core.tablesaw.Last -num-rows 100",
+    "weka.core.tablesaw.MissingValueCounts",
+    "weka.core.tablesaw.NumericTransform -method zscore",
+    "weka.core.tablesaw.NumericTransform -method winsorize",
+    "weka.core.tablesaw.PassThrough",
+    "weka.core.tablesaw.RemoveColumns -columns c1,c2",
+    "weka.core.tablesaw.RetainColumns -columns key,c1,c2",
+    "weka.core.tablesaw.RemoveColumnsWithMissingValues",
+    "weka.core.tablesaw.RemoveColumnsWithMissingValues -max-missing 0.3",
+    "weka.core.tablesaw.RemoveRowsWithMissingValues",
+    "weka.core.tablesaw.RemoveRowsWithMissingValues -max-missing 0.3",
+    "weka.core.tablesaw.SampleN -size 1000",
+    "weka.core.tablesaw.SampleSplit -proportion 0.66",
+    "weka.core.tablesaw.SampleX -size 0.1",
+    "weka.core.tablesaw.StratifiedSampleN -column key -size 1000",
+    "weka.core.tablesaw.StratifiedSampleSplit -column key -proportion 0.66",
+    "weka.core.tablesaw.StratifiedSampleX -column key -size 0.1",
+    "weka.core.tablesaw.Sketches",
+    "weka.core.tablesaw.Sort -columns key,c1",
+    "weka.core.tablesaw.Sort -columns key:desc,c2:first",
+    "weka.core.tablesaw.Summary -column c1",
+    "weka.core.tablesaw.Summary",
+    "weka.core.tablesaw.Summary -long",
+  })
+  public String operation;
+
+  /** the instantiated operation. */
+  protected TableOperation m_Operation;
+
+  /** the copy of the table to process in the next invocation. */
+  protected Table m_Input;
+
+  /**
+   * Instantiates the operation.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    String[]	options;
+    String	classname;
+
+    options    = Utils.splitOptions(operation);
+    classname  = options[0];
+    options[0] = "";
+    m_Operation = (TableOperation) Utils.forName(TableOperation.class, classname, options);
+  }
+
+  /**
+   * Copies the table and resets the operation before each invocation.
+   * The missing value index cache gets cleared as well, so that each
+   * invocation has to scan the table.
+   */
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    m_Input = m_Table.copy();
+    if (m_Operation instanceof FittableTableOperation)
+      ((FittableTableOperation) m_Operation).resetFit();
+    MissingValueIndex.clearCache();
+  }
+
+  /**
+   * Applies the operation to the copy of the table.
+   *
+   * @return		the processed table
+   */
+  @Benchmark
+  public Table processTable() {
+    return m_Operation.processTable(m_Input);
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TableToInstancesBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import weka.core.Instances;
+import weka.core.TablesawUtils;
+
+/**
+ * Benchmarks the conversion of a table into Weka Instances.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TableToInstancesBenchmark
+  extends AbstractTableBenchmark {
+
+  /**
+   * Converts the table.
+   *
+   * @return		the generated dataset
+   */
+  @Benchmark
+  public Instances tableToInstances() {
+    return TablesawUtils.tableToInstances(m_Table);
+  }
+}
@@ -20,16 +20,22 @@
 
 package weka.core;
 
+import tech.tablesaw.api.BooleanColumn;
 import tech.tablesaw.api.ColumnType;
+import tech.tablesaw.api.DateColumn;
 import tech.tablesaw.api.DateTimeColumn;
 import tech.tablesaw.api.DoubleColumn;
-import tech.tablesaw.api.Row;
+import tech.tablesaw.api.InstantColumn;
+import tech.tablesaw.api.NumericColumn;
 import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
 import tech.tablesaw.api.TextColumn;
+import tech.tablesaw.api.TimeColumn;
 import tech.tablesaw.columns.Column;
+import tech.tablesaw.columns.booleans.BooleanColumnType;
 import tech.tablesaw.columns.dates.DateColumnType;
 import tech.tablesaw.columns.datetimes.DateTimeColumnType;
+import tech.tablesaw.columns.instant.InstantColumnType;
 import tech.tablesaw.columns.numbers.DoubleColumnType;
 import tech.tablesaw.columns.numbers.FloatColumnType;
 import tech.tablesaw.columns.numbers.IntColumnType;
@@ -38,13 +44,21 @@ import tech.tablesaw.columns.numbers.ShortColumnType;
 import tech.tablesaw.columns.strings.StringColumnType;
 import tech.tablesaw.columns.strings.TextColumnType;
 import tech.tablesaw.columns.times.TimeColumnType;
+import weka.core.tablesaw.util.ColumnCoder;
+import weka.core.tablesaw.util.OffHeapColumn;
+import weka.core.tablesaw.util.OffHeapDictionaryColumn;
+import weka.core.tablesaw.util.OffHeapDoubleColumn;
+import weka.core.tablesaw.util.OffHeapLongColumn;
+import weka.core.tablesaw.util.OffHeapTable;
+import weka.core.tablesaw.util.OneHotColumn;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Helper class for data operations.
@@ -53,6 +67,12 @@ import java.util.List;
  */
 public class TablesawUtils {
 
+  /** the default maximum number of distinct values for turning a string column into a nominal attribute (always string attributes). */
+  public final static int DEFAULT_MAX_LABELS = 0;
+
+  /** the default maximum density for generating sparse instances (disabled). */
+  public final static double DEFAULT_SPARSE_THRESHOLD = 0.0;
+
   /**
    * Checks whether the column is numeric.
    *
@@ -98,6 +118,11 @@ public class TablesawUtils {
       return "dd";
     if (type instanceof DateTimeColumnType)
       return "ddt";
+    if (type instanceof InstantColumnType)
+      return "di";
+    // boolean
+    if (type instanceof BooleanColumnType)
+      return "b";
     // string-like
     if (type instanceof TextColumnType)
       return "st";
@@ -123,118 +148,821 @@ public class TablesawUtils {
   }
 
   /**
-   * Turns a Tablesaw table into Weka Instances.
+   * Creates a new table with the specified rows, in the order they are
+   * listed. The values get gathered column by column.
+   *
+   * @param table	the table to get the rows from
+   * @param rows	the row indices
+   * @return		the new table
+   */
+  public static Table subset(Table table, int[] rows) {
+    List<Column<?>>	columns;
+    int			i;
+
+    columns = new ArrayList<Column<?>>();
+    for (i = 0; i < table.columnCount(); i++)
+      columns.add(table.column(i).subset(rows));
+
+    return Table.create(table.name(), columns);
+  }
+
+  /**
+   * Turns a Tablesaw table into Weka Instances. String columns become
+   * string attributes (see {@link #DEFAULT_MAX_LABELS}).
    *
    * @param table	the table to convert
    * @return		the generated dataset
    */
   public static Instances tableToInstances(Table table) {
+    return tableToInstances(table, null, DEFAULT_MAX_LABELS);
+  }
+
+  /**
+   * Turns a Tablesaw table into Weka Instances. The conversion is done
+   * column by column.
+   * <br>
+   * String columns get dictionary-coded (see {@link ColumnCoder}), so the
+   * attribute values are determined once per distinct string rather than
+   * per cell. If the template contains a nominal attribute with the same name
+   * that covers all the values of the column, its labels (and their order)
+   * are used. Otherwise, columns with at most maxLabels distinct values
+   * become nominal attributes (labels in order of occurrence), the others
+   * string attributes.
+   *
+   * @param table	the table to convert
+   * @param template	the dataset to obtain nominal labels from, can be null
+   * @param maxLabels	the maximum number of distinct values for a nominal attribute, &lt;=0 for always using string attributes
+   * @return		the generated dataset
+   */
+  public static Instances tableToInstances(Table table, Instances template, int maxLabels) {
+    return tableToInstances(table, template, maxLabels, DEFAULT_SPARSE_THRESHOLD);
+  }
+
+  /**
+   * Turns a Tablesaw table into Weka Instances. The conversion is done
+   * column by column (see {@link #tableToInstances(Table, Instances, int)}).
+   * <br>
+   * If the fraction of non-zero cells (missing values count as non-zero)
+   * is at most the sparse threshold, {@link SparseInstance} objects get
+   * generated, otherwise {@link DenseInstance} ones. For determining the
+   * density, the values of the columns get computed twice, one column at a
+   * time, so that no dense matrix is required for sparse output.
+   *
+   * @param table		the table to convert
+   * @param template		the dataset to obtain nominal labels from, can be null
+   * @param maxLabels		the maximum number of distinct values for a nominal attribute, &lt;=0 for always using string attributes
+   * @param sparseThreshold	the maximum density (0-1) for generating sparse instances, &lt;=0 for always generating dense instances
+   * @return			the generated dataset
+   */
+  public static Instances tableToInstances(Table table, Instances template, int maxLabels, double sparseThreshold) {
     Instances			result;
     ArrayList<Attribute>	atts;
     int				i;
-    int				n;
-    double[]			values;
-    Row				row;
     String[]			colTypes;
+    Column<?>			column;
+    ColumnCoder[]		coders;
+    int[][]			codeMaps;
+    List<String>		labels;
+    Attribute			tmplAtt;
+    int				code;
+    int[]			attIndices;
 
     // header
+    atts       = new ArrayList<Attribute>();
+    colTypes   = new String[table.columnCount()];
+    coders     = new ColumnCoder[table.columnCount()];
+    codeMaps   = new int[table.columnCount()][];
+    attIndices = new int[table.columnCount()];
+    for (i = 0; i < table.columnCount(); i++) {
+      column        = table.column(i);
+      colTypes[i]   = getColumnType(column.type());
+      attIndices[i] = atts.size();
+      if (column instanceof OneHotColumn) {
+        colTypes[i] = "oh";
+        for (String name: ((OneHotColumn) column).getNames())
+          atts.add(new Attribute(name));
+      }
+      else if (isNumeric(column.type())) {
+        atts.add(new Attribute(column.name()));
+      }
+      else if (isDateLike(column.type()) || colTypes[i].equals("di")) {
+        atts.add(new Attribute(column.name(), "yyyy-MM-dd HH:mm:ss.SSS"));
+      }
+      else if (colTypes[i].equals("b")) {
+        labels = new ArrayList<String>();
+        labels.add("false");
+        labels.add("true");
+        atts.add(new Attribute(column.name(), labels));
+      }
+      else if (colTypes[i].equals("ss")) {
+        coders[i]   = new ColumnCoder(column);
+        codeMaps[i] = new int[coders[i].size()];
+        labels      = new ArrayList<String>();
+        for (code = 1; code < coders[i].size(); code++)
+          labels.add(coders[i].getLabel(code));
+        tmplAtt = (template == null) ? null : template.attribute(column.name());
+        if ((tmplAtt != null) && tmplAtt.isNominal()) {
+          for (code = 1; code < coders[i].size(); code++) {
+            codeMaps[i][code] = tmplAtt.indexOfValue(coders[i].getLabel(code));
+            if (codeMaps[i][code] == -1) {
+              tmplAtt = null;
+              break;
+            }
+          }
+        }
+        else {
+          tmplAtt = null;
+        }
+        if (tmplAtt != null) {
+          atts.add(tmplAtt.copy(column.name()));
+        }
+        else if (labels.size() <= maxLabels) {
+          for (code = 1; code < coders[i].size(); code++)
+            codeMaps[i][code] = code - 1;
+          atts.add(new Attribute(column.name(), labels));
+        }
+        else {
+          // string attribute, map codes once the attribute is part of the dataset
+          codeMaps[i] = null;
+          atts.add(new Attribute(column.name(), (List<String>) null));
+        }
+      }
+      else {
+        atts.add(new Attribute(column.name(), (List<String>) null));
+      }
+    }
+    result = new Instances(table.name(), atts, table.rowCount());
+    for (i = 0; i < table.columnCount(); i++) {
+      if ((coders[i] != null) && (codeMaps[i] == null)) {
+        codeMaps[i] = new int[coders[i].size()];
+        for (code = 1; code < coders[i].size(); code++)
+          codeMaps[i][code] = result.attribute(attIndices[i]).addStringValue(coders[i].getLabel(code));
+      }
+    }
+
+    addRows(result, table, colTypes, coders, codeMaps, sparseThreshold);
+
+    return result;
+  }
+
+  /**
+   * Generates a template for {@link #tableToInstances(Table, Instances, int, double)}
+   * that declares nominal attributes with the given labels: attributes of
+   * the template with the same name get replaced, all others get appended.
+   *
+   * @param template	the template to extend, can be null
+   * @param labels	the labels per column name
+   * @return		the new template, or the template itself if no labels to declare
+   */
+  public static Instances declareLabels(Instances template, Map<String, List<String>> labels) {
+    ArrayList<Attribute>	atts;
+    Attribute			att;
+    int				i;
+
+    if (labels.isEmpty())
+      return template;
+
     atts = new ArrayList<Attribute>();
+    if (template != null) {
+      for (i = 0; i < template.numAttributes(); i++) {
+        att = template.attribute(i);
+        if (labels.containsKey(att.name()))
+          atts.add(new Attribute(att.name(), new ArrayList<String>(labels.get(att.name()))));
+        else
+          atts.add((Attribute) att.copy());
+      }
+    }
+    for (String name: labels.keySet()) {
+      if ((template == null) || (template.attribute(name) == null))
+        atts.add(new Attribute(name, new ArrayList<String>(labels.get(name))));
+    }
+
+    return new Instances((template == null) ? "template" : template.relationName(), atts, 0);
+  }
+
+  /**
+   * Turns a Tablesaw table into Weka Instances with the given header, e.g.,
+   * the output format of a filter for subsequent batches. The columns must
+   * match the attributes in number and name. Nominal values get mapped to
+   * the labels of the header, with values that the header does not know
+   * becoming missing values (reported on stderr), i.e., a different header
+   * is never derived.
+   *
+   * @param table		the table to convert
+   * @param header		the header to use
+   * @param sparseThreshold	the maximum density (0-1) for generating sparse instances, &lt;=0 for always generating dense instances
+   * @return			the generated dataset
+   * @throws IllegalStateException	if the table does not match the header
+   */
+  public static Instances tableToInstancesWithHeader(Table table, Instances header, double sparseThreshold) {
+    Instances		result;
+    String[]		colTypes;
+    ColumnCoder[]	coders;
+    int[][]		codeMaps;
+    Column<?>		column;
+    Attribute		att;
+    int			i;
+    int			code;
+    int			index;
+    List<String>	unknown;
+
+    if (numAttributes(table) != header.numAttributes())
+      throw new IllegalStateException(
+        "Table has " + numAttributes(table) + " columns (one-hot ones expanded), but the header " + header.numAttributes() + " attributes!");
+
+    result   = new Instances(header, table.rowCount());
     colTypes = new String[table.columnCount()];
+    coders   = new ColumnCoder[table.columnCount()];
+    codeMaps = new int[table.columnCount()][];
+    index    = 0;
     for (i = 0; i < table.columnCount(); i++) {
-      colTypes[i] = getColumnType(table.column(i).type());
-      if (isNumeric(table.column(i).type()))
-        atts.add(new Attribute(table.column(i).name()));
-      else if (isDateLike(table.column(i).type()))
-        atts.add(new Attribute(table.column(i).name(), "yyyy-MM-dd HH:mm:ss.SSS"));
+      column      = table.column(i);
+      colTypes[i] = getColumnType(column.type());
+      if (column instanceof OneHotColumn) {
+        colTypes[i] = "oh";
+        for (String name: ((OneHotColumn) column).getNames()) {
+          att = result.attribute(index++);
+          if (!name.equals(att.name()))
+            throw new IllegalStateException("One-hot column of '" + column.name() + "' is '" + name + "', but the attribute '" + att.name() + "'!");
+          if (!att.isNumeric())
+            throw new IllegalStateException("Attribute '" + att.name() + "' is not numeric!");
+        }
+        continue;
+      }
+      att = result.attribute(index++);
+      if (!column.name().equals(att.name()))
+        throw new IllegalStateException("Column #" + (i + 1) + " is '" + column.name() + "', but the attribute '" + att.name() + "'!");
+      switch (att.type()) {
+        case Attribute.NUMERIC:
+        case Attribute.DATE:
+          if (!isNumeric(column.type()) && !isDateLike(column.type()) && !colTypes[i].equals("di") && !colTypes[i].equals("b"))
+            throw new IllegalStateException("Column '" + column.name() + "' is not numeric or date-like: " + column.type());
+          break;
+        case Attribute.NOMINAL:
+          if (colTypes[i].equals("ss")) {
+            coders[i]   = new ColumnCoder(column);
+            codeMaps[i] = new int[coders[i].size()];
+            unknown     = new ArrayList<String>();
+            for (code = 1; code < coders[i].size(); code++) {
+              codeMaps[i][code] = att.indexOfValue(coders[i].getLabel(code));
+              if (codeMaps[i][code] == -1)
+                unknown.add(coders[i].getLabel(code));
+            }
+            if (!unknown.isEmpty())
+              System.err.println("Values of column '" + column.name() + "' that are not labels of the nominal attribute become missing values: " + unknown);
+          }
+          else if (colTypes[i].equals("b")) {
+            if ((att.indexOfValue("false") != 0) || (att.indexOfValue("true") != 1))
+              throw new IllegalStateException("Column '" + column.name() + "' is boolean, but the attribute does not have the labels false/true!");
+          }
+          else {
+            // look up the labels cell by cell
+            colTypes[i] = "sn";
+          }
+          break;
+        case Attribute.STRING:
+          if (colTypes[i].equals("ss")) {
+            coders[i]   = new ColumnCoder(column);
+            codeMaps[i] = new int[coders[i].size()];
+            for (code = 1; code < coders[i].size(); code++)
+              codeMaps[i][code] = att.addStringValue(coders[i].getLabel(code));
+          }
+          else {
+            colTypes[i] = "st";
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unsupported attribute type for '" + att.name() + "': " + Attribute.typeToString(att));
+      }
+    }
+
+    addRows(result, table, colTypes, coders, codeMaps, sparseThreshold);
+
+    return result;
+  }
+
+  /**
+   * Returns the number of attributes the table turns into, i.e., the number
+   * of columns with {@link OneHotColumn}s expanded.
+   *
+   * @param table	the table to check
+   * @return		the number of attributes
+   */
+  public static int numAttributes(Table table) {
+    int		result;
+
+    result = 0;
+    for (Column<?> column: table.columns()) {
+      if (column instanceof OneHotColumn)
+        result += ((OneHotColumn) column).getNames().length;
       else
-        atts.add(new Attribute(table.column(i).name(), (List<String>) null));
+        result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Adds the rows of the table to the dataset, as sparse or dense instances.
+   * <br>
+   * If the fraction of non-zero cells (missing values count as non-zero)
+   * is at most the sparse threshold, {@link SparseInstance} objects get
+   * generated, otherwise {@link DenseInstance} ones.
+   * {@link OneHotColumn}s provide the values of several attributes.
+   *
+   * @param result		the dataset to add the rows to
+   * @param table		the table to convert
+   * @param colTypes		the column type codes
+   * @param coders		the coders for dictionary-coded columns
+   * @param codeMaps		the mappings from codes to attribute values
+   * @param sparseThreshold	the maximum density (0-1) for generating sparse instances, &lt;=0 for always generating dense instances
+   */
+  protected static void addRows(Instances result, Table table, String[] colTypes, ColumnCoder[] coders, int[][] codeMaps, double sparseThreshold) {
+    int			i;
+    int			n;
+    int			k;
+    int			a;
+    int			numAtts;
+    int[]		attColumns;
+    int[]		attHot;
+    double[][]		values;
+    double[]		buffer;
+    int[]		rowCounts;
+    int[][]		indices;
+    long		nonZero;
+
+    // attributes
+    numAtts    = result.numAttributes();
+    attColumns = new int[numAtts];
+    attHot     = new int[numAtts];
+    a          = 0;
+    for (i = 0; i < table.columnCount(); i++) {
+      if (colTypes[i].equals("oh")) {
+        for (k = 0; k < ((OneHotColumn) table.column(i)).getNames().length; k++) {
+          attColumns[a] = i;
+          attHot[a]     = k;
+          a++;
+        }
+      }
+      else {
+        attColumns[a] = i;
+        attHot[a]     = -1;
+        a++;
+      }
+    }
+
+    // density
+    buffer    = new double[table.rowCount()];
+    rowCounts = null;
+    if ((sparseThreshold > 0) && (table.rowCount() > 0) && (numAtts > 0)) {
+      rowCounts = new int[table.rowCount()];
+      nonZero   = 0;
+      for (a = 0; a < numAtts; a++) {
+        fillAttribute(result, a, table, attColumns[a], attHot[a], colTypes, coders, codeMaps, buffer);
+        for (n = 0; n < buffer.length; n++) {
+          if (buffer[n] != 0) {
+            rowCounts[n]++;
+            nonZero++;
+          }
+        }
+      }
+      if ((double) nonZero / ((double) table.rowCount() * numAtts) > sparseThreshold)
+        rowCounts = null;
     }
-    result = new Instances(table.name(), atts, table.rowCount());
 
     // data
-    for (n = 0; n < table.rowCount(); n++) {
-      values = new double[result.numAttributes()];
-      row    = table.row(n);
-      for (i = 0; i < row.columnCount(); i++) {
-        values[i] = Utils.missingValue();
-	// numeric
-        if (colTypes[i].equals("nd"))
-          values[i] = row.getDouble(i);
-        else if (colTypes[i].equals("ni"))
-          values[i] = row.getInt(i);
-        else if (colTypes[i].equals("nf"))
-          values[i] = row.getFloat(i);
-        else if (colTypes[i].equals("ns"))
-          values[i] = row.getShort(i);
-        else if (colTypes[i].equals("nl"))
-          values[i] = row.getLong(i);
-        // string-like
-        else if (colTypes[i].equals("ss"))
-          values[i] = result.attribute(i).addStringValue(row.getString(i));
-        else if (colTypes[i].equals("st"))
-          values[i] = result.attribute(i).addStringValue(row.getText(i));
-        // date-like
-        else if (colTypes[i].equals("ddt"))
-	  values[i] = Date.from(row.getDateTime(i).toInstant(ZoneOffset.UTC)).getTime();
-	else if (colTypes[i].equals("dd"))
-	  values[i] = row.getDate(i).toEpochDay() * 24 * 60 * 60 * 1000;
-	else if (colTypes[i].equals("dt"))
-	  values[i] = row.getTime(i).toNanoOfDay() / 1000 / 1000;
+    if (rowCounts != null) {
+      // sparse
+      values  = new double[table.rowCount()][];
+      indices = new int[table.rowCount()][];
+      for (n = 0; n < table.rowCount(); n++) {
+        values[n]    = new double[rowCounts[n]];
+        indices[n]   = new int[rowCounts[n]];
+        rowCounts[n] = 0;
+      }
+      for (a = 0; a < numAtts; a++) {
+        fillAttribute(result, a, table, attColumns[a], attHot[a], colTypes, coders, codeMaps, buffer);
+        for (n = 0; n < buffer.length; n++) {
+          if (buffer[n] != 0) {
+            k             = rowCounts[n]++;
+            values[n][k]  = buffer[n];
+            indices[n][k] = a;
+          }
+        }
+      }
+      for (n = 0; n < values.length; n++) {
+        result.add(new SparseInstance(1.0, values[n], indices[n], numAtts));
+        values[n]  = null;
+        indices[n] = null;
+      }
+    }
+    else {
+      // dense
+      values = new double[table.rowCount()][numAtts];
+      for (a = 0; a < numAtts; a++) {
+        fillAttribute(result, a, table, attColumns[a], attHot[a], colTypes, coders, codeMaps, buffer);
+        for (n = 0; n < buffer.length; n++)
+          values[n][a] = buffer[n];
+      }
+      for (n = 0; n < values.length; n++) {
+        result.add(new DenseInstance(1.0, values[n]));
+        values[n] = null;
       }
-      result.add(new DenseInstance(1.0, values));
     }
+  }
 
-    return result;
+  /**
+   * Computes the internal Weka values of an attribute, either from a
+   * regular column or from one of the one-hot columns of a {@link OneHotColumn}.
+   *
+   * @param data	the dataset the column gets converted for (string attributes get extended)
+   * @param index	the index of the attribute
+   * @param table	the table to convert
+   * @param col		the index of the column
+   * @param hot		the index of the one-hot column, -1 for regular columns
+   * @param colTypes	the column type codes
+   * @param coders	the coders for dictionary-coded columns
+   * @param codeMaps	the mappings from codes to attribute values
+   * @param buffer	the array to store the values in, length of the number of rows
+   */
+  protected static void fillAttribute(Instances data, int index, Table table, int col, int hot, String[] colTypes, ColumnCoder[] coders, int[][] codeMaps, double[] buffer) {
+    OneHotColumn	column;
+    int			n;
+
+    if (hot == -1) {
+      fillValues(data, index, table.column(col), colTypes[col], coders[col], codeMaps[col], buffer);
+      return;
+    }
+
+    column = (OneHotColumn) table.column(col);
+    for (n = 0; n < buffer.length; n++)
+      buffer[n] = column.getIndicator(n, hot);
   }
 
   /**
-   * Turns Weka Instances into a Tablesaw table.
+   * Returns the internal Weka value of a numeric, date-like or boolean cell,
+   * i.e., the number, the milliseconds since the epoch (dates and times in UTC)
+   * or 0/1. The cell must not be missing.
+   *
+   * @param column	the column
+   * @param colType	the column type code (see {@link #getColumnType(ColumnType)})
+   * @param row		the row of the cell
+   * @return		the value
+   * @throws IllegalArgumentException	if not a numeric, date-like or boolean column
+   */
+  public static double getInternalValue(Column<?> column, String colType, int row) {
+    switch (colType) {
+      // numeric
+      case "nd":
+      case "nf":
+      case "ns":
+      case "ni":
+      case "nl":
+        return ((NumericColumn<?>) column).getDouble(row);
+      // date-like
+      case "ddt":
+        return ((DateTimeColumn) column).get(row).toInstant(ZoneOffset.UTC).toEpochMilli();
+      case "dd":
+        return ((DateColumn) column).get(row).toEpochDay() * 24 * 60 * 60 * 1000;
+      case "dt":
+        return ((TimeColumn) column).get(row).toNanoOfDay() / 1000 / 1000;
+      case "di":
+        return ((InstantColumn) column).get(row).toEpochMilli();
+      // boolean
+      case "b":
+        return ((BooleanColumn) column).getByte(row);
+      default:
+        throw new IllegalArgumentException("Column '" + column.name() + "' is not numeric, date-like or boolean: " + column.type());
+    }
+  }
+
+  /**
+   * Computes the internal Weka values of a column.
+   *
+   * @param data	the dataset the column gets converted for (string attributes get extended)
+   * @param index	the index of the column/attribute
+   * @param column	the column to convert
+   * @param colType	the column type code (see {@link #getColumnType(ColumnType)})
+   * @param coder	the coder for dictionary-coded columns, null otherwise
+   * @param codeMap	the mapping from codes to attribute values (-1 for missing), null if no coder
+   * @param buffer	the array to store the values in, length of the number of rows
+   */
+  protected static void fillValues(Instances data, int index, Column<?> column, String colType, ColumnCoder coder, int[] codeMap, double[] buffer) {
+    int		n;
+    int		code;
+
+    for (n = 0; n < buffer.length; n++) {
+      if (column.isMissing(n)) {
+        buffer[n] = Utils.missingValue();
+        continue;
+      }
+      switch (colType) {
+        // string-like
+        case "ss":
+          code      = codeMap[coder.code(n)];
+          buffer[n] = (code < 0) ? Utils.missingValue() : code;
+          break;
+        case "sn":
+          code      = data.attribute(index).indexOfValue(column.getString(n));
+          buffer[n] = (code < 0) ? Utils.missingValue() : code;
+          break;
+        case "st":
+        case "":
+          buffer[n] = data.attribute(index).addStringValue(column.getString(n));
+          break;
+        // numeric, date-like, boolean
+        default:
+          buffer[n] = getInternalValue(column, colType, n);
+      }
+    }
+  }
+
+  /**
+   * Turns Weka Instances into a Tablesaw table. The conversion is done
+   * attribute by attribute.
+   * <br>
+   * The internal values get collected column-wise first in a single pass
+   * over the rows. For {@link SparseInstance} objects only the stored values
+   * get visited, all other cells are zero, i.e., no sparse row gets densified
+   * and no per-cell lookup takes place.
+   * <br>
+   * Nominal attributes become StringColumns, which get filled with the
+   * attribute's label instances via the value indices, i.e., no string gets
+   * created per cell. Missing values stay missing.
    *
    * @param instances	the instances to convert
    * @return		the generated table
    */
   public static Table instancesToTable(Instances instances) {
-    Table		result;
     Attribute		att;
-    Instance 		inst;
     List<Column<?>>	columns;
     int			i;
     int			n;
-    Row			row;
+    int			k;
+    double		value;
+    double[][]		cells;
+    Instance		inst;
+    String[]		labels;
+    StringColumn	nominal;
+    DateTimeColumn	date;
+    TextColumn		text;
     ZoneId		zoneId;
 
-    // header
+    // collect values column-wise
+    cells = new double[instances.numAttributes()][instances.numInstances()];
+    for (n = 0; n < instances.numInstances(); n++) {
+      inst = instances.instance(n);
+      if (inst instanceof SparseInstance) {
+        for (k = 0; k < inst.numValues(); k++)
+          cells[inst.index(k)][n] = inst.valueSparse(k);
+      }
+      else {
+        for (i = 0; i < instances.numAttributes(); i++)
+          cells[i][n] = inst.value(i);
+      }
+    }
+
+    zoneId  = ZoneId.of("UTC");
     columns = new ArrayList<Column<?>>();
     for (i = 0; i < instances.numAttributes(); i++) {
       att = instances.attribute(i);
-      if (att.isDate())
-        columns.add(DateTimeColumn.create(att.name()));
-      else if (att.isNumeric())
-        columns.add(DoubleColumn.create(att.name()));
-      else if (att.isNominal())
-        columns.add(StringColumn.create(att.name()));
-      else
-        columns.add(TextColumn.create(att.name()));
+      if (att.isDate()) {
+        date = DateTimeColumn.create(att.name());
+        for (n = 0; n < instances.numInstances(); n++) {
+          value = cells[i][n];
+          if (Utils.isMissingValue(value))
+            date.appendMissing();
+          else
+            date.append(LocalDateTime.ofInstant(Instant.ofEpochMilli((long) value), zoneId));
+        }
+        columns.add(date);
+      }
+      else if (att.isNumeric()) {
+        // Weka's missing value is NaN, which is also Tablesaw's missing value for doubles
+        columns.add(DoubleColumn.create(att.name(), cells[i]));
+      }
+      else if (att.isNominal()) {
+        labels = new String[att.numValues()];
+        for (n = 0; n < labels.length; n++)
+          labels[n] = att.value(n);
+        nominal = StringColumn.create(att.name());
+        for (n = 0; n < instances.numInstances(); n++) {
+          value = cells[i][n];
+          if (Utils.isMissingValue(value))
+            nominal.appendMissing();
+          else
+            nominal.append(labels[(int) value]);
+        }
+        columns.add(nominal);
+      }
+      else {
+        text = TextColumn.create(att.name());
+        for (n = 0; n < instances.numInstances(); n++) {
+          value = cells[i][n];
+          if (Utils.isMissingValue(value))
+            text.appendMissing();
+          else if (att.isString())
+            text.append(att.value((int) value));
+          else
+            text.append(instances.instance(n).stringValue(i));
+        }
+        columns.add(text);
+      }
+      cells[i] = null;
+    }
+
+    return Table.create(instances.relationName(), columns);
+  }
+
+  /**
+   * Turns an off-heap table into Weka Instances. Numeric columns become
+   * numeric attributes, date-like ones date attributes and booleans
+   * nominal ones. Dictionary columns with at most maxLabels distinct values
+   * become nominal attributes (labels in order of their codes), the others
+   * string attributes. The values get read straight from the off-heap
+   * columns, without an intermediate Tablesaw table.
+   *
+   * @param table	the table to convert
+   * @param maxLabels	the maximum number of distinct values for a nominal attribute, &lt;=0 for always using string attributes
+   * @return		the generated dataset
+   */
+  public static Instances offHeapToInstances(OffHeapTable table, int maxLabels) {
+    return offHeapToInstances(table, maxLabels, 0, table.rowCount());
+  }
+
+  /**
+   * Turns a range of rows of an off-heap table into Weka Instances (see
+   * {@link #offHeapToInstances(OffHeapTable, int)}). The header does not
+   * depend on the range, i.e., an empty range generates the structure.
+   * String attributes contain all the strings of their dictionary, in order
+   * of their codes.
+   *
+   * @param table	the table to convert
+   * @param maxLabels	the maximum number of distinct values for a nominal attribute, &lt;=0 for always using string attributes
+   * @param from	the first row (incl)
+   * @param to		the last row (excl)
+   * @return		the generated dataset
+   */
+  public static Instances offHeapToInstances(OffHeapTable table, int maxLabels, int from, int to) {
+    Instances			result;
+    ArrayList<Attribute>	atts;
+    OffHeapColumn		column;
+    OffHeapDictionaryColumn	dict;
+    List<String>		labels;
+    int				i;
+    int				n;
+    int				code;
+
+    // header
+    atts = new ArrayList<Attribute>();
+    for (i = 0; i < table.columnCount(); i++) {
+      column = table.column(i);
+      if (column instanceof OffHeapLongColumn) {
+        atts.add(new Attribute(column.getName()));
+      }
+      else if (column instanceof OffHeapDoubleColumn) {
+        switch (column.getType()) {
+          case "ddt":
+          case "dd":
+          case "dt":
+          case "di":
+            atts.add(new Attribute(column.getName(), "yyyy-MM-dd HH:mm:ss.SSS"));
+            break;
+          case "b":
+            labels = new ArrayList<String>();
+            labels.add("false");
+            labels.add("true");
+            atts.add(new Attribute(column.getName(), labels));
+            break;
+          default:
+            atts.add(new Attribute(column.getName()));
+        }
+      }
+      else {
+        dict = (OffHeapDictionaryColumn) column;
+        if (dict.numCodes() - 1 <= maxLabels) {
+          labels = new ArrayList<String>();
+          for (code = 1; code < dict.numCodes(); code++)
+            labels.add(dict.getLabel(code));
+          atts.add(new Attribute(column.getName(), labels));
+        }
+        else {
+          atts.add(new Attribute(column.getName(), (List<String>) null));
+        }
+      }
+    }
+    result = new Instances(table.name(), atts, to - from);
+    for (i = 0; i < table.columnCount(); i++) {
+      column = table.column(i);
+      if (result.attribute(i).isString()) {
+        dict = (OffHeapDictionaryColumn) column;
+        for (code = 1; code < dict.numCodes(); code++)
+          result.attribute(i).addStringValue(dict.getLabel(code));
+      }
     }
-    result = Table.create(instances.relationName(), columns);
 
     // data
-    zoneId = ZoneId.of("UTC");
-    for (n = 0; n < instances.numInstances(); n++) {
-      inst = instances.instance(n);
-      row  = result.appendRow();
+    for (n = from; n < to; n++)
+      result.add(new DenseInstance(1.0, offHeapRowValues(table, n)));
+
+    return result;
+  }
+
+  /**
+   * Returns the internal Weka values of the row of an off-heap table, for a
+   * header as generated by {@link #offHeapToInstances(OffHeapTable, int, int, int)},
+   * i.e., the index of a nominal label or string is its dictionary code minus 1.
+   *
+   * @param table	the table to get the row from
+   * @param row		the row
+   * @return		the values
+   */
+  public static double[] offHeapRowValues(OffHeapTable table, int row) {
+    double[]		result;
+    OffHeapColumn	column;
+    int			i;
+    int			code;
+
+    result = new double[table.columnCount()];
+    for (i = 0; i < result.length; i++) {
+      column = table.column(i);
+      if (column instanceof OffHeapLongColumn) {
+        result[i] = ((OffHeapLongColumn) column).getDouble(row);
+      }
+      else if (column instanceof OffHeapDoubleColumn) {
+        result[i] = ((OffHeapDoubleColumn) column).getDouble(row);
+      }
+      else {
+        code = ((OffHeapDictionaryColumn) column).getCode(row);
+        if (code == OffHeapDictionaryColumn.MISSING)
+          result[i] = Utils.missingValue();
+        else
+          result[i] = code - 1;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Turns Weka Instances into an off-heap table. Numeric and date
+   * attributes become off-heap double columns, nominal and string attributes
+   * off-heap dictionary columns (codes are the value indices plus 1), others
+   * dictionary columns of their string representation.
+   * <br>
+   * The returned table must be closed to free its memory.
+   *
+   * @param instances	the instances to convert
+   * @return		the generated table
+   */
+  public static OffHeapTable instancesToOffHeap(Instances instances) {
+    OffHeapTable		result;
+    Attribute			att;
+    OffHeapDoubleColumn		doubles;
+    OffHeapDictionaryColumn	dict;
+    OffHeapColumn		current;
+    double			value;
+    int				i;
+    int				n;
+
+    result  = new OffHeapTable(instances.relationName());
+    current = null;
+    try {
       for (i = 0; i < instances.numAttributes(); i++) {
-	att = instances.attribute(i);
-	if (att.isDate())
-	  row.setDateTime(i, LocalDateTime.ofInstant(new Date((long) inst.value(i)).toInstant(), zoneId));
-	else if (att.isNumeric())
-	  row.setDouble(i, inst.value(i));
-	else if (att.isNominal())
-	  row.setString(i, inst.stringValue(i));
-	else
-	  row.setText(i, inst.stringValue(i));
+        att = instances.attribute(i);
+        if (att.isNumeric()) {
+          doubles = new OffHeapDoubleColumn(att.name(), att.isDate() ? "ddt" : "nd");
+          current = doubles;
+          for (n = 0; n < instances.numInstances(); n++)
+            doubles.append(instances.instance(n).value(i));
+        }
+        else {
+          dict    = new OffHeapDictionaryColumn(att.name(), att.isNominal() ? "ss" : "st");
+          current = dict;
+          if (att.isNominal() || att.isString()) {
+            for (n = 0; n < att.numValues(); n++)
+              dict.addLabel(att.value(n));
+          }
+          for (n = 0; n < instances.numInstances(); n++) {
+            value = instances.instance(n).value(i);
+            if (Utils.isMissingValue(value))
+              dict.appendMissing();
+            else if (att.isNominal() || att.isString())
+              dict.appendCode((int) value + 1);
+            else
+              dict.append(instances.instance(n).stringValue(i));
+          }
+        }
+        result.addColumn(current);
+        current = null;
       }
     }
+    catch (RuntimeException e) {
+      if (current != null)
+        current.close();
+      result.close();
+      throw e;
+    }
 
     return result;
   }
@@ -0,0 +1,353 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TablesawColumnStoreLoader.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.converters;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.OptionHandler;
+import weka.core.RevisionUtils;
+import weka.core.TablesawUtils;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnStore;
+import weka.core.tablesaw.util.OffHeapTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Loads column stores (see {@link ColumnStore}) as written by
+ * {@link TablesawColumnStoreSaver}. Opening a store only memory-maps the
+ * column files, the data gets paged in on demand. Can be used in batch and
+ * incremental mode.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TablesawColumnStoreLoader
+  extends AbstractFileLoader
+  implements BatchConverter, IncrementalConverter, OptionHandler {
+
+  private static final long serialVersionUID = -1780839405721638845L;
+
+  /** the maximum number of distinct values for nominal attributes. */
+  protected int m_MaxLabels = TablesawUtils.DEFAULT_MAX_LABELS;
+
+  /** the opened store. */
+  protected transient OffHeapTable m_Store;
+
+  /** the next row to return in incremental mode. */
+  protected int m_Row;
+
+  /**
+   * Returns a string describing this Loader
+   *
+   * @return 		a description of the Loader suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return "Loads column stores, as written by " + TablesawColumnStoreSaver.class.getName() + ".\n"
+      + "The column files get memory-mapped, i.e., the data is paged in on demand and shared "
+      + "via the page cache between processes using the same store.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe maximum number of distinct values for turning string columns\n"
+      + "\tinto nominal attributes (<=0 for string attributes).\n"
+      + "\t(default: " + TablesawUtils.DEFAULT_MAX_LABELS + ")",
+      "max-labels", 1, "-max-labels <int>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    String	tmp;
+
+    tmp = Utils.getOption("max-labels", options);
+    if (!tmp.isEmpty())
+      setMaxLabels(Integer.parseInt(tmp));
+    else
+      setMaxLabels(TablesawUtils.DEFAULT_MAX_LABELS);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the loader.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  @Override
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    result.add("-max-labels");
+    result.add("" + getMaxLabels());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Sets the maximum number of distinct values for turning string columns
+   * into nominal attributes.
+   *
+   * @param value	the maximum, &lt;=0 for string attributes
+   */
+  public void setMaxLabels(int value) {
+    m_MaxLabels = value;
+  }
+
+  /**
+   * Returns the maximum number of distinct values for turning string columns
+   * into nominal attributes.
+   *
+   * @return		the maximum, &lt;=0 for string attributes
+   */
+  public int getMaxLabels() {
+    return m_MaxLabels;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxLabelsTipText() {
+    return "The maximum number of distinct values for turning string columns into nominal attributes (<=0 for string attributes).";
+  }
+
+  /**
+   * Get the file extension used for this type of file
+   *
+   * @return the file extension
+   */
+  @Override
+  public String getFileExtension() {
+    return ColumnStore.EXTENSION;
+  }
+
+  /**
+   * Gets all the file extensions used for this type of file
+   *
+   * @return the file extensions
+   */
+  @Override
+  public String[] getFileExtensions() {
+    return new String[]{ColumnStore.EXTENSION};
+  }
+
+  /**
+   * Get a one line description of the type of file
+   *
+   * @return a description of the file type
+   */
+  @Override
+  public String getFileDescription() {
+    return "Tablesaw column stores";
+  }
+
+  /**
+   * Closes the store, if open.
+   */
+  protected void closeStore() {
+    if (m_Store != null) {
+      m_Store.close();
+      m_Store = null;
+    }
+  }
+
+  /**
+   * Resets the Loader ready to read a new data set
+   *
+   * @throws IOException        if something goes wrong
+   */
+  public void reset() throws IOException {
+    closeStore();
+    m_structure = null;
+    m_Row       = 0;
+
+    setRetrieval(NONE);
+
+    if (m_File != null)
+      setFile(new File(m_File));
+  }
+
+  /**
+   * Resets the Loader object and sets the source of the data set to be
+   * the supplied File object.
+   *
+   * @param file 		the schema file of the store
+   * @throws IOException        if an error occurs
+   */
+  public void setSource(File file) throws IOException {
+    closeStore();
+    m_structure = null;
+    m_Row       = 0;
+
+    setRetrieval(NONE);
+
+    if (file == null)
+      throw new IOException("Source file object is null!");
+    if (!file.exists())
+      throw new IOException("File not found");
+
+    m_sourceFile = file;
+    m_File       = file.getAbsolutePath();
+  }
+
+  /**
+   * Not supported, column stores must be files.
+   *
+   * @param in 			ignored
+   * @throws IOException        always
+   */
+  public void setSource(InputStream in) throws IOException {
+    throw new IOException("Column stores can only be loaded from files!");
+  }
+
+  /**
+   * Opens the store, if necessary.
+   *
+   * @throws IOException	if opening fails
+   */
+  protected void openStore() throws IOException {
+    if (m_sourceFile == null)
+      throw new IOException("No source has been specified");
+    if (m_Store == null)
+      m_Store = ColumnStore.open(m_sourceFile);
+  }
+
+  /**
+   * Determines and returns (if possible) the structure (internally the
+   * header) of the data set as an empty set of instances.
+   * Only reads the schema and the dictionaries.
+   *
+   * @return 			the structure of the data set as an empty set
+   * 				of Instances
+   * @throws IOException        if an error occurs
+   */
+  public Instances getStructure() throws IOException {
+    if (m_structure == null) {
+      openStore();
+      m_structure = TablesawUtils.offHeapToInstances(m_Store, m_MaxLabels, 0, 0);
+    }
+
+    return new Instances(m_structure, 0);
+  }
+
+  /**
+   * Return the full data set. If the structure hasn't yet been determined
+   * by a call to getStructure then method should do so before processing
+   * the rest of the data set.
+   *
+   * @return 			the structure of the data set as an empty
+   * 				set of Instances
+   * @throws IOException        if there is no source or reading fails
+   */
+  @Override
+  public Instances getDataSet() throws IOException {
+    Instances	result;
+
+    if (getRetrieval() == INCREMENTAL)
+      throw new IOException("Cannot mix getting instances in both incremental and batch modes");
+    setRetrieval(BATCH);
+
+    openStore();
+    try {
+      result = TablesawUtils.offHeapToInstances(m_Store, m_MaxLabels);
+    }
+    finally {
+      closeStore();
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the next row of the store.
+   *
+   * @param structure		the dataset header
+   * @return 			the next instance, null if no more rows
+   * @throws IOException        if reading fails
+   */
+  public Instance getNextInstance(Instances structure) throws IOException {
+    Instance	result;
+
+    if (getRetrieval() == BATCH)
+      throw new IOException("Cannot mix getting instances in both incremental and batch modes");
+    setRetrieval(INCREMENTAL);
+
+    if (m_structure == null)
+      getStructure();
+    openStore();
+    if (m_Row >= m_Store.rowCount()) {
+      closeStore();
+      return null;
+    }
+
+    result = new DenseInstance(1.0, TablesawUtils.offHeapRowValues(m_Store, m_Row));
+    result.setDataset(structure);
+    m_Row++;
+
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1 $");
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args 	should contain the name of an input file.
+   */
+  public static void main(String[] args) {
+    runFileLoader(new TablesawColumnStoreLoader(), args);
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TablesawColumnStoreSaver.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.converters;
+
+import weka.core.Capabilities;
+import weka.core.Capabilities.Capability;
+import weka.core.RevisionUtils;
+import weka.core.TablesawUtils;
+import weka.core.tablesaw.util.ColumnStore;
+import weka.core.tablesaw.util.OffHeapTable;
+
+import java.io.IOException;
+
+/**
+ * Saves the data as column store (see {@link ColumnStore}), which can be
+ * opened by memory-mapping the column files rather than parsing the data.
+ * The selected file is the schema file, the column files get stored in a
+ * directory next to it.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see TablesawColumnStoreLoader
+ */
+public class TablesawColumnStoreSaver
+  extends AbstractFileSaver
+  implements BatchConverter {
+
+  private static final long serialVersionUID = 2873453162457632193L;
+
+  /**
+   * Constructor
+   */
+  public TablesawColumnStoreSaver() {
+    resetOptions();
+  }
+
+  /**
+   * Returns a string describing this Saver
+   *
+   * @return a description of the Saver suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return "Saves the data as column store, which can be opened by memory-mapping "
+      + "the column files rather than parsing the data.\n"
+      + "The selected file is the schema file, the column files get stored in a directory "
+      + "next to it (name of schema file with '" + ColumnStore.COLUMNS_SUFFIX + "' instead of '" + ColumnStore.EXTENSION + "').";
+  }
+
+  /**
+   * Resets the options.
+   */
+  @Override
+  public void resetOptions() {
+    super.resetOptions();
+    setFileExtension(ColumnStore.EXTENSION);
+  }
+
+  /**
+   * Returns a description of the file type.
+   *
+   * @return a short file description
+   */
+  @Override
+  public String getFileDescription() {
+    return new TablesawColumnStoreLoader().getFileDescription();
+  }
+
+  /**
+   * Gets all the file extensions used for this type of file
+   *
+   * @return the file extensions
+   */
+  @Override
+  public String[] getFileExtensions() {
+    return new TablesawColumnStoreLoader().getFileExtensions();
+  }
+
+  /**
+   * Returns the Capabilities of this saver.
+   *
+   * @return the capabilities of this object
+   * @see Capabilities
+   */
+  @Override
+  public Capabilities getCapabilities() {
+    Capabilities result = super.getCapabilities();
+
+    // attributes
+    result.enableAllAttributes();
+    result.enable(Capability.MISSING_VALUES);
+
+    // class
+    result.enableAllClasses();
+    result.enable(Capability.MISSING_CLASS_VALUES);
+    result.enable(Capability.NO_CLASS);
+
+    return result;
+  }
+
+  /**
+   * Writes to a file in batch mode To be overridden.
+   *
+   * @throws IOException exception if writting is not possible
+   */
+  @Override
+  public void writeBatch() throws IOException {
+    OffHeapTable	table;
+
+    if (getInstances() == null)
+      throw new IOException("No instances to save");
+
+    if (getRetrieval() == INCREMENTAL)
+      throw new IOException("Batch and incremental saving cannot be mixed.");
+
+    if (retrieveFile() == null)
+      throw new IOException("No output file set (column stores cannot be written to stdout)!");
+
+    setRetrieval(BATCH);
+    setWriteMode(WRITE);
+
+    table = TablesawUtils.instancesToOffHeap(getInstances());
+    try {
+      ColumnStore.write(table, retrieveFile());
+    }
+    finally {
+      table.close();
+    }
+
+    setWriteMode(WAIT);
+    resetWriter();
+    setWriteMode(CANCEL);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision: 1 $");
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args should contain the options of a Saver.
+   */
+  public static void main(String[] args) {
+    runFileSaver(new TablesawColumnStoreSaver(), args);
+  }
+}
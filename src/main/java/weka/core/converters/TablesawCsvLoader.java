@@ -20,31 +20,114 @@
 
 package weka.core.converters;
 
+import com.univocity.parsers.csv.CsvParser;
+import tech.tablesaw.api.ColumnType;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
 import tech.tablesaw.io.csv.CsvReadOptions;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Option;
+import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
 import weka.core.TablesawUtils;
+import weka.core.Utils;
+import weka.core.tablesaw.util.CsvChunkReader;
+import weka.core.tablesaw.util.OffHeapTable;
+import weka.core.tablesaw.util.ReservoirSampler;
+import weka.core.tablesaw.util.TableSink;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 
 /**
  * Reads CSV files using the Tablesaw library.
+ * <br>
+ * Can draw a random sample of rows while streaming through the file
+ * (reservoir sampling), in which case only the sample is held in memory.
+ * <br>
+ * Alternatively, the rows can be read in chunks into an {@link OffHeapTable},
+ * i.e., the parsed data is stored outside the Java heap instead of in a
+ * Tablesaw table. The column types get determined on the first chunk, with
+ * numeric columns read as doubles.
+ * <br>
+ * Instead of a single file, the source can also be a directory (all CSV
+ * files in it) or a glob pattern (e.g., "/data/shards/2021-*.csv.gz"). The
+ * files get read concurrently on a bounded thread pool (using virtual
+ * threads when the JVM supports them), their schemas get unified (union of
+ * the columns; differing numeric types get widened, otherwise string) and
+ * the tables get concatenated before the single conversion into Instances.
+ * Optionally, the source file of each row gets recorded in a (dictionary
+ * coded) string column. Sampling and off-heap loading are only available
+ * for single files.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class TablesawCsvLoader
   extends AbstractFileLoader
-  implements BatchConverter {
+  implements BatchConverter, OptionHandler {
 
   private static final long serialVersionUID = -5864770513695200290L;
 
+  /** the default sample size. */
+  public final static int DEFAULT_SAMPLE_SIZE = -1;
+
+  /** the default seed. */
+  public final static long DEFAULT_SEED = 1;
+
+  /** the sample size (&lt;=0 for all rows). */
+  protected int m_SampleSize = DEFAULT_SAMPLE_SIZE;
+
+  /** the default number of rows per chunk when reading off-heap. */
+  public final static int DEFAULT_CHUNK_SIZE = CsvChunkReader.DEFAULT_CHUNK_SIZE;
+
+  /** the seed for sampling. */
+  protected long m_Seed = DEFAULT_SEED;
+
+  /** whether to read the data into off-heap storage. */
+  protected boolean m_OffHeap = false;
+
+  /** the number of rows per chunk when reading off-heap. */
+  protected int m_ChunkSize = DEFAULT_CHUNK_SIZE;
+
+  /** the default number of threads for reading multiple files. */
+  public final static int DEFAULT_NUM_THREADS = -1;
+
+  /** the default name of the column with the source files. */
+  public final static String DEFAULT_SOURCE_COLUMN = "";
+
+  /** the number of threads for reading multiple files (&lt;=0 for number of processors). */
+  protected int m_NumThreads = DEFAULT_NUM_THREADS;
+
+  /** the name of the column for recording the source files (empty for none). */
+  protected String m_SourceColumn = DEFAULT_SOURCE_COLUMN;
+
   /** the loaded data. */
   protected Instances m_Data;
 
@@ -56,9 +139,300 @@ public class TablesawCsvLoader
    */
   public String globalInfo() {
     return "Reads CSV files using the Tablesaw library.\n"
+      + "The source can also be a directory or a glob pattern (e.g., '/data/shards/*.csv.gz'), in which "
+      + "case the files get read concurrently, their schemas unified and the tables concatenated "
+      + "(sampling and off-heap loading are only available for single files).\n"
       + "https://jtablesaw.github.io/tablesaw/";
   }
 
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe number of rows to sample while streaming\n"
+      + "\tthrough the file (<=0 for all rows)\n"
+      + "\t(default: " + DEFAULT_SAMPLE_SIZE + ")",
+      "sample-size", 1, "-sample-size <int>"));
+
+    result.addElement(new Option("\tThe seed for sampling\n"
+      + "\t(default: " + DEFAULT_SEED + ")",
+      "seed", 1, "-seed <long>"));
+
+    result.addElement(new Option("\tWhether to read the data in chunks into off-heap\n"
+      + "\tstorage rather than a Tablesaw table (ignored when sampling)",
+      "off-heap", 0, "-off-heap"));
+
+    result.addElement(new Option("\tThe number of rows per chunk when reading off-heap\n"
+      + "\t(default: " + DEFAULT_CHUNK_SIZE + ")",
+      "chunk-size", 1, "-chunk-size <int>"));
+
+    result.addElement(new Option("\tThe number of threads for reading multiple files\n"
+      + "\t(directory or glob as source, <=0 for number of processors)\n"
+      + "\t(default: " + DEFAULT_NUM_THREADS + ")",
+      "num-threads", 1, "-num-threads <int>"));
+
+    result.addElement(new Option("\tThe name of the column to record the source file in\n"
+      + "\twhen reading multiple files (empty for none)\n"
+      + "\t(default: " + DEFAULT_SOURCE_COLUMN + ")",
+      "source-column", 1, "-source-column <name>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    String	tmp;
+
+    tmp = Utils.getOption("sample-size", options);
+    if (!tmp.isEmpty())
+      setSampleSize(Integer.parseInt(tmp));
+    else
+      setSampleSize(DEFAULT_SAMPLE_SIZE);
+
+    tmp = Utils.getOption("seed", options);
+    if (!tmp.isEmpty())
+      setSeed(Long.parseLong(tmp));
+    else
+      setSeed(DEFAULT_SEED);
+
+    setOffHeap(Utils.getFlag("off-heap", options));
+
+    tmp = Utils.getOption("chunk-size", options);
+    if (!tmp.isEmpty())
+      setChunkSize(Integer.parseInt(tmp));
+    else
+      setChunkSize(DEFAULT_CHUNK_SIZE);
+
+    tmp = Utils.getOption("num-threads", options);
+    if (!tmp.isEmpty())
+      setNumThreads(Integer.parseInt(tmp));
+    else
+      setNumThreads(DEFAULT_NUM_THREADS);
+
+    setSourceColumn(Utils.getOption("source-column", options));
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the loader.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  @Override
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    result.add("-sample-size");
+    result.add("" + getSampleSize());
+
+    result.add("-seed");
+    result.add("" + getSeed());
+
+    if (getOffHeap())
+      result.add("-off-heap");
+
+    result.add("-chunk-size");
+    result.add("" + getChunkSize());
+
+    result.add("-num-threads");
+    result.add("" + getNumThreads());
+
+    if (!getSourceColumn().isEmpty()) {
+      result.add("-source-column");
+      result.add(getSourceColumn());
+    }
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Sets the number of rows to sample.
+   *
+   * @param value	the sample size, &lt;=0 for all rows
+   */
+  public void setSampleSize(int value) {
+    if (value <= 0)
+      value = -1;
+    m_SampleSize = value;
+  }
+
+  /**
+   * Returns the number of rows to sample.
+   *
+   * @return		the sample size, &lt;=0 for all rows
+   */
+  public int getSampleSize() {
+    return m_SampleSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sampleSizeTipText() {
+    return "The number of rows to sample while streaming through the file, only the sample gets held in memory (<=0 for all rows).";
+  }
+
+  /**
+   * Sets the seed for sampling.
+   *
+   * @param value	the seed
+   */
+  public void setSeed(long value) {
+    m_Seed = value;
+  }
+
+  /**
+   * Returns the seed for sampling.
+   *
+   * @return		the seed
+   */
+  public long getSeed() {
+    return m_Seed;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String seedTipText() {
+    return "The seed for sampling.";
+  }
+
+  /**
+   * Sets whether to read the data into off-heap storage.
+   *
+   * @param value	true if off-heap
+   */
+  public void setOffHeap(boolean value) {
+    m_OffHeap = value;
+  }
+
+  /**
+   * Returns whether to read the data into off-heap storage.
+   *
+   * @return		true if off-heap
+   */
+  public boolean getOffHeap() {
+    return m_OffHeap;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String offHeapTipText() {
+    return "If enabled, the data gets read in chunks into off-heap storage rather than a Tablesaw table (ignored when sampling).";
+  }
+
+  /**
+   * Sets the number of rows per chunk when reading off-heap.
+   *
+   * @param value	the number of rows
+   */
+  public void setChunkSize(int value) {
+    if (value < 1)
+      value = DEFAULT_CHUNK_SIZE;
+    m_ChunkSize = value;
+  }
+
+  /**
+   * Returns the number of rows per chunk when reading off-heap.
+   *
+   * @return		the number of rows
+   */
+  public int getChunkSize() {
+    return m_ChunkSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String chunkSizeTipText() {
+    return "The number of rows per chunk when reading off-heap; the first chunk determines the column types.";
+  }
+
+  /**
+   * Sets the number of threads for reading multiple files.
+   *
+   * @param value	the number of threads, &lt;=0 for number of processors
+   */
+  public void setNumThreads(int value) {
+    if (value <= 0)
+      value = -1;
+    m_NumThreads = value;
+  }
+
+  /**
+   * Returns the number of threads for reading multiple files.
+   *
+   * @return		the number of threads, &lt;=0 for number of processors
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads for reading multiple files, when the source is a directory or glob pattern (<=0 for number of processors).";
+  }
+
+  /**
+   * Sets the name of the column to record the source files in.
+   *
+   * @param value	the name, empty for none
+   */
+  public void setSourceColumn(String value) {
+    m_SourceColumn = value;
+  }
+
+  /**
+   * Returns the name of the column to record the source files in.
+   *
+   * @return		the name, empty for none
+   */
+  public String getSourceColumn() {
+    return m_SourceColumn;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sourceColumnTipText() {
+    return "The name of the column to record the source file of each row in, when reading multiple files (empty for none).";
+  }
+
   /**
    * Get the file extension used for this type of file
    *
@@ -120,6 +494,12 @@ public class TablesawCsvLoader
     if (file == null)
       throw new IOException("Source file object is null!");
 
+    if (file.isDirectory() || isPattern(file)) {
+      m_sourceFile = file;
+      m_File       = file.getAbsolutePath();
+      return;
+    }
+
     try {
       if (file.getName().endsWith(FILE_EXTENSION_COMPRESSED))
 	setSource(new GZIPInputStream(new FileInputStream(file)));
@@ -182,16 +562,498 @@ public class TablesawCsvLoader
   @Override
   public Instances getDataSet() throws IOException {
     Table 			table;
-    CsvReadOptions.Builder	builder;
+    OffHeapTable		offHeap;
+
+    if (m_sourceFile == null)
+      throw new IOException("No source has been specified");
 
-    builder = CsvReadOptions.builder(m_sourceFile)
-      .header(true)
-      .sample(true);
-    table = Table.read().csv(builder.build());
+    if (m_sourceFile.isDirectory() || isPattern(m_sourceFile)) {
+      if (isSampling() || m_OffHeap)
+	throw new IOException("Sampling and off-heap loading are not supported for directories or glob patterns: " + m_sourceFile);
+      table = readFiles(m_sourceFile);
+    }
+    else if (isSampling()) {
+      table = readSample(m_sourceFile);
+    }
+    else if (m_OffHeap) {
+      offHeap = readOffHeap(m_sourceFile);
+      try {
+	return TablesawUtils.offHeapToInstances(offHeap, TablesawUtils.DEFAULT_MAX_LABELS);
+      }
+      finally {
+	offHeap.close();
+      }
+    }
+    else {
+      table = readTable(m_sourceFile);
+    }
 
     return TablesawUtils.tableToInstances(table);
   }
 
+  /**
+   * Reads the file into a table, using Tablesaw's type detection.
+   *
+   * @param file	the file to read
+   * @return		the table
+   * @throws IOException	if reading fails
+   */
+  protected Table readTable(File file) throws IOException {
+    CsvReadOptions.Builder	builder;
+    Reader			reader;
+
+    if (!file.getName().endsWith(FILE_EXTENSION_COMPRESSED)) {
+      builder = CsvReadOptions.builder(file)
+	.header(true)
+	.sample(true);
+      return Table.read().csv(builder.build());
+    }
+
+    reader = openReader(file);
+    try {
+      builder = CsvReadOptions.builder(reader)
+	.tableName(file.getName())
+	.header(true)
+	.sample(true);
+      return Table.read().csv(builder.build());
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Returns whether the file represents a glob pattern rather than a file.
+   * Existing files and directories are never patterns, even if their names
+   * contain glob characters (e.g., "run[1].csv").
+   *
+   * @param file	the file to check
+   * @return		true if a glob pattern
+   */
+  protected boolean isPattern(File file) {
+    String	path;
+
+    if (file.exists())
+      return false;
+    path = file.getPath();
+    return (path.indexOf('*') > -1) || (path.indexOf('?') > -1) || (path.indexOf('[') > -1) || (path.indexOf('{') > -1);
+  }
+
+  /**
+   * Returns the directory that the files of the directory or glob pattern
+   * get located in, i.e., the deepest directory without glob characters.
+   *
+   * @param source	the directory or glob pattern
+   * @return		the base directory
+   */
+  protected File getBaseDirectory(File source) {
+    File	result;
+
+    if (source.isDirectory())
+      return source.getAbsoluteFile();
+
+    result = source.getAbsoluteFile().getParentFile();
+    while ((result != null) && isPattern(result))
+      result = result.getParentFile();
+
+    return result;
+  }
+
+  /**
+   * Locates the files of the directory (all CSV files in it) or glob pattern
+   * ("**" matches across directories), sorted by path.
+   *
+   * @param source	the directory or glob pattern
+   * @return		the files
+   * @throws IOException	if listing the files fails
+   */
+  protected List<File> listFiles(File source) throws IOException {
+    final PathMatcher	matcher;
+    File		base;
+    String		pattern;
+    int			depth;
+    List<Path>		paths;
+    Stream<Path>	stream;
+    List<File>		result;
+
+    base = getBaseDirectory(source);
+    if (base == null)
+      throw new IOException("Cannot determine directory of: " + source);
+    if (source.isDirectory()) {
+      pattern = new File(base, "*").getPath();
+      depth   = 1;
+      matcher = new PathMatcher() {
+	@Override
+	public boolean matches(Path path) {
+	  String name = path.getFileName().toString();
+	  return name.endsWith(getFileExtension()) || name.endsWith(getFileExtension() + FILE_EXTENSION_COMPRESSED);
+	}
+      };
+    }
+    else {
+      pattern = source.getAbsolutePath();
+      depth   = pattern.contains("**") ? Integer.MAX_VALUE : pattern.substring(base.getPath().length() + 1).split("[/\\\\]").length;
+      matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    }
+
+    stream = Files.walk(base.toPath(), depth);
+    try {
+      paths = stream
+	.filter((Path p) -> Files.isRegularFile(p) && matcher.matches(p))
+	.collect(Collectors.<Path>toList());
+    }
+    finally {
+      stream.close();
+    }
+    Collections.sort(paths);
+
+    result = new ArrayList<File>();
+    for (Path path: paths)
+      result.add(path.toFile());
+    if (result.isEmpty())
+      throw new IOException("No files found: " + pattern);
+
+    return result;
+  }
+
+  /**
+   * Creates the factory for the threads reading the files, using virtual
+   * threads if the JVM supports them (Java 21+).
+   *
+   * @return		the factory
+   */
+  protected ThreadFactory newThreadFactory() {
+    Object	builder;
+
+    try {
+      builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+    }
+    catch (Exception e) {
+      return Executors.defaultThreadFactory();
+    }
+  }
+
+  /**
+   * Reads all the files of the directory or glob pattern concurrently,
+   * unifies their schemas and concatenates them.
+   *
+   * @param source	the directory or glob pattern
+   * @return		the concatenated table
+   * @throws IOException	if reading fails
+   */
+  protected Table readFiles(File source) throws IOException {
+    List<File>			files;
+    List<Future<Table>>		futures;
+    List<Table>			tables;
+    ExecutorService		executor;
+    Path			base;
+    Table			result;
+    StringColumn		sourceCol;
+    String			label;
+    int[]			rowCounts;
+    int				threads;
+    int				row;
+    int				i;
+    int				n;
+
+    files   = listFiles(source);
+    threads = (m_NumThreads <= 0) ? Runtime.getRuntime().availableProcessors() : m_NumThreads;
+    threads = Math.max(1, Math.min(threads, files.size()));
+
+    tables   = new ArrayList<Table>();
+    executor = Executors.newFixedThreadPool(threads, newThreadFactory());
+    try {
+      futures = new ArrayList<Future<Table>>();
+      for (final File file: files) {
+	futures.add(executor.submit(new Callable<Table>() {
+	  @Override
+	  public Table call() throws Exception {
+	    return readTable(file);
+	  }
+	}));
+      }
+      for (i = 0; i < futures.size(); i++)
+	tables.add(futures.get(i).get());
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException)
+	throw (IOException) e.getCause();
+      throw new IOException("Failed to read file(s): " + source, e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted reading file(s): " + source, e);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    tables    = unify(tables);
+    rowCounts = new int[tables.size()];
+    for (i = 0; i < tables.size(); i++)
+      rowCounts[i] = tables.get(i).rowCount();
+    // the tables are not used elsewhere, i.e., the first one can be appended to directly
+    result = tables.get(0);
+    result.setName(getBaseDirectory(source).getName());
+    for (i = 1; i < tables.size(); i++)
+      result.append(tables.get(i));
+
+    if (!m_SourceColumn.isEmpty()) {
+      if (result.columnNames().contains(m_SourceColumn))
+	throw new IOException("Source column already present: " + m_SourceColumn);
+      base      = getBaseDirectory(source).toPath();
+      sourceCol = StringColumn.create(m_SourceColumn, result.rowCount());
+      row       = 0;
+      for (i = 0; i < files.size(); i++) {
+	label = base.relativize(files.get(i).toPath()).toString();
+	for (n = 0; n < rowCounts[i]; n++)
+	  sourceCol.set(row++, label);
+      }
+      result.addColumns(sourceCol);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns whether the type is an integer type.
+   *
+   * @param type	the type to check
+   * @return		true if short, integer or long
+   */
+  protected boolean isIntegral(ColumnType type) {
+    return type.equals(ColumnType.SHORT) || type.equals(ColumnType.INTEGER) || type.equals(ColumnType.LONG);
+  }
+
+  /**
+   * Determines the common type of the column types: identical types are
+   * kept, integer types get widened to long and other numeric types to
+   * double, everything else becomes string.
+   *
+   * @param types	the types to unify
+   * @return		the common type
+   */
+  protected ColumnType commonType(List<ColumnType> types) {
+    boolean	same;
+    boolean	integer;
+    boolean	numeric;
+
+    same    = true;
+    integer = true;
+    numeric = true;
+    for (ColumnType type: types) {
+      same    = same && type.equals(types.get(0));
+      integer = integer && isIntegral(type);
+      numeric = numeric && (isIntegral(type) || type.equals(ColumnType.FLOAT) || type.equals(ColumnType.DOUBLE));
+    }
+
+    if (same)
+      return types.get(0);
+    else if (integer)
+      return ColumnType.LONG;
+    else if (numeric)
+      return ColumnType.DOUBLE;
+    else
+      return ColumnType.STRING;
+  }
+
+  /**
+   * Returns whether the column only contains missing values (e.g., an empty
+   * column of a shard, which gets detected as string column).
+   *
+   * @param column	the column to check
+   * @return		true if all values are missing
+   */
+  protected boolean isAllMissing(Column<?> column) {
+    return (column.countMissing() == column.size());
+  }
+
+  /**
+   * Unifies the schemas of the tables: all tables get the union of the
+   * columns (in order of first occurrence), with columns absent from a
+   * table filled with missing values and differing types converted to
+   * their common type. Columns that only contain missing values (detected
+   * as string columns) are compatible with any type.
+   *
+   * @param tables	the tables to unify
+   * @return		the unified tables
+   */
+  protected List<Table> unify(List<Table> tables) {
+    Map<String,List<ColumnType>>	types;
+    Map<String,List<ColumnType>>	allTypes;
+    Map<String,ColumnType>		unified;
+    List<Table>				result;
+    List<Column<?>>			columns;
+    Column<?>				column;
+    Column<?>				converted;
+    StringColumn			strings;
+    ColumnType				type;
+    int					i;
+
+    types    = new LinkedHashMap<String,List<ColumnType>>();
+    allTypes = new LinkedHashMap<String,List<ColumnType>>();
+    for (Table table: tables) {
+      for (Column<?> col: table.columns()) {
+	if (!allTypes.containsKey(col.name())) {
+	  allTypes.put(col.name(), new ArrayList<ColumnType>());
+	  types.put(col.name(), new ArrayList<ColumnType>());
+	}
+	allTypes.get(col.name()).add(col.type());
+	if (!isAllMissing(col))
+	  types.get(col.name()).add(col.type());
+      }
+    }
+    unified = new LinkedHashMap<String,ColumnType>();
+    for (String name: allTypes.keySet()) {
+      if (types.get(name).isEmpty())
+	unified.put(name, commonType(allTypes.get(name)));
+      else
+	unified.put(name, commonType(types.get(name)));
+    }
+
+    result = new ArrayList<Table>();
+    for (Table table: tables) {
+      columns = new ArrayList<Column<?>>();
+      for (String name: unified.keySet()) {
+	type = unified.get(name);
+	if (!table.columnNames().contains(name)) {
+	  converted = type.create(name);
+	  for (i = 0; i < table.rowCount(); i++)
+	    converted.appendMissing();
+	}
+	else {
+	  column = table.column(name);
+	  if (column.type().equals(type)) {
+	    converted = column;
+	  }
+	  else if (isAllMissing(column)) {
+	    converted = type.create(name);
+	    for (i = 0; i < column.size(); i++)
+	      converted.appendMissing();
+	  }
+	  else if (type.equals(ColumnType.LONG)) {
+	    converted = ((NumericColumn<?>) column).asLongColumn().setName(name);
+	  }
+	  else if (type.equals(ColumnType.DOUBLE)) {
+	    converted = ((NumericColumn<?>) column).asDoubleColumn().setName(name);
+	  }
+	  else {
+	    strings = StringColumn.create(name, column.size());
+	    for (i = 0; i < column.size(); i++) {
+	      if (!column.isMissing(i))
+		strings.set(i, column.getString(i));
+	    }
+	    converted = strings;
+	  }
+	}
+	columns.add(converted);
+      }
+      result.add(Table.create(table.name(), columns));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns whether a sample is to be drawn rather than loading all rows.
+   *
+   * @return		true if to sample
+   */
+  protected boolean isSampling() {
+    return (m_SampleSize > 0);
+  }
+
+  /**
+   * Opens a reader for the file, decompressing it if necessary.
+   *
+   * @param file	the file to open
+   * @return		the reader
+   * @throws IOException	if opening fails
+   */
+  protected Reader openReader(File file) throws IOException {
+    return CsvChunkReader.openReader(file);
+  }
+
+  /**
+   * Streams through the file and draws a random sample of rows using
+   * reservoir sampling. Only the sampled rows are kept in memory, which then
+   * get turned into a table (using Tablesaw's type detection).
+   *
+   * @param file	the file to sample
+   * @return		the table with the sampled rows
+   * @throws IOException	if reading fails
+   */
+  protected Table readSample(File file) throws IOException {
+    CsvParser			parser;
+    ReservoirSampler<String[]>	sampler;
+    String[]			header;
+    String[]			row;
+    Reader			reader;
+
+    parser  = CsvChunkReader.newParser();
+    sampler = new ReservoirSampler<String[]>(m_SampleSize, m_Seed);
+    reader  = openReader(file);
+    try {
+      parser.beginParsing(reader);
+      header = parser.parseNext();
+      if (header == null)
+	throw new IOException("No header row in file: " + file);
+      while ((row = parser.parseNext()) != null)
+	sampler.offer(row);
+    }
+    finally {
+      parser.stopParsing();
+      reader.close();
+    }
+
+    return rowsToTable(file.getName(), header, sampler.getSample(), null);
+  }
+
+  /**
+   * Turns the parsed rows into a table using Tablesaw's CSV reader.
+   *
+   * @param name	the name of the table
+   * @param header	the column names
+   * @param rows	the rows
+   * @param types	the column types, null for detecting them
+   * @return		the table
+   * @throws IOException	if parsing fails
+   */
+  protected Table rowsToTable(String name, String[] header, List<String[]> rows, ColumnType[] types) throws IOException {
+    return CsvChunkReader.rowsToTable(name, header, rows, types);
+  }
+
+  /**
+   * Streams through the file and appends the rows in chunks to an off-heap
+   * table, i.e., only a single chunk of rows is held on the heap at a time.
+   * The column types get detected on the first chunk, with numeric columns
+   * being read as doubles. The caller must close the table.
+   *
+   * @param file	the file to read
+   * @return		the off-heap table
+   * @throws IOException	if reading fails or a later chunk does not match the column types
+   */
+  public OffHeapTable readOffHeap(File file) throws IOException {
+    final OffHeapTable	result;
+
+    result = new OffHeapTable(file.getName());
+    try {
+      new CsvChunkReader(m_ChunkSize).read(file, new TableSink() {
+	@Override
+	public void accept(Table chunk) {
+	  result.append(chunk);
+	}
+      });
+    }
+    catch (IOException | RuntimeException e) {
+      result.close();
+      throw e;
+    }
+
+    return result;
+  }
+
   /**
    * CommonCSVLoader is unable to process a data set incrementally.
    *
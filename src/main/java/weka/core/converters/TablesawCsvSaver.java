@@ -25,13 +25,37 @@ import tech.tablesaw.io.csv.CsvWriteOptions;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Instances;
+import weka.core.Option;
 import weka.core.RevisionUtils;
 import weka.core.TablesawUtils;
+import weka.core.Utils;
+import weka.core.tablesaw.util.CsvTableWriter;
+import weka.core.tablesaw.util.ExternalSorter;
+import weka.core.tablesaw.util.PartitionedCsvWriter;
+import weka.core.tablesaw.util.SortKey;
+import weka.core.tablesaw.util.TableSorter;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
 
 /**
  * CSV saver using the Tablesaw dataframe library.
+ * <br>
+ * Can sort the rows before writing them. With a memory budget, the rows get
+ * sorted in runs that are spilled to disk and then merged straight into the
+ * output file (see {@link ExternalSorter}).
+ * <br>
+ * The output can also be partitioned by the values of columns (Hive-style
+ * "col=value" directories), by a maximum number of rows and/or bytes per
+ * file. The files get written concurrently into the directory next to the
+ * selected file (".parts" instead of ".csv"), the selected file itself
+ * lists the written files and their number of rows
+ * (see {@link PartitionedCsvWriter}).
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
@@ -41,6 +65,48 @@ public class TablesawCsvSaver
 
   private static final long serialVersionUID = 1919058595269288676L;
 
+  /** the default sort columns. */
+  public final static String DEFAULT_SORT = "";
+
+  /** the default memory budget in MB. */
+  public final static int DEFAULT_SORT_MEMORY_BUDGET = -1;
+
+  /** the default temp directory. */
+  public final static String DEFAULT_SORT_TEMP_DIR = "";
+
+  /** the default partition columns. */
+  public final static String DEFAULT_PARTITION_BY = "";
+
+  /** the default maximum number of rows per file. */
+  public final static int DEFAULT_MAX_ROWS_PER_FILE = -1;
+
+  /** the default maximum number of bytes per file. */
+  public final static long DEFAULT_MAX_BYTES_PER_FILE = -1;
+
+  /** the default number of threads for writing partitions. */
+  public final static int DEFAULT_NUM_THREADS = -1;
+
+  /** the columns to sort on (empty for no sorting). */
+  protected String m_Sort = DEFAULT_SORT;
+
+  /** the memory budget in MB for sorting (-1 for sorting in memory). */
+  protected int m_SortMemoryBudget = DEFAULT_SORT_MEMORY_BUDGET;
+
+  /** the temp directory for the sorted runs (empty for the system's one). */
+  protected String m_SortTempDir = DEFAULT_SORT_TEMP_DIR;
+
+  /** the columns to partition by (empty for none). */
+  protected String m_PartitionBy = DEFAULT_PARTITION_BY;
+
+  /** the maximum number of rows per file (&lt;=0 for unlimited). */
+  protected int m_MaxRowsPerFile = DEFAULT_MAX_ROWS_PER_FILE;
+
+  /** the maximum number of bytes per file (&lt;=0 for unlimited). */
+  protected long m_MaxBytesPerFile = DEFAULT_MAX_BYTES_PER_FILE;
+
+  /** the number of threads for writing partitions (&lt;=0 for number of processors). */
+  protected int m_NumThreads = DEFAULT_NUM_THREADS;
+
   /**
    * Constructor
    */
@@ -59,6 +125,349 @@ public class TablesawCsvSaver
       + "https://jtablesaw.github.io/tablesaw/";
   }
 
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns to sort the rows on before writing them\n"
+      + "\t(comma-separated names, each with optional suffixes [:asc|:desc][:first|:last])\n"
+      + "\t(default: no sorting)",
+      "sort", 1, "-sort <name1[:asc|:desc][:first|:last],[name2[,...]]>"));
+
+    result.addElement(new Option("\tThe memory budget in MB before spilling sorted runs to disk\n"
+      + "\t(-1 = sort in memory)\n"
+      + "\t(default: " + DEFAULT_SORT_MEMORY_BUDGET + ")",
+      "sort-memory-budget", 1, "-sort-memory-budget <MB>"));
+
+    result.addElement(new Option("\tThe directory for the sorted runs\n"
+      + "\t(default: system's temp directory)",
+      "sort-temp-dir", 1, "-sort-temp-dir <dir>"));
+
+    result.addElement(new Option("\tThe columns to partition the output by (comma-separated names)\n"
+      + "\t(default: no partitioning)",
+      "partition-by", 1, "-partition-by <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe maximum number of rows per output file (<=0 for unlimited)\n"
+      + "\t(default: " + DEFAULT_MAX_ROWS_PER_FILE + ")",
+      "max-rows-per-file", 1, "-max-rows-per-file <int>"));
+
+    result.addElement(new Option("\tThe maximum number of bytes per output file, uncompressed (<=0 for unlimited)\n"
+      + "\t(default: " + DEFAULT_MAX_BYTES_PER_FILE + ")",
+      "max-bytes-per-file", 1, "-max-bytes-per-file <long>"));
+
+    result.addElement(new Option("\tThe number of threads for writing partitions (<=0 for number of processors)\n"
+      + "\t(default: " + DEFAULT_NUM_THREADS + ")",
+      "num-threads", 1, "-num-threads <int>"));
+
+    result.addAll(Collections.list(super.listOptions()));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    String	tmp;
+
+    setSort(Utils.getOption("sort", options));
+
+    tmp = Utils.getOption("sort-memory-budget", options);
+    if (!tmp.isEmpty())
+      setSortMemoryBudget(Integer.parseInt(tmp));
+    else
+      setSortMemoryBudget(DEFAULT_SORT_MEMORY_BUDGET);
+
+    setSortTempDir(Utils.getOption("sort-temp-dir", options));
+
+    setPartitionBy(Utils.getOption("partition-by", options));
+
+    tmp = Utils.getOption("max-rows-per-file", options);
+    if (!tmp.isEmpty())
+      setMaxRowsPerFile(Integer.parseInt(tmp));
+    else
+      setMaxRowsPerFile(DEFAULT_MAX_ROWS_PER_FILE);
+
+    tmp = Utils.getOption("max-bytes-per-file", options);
+    if (!tmp.isEmpty())
+      setMaxBytesPerFile(Long.parseLong(tmp));
+    else
+      setMaxBytesPerFile(DEFAULT_MAX_BYTES_PER_FILE);
+
+    tmp = Utils.getOption("num-threads", options);
+    if (!tmp.isEmpty())
+      setNumThreads(Integer.parseInt(tmp));
+    else
+      setNumThreads(DEFAULT_NUM_THREADS);
+
+    super.setOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the saver.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  @Override
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getSort().isEmpty()) {
+      result.add("-sort");
+      result.add(getSort());
+    }
+
+    result.add("-sort-memory-budget");
+    result.add("" + getSortMemoryBudget());
+
+    if (!getSortTempDir().isEmpty()) {
+      result.add("-sort-temp-dir");
+      result.add(getSortTempDir());
+    }
+
+    if (!getPartitionBy().isEmpty()) {
+      result.add("-partition-by");
+      result.add(getPartitionBy());
+    }
+
+    result.add("-max-rows-per-file");
+    result.add("" + getMaxRowsPerFile());
+
+    result.add("-max-bytes-per-file");
+    result.add("" + getMaxBytesPerFile());
+
+    result.add("-num-threads");
+    result.add("" + getNumThreads());
+
+    Collections.addAll(result, super.getOptions());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Sets the columns to sort on.
+   *
+   * @param value	the columns (comma-separated names), empty for no sorting
+   */
+  public void setSort(String value) {
+    m_Sort = value;
+  }
+
+  /**
+   * Returns the columns to sort on.
+   *
+   * @return		the columns (comma-separated names), empty for no sorting
+   */
+  public String getSort() {
+    return m_Sort;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sortTipText() {
+    return "The columns to sort the rows on before writing them (comma-separated names, with optional "
+      + "':asc'/':desc' and ':first'/':last' suffixes); empty for no sorting.";
+  }
+
+  /**
+   * Sets the memory budget for sorting.
+   *
+   * @param value	the budget in MB, -1 for sorting in memory
+   */
+  public void setSortMemoryBudget(int value) {
+    m_SortMemoryBudget = value;
+  }
+
+  /**
+   * Returns the memory budget for sorting.
+   *
+   * @return		the budget in MB, -1 for sorting in memory
+   */
+  public int getSortMemoryBudget() {
+    return m_SortMemoryBudget;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sortMemoryBudgetTipText() {
+    return "The memory budget in MB for buffering rows before spilling a sorted run to disk; -1 to sort in memory.";
+  }
+
+  /**
+   * Sets the directory for storing the sorted runs.
+   *
+   * @param value	the directory, empty for the system's temp directory
+   */
+  public void setSortTempDir(String value) {
+    m_SortTempDir = value;
+  }
+
+  /**
+   * Returns the directory for storing the sorted runs.
+   *
+   * @return		the directory, empty for the system's temp directory
+   */
+  public String getSortTempDir() {
+    return m_SortTempDir;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sortTempDirTipText() {
+    return "The directory for storing the sorted runs; empty for the system's temp directory.";
+  }
+
+  /**
+   * Sets the columns to partition the output by.
+   *
+   * @param value	the columns (comma-separated names), empty for none
+   */
+  public void setPartitionBy(String value) {
+    m_PartitionBy = value;
+  }
+
+  /**
+   * Returns the columns to partition the output by.
+   *
+   * @return		the columns (comma-separated names), empty for none
+   */
+  public String getPartitionBy() {
+    return m_PartitionBy;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String partitionByTipText() {
+    return "The columns to partition the output by (comma-separated names), resulting in one 'col=value' "
+      + "directory per combination of values, without the columns in the files; empty for none.";
+  }
+
+  /**
+   * Sets the maximum number of rows per file.
+   *
+   * @param value	the maximum, &lt;=0 for unlimited
+   */
+  public void setMaxRowsPerFile(int value) {
+    if (value <= 0)
+      value = -1;
+    m_MaxRowsPerFile = value;
+  }
+
+  /**
+   * Returns the maximum number of rows per file.
+   *
+   * @return		the maximum, &lt;=0 for unlimited
+   */
+  public int getMaxRowsPerFile() {
+    return m_MaxRowsPerFile;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxRowsPerFileTipText() {
+    return "The maximum number of rows per output file; <=0 for unlimited.";
+  }
+
+  /**
+   * Sets the maximum number of bytes per file.
+   *
+   * @param value	the maximum, &lt;=0 for unlimited
+   */
+  public void setMaxBytesPerFile(long value) {
+    if (value <= 0)
+      value = -1;
+    m_MaxBytesPerFile = value;
+  }
+
+  /**
+   * Returns the maximum number of bytes per file.
+   *
+   * @return		the maximum, &lt;=0 for unlimited
+   */
+  public long getMaxBytesPerFile() {
+    return m_MaxBytesPerFile;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxBytesPerFileTipText() {
+    return "The maximum number of bytes (uncompressed) per output file, a new file is started once exceeded; <=0 for unlimited.";
+  }
+
+  /**
+   * Sets the number of threads for writing partitions.
+   *
+   * @param value	the number of threads, &lt;=0 for number of processors
+   */
+  public void setNumThreads(int value) {
+    if (value <= 0)
+      value = -1;
+    m_NumThreads = value;
+  }
+
+  /**
+   * Returns the number of threads for writing partitions.
+   *
+   * @return		the number of threads, &lt;=0 for number of processors
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads for writing the files when partitioning the output; <=0 for number of processors.";
+  }
+
+  /**
+   * Returns whether the output gets partitioned.
+   *
+   * @return		true if partitioning
+   */
+  protected boolean isPartitioning() {
+    return !m_PartitionBy.isEmpty() || (m_MaxRowsPerFile > 0) || (m_MaxBytesPerFile > 0);
+  }
+
   /**
    * Returns a description of the file type.
    *
@@ -122,16 +531,109 @@ public class TablesawCsvSaver
     setWriteMode(WRITE);
 
     data = getInstances();
-    table = TablesawUtils.instancesToTable(data);
-    builder = CsvWriteOptions.builder(retrieveFile())
-      .header(true);
-    table.write().csv(builder.build());
+    if (isPartitioning()) {
+      writePartitioned(data);
+    }
+    else if (m_Sort.isEmpty()) {
+      table = TablesawUtils.instancesToTable(data);
+      builder = CsvWriteOptions.builder(retrieveFile())
+	.header(true);
+      table.write().csv(builder.build());
+    }
+    else {
+      writeSorted(data);
+    }
 
     setWriteMode(WAIT);
     resetWriter();
     setWriteMode(CANCEL);
   }
 
+  /**
+   * Sorts the data and writes it to the output file. The data gets converted
+   * and fed into the sorter in chunks, the merged rows get written batch by
+   * batch.
+   *
+   * @param data	the data to write
+   * @throws IOException	if sorting or writing fails
+   */
+  protected void writeSorted(Instances data) throws IOException {
+    ExternalSorter	sorter;
+    CsvTableWriter	writer;
+    long		budget;
+    int			chunk;
+    int			i;
+
+    budget = (m_SortMemoryBudget <= 0) ? Long.MAX_VALUE : m_SortMemoryBudget * 1024L * 1024L;
+    sorter = new ExternalSorter(
+      SortKey.parseList(m_Sort, false, false),
+      m_SortTempDir.isEmpty() ? null : new File(m_SortTempDir),
+      budget);
+    writer = null;
+    try {
+      chunk = sorter.getBatchSize();
+      if (data.numInstances() == 0)
+	sorter.add(TablesawUtils.instancesToTable(data));
+      for (i = 0; i < data.numInstances(); i += chunk)
+	sorter.add(TablesawUtils.instancesToTable(new Instances(data, i, Math.min(chunk, data.numInstances() - i))));
+      writer = new CsvTableWriter(retrieveFile());
+      sorter.finish(writer);
+    }
+    finally {
+      if (writer != null)
+	writer.close();
+      sorter.close();
+    }
+  }
+
+  /**
+   * Writes the data partitioned into the directory next to the output file
+   * and the list of written files into the output file. When sorting, the
+   * data gets sorted in memory (the memory budget does not apply) and the
+   * rows keep that order within the partitions.
+   *
+   * @param data	the data to write
+   * @throws IOException	if writing fails
+   */
+  protected void writePartitioned(Instances data) throws IOException {
+    Table				table;
+    int[]				order;
+    List<String>			partitionBy;
+    PartitionedCsvWriter		partitioned;
+    List<PartitionedCsvWriter.Part>	parts;
+    CsvTableWriter			manifest;
+    File				file;
+    int					i;
+
+    table = TablesawUtils.instancesToTable(data);
+    if (m_Sort.isEmpty()) {
+      order = new int[table.rowCount()];
+      for (i = 0; i < order.length; i++)
+	order[i] = i;
+    }
+    else {
+      order = TableSorter.permutation(table, SortKey.parseList(m_Sort, false, false));
+    }
+
+    partitionBy = new ArrayList<String>();
+    if (!m_PartitionBy.isEmpty()) {
+      for (String name: m_PartitionBy.split(","))
+	partitionBy.add(name.trim());
+    }
+
+    file        = retrieveFile();
+    partitioned = new PartitionedCsvWriter(partitionBy, m_MaxRowsPerFile, m_MaxBytesPerFile, m_NumThreads, file.getName().endsWith(".gz"));
+    parts       = partitioned.write(table, order, PartitionedCsvWriter.getPartsDir(file));
+
+    manifest = new CsvTableWriter(file);
+    try {
+      manifest.accept(PartitionedCsvWriter.toTable(parts));
+    }
+    finally {
+      manifest.close();
+    }
+  }
+
   /**
    * Returns the revision string.
    *
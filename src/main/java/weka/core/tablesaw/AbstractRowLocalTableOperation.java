@@ -0,0 +1,79 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Operation.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.Table;
+import weka.core.tablesaw.util.TableSink;
+
+import java.io.IOException;
+
+/**
+ * Ancestor for operations that process each row independently of all
+ * others, i.e., that can be applied to each chunk of a stream using
+ * {@link #processTable(Table)}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public abstract class AbstractRowLocalTableOperation
+  extends AbstractTableOperation
+  implements StreamableTableOperation {
+
+  private static final long serialVersionUID = 7396307281306419557L;
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		always false
+   */
+  @Override
+  public boolean isBlocking() {
+    return false;
+  }
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+  }
+
+  /**
+   * Processes the next chunk.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) throws IOException {
+    sink.accept(processTable(chunk));
+  }
+
+  /**
+   * Finishes the stream, nothing to output.
+   *
+   * @param sink	the sink for the output
+   */
+  @Override
+  public void finish(TableSink sink) {
+  }
+}
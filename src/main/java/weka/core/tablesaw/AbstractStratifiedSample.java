@@ -0,0 +1,185 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AbstractStratifiedSample.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.Table;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.Strata;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Ancestor for stratified sampling operations. The rows get grouped by the
+ * values of the stratification column and each stratum contributes
+ * proportionally to the sample.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public abstract class AbstractStratifiedSample
+  extends AbstractTableOperation {
+
+  private static final long serialVersionUID = -3796612315474011357L;
+
+  /** the default column. */
+  public final static String DEFAULT_COLUMN = "";
+
+  /** the default seed. */
+  public final static long DEFAULT_SEED = 1;
+
+  /** the column to stratify on. */
+  protected String m_Column = DEFAULT_COLUMN;
+
+  /** the seed. */
+  protected long m_Seed = DEFAULT_SEED;
+
+  /**
+   * Sets the column to stratify on.
+   *
+   * @param value	the column name
+   */
+  public void setColumn(String value) {
+    m_Column = value;
+  }
+
+  /**
+   * Returns the column to stratify on.
+   *
+   * @return		the column name
+   */
+  public String getColumn() {
+    return m_Column;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String columnTipText() {
+    return "The name of the column to stratify on (eg the class).";
+  }
+
+  /**
+   * Sets the seed for the random number generator.
+   *
+   * @param value	the seed
+   */
+  public void setSeed(long value) {
+    m_Seed = value;
+  }
+
+  /**
+   * Returns the seed for the random number generator.
+   *
+   * @return		the seed
+   */
+  public long getSeed() {
+    return m_Seed;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String seedTipText() {
+    return "The seed for the random number generator.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe column to stratify on\n"
+      + "\t(default: " + DEFAULT_COLUMN + ")",
+      "column", 1, "-column <name>"));
+
+    result.addElement(new Option("\tThe seed for the random number generator\n"
+      + "\t(default: " + DEFAULT_SEED + ")",
+      "seed", 1, "-seed <long>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    tmp = Utils.getOption("column", options);
+    if (!tmp.isEmpty())
+      setColumn(tmp);
+    else
+      setColumn(DEFAULT_COLUMN);
+
+    tmp = Utils.getOption("seed", options);
+    if (!tmp.isEmpty())
+      setSeed(Long.parseLong(tmp));
+    else
+      setSeed(DEFAULT_SEED);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the operation.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    result.add("-column");
+    result.add("" + getColumn());
+
+    result.add("-seed");
+    result.add("" + getSeed());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Determines the strata of the table, using the stratification column.
+   *
+   * @param table	the table to process
+   * @return		the strata
+   */
+  protected Strata strata(Table table) {
+    return Strata.compute(table.column(m_Column));
+  }
+}
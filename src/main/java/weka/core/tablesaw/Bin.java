@@ -0,0 +1,699 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Bin.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnExpression;
+import weka.core.tablesaw.util.ColumnStatistics;
+import weka.core.tablesaw.util.KllSketch;
+import weka.core.tablesaw.util.TableSink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.stream.IntStream;
+
+/**
+ * Discretizes numeric columns into bins, using equal-width bins,
+ * equal-frequency bins or explicit cut points. The columns get replaced
+ * by string columns with labels like the ones of Weka's Discretize filter
+ * (e.g., "(-inf-1.5]", "(1.5-3]", "(3-inf)"), i.e., they turn into nominal
+ * attributes.
+ * <br>
+ * The minimum/maximum (equal-width) and the quantiles (equal-frequency,
+ * approximated with a quantile sketch) of all the columns get computed in a
+ * single parallel pass (see {@link ColumnStatistics}), the first time the
+ * operation is applied. The cut points are stored with the operation, i.e.,
+ * later batches (or chunks) get binned with them, until the operation gets
+ * reconfigured. The bins get assigned in parallel across the columns, with
+ * a branch-free binary search over the cut points.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Bin
+  extends AbstractTableOperation
+  implements StreamableTableOperation, FittableTableOperation, LabelledTableOperation {
+
+  private static final long serialVersionUID = -4425090261834785517L;
+
+  /** equal-width bins. */
+  public final static String METHOD_EQUAL_WIDTH = "equal-width";
+
+  /** equal-frequency bins. */
+  public final static String METHOD_EQUAL_FREQUENCY = "equal-frequency";
+
+  /** explicit cut points. */
+  public final static String METHOD_CUT_POINTS = "cut-points";
+
+  /** the default columns. */
+  public final static String DEFAULT_COLUMNS = "";
+
+  /** the default method. */
+  public final static String DEFAULT_METHOD = METHOD_EQUAL_WIDTH;
+
+  /** the default number of bins. */
+  public final static int DEFAULT_NUM_BINS = 10;
+
+  /** the default cut points. */
+  public final static String DEFAULT_CUT_POINTS = "";
+
+  /** the default accuracy parameter of the quantile sketches. */
+  public final static int DEFAULT_SKETCH_SIZE = KllSketch.DEFAULT_K;
+
+  /** the columns to bin (comma-separated, empty for all numeric ones). */
+  protected String m_Columns = DEFAULT_COLUMNS;
+
+  /** the method. */
+  protected String m_Method = DEFAULT_METHOD;
+
+  /** the number of bins. */
+  protected int m_NumBins = DEFAULT_NUM_BINS;
+
+  /** the explicit cut points (comma-separated). */
+  protected String m_CutPoints = DEFAULT_CUT_POINTS;
+
+  /** the accuracy parameter of the quantile sketches. */
+  protected int m_SketchSize = DEFAULT_SKETCH_SIZE;
+
+  /** the fitted columns, null if not fitted yet. */
+  protected String[] m_FittedColumns;
+
+  /** the fitted cut points per column (sorted, distinct). */
+  protected double[][] m_FittedCutPoints;
+
+  /** the buffered chunks when streaming before being fitted. */
+  protected transient Table m_Buffer;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Discretizes numeric columns into equal-width (" + METHOD_EQUAL_WIDTH + ") or "
+      + "equal-frequency (" + METHOD_EQUAL_FREQUENCY + ", approximated with quantile sketches) bins, or bins "
+      + "defined by explicit cut points (" + METHOD_CUT_POINTS + "). The columns get replaced by string columns "
+      + "with labels like the ones of Weka's Discretize filter, i.e., they turn into nominal attributes "
+      + "that list the labels of all bins in bin order, regardless of the bins that occur in a batch.\n"
+      + "The statistics get computed in a single parallel pass when first applied and the cut points "
+      + "are stored with the operation, i.e., subsequent batches get binned with the same cut points.";
+  }
+
+  /**
+   * Discards the fitted cut points.
+   */
+  @Override
+  public void resetFit() {
+    m_FittedColumns   = null;
+    m_FittedCutPoints = null;
+  }
+
+  /**
+   * Returns whether the cut points have been fitted.
+   *
+   * @return		true if fitted
+   */
+  @Override
+  public boolean isFitted() {
+    return (m_FittedColumns != null);
+  }
+
+  /**
+   * Sets the columns to bin.
+   *
+   * @param value	the columns (comma-separated names), empty for all numeric ones
+   */
+  public void setColumns(String value) {
+    m_Columns = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the columns to bin.
+   *
+   * @return		the columns (comma-separated names), empty for all numeric ones
+   */
+  public String getColumns() {
+    return m_Columns;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String columnsTipText() {
+    return "The columns to bin (comma-separated names, empty for all numeric ones).";
+  }
+
+  /**
+   * Sets the method.
+   *
+   * @param value	the method
+   */
+  public void setMethod(String value) {
+    m_Method = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the method.
+   *
+   * @return		the method
+   */
+  public String getMethod() {
+    return m_Method;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String methodTipText() {
+    return "The binning method: " + METHOD_EQUAL_WIDTH + ", " + METHOD_EQUAL_FREQUENCY + " or " + METHOD_CUT_POINTS + ".";
+  }
+
+  /**
+   * Sets the number of bins.
+   *
+   * @param value	the number of bins
+   */
+  public void setNumBins(int value) {
+    m_NumBins = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the number of bins.
+   *
+   * @return		the number of bins
+   */
+  public int getNumBins() {
+    return m_NumBins;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numBinsTipText() {
+    return "The number of equal-width or equal-frequency bins.";
+  }
+
+  /**
+   * Sets the explicit cut points.
+   *
+   * @param value	the cut points (comma-separated)
+   */
+  public void setCutPoints(String value) {
+    m_CutPoints = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the explicit cut points.
+   *
+   * @return		the cut points (comma-separated)
+   */
+  public String getCutPoints() {
+    return m_CutPoints;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String cutPointsTipText() {
+    return "The cut points to use for all columns with method " + METHOD_CUT_POINTS + " (comma-separated, values up to and including a cut point go into the lower bin).";
+  }
+
+  /**
+   * Sets the accuracy parameter of the quantile sketches.
+   *
+   * @param value	the parameter (larger is more accurate)
+   */
+  public void setSketchSize(int value) {
+    m_SketchSize = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the accuracy parameter of the quantile sketches.
+   *
+   * @return		the parameter (larger is more accurate)
+   */
+  public int getSketchSize() {
+    return m_SketchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sketchSizeTipText() {
+    return "The accuracy parameter k of the KLL quantile sketches used for equal-frequency bins (rank error roughly 1.65/k).";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns to bin (comma-separated names, empty for all numeric ones)\n"
+      + "\t(default: " + DEFAULT_COLUMNS + ")",
+      "columns", 1, "-columns <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe binning method ("
+      + METHOD_EQUAL_WIDTH + "|" + METHOD_EQUAL_FREQUENCY + "|" + METHOD_CUT_POINTS + ")\n"
+      + "\t(default: " + DEFAULT_METHOD + ")",
+      "method", 1, "-method <method>"));
+
+    result.addElement(new Option("\tThe number of equal-width/equal-frequency bins\n"
+      + "\t(default: " + DEFAULT_NUM_BINS + ")",
+      "num-bins", 1, "-num-bins <int>"));
+
+    result.addElement(new Option("\tThe explicit cut points (comma-separated)\n"
+      + "\t(default: " + DEFAULT_CUT_POINTS + ")",
+      "cut-points", 1, "-cut-points <num1,num2,...>"));
+
+    result.addElement(new Option("\tThe accuracy parameter k of the quantile sketches\n"
+      + "\t(default: " + DEFAULT_SKETCH_SIZE + ")",
+      "sketch-size", 1, "-sketch-size <int>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    setColumns(Utils.getOption("columns", options));
+
+    tmp = Utils.getOption("method", options);
+    if (!tmp.isEmpty())
+      setMethod(tmp);
+    else
+      setMethod(DEFAULT_METHOD);
+
+    tmp = Utils.getOption("num-bins", options);
+    if (!tmp.isEmpty())
+      setNumBins(Integer.parseInt(tmp));
+    else
+      setNumBins(DEFAULT_NUM_BINS);
+
+    setCutPoints(Utils.getOption("cut-points", options));
+
+    tmp = Utils.getOption("sketch-size", options);
+    if (!tmp.isEmpty())
+      setSketchSize(Integer.parseInt(tmp));
+    else
+      setSketchSize(DEFAULT_SKETCH_SIZE);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getColumns().isEmpty()) {
+      result.add("-columns");
+      result.add(getColumns());
+    }
+
+    result.add("-method");
+    result.add(getMethod());
+
+    result.add("-num-bins");
+    result.add("" + getNumBins());
+
+    if (!getCutPoints().isEmpty()) {
+      result.add("-cut-points");
+      result.add(getCutPoints());
+    }
+
+    result.add("-sketch-size");
+    result.add("" + getSketchSize());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Sorts the cut points and removes duplicates and NaNs.
+   *
+   * @param cuts	the cut points
+   * @return		the cleaned up cut points
+   */
+  protected double[] distinct(double[] cuts) {
+    double[]	result;
+    int		n;
+    int		i;
+
+    result = new double[cuts.length];
+    n      = 0;
+    Arrays.sort(cuts);
+    for (i = 0; i < cuts.length; i++) {
+      if (Double.isNaN(cuts[i]))
+	continue;
+      if ((n == 0) || (cuts[i] != result[n - 1]))
+	result[n++] = cuts[i];
+    }
+
+    return Arrays.copyOf(result, n);
+  }
+
+  /**
+   * Fits the cut points on the table.
+   *
+   * @param table	the table to fit on
+   */
+  protected void fit(Table table) {
+    List<Column<?>>		columns;
+    ColumnStatistics[]		stats;
+    double[]			explicit;
+    double[]			fractions;
+    double[]			cuts;
+    String[]			parts;
+    double			width;
+    int				i;
+    int				n;
+
+    if (!m_Method.equals(METHOD_EQUAL_WIDTH) && !m_Method.equals(METHOD_EQUAL_FREQUENCY) && !m_Method.equals(METHOD_CUT_POINTS))
+      throw new IllegalArgumentException("Unknown method: " + m_Method);
+    if (!m_Method.equals(METHOD_CUT_POINTS) && (m_NumBins < 1))
+      throw new IllegalArgumentException("Number of bins must be at least 1: " + m_NumBins);
+
+    columns = new ArrayList<Column<?>>();
+    if (m_Columns.isEmpty()) {
+      for (Column<?> column: table.columns()) {
+	if (column instanceof NumericColumn)
+	  columns.add(column);
+      }
+    }
+    else {
+      for (String name: m_Columns.split(",")) {
+	if (!(table.column(name.trim()) instanceof NumericColumn))
+	  throw new IllegalArgumentException("Column is not numeric: " + name);
+	columns.add(table.column(name.trim()));
+      }
+    }
+
+    explicit = null;
+    stats    = null;
+    if (m_Method.equals(METHOD_CUT_POINTS)) {
+      parts    = m_CutPoints.trim().isEmpty() ? new String[0] : m_CutPoints.split(",");
+      explicit = new double[parts.length];
+      for (i = 0; i < parts.length; i++)
+	explicit[i] = Double.parseDouble(parts[i].trim());
+      explicit = distinct(explicit);
+    }
+    else {
+      stats = ColumnStatistics.compute(columns, m_SketchSize);
+    }
+
+    m_FittedColumns   = new String[columns.size()];
+    m_FittedCutPoints = new double[columns.size()][];
+    for (i = 0; i < columns.size(); i++) {
+      m_FittedColumns[i] = columns.get(i).name();
+      switch (m_Method) {
+	case METHOD_CUT_POINTS:
+	  cuts = explicit.clone();
+	  break;
+	case METHOD_EQUAL_WIDTH:
+	  cuts  = new double[m_NumBins - 1];
+	  width = (stats[i].getMax() - stats[i].getMin()) / m_NumBins;
+	  for (n = 1; n < m_NumBins; n++)
+	    cuts[n - 1] = stats[i].getMin() + n * width;
+	  if ((stats[i].getCount() == 0) || (width == 0))
+	    cuts = new double[0];
+	  break;
+	default:
+	  if (stats[i].getCount() == 0) {
+	    cuts = new double[0];
+	  }
+	  else {
+	    fractions = new double[m_NumBins - 1];
+	    for (n = 1; n < m_NumBins; n++)
+	      fractions[n - 1] = (double) n / m_NumBins;
+	    cuts = stats[i].getQuantiles(fractions);
+	  }
+      }
+      m_FittedCutPoints[i] = distinct(cuts);
+    }
+  }
+
+  /**
+   * Formats the cut points, with 6 decimals or, if that makes neighbouring
+   * cut points indistinguishable (e.g., close quantiles), with as many more
+   * as are necessary for the labels to be unique.
+   *
+   * @param cuts	the sorted, distinct cut points
+   * @return		the formatted cut points
+   */
+  protected String[] format(double[] cuts) {
+    String[]	result;
+    int		precision;
+    int		i;
+    boolean	unique;
+
+    result = new String[cuts.length];
+    for (precision = 6; precision <= 16; precision++) {
+      unique = true;
+      for (i = 0; i < cuts.length; i++) {
+	result[i] = Utils.doubleToString(cuts[i], precision);
+	if ((i > 0) && result[i].equals(result[i - 1]))
+	  unique = false;
+      }
+      if (unique)
+	return result;
+    }
+
+    // shortest representation that distinguishes all doubles
+    for (i = 0; i < cuts.length; i++)
+      result[i] = Double.toString(cuts[i]);
+
+    return result;
+  }
+
+  /**
+   * Generates the labels for the bins, like Weka's Discretize filter.
+   *
+   * @param cuts	the cut points
+   * @return		the labels, one per bin
+   */
+  protected String[] labels(double[] cuts) {
+    String[]	result;
+    String[]	formatted;
+    int		i;
+
+    if (cuts.length == 0)
+      return new String[]{"All"};
+
+    formatted = format(cuts);
+    result    = new String[cuts.length + 1];
+    result[0] = "(-inf-" + formatted[0] + "]";
+    for (i = 1; i < cuts.length; i++)
+      result[i] = "(" + formatted[i - 1] + "-" + formatted[i] + "]";
+    result[cuts.length] = "(" + formatted[cuts.length - 1] + "-inf)";
+
+    return result;
+  }
+
+  /**
+   * Returns the labels of all bins of the binned columns, in bin order.
+   *
+   * @return		the labels per column name, empty if not fitted yet
+   */
+  @Override
+  public Map<String, List<String>> getDeclaredLabels() {
+    Map<String, List<String>>	result;
+    int				i;
+
+    result = new LinkedHashMap<String, List<String>>();
+    if (isFitted()) {
+      for (i = 0; i < m_FittedColumns.length; i++)
+        result.put(m_FittedColumns[i], Arrays.asList(labels(m_FittedCutPoints[i])));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the bin of the value, i.e., the number of cut points that are
+   * smaller than the value. The loop has a fixed number of iterations for
+   * the number of cut points and the comparison only selects the step.
+   *
+   * @param cuts	the sorted cut points (at least one)
+   * @param value	the value (not missing)
+   * @return		the bin
+   */
+  protected static int bin(double[] cuts, double value) {
+    int		base;
+    int		len;
+    int		half;
+
+    base = 0;
+    len  = cuts.length;
+    while (len > 1) {
+      half  = len >>> 1;
+      base += (cuts[base + half - 1] < value) ? half : 0;
+      len  -= half;
+    }
+
+    return base + ((cuts[base] < value) ? 1 : 0);
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    final StringColumn[]	binned;
+    final Column<?>[]		columns;
+    final String[]		names;
+    final double[][]		cuts;
+    int				i;
+
+    if (!isFitted())
+      fit(table);
+
+    names   = m_FittedColumns;
+    cuts    = m_FittedCutPoints;
+    columns = new Column<?>[names.length];
+    for (i = 0; i < names.length; i++) {
+      if (!table.columnNames().contains(names[i]))
+	throw new IllegalStateException("Fitted column not present: " + names[i]);
+      columns[i] = table.column(names[i]);
+    }
+
+    binned = new StringColumn[names.length];
+    IntStream.range(0, names.length).parallel().forEach((int n) -> {
+      double[] values = ColumnExpression.toDoubles(columns[n]);
+      String[] labels = labels(cuts[n]);
+      String[] assigned = new String[values.length];
+      for (int row = 0; row < values.length; row++) {
+	if (!Double.isNaN(values[row]))
+	  assigned[row] = (cuts[n].length == 0) ? labels[0] : labels[bin(cuts[n], values[row])];
+      }
+      binned[n] = StringColumn.create(names[n], assigned);
+    });
+
+    for (i = 0; i < names.length; i++)
+      table.replaceColumn(names[i], binned[i]);
+
+    return table;
+  }
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		true if statistics are required and not fitted yet
+   */
+  @Override
+  public boolean isBlocking() {
+    return !isFitted() && !m_Method.equals(METHOD_CUT_POINTS);
+  }
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+    m_Buffer = null;
+  }
+
+  /**
+   * Processes the next chunk. Chunks get buffered until the end of the
+   * stream if the cut points still need to be fitted.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) throws IOException {
+    if ((m_Buffer == null) && !isBlocking()) {
+      sink.accept(processTable(chunk));
+      return;
+    }
+    if (m_Buffer == null)
+      m_Buffer = chunk.emptyCopy();
+    m_Buffer.append(chunk);
+  }
+
+  /**
+   * Finishes the stream, fits the cut points on the buffered chunks and
+   * outputs them.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void finish(TableSink sink) throws IOException {
+    Table	buffer;
+
+    if (m_Buffer == null)
+      return;
+    buffer   = m_Buffer;
+    m_Buffer = null;
+    sink.accept(processTable(buffer));
+  }
+}
@@ -20,9 +20,13 @@
 
 package weka.core.tablesaw;
 
+import tech.tablesaw.api.IntColumn;
 import tech.tablesaw.api.Table;
 import weka.core.Option;
+import weka.core.TablesawUtils;
 import weka.core.Utils;
+import weka.core.tablesaw.util.GroupCounter;
+import weka.core.tablesaw.util.GroupCounter.Groups;
 
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -31,6 +35,12 @@ import java.util.Vector;
 
 /**
  * Generates a table with two columns, the first with the name of the categorical value and the second with the count for that value.
+ * <br>
+ * With multiple columns, a crosstab count is generated: one column per
+ * specified column, followed by the count of that combination of values.
+ * The groups are sorted by count (descending) and can be restricted to the
+ * top K and/or a minimum count. Counting uses primitive hash maps over the
+ * value codes of the columns (see {@link GroupCounter}).
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
@@ -42,9 +52,21 @@ public class CountBy
   /** the default column. */
   public final static String DEFAULT_COLUMN = "";
 
-  /** the column. */
+  /** the column(s). */
   protected String m_Column = DEFAULT_COLUMN;
 
+  /** the default top K. */
+  public final static int DEFAULT_TOP_K = -1;
+
+  /** the number of most frequent groups to output (&lt;=0 for all). */
+  protected int m_TopK = DEFAULT_TOP_K;
+
+  /** the default minimum count. */
+  public final static int DEFAULT_MIN_COUNT = 1;
+
+  /** the minimum count for a group to be output. */
+  protected int m_MinCount = DEFAULT_MIN_COUNT;
+
   /**
    * Returns a string describing this object.
    *
@@ -53,22 +75,24 @@ public class CountBy
    */
   @Override
   public String globalInfo() {
-    return "Generates a table with two columns, first the name of the categorical value and the second with the count for that value.";
+    return "Generates a table with two columns, first the name of the categorical value and the second with the count for that value.\n"
+      + "With multiple columns, the combinations of values get counted (crosstab), one column per specified column plus the count.\n"
+      + "The output is sorted by count (descending) and can be limited to the top K and/or a minimum count.";
   }
 
   /**
-   * Sets the categorical column to perform the count on.
+   * Sets the categorical column(s) to perform the count on.
    *
-   * @param value	the column name
+   * @param value	the column name(s), comma-separated
    */
   public void setColumn(String value) {
     m_Column = value;
   }
 
   /**
-   * Returns the categorical column to perform the count on.
+   * Returns the categorical column(s) to perform the count on.
    *
-   * @return		the column name
+   * @return		the column name(s), comma-separated
    */
   public String getColumn() {
     return m_Column;
@@ -81,7 +105,63 @@ public class CountBy
    *         explorer/experimenter gui
    */
   public String columnTipText() {
-    return "The name of categorical column to perform the count on.";
+    return "The name of categorical column to perform the count on; multiple (comma-separated) columns generate a crosstab count.";
+  }
+
+  /**
+   * Sets the number of most frequent groups to output.
+   *
+   * @param value	the number, &lt;=0 for all
+   */
+  public void setTopK(int value) {
+    m_TopK = value;
+  }
+
+  /**
+   * Returns the number of most frequent groups to output.
+   *
+   * @return		the number, &lt;=0 for all
+   */
+  public int getTopK() {
+    return m_TopK;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String topKTipText() {
+    return "The number of most frequent groups to output (<=0 for all).";
+  }
+
+  /**
+   * Sets the minimum count for a group to be output.
+   *
+   * @param value	the minimum count
+   */
+  public void setMinCount(int value) {
+    m_MinCount = value;
+  }
+
+  /**
+   * Returns the minimum count for a group to be output.
+   *
+   * @return		the minimum count
+   */
+  public int getMinCount() {
+    return m_MinCount;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String minCountTipText() {
+    return "The minimum count for a group to be output.";
   }
 
   /**
@@ -92,9 +172,18 @@ public class CountBy
   public Enumeration listOptions() {
     Vector result = new Vector();
 
-    result.addElement(new Option("\tThe categorical column to perform the count on\n"
+    result.addElement(new Option("\tThe categorical column(s) to perform the count on\n"
+      + "\t(comma-separated names for a crosstab count)\n"
       + "\t(default: " + DEFAULT_COLUMN + ")",
-      "column", 1, "-column <name>"));
+      "column", 1, "-column <name1[,name2,...]>"));
+
+    result.addElement(new Option("\tThe number of most frequent groups to output (<=0 for all)\n"
+      + "\t(default: " + DEFAULT_TOP_K + ")",
+      "top-k", 1, "-top-k <int>"));
+
+    result.addElement(new Option("\tThe minimum count for a group to be output\n"
+      + "\t(default: " + DEFAULT_MIN_COUNT + ")",
+      "min-count", 1, "-min-count <int>"));
 
     return result.elements();
   }
@@ -115,6 +204,18 @@ public class CountBy
     else
       setColumn(DEFAULT_COLUMN);
 
+    tmp = Utils.getOption("top-k", options);
+    if (!tmp.isEmpty())
+      setTopK(Integer.parseInt(tmp));
+    else
+      setTopK(DEFAULT_TOP_K);
+
+    tmp = Utils.getOption("min-count", options);
+    if (!tmp.isEmpty())
+      setMinCount(Integer.parseInt(tmp));
+    else
+      setMinCount(DEFAULT_MIN_COUNT);
+
     Utils.checkForRemainingOptions(options);
   }
 
@@ -131,6 +232,12 @@ public class CountBy
     result.add("-column");
     result.add("" + getColumn());
 
+    result.add("-top-k");
+    result.add("" + getTopK());
+
+    result.add("-min-count");
+    result.add("" + getMinCount());
+
     return result.toArray(new String[0]);
   }
 
@@ -142,6 +249,39 @@ public class CountBy
    */
   @Override
   public Table processTable(Table table) {
-    return table.countBy(m_Column);
+    Table	result;
+    String[]	columns;
+    Groups	groups;
+    int[]	sorted;
+    int[]	rows;
+    IntColumn	counts;
+    int		num;
+    int		i;
+
+    columns = m_Column.split(",");
+    for (i = 0; i < columns.length; i++)
+      columns[i] = columns[i].trim();
+    groups  = GroupCounter.count(table.columns(columns));
+    sorted  = groups.sortedByCount();
+
+    num = sorted.length;
+    if ((m_TopK > 0) && (m_TopK < num))
+      num = m_TopK;
+    while ((num > 0) && (groups.getCount(sorted[num - 1]) < m_MinCount))
+      num--;
+
+    rows   = new int[num];
+    counts = IntColumn.create("Count");
+    for (i = 0; i < num; i++) {
+      rows[i] = groups.getRow(sorted[i]);
+      counts.append(groups.getCount(sorted[i]));
+    }
+
+    result = TablesawUtils.subset(Table.create(table.name(), table.columns(columns)), rows);
+    if (columns.length == 1)
+      result.column(0).setName("Category");
+    result.addColumns(counts);
+
+    return result;
   }
 }
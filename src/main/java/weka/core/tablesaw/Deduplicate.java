@@ -0,0 +1,442 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Deduplicate.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.Option;
+import weka.core.TablesawUtils;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnCoder;
+import weka.core.tablesaw.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.stream.IntStream;
+
+/**
+ * Removes duplicate rows, comparing either all columns or only the
+ * specified ones, keeping the first or last occurrence. The order of the
+ * remaining rows is retained.
+ * <br>
+ * The values of the columns get replaced by their codes (see
+ * {@link ColumnCoder}), which get combined column-at-a-time into a 128-bit
+ * hash per row (two 64-bit halves, rows processed in parallel chunks).
+ * The rows then get looked up in a primitive hash map (see
+ * {@link LongIntHashMap}) with the first half of their hash, the codes of
+ * the rows only get compared if the hashes match. With more than one
+ * partition, the rows get partitioned by their hash and the partitions get
+ * deduplicated in parallel, as duplicates always end up in the same
+ * partition.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Deduplicate
+  extends AbstractTableOperation {
+
+  private static final long serialVersionUID = 8314029775362089135L;
+
+  /** keep the first occurrence. */
+  public final static String KEEP_FIRST = "first";
+
+  /** keep the last occurrence. */
+  public final static String KEEP_LAST = "last";
+
+  /** the number of rows per hashing task. */
+  public final static int CHUNK_SIZE = 65536;
+
+  /** the default columns. */
+  public final static String DEFAULT_COLUMNS = "";
+
+  /** the default occurrence to keep. */
+  public final static String DEFAULT_KEEP = KEEP_FIRST;
+
+  /** the default number of partitions. */
+  public final static int DEFAULT_NUM_PARTITIONS = 1;
+
+  /** the columns to compare (comma-separated, empty for all). */
+  protected String m_Columns = DEFAULT_COLUMNS;
+
+  /** the occurrence to keep. */
+  protected String m_Keep = DEFAULT_KEEP;
+
+  /** the number of partitions. */
+  protected int m_NumPartitions = DEFAULT_NUM_PARTITIONS;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Removes duplicate rows, comparing all or only the specified columns, keeping the first or last occurrence.\n"
+      + "Rows get compared via 128-bit hashes computed column-at-a-time, the values only get compared if the "
+      + "hashes match. With more than one partition, the rows get partitioned by their hash and the partitions "
+      + "deduplicated in parallel.";
+  }
+
+  /**
+   * Sets the columns to compare.
+   *
+   * @param value	the columns (comma-separated names), empty for all
+   */
+  public void setColumns(String value) {
+    m_Columns = value;
+  }
+
+  /**
+   * Returns the columns to compare.
+   *
+   * @return		the columns (comma-separated names), empty for all
+   */
+  public String getColumns() {
+    return m_Columns;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String columnsTipText() {
+    return "The columns to compare (comma-separated names, empty for all).";
+  }
+
+  /**
+   * Sets which occurrence to keep.
+   *
+   * @param value	the occurrence
+   */
+  public void setKeep(String value) {
+    m_Keep = value;
+  }
+
+  /**
+   * Returns which occurrence to keep.
+   *
+   * @return		the occurrence
+   */
+  public String getKeep() {
+    return m_Keep;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String keepTipText() {
+    return "Which occurrence of duplicate rows to keep: " + KEEP_FIRST + " or " + KEEP_LAST + ".";
+  }
+
+  /**
+   * Sets the number of partitions.
+   *
+   * @param value	the number of partitions (&lt;=0 for number of processors)
+   */
+  public void setNumPartitions(int value) {
+    m_NumPartitions = value;
+  }
+
+  /**
+   * Returns the number of partitions.
+   *
+   * @return		the number of partitions (&lt;=0 for number of processors)
+   */
+  public int getNumPartitions() {
+    return m_NumPartitions;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numPartitionsTipText() {
+    return "The number of hash partitions to deduplicate in parallel (<=0 for the number of processors).";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns to compare (comma-separated names, empty for all)\n"
+      + "\t(default: " + DEFAULT_COLUMNS + ")",
+      "columns", 1, "-columns <name1,name2,...>"));
+
+    result.addElement(new Option("\tWhich occurrence to keep (" + KEEP_FIRST + "|" + KEEP_LAST + ")\n"
+      + "\t(default: " + DEFAULT_KEEP + ")",
+      "keep", 1, "-keep <occurrence>"));
+
+    result.addElement(new Option("\tThe number of hash partitions to deduplicate in parallel\n"
+      + "\t(<=0 for number of processors)\n"
+      + "\t(default: " + DEFAULT_NUM_PARTITIONS + ")",
+      "num-partitions", 1, "-num-partitions <int>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    setColumns(Utils.getOption("columns", options));
+
+    tmp = Utils.getOption("keep", options);
+    if (!tmp.isEmpty())
+      setKeep(tmp);
+    else
+      setKeep(DEFAULT_KEEP);
+
+    tmp = Utils.getOption("num-partitions", options);
+    if (!tmp.isEmpty())
+      setNumPartitions(Integer.parseInt(tmp));
+    else
+      setNumPartitions(DEFAULT_NUM_PARTITIONS);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getColumns().isEmpty()) {
+      result.add("-columns");
+      result.add(getColumns());
+    }
+
+    result.add("-keep");
+    result.add(getKeep());
+
+    result.add("-num-partitions");
+    result.add("" + getNumPartitions());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Computes the two halves of the 128-bit hashes of the rows.
+   *
+   * @param coders	the coders of the columns
+   * @param rows	the number of rows
+   * @param low		the array for the first halves
+   * @param high	the array for the second halves
+   */
+  protected void hash(final ColumnCoder[] coders, final int rows, final long[] low, final long[] high) {
+    IntStream.range(0, (rows + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach((int chunk) -> {
+      int from = chunk * CHUNK_SIZE;
+      int to = Math.min(rows, from + CHUNK_SIZE);
+      for (int row = from; row < to; row++) {
+	low[row]  = 0x9e3779b97f4a7c15L;
+	high[row] = 0x632be59bd9b4e019L;
+      }
+      // column-at-a-time, with differently seeded mixing for the two halves
+      for (int c = 0; c < coders.length; c++) {
+	for (int row = from; row < to; row++) {
+	  long code = coders[c].code(row);
+	  low[row]  = LongIntHashMap.mix(low[row] ^ code) + c;
+	  high[row] = LongIntHashMap.mix(high[row] + code * 0xbf58476d1ce4e5b9L) ^ c;
+	}
+      }
+    });
+  }
+
+  /**
+   * Checks whether the two rows have the same values.
+   *
+   * @param coders	the coders of the columns
+   * @param high	the second halves of the hashes
+   * @param row1	the first row
+   * @param row2	the second row
+   * @return		true if the same
+   */
+  protected boolean isSame(ColumnCoder[] coders, long[] high, int row1, int row2) {
+    int		c;
+
+    if (high[row1] != high[row2])
+      return false;
+    for (c = 0; c < coders.length; c++) {
+      if (coders[c].code(row1) != coders[c].code(row2))
+	return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Marks the rows of a partition to keep.
+   *
+   * @param coders	the coders of the columns
+   * @param low		the first halves of the hashes
+   * @param high	the second halves of the hashes
+   * @param rows	the rows of the partitions, in order
+   * @param from	the first row of the partition (incl)
+   * @param to		the last row of the partition (excl)
+   * @param keep	the flags of the rows to keep
+   */
+  protected void deduplicate(ColumnCoder[] coders, long[] low, long[] high, int[] rows, int from, int to, boolean[] keep) {
+    LongIntHashMap		seen;
+    Map<Long, List<Integer>>	collisions;
+    List<Integer>		others;
+    boolean			last;
+    boolean			duplicate;
+    int				existing;
+    int				row;
+    int				i;
+
+    last       = m_Keep.equals(KEEP_LAST);
+    seen       = new LongIntHashMap(to - from);
+    collisions = null;
+    for (i = from; i < to; i++) {
+      row      = last ? rows[to - 1 - (i - from)] : rows[i];
+      existing = seen.putIfAbsent(low[row], row);
+      if (existing == row) {
+	keep[row] = true;
+	continue;
+      }
+      if (isSame(coders, high, existing, row))
+	continue;
+
+      // first half of hash collides, but rows differ
+      if (collisions == null)
+	collisions = new HashMap<Long, List<Integer>>();
+      others = collisions.get(low[row]);
+      if (others == null) {
+	others = new ArrayList<Integer>();
+	collisions.put(low[row], others);
+      }
+      duplicate = false;
+      for (int other: others) {
+	if (isSame(coders, high, other, row)) {
+	  duplicate = true;
+	  break;
+	}
+      }
+      if (!duplicate) {
+	others.add(row);
+	keep[row] = true;
+      }
+    }
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    final List<Column<?>>	columns;
+    final ColumnCoder[]		coders;
+    final long[]		low;
+    final long[]		high;
+    final boolean[]		keep;
+    final int[]			rows;
+    final int[]			starts;
+    int[]			next;
+    int[]			kept;
+    int				partitions;
+    int				partition;
+    int				count;
+    int				i;
+
+    if (!m_Keep.equals(KEEP_FIRST) && !m_Keep.equals(KEEP_LAST))
+      throw new IllegalArgumentException("Unknown occurrence to keep: " + m_Keep);
+
+    columns = new ArrayList<Column<?>>();
+    if (m_Columns.isEmpty()) {
+      columns.addAll(table.columns());
+    }
+    else {
+      for (String name: m_Columns.split(","))
+	columns.add(table.column(name.trim()));
+    }
+
+    coders = IntStream.range(0, columns.size()).parallel()
+      .mapToObj((int c) -> new ColumnCoder(columns.get(c)))
+      .toArray(ColumnCoder[]::new);
+    low  = new long[table.rowCount()];
+    high = new long[table.rowCount()];
+    hash(coders, table.rowCount(), low, high);
+
+    // partition the rows by hash (counting sort, keeps row order)
+    partitions = (m_NumPartitions <= 0) ? Runtime.getRuntime().availableProcessors() : m_NumPartitions;
+    starts     = new int[partitions + 1];
+    for (i = 0; i < low.length; i++)
+      starts[(int) Long.remainderUnsigned(high[i], partitions) + 1]++;
+    for (i = 1; i < starts.length; i++)
+      starts[i] += starts[i - 1];
+    next = new int[partitions];
+    System.arraycopy(starts, 0, next, 0, partitions);
+    rows = new int[low.length];
+    for (i = 0; i < low.length; i++) {
+      partition = (int) Long.remainderUnsigned(high[i], partitions);
+      rows[next[partition]++] = i;
+    }
+
+    keep = new boolean[table.rowCount()];
+    IntStream.range(0, partitions).parallel().forEach((int p) ->
+      deduplicate(coders, low, high, rows, starts[p], starts[p + 1], keep));
+
+    count = 0;
+    for (i = 0; i < keep.length; i++) {
+      if (keep[i])
+	count++;
+    }
+    if (count == keep.length)
+      return table;
+    kept  = new int[count];
+    count = 0;
+    for (i = 0; i < keep.length; i++) {
+      if (keep[i])
+	kept[count++] = i;
+    }
+
+    return TablesawUtils.subset(table, kept);
+  }
+}
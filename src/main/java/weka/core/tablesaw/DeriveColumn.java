@@ -0,0 +1,225 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DeriveColumn.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.Table;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnExpression;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Adds a column computed from an expression over the other columns, e.g.,
+ * ratios, log transforms or date parts. An existing column of the same name
+ * gets replaced.
+ * <br>
+ * The expression gets parsed once and evaluated column-at-a-time over blocks
+ * of primitive values (see {@link ColumnExpression} for the syntax).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class DeriveColumn
+  extends AbstractRowLocalTableOperation {
+
+  private static final long serialVersionUID = -3164590271357034528L;
+
+  /** the default name of the column. */
+  public final static String DEFAULT_NAME = "derived";
+
+  /** the default expression. */
+  public final static String DEFAULT_EXPRESSION = "";
+
+  /** the name of the column. */
+  protected String m_Name = DEFAULT_NAME;
+
+  /** the expression. */
+  protected String m_Expression = DEFAULT_EXPRESSION;
+
+  /** the parsed expression. */
+  protected transient ColumnExpression m_Compiled;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Adds a column computed from an expression over the other columns (replaces an existing column of the same name).\n"
+      + "Operators (lowest precedence first): | & ! (comparisons: < <= > >= = !=) + - * / % unary- ^\n"
+      + "Columns: name or [any name]; numeric as is, date-like as msec since epoch (UTC), boolean as 0/1.\n"
+      + "Functions: abs, sqrt, log, log10, log1p, exp, floor, ceil, round, sin, cos, tan, sign, ismissing, "
+      + "min(a,b), max(a,b), pow(a,b), if(cond,a,b), year, month, day, dayofweek, dayofyear, hour, minute, second.\n"
+      + "Missing values propagate, comparisons and logical operators return 1/0.";
+  }
+
+  /**
+   * Sets the name of the column.
+   *
+   * @param value	the name
+   */
+  public void setName(String value) {
+    m_Name = value;
+  }
+
+  /**
+   * Returns the name of the column.
+   *
+   * @return		the name
+   */
+  public String getName() {
+    return m_Name;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String nameTipText() {
+    return "The name of the column to add (or replace).";
+  }
+
+  /**
+   * Sets the expression.
+   *
+   * @param value	the expression
+   */
+  public void setExpression(String value) {
+    m_Expression = value;
+    m_Compiled   = null;
+  }
+
+  /**
+   * Returns the expression.
+   *
+   * @return		the expression
+   */
+  public String getExpression() {
+    return m_Expression;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String expressionTipText() {
+    return "The expression to compute the column values with, e.g., 'log1p(abs(c1)) / (1 + [c 2])'.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe name of the column to add (or replace)\n"
+      + "\t(default: " + DEFAULT_NAME + ")",
+      "name", 1, "-name <name>"));
+
+    result.addElement(new Option("\tThe expression to compute the column values with\n"
+      + "\t(default: " + DEFAULT_EXPRESSION + ")",
+      "expression", 1, "-expression <expression>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    tmp = Utils.getOption("name", options);
+    if (!tmp.isEmpty())
+      setName(tmp);
+    else
+      setName(DEFAULT_NAME);
+
+    tmp = Utils.getOption("expression", options);
+    if (!tmp.isEmpty())
+      setExpression(tmp);
+    else
+      setExpression(DEFAULT_EXPRESSION);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    result.add("-name");
+    result.add("" + getName());
+
+    result.add("-expression");
+    result.add("" + getExpression());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    DoubleColumn	column;
+    int			index;
+
+    if (m_Expression.trim().isEmpty())
+      throw new IllegalStateException("No expression provided!");
+    if (m_Compiled == null)
+      m_Compiled = new ColumnExpression(m_Expression);
+
+    column = m_Compiled.evaluate(table, m_Name);
+    index  = table.columnNames().indexOf(m_Name);
+    if (index > -1)
+      table.replaceColumn(index, column);
+    else
+      table.addColumns(column);
+
+    return table;
+  }
+}
@@ -0,0 +1,616 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Encode.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.ColumnType;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import tech.tablesaw.columns.numbers.IntColumnType;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnCoder;
+import weka.core.tablesaw.util.OneHotColumn;
+import weka.core.tablesaw.util.TableSink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.stream.IntStream;
+
+/**
+ * One-hot or ordinal encodes string columns, using the dictionaries of the
+ * columns (see {@link ColumnCoder}) rather than the individual strings.
+ * Only the K most frequent categories get their own value, all others get
+ * lumped into an "other" category.
+ * <br>
+ * One-hot encoding replaces a column with a {@link OneHotColumn}, which
+ * only stores the index of the category per row. When converting to Weka,
+ * it turns into one 0/1 attribute per category (named "column=category"),
+ * missing values are missing in all of them. As most of the cells are 0,
+ * the output can be turned into sparse instances without ever allocating
+ * a value per row and category (see the sparse threshold of
+ * {@link weka.core.TablesawUtils#tableToInstances(Table, weka.core.Instances, int, double)}).
+ * Subsequent operations see the column of category indices.
+ * Ordinal encoding replaces a column with an int column of the rank of the
+ * category (0 is the most frequent one, K the "other" category).
+ * <br>
+ * The categories get determined the first time the operation is applied
+ * and are stored with the operation, i.e., later batches (or chunks) result
+ * in the same columns, until the operation gets reconfigured. Categories
+ * not seen when fitting end up in the "other" category (all 0 or missing
+ * if there is none).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Encode
+  extends AbstractTableOperation
+  implements StreamableTableOperation, FittableTableOperation {
+
+  private static final long serialVersionUID = -2378361939043957610L;
+
+  /** one-hot encoding. */
+  public final static String METHOD_ONEHOT = "onehot";
+
+  /** ordinal encoding. */
+  public final static String METHOD_ORDINAL = "ordinal";
+
+  /** the default columns. */
+  public final static String DEFAULT_COLUMNS = "";
+
+  /** the default method. */
+  public final static String DEFAULT_METHOD = METHOD_ONEHOT;
+
+  /** the default maximum number of categories. */
+  public final static int DEFAULT_TOP_K = 100;
+
+  /** the default label of the other category. */
+  public final static String DEFAULT_OTHER_LABEL = "other";
+
+  /** the columns to encode (comma-separated, empty for all string ones). */
+  protected String m_Columns = DEFAULT_COLUMNS;
+
+  /** the method. */
+  protected String m_Method = DEFAULT_METHOD;
+
+  /** the maximum number of categories per column. */
+  protected int m_TopK = DEFAULT_TOP_K;
+
+  /** the label of the other category. */
+  protected String m_OtherLabel = DEFAULT_OTHER_LABEL;
+
+  /** the fitted columns, null if not fitted yet. */
+  protected String[] m_FittedColumns;
+
+  /** the fitted categories per column, most frequent first. */
+  protected String[][] m_FittedCategories;
+
+  /** whether a column has an other category. */
+  protected boolean[] m_FittedOther;
+
+  /** the buffered chunks when streaming before being fitted. */
+  protected transient Table m_Buffer;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "One-hot (" + METHOD_ONEHOT + ") or ordinal (" + METHOD_ORDINAL + ") encodes string columns "
+      + "using their dictionaries. Only the top K most frequent categories are kept, the remaining ones "
+      + "get lumped into an 'other' category.\n"
+      + "One-hot encoding generates a 0/1 column per category, which can be turned into sparse instances "
+      + "(see sparse threshold of filter). Ordinal encoding generates an int column with the rank of the category.\n"
+      + "The categories get determined when first applied and are stored with the operation, i.e., "
+      + "subsequent batches result in the same columns.";
+  }
+
+  /**
+   * Discards the fitted categories.
+   */
+  @Override
+  public void resetFit() {
+    m_FittedColumns    = null;
+    m_FittedCategories = null;
+    m_FittedOther      = null;
+  }
+
+  /**
+   * Returns whether the categories have been fitted.
+   *
+   * @return		true if fitted
+   */
+  @Override
+  public boolean isFitted() {
+    return (m_FittedColumns != null);
+  }
+
+  /**
+   * Sets the columns to encode.
+   *
+   * @param value	the columns (comma-separated names), empty for all string ones
+   */
+  public void setColumns(String value) {
+    m_Columns = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the columns to encode.
+   *
+   * @return		the columns (comma-separated names), empty for all string ones
+   */
+  public String getColumns() {
+    return m_Columns;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String columnsTipText() {
+    return "The columns to encode (comma-separated names, empty for all string ones).";
+  }
+
+  /**
+   * Sets the method.
+   *
+   * @param value	the method
+   */
+  public void setMethod(String value) {
+    m_Method = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the method.
+   *
+   * @return		the method
+   */
+  public String getMethod() {
+    return m_Method;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String methodTipText() {
+    return "The encoding: " + METHOD_ONEHOT + " or " + METHOD_ORDINAL + ".";
+  }
+
+  /**
+   * Sets the maximum number of categories per column.
+   *
+   * @param value	the maximum, &lt;=0 for all
+   */
+  public void setTopK(int value) {
+    m_TopK = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the maximum number of categories per column.
+   *
+   * @return		the maximum, &lt;=0 for all
+   */
+  public int getTopK() {
+    return m_TopK;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String topKTipText() {
+    return "The maximum number of categories per column, the less frequent ones get lumped into the other category (<=0 for all).";
+  }
+
+  /**
+   * Sets the label of the other category.
+   *
+   * @param value	the label
+   */
+  public void setOtherLabel(String value) {
+    m_OtherLabel = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the label of the other category.
+   *
+   * @return		the label
+   */
+  public String getOtherLabel() {
+    return m_OtherLabel;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String otherLabelTipText() {
+    return "The label of the category that the less frequent categories get lumped into.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns to encode (comma-separated names, empty for all string ones)\n"
+      + "\t(default: " + DEFAULT_COLUMNS + ")",
+      "columns", 1, "-columns <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe encoding (" + METHOD_ONEHOT + "|" + METHOD_ORDINAL + ")\n"
+      + "\t(default: " + DEFAULT_METHOD + ")",
+      "method", 1, "-method <method>"));
+
+    result.addElement(new Option("\tThe maximum number of categories per column (<=0 for all)\n"
+      + "\t(default: " + DEFAULT_TOP_K + ")",
+      "top-k", 1, "-top-k <int>"));
+
+    result.addElement(new Option("\tThe label of the other category\n"
+      + "\t(default: " + DEFAULT_OTHER_LABEL + ")",
+      "other-label", 1, "-other-label <label>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    setColumns(Utils.getOption("columns", options));
+
+    tmp = Utils.getOption("method", options);
+    if (!tmp.isEmpty())
+      setMethod(tmp);
+    else
+      setMethod(DEFAULT_METHOD);
+
+    tmp = Utils.getOption("top-k", options);
+    if (!tmp.isEmpty())
+      setTopK(Integer.parseInt(tmp));
+    else
+      setTopK(DEFAULT_TOP_K);
+
+    tmp = Utils.getOption("other-label", options);
+    if (!tmp.isEmpty())
+      setOtherLabel(tmp);
+    else
+      setOtherLabel(DEFAULT_OTHER_LABEL);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getColumns().isEmpty()) {
+      result.add("-columns");
+      result.add(getColumns());
+    }
+
+    result.add("-method");
+    result.add(getMethod());
+
+    result.add("-top-k");
+    result.add("" + getTopK());
+
+    result.add("-other-label");
+    result.add(getOtherLabel());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Returns whether the column can be encoded.
+   *
+   * @param column	the column to check
+   * @return		true if string or text column
+   */
+  protected boolean isString(Column<?> column) {
+    return column.type().equals(ColumnType.STRING) || column.type().equals(ColumnType.TEXT);
+  }
+
+  /**
+   * Determines the top K categories of the columns.
+   *
+   * @param table	the table to fit on
+   */
+  protected void fit(Table table) {
+    final List<Column<?>>	columns;
+    final String[][]		categories;
+    final boolean[]		other;
+    int				i;
+
+    if (!m_Method.equals(METHOD_ONEHOT) && !m_Method.equals(METHOD_ORDINAL))
+      throw new IllegalArgumentException("Unknown method: " + m_Method);
+
+    columns = new ArrayList<Column<?>>();
+    if (m_Columns.isEmpty()) {
+      for (Column<?> column: table.columns()) {
+	if (column.type().equals(ColumnType.STRING))
+	  columns.add(column);
+      }
+    }
+    else {
+      for (String name: m_Columns.split(",")) {
+	if (!isString(table.column(name.trim())))
+	  throw new IllegalArgumentException("Column is not a string column: " + name);
+	columns.add(table.column(name.trim()));
+      }
+    }
+
+    categories = new String[columns.size()][];
+    other      = new boolean[columns.size()];
+    IntStream.range(0, columns.size()).parallel().forEach((int n) -> {
+      ColumnCoder coder = new ColumnCoder(columns.get(n));
+      int[] counts = new int[coder.size()];
+      for (int row = 0; row < columns.get(n).size(); row++)
+	counts[coder.code(row)]++;
+      // most frequent first, ties in order of first occurrence
+      Integer[] order = new Integer[coder.size() - 1];
+      for (int code = 1; code < coder.size(); code++)
+	order[code - 1] = code;
+      Arrays.sort(order, (Integer c1, Integer c2) -> Integer.compare(counts[c2], counts[c1]));
+      int k = ((m_TopK > 0) && (m_TopK < order.length)) ? m_TopK : order.length;
+      categories[n] = new String[k];
+      for (int c = 0; c < k; c++)
+	categories[n][c] = coder.getLabel(order[c]);
+      other[n] = (k < order.length);
+    });
+
+    for (i = 0; i < columns.size(); i++) {
+      if (other[i] && Arrays.asList(categories[i]).contains(m_OtherLabel))
+	throw new IllegalArgumentException(
+	  "Label of other category is also a category of column '" + columns.get(i).name() + "': " + m_OtherLabel);
+    }
+
+    m_FittedColumns = new String[columns.size()];
+    for (i = 0; i < columns.size(); i++)
+      m_FittedColumns[i] = columns.get(i).name();
+    m_FittedCategories = categories;
+    m_FittedOther      = other;
+  }
+
+  /**
+   * Maps the rows of the column to the index of their category.
+   *
+   * @param column	the column to map
+   * @param categories	the fitted categories
+   * @param other	whether there is an other category
+   * @return		the indices, -1 for missing, -2 for categories not seen when fitting
+   */
+  protected int[] indices(Column<?> column, String[] categories, boolean other) {
+    int[]			result;
+    ColumnCoder			coder;
+    Map<String, Integer>	lookup;
+    int[]			codes;
+    Integer			index;
+    int				i;
+
+    lookup = new HashMap<String, Integer>();
+    for (i = 0; i < categories.length; i++)
+      lookup.put(categories[i], i);
+
+    // map the dictionary rather than the rows
+    coder    = new ColumnCoder(column);
+    codes    = new int[coder.size()];
+    codes[0] = -1;
+    for (i = 1; i < coder.size(); i++) {
+      index = lookup.get(coder.getLabel(i));
+      if (index != null)
+	codes[i] = index;
+      else
+	codes[i] = other ? categories.length : -2;
+    }
+
+    result = new int[column.size()];
+    for (i = 0; i < result.length; i++)
+      result[i] = codes[coder.code(i)];
+
+    return result;
+  }
+
+  /**
+   * Generates the one-hot column, which stores the category index per row
+   * rather than a 0/1 column per category.
+   *
+   * @param name	the name of the column
+   * @param indices	the category indices of the rows
+   * @param categories	the fitted categories
+   * @param other	whether there is an other category
+   * @return		the column
+   */
+  protected OneHotColumn oneHot(String name, int[] indices, String[] categories, boolean other) {
+    String[]	names;
+    int[]	hot;
+    int		i;
+
+    names = new String[categories.length + (other ? 1 : 0)];
+    for (i = 0; i < categories.length; i++)
+      names[i] = name + "=" + categories[i];
+    if (other)
+      names[categories.length] = name + "=" + m_OtherLabel;
+
+    hot = new int[indices.length];
+    for (i = 0; i < indices.length; i++) {
+      if (indices[i] == -1)
+	hot[i] = IntColumnType.missingValueIndicator();
+      else if (indices[i] == -2)
+	hot[i] = OneHotColumn.NONE;
+      else
+	hot[i] = indices[i];
+    }
+
+    return OneHotColumn.create(name, names, hot);
+  }
+
+  /**
+   * Generates the ordinal column.
+   *
+   * @param name	the name of the column
+   * @param indices	the category indices of the rows
+   * @return		the column
+   */
+  protected IntColumn ordinal(String name, int[] indices) {
+    IntColumn	result;
+    int		i;
+
+    result = IntColumn.create(name, indices.length);
+    for (i = 0; i < indices.length; i++) {
+      if (indices[i] >= 0)
+	result.set(i, indices[i]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    Map<String, Integer>	fitted;
+    List<Column<?>>		columns;
+    Integer			index;
+    int[]			indices;
+
+    if (!isFitted())
+      fit(table);
+
+    fitted = new HashMap<String, Integer>();
+    for (String name: m_FittedColumns) {
+      if (!table.columnNames().contains(name))
+	throw new IllegalStateException("Fitted column not present: " + name);
+      fitted.put(name, fitted.size());
+    }
+
+    columns = new ArrayList<Column<?>>();
+    for (Column<?> column: table.columns()) {
+      index = fitted.get(column.name());
+      if (index == null) {
+	columns.add(column);
+	continue;
+      }
+      indices = indices(column, m_FittedCategories[index], m_FittedOther[index]);
+      if (m_Method.equals(METHOD_ONEHOT))
+	columns.add(oneHot(column.name(), indices, m_FittedCategories[index], m_FittedOther[index]));
+      else
+	columns.add(ordinal(column.name(), indices));
+    }
+
+    return Table.create(table.name(), columns);
+  }
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		true if not fitted yet
+   */
+  @Override
+  public boolean isBlocking() {
+    return !isFitted();
+  }
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+    m_Buffer = null;
+  }
+
+  /**
+   * Processes the next chunk. Chunks get buffered until the end of the
+   * stream if the categories still need to be fitted.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) throws IOException {
+    if ((m_Buffer == null) && !isBlocking()) {
+      sink.accept(processTable(chunk));
+      return;
+    }
+    if (m_Buffer == null)
+      m_Buffer = chunk.emptyCopy();
+    m_Buffer.append(chunk);
+  }
+
+  /**
+   * Finishes the stream, fits the categories on the buffered chunks and
+   * outputs them.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void finish(TableSink sink) throws IOException {
+    Table	buffer;
+
+    if (m_Buffer == null)
+      return;
+    buffer   = m_Buffer;
+    m_Buffer = null;
+    sink.accept(processTable(buffer));
+  }
+}
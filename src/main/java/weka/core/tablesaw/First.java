@@ -23,7 +23,9 @@ package weka.core.tablesaw;
 import tech.tablesaw.api.Table;
 import weka.core.Option;
 import weka.core.Utils;
+import weka.core.tablesaw.util.TableSink;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -31,11 +33,15 @@ import java.util.Vector;
 
 /**
  * Returns the first X rows.
+ * <br>
+ * When streaming, the rows get passed on until X rows have been output,
+ * all further chunks get discarded.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class First
-  extends AbstractTableOperation {
+  extends AbstractTableOperation
+  implements StreamableTableOperation {
 
   private static final long serialVersionUID = 2062384379312131809L;
 
@@ -45,6 +51,12 @@ public class First
   /** the number of rows. */
   protected int m_NumRows = DEFAULT_NUM_ROWS;
 
+  /** the number of rows output so far when streaming. */
+  protected transient int m_Output;
+
+  /** the structure of the chunks when streaming. */
+  protected transient Table m_Structure;
+
   /**
    * Returns a string describing this object.
    *
@@ -149,4 +161,59 @@ public class First
 
     return table.first(m_NumRows);
   }
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		always false
+   */
+  @Override
+  public boolean isBlocking() {
+    return false;
+  }
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+    m_Output    = 0;
+    m_Structure = null;
+  }
+
+  /**
+   * Processes the next chunk.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) throws IOException {
+    int		remaining;
+
+    if (m_Structure == null)
+      m_Structure = chunk.emptyCopy();
+    remaining = m_NumRows - m_Output;
+    if ((remaining <= 0) || (chunk.rowCount() == 0))
+      return;
+    if (remaining < chunk.rowCount())
+      chunk = chunk.first(remaining);
+    m_Output += chunk.rowCount();
+    sink.accept(chunk);
+  }
+
+  /**
+   * Finishes the stream. Outputs an empty table if no rows were output.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void finish(TableSink sink) throws IOException {
+    if ((m_Output == 0) && (m_Structure != null))
+      sink.accept(m_Structure);
+    m_Structure = null;
+  }
 }
@@ -0,0 +1,47 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FittableTableOperation.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+/**
+ * Interface for table operations that learn parameters from the first table
+ * they process (e.g., statistics) and apply them to all subsequent ones.
+ * <br>
+ * The parameters get discarded with {@link #resetFit()}, e.g., by the
+ * filter whenever a new input format gets set, so that the operation learns
+ * them again from the next table.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface FittableTableOperation
+  extends TableOperation {
+
+  /**
+   * Discards the fitted parameters.
+   */
+  public void resetFit();
+
+  /**
+   * Returns whether the parameters have been fitted.
+   *
+   * @return		true if fitted
+   */
+  public boolean isFitted();
+}
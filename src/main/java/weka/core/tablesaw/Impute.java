@@ -0,0 +1,810 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Impute.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import tech.tablesaw.api.BooleanColumn;
+import tech.tablesaw.api.ColumnType;
+import tech.tablesaw.api.DateColumn;
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.InstantColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.ShortColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.api.TextColumn;
+import tech.tablesaw.api.TimeColumn;
+import tech.tablesaw.columns.Column;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnCoder;
+import weka.core.tablesaw.util.ColumnStatistics;
+import weka.core.tablesaw.util.KllSketch;
+import weka.core.tablesaw.util.MissingValueIndex;
+import weka.core.tablesaw.util.TableSink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+import java.util.stream.IntStream;
+
+/**
+ * Replaces missing values with the mean, median or mode of the column, a
+ * constant or the previous/next non-missing value (forward/backward fill).
+ * The strategy can be specified per column ("name:strategy"), otherwise the
+ * default one is used.
+ * <br>
+ * Mean and median are only available for numeric columns (the median being
+ * approximated with a quantile sketch), mode and constant for numeric and
+ * string columns, the fills for all columns. Means get rounded for integer
+ * columns.
+ * <br>
+ * The statistics of all the columns get computed in a single parallel pass
+ * (see {@link ColumnStatistics}), the first time the operation is applied.
+ * The fill values are stored with the operation, i.e., later batches (or
+ * chunks) get imputed with them rather than with their own statistics, until
+ * the operation gets reconfigured. Only the missing cells (as determined by
+ * the shared {@link MissingValueIndex}) get set, in place and in parallel
+ * across the columns.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Impute
+  extends AbstractTableOperation
+  implements StreamableTableOperation, FittableTableOperation {
+
+  private static final long serialVersionUID = -7461012937384713254L;
+
+  /** the mean. */
+  public final static String STRATEGY_MEAN = "mean";
+
+  /** the median. */
+  public final static String STRATEGY_MEDIAN = "median";
+
+  /** the most frequent value. */
+  public final static String STRATEGY_MODE = "mode";
+
+  /** a constant. */
+  public final static String STRATEGY_CONSTANT = "constant";
+
+  /** the previous non-missing value. */
+  public final static String STRATEGY_FFILL = "ffill";
+
+  /** the next non-missing value. */
+  public final static String STRATEGY_BFILL = "bfill";
+
+  /** the default columns. */
+  public final static String DEFAULT_COLUMNS = "";
+
+  /** the default strategy. */
+  public final static String DEFAULT_STRATEGY = STRATEGY_MEAN;
+
+  /** the default constant. */
+  public final static String DEFAULT_CONSTANT = "0";
+
+  /** the default accuracy parameter of the quantile sketches. */
+  public final static int DEFAULT_SKETCH_SIZE = KllSketch.DEFAULT_K;
+
+  /** the columns to impute (comma-separated, optionally with strategy, empty for all). */
+  protected String m_Columns = DEFAULT_COLUMNS;
+
+  /** the default strategy. */
+  protected String m_Strategy = DEFAULT_STRATEGY;
+
+  /** the constant. */
+  protected String m_Constant = DEFAULT_CONSTANT;
+
+  /** the accuracy parameter of the quantile sketches. */
+  protected int m_SketchSize = DEFAULT_SKETCH_SIZE;
+
+  /** the fitted columns, null if not fitted yet. */
+  protected String[] m_FittedColumns;
+
+  /** the strategies of the fitted columns. */
+  protected String[] m_FittedStrategies;
+
+  /** the fill values of numeric columns. */
+  protected double[] m_FittedNumbers;
+
+  /** the fill values of string columns. */
+  protected String[] m_FittedLabels;
+
+  /** the buffered chunks when streaming before being fitted. */
+  protected transient Table m_Buffer;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Replaces missing values using the mean (" + STRATEGY_MEAN + "), median (" + STRATEGY_MEDIAN + ") or "
+      + "most frequent value (" + STRATEGY_MODE + ") of the column, a constant (" + STRATEGY_CONSTANT + ") or "
+      + "the previous/next non-missing value (" + STRATEGY_FFILL + "/" + STRATEGY_BFILL + ").\n"
+      + "The strategy can be specified per column using 'name:strategy', otherwise the default one is used.\n"
+      + "The statistics get computed in a single parallel pass when first applied and are stored "
+      + "with the operation, i.e., subsequent batches get imputed with the same values.";
+  }
+
+  /**
+   * Discards the fitted values.
+   */
+  @Override
+  public void resetFit() {
+    m_FittedColumns    = null;
+    m_FittedStrategies = null;
+    m_FittedNumbers    = null;
+    m_FittedLabels     = null;
+  }
+
+  /**
+   * Returns whether the fill values have been fitted.
+   *
+   * @return		true if fitted
+   */
+  @Override
+  public boolean isFitted() {
+    return (m_FittedColumns != null);
+  }
+
+  /**
+   * Sets the columns to impute.
+   *
+   * @param value	the columns (comma-separated names, optionally with ":strategy"), empty for all
+   */
+  public void setColumns(String value) {
+    m_Columns = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the columns to impute.
+   *
+   * @return		the columns (comma-separated names, optionally with ":strategy"), empty for all
+   */
+  public String getColumns() {
+    return m_Columns;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String columnsTipText() {
+    return "The columns to impute (comma-separated names, optionally with ':strategy', e.g., 'age:median,city:mode'; "
+      + "empty for all the columns the default strategy applies to).";
+  }
+
+  /**
+   * Sets the default strategy.
+   *
+   * @param value	the strategy
+   */
+  public void setStrategy(String value) {
+    m_Strategy = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the default strategy.
+   *
+   * @return		the strategy
+   */
+  public String getStrategy() {
+    return m_Strategy;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String strategyTipText() {
+    return "The default strategy: " + STRATEGY_MEAN + ", " + STRATEGY_MEDIAN + ", " + STRATEGY_MODE + ", "
+      + STRATEGY_CONSTANT + ", " + STRATEGY_FFILL + " or " + STRATEGY_BFILL + ".";
+  }
+
+  /**
+   * Sets the constant.
+   *
+   * @param value	the constant
+   */
+  public void setConstant(String value) {
+    m_Constant = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the constant.
+   *
+   * @return		the constant
+   */
+  public String getConstant() {
+    return m_Constant;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String constantTipText() {
+    return "The constant to use for the " + STRATEGY_CONSTANT + " strategy (must be a number for numeric columns).";
+  }
+
+  /**
+   * Sets the accuracy parameter of the quantile sketches.
+   *
+   * @param value	the parameter (larger is more accurate)
+   */
+  public void setSketchSize(int value) {
+    m_SketchSize = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the accuracy parameter of the quantile sketches.
+   *
+   * @return		the parameter (larger is more accurate)
+   */
+  public int getSketchSize() {
+    return m_SketchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sketchSizeTipText() {
+    return "The accuracy parameter k of the KLL quantile sketches used for the median (rank error roughly 1.65/k).";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns to impute (comma-separated names, optionally with ':strategy';\n"
+      + "\tempty for all the columns the default strategy applies to)\n"
+      + "\t(default: " + DEFAULT_COLUMNS + ")",
+      "columns", 1, "-columns <name1[:strategy],name2[:strategy],...>"));
+
+    result.addElement(new Option("\tThe default strategy ("
+      + STRATEGY_MEAN + "|" + STRATEGY_MEDIAN + "|" + STRATEGY_MODE + "|" + STRATEGY_CONSTANT + "|"
+      + STRATEGY_FFILL + "|" + STRATEGY_BFILL + ")\n"
+      + "\t(default: " + DEFAULT_STRATEGY + ")",
+      "strategy", 1, "-strategy <strategy>"));
+
+    result.addElement(new Option("\tThe constant for the " + STRATEGY_CONSTANT + " strategy\n"
+      + "\t(default: " + DEFAULT_CONSTANT + ")",
+      "constant", 1, "-constant <value>"));
+
+    result.addElement(new Option("\tThe accuracy parameter k of the quantile sketches\n"
+      + "\t(default: " + DEFAULT_SKETCH_SIZE + ")",
+      "sketch-size", 1, "-sketch-size <int>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    setColumns(Utils.getOption("columns", options));
+
+    tmp = Utils.getOption("strategy", options);
+    if (!tmp.isEmpty())
+      setStrategy(tmp);
+    else
+      setStrategy(DEFAULT_STRATEGY);
+
+    tmp = Utils.getOption("constant", options);
+    if (!tmp.isEmpty())
+      setConstant(tmp);
+    else
+      setConstant(DEFAULT_CONSTANT);
+
+    tmp = Utils.getOption("sketch-size", options);
+    if (!tmp.isEmpty())
+      setSketchSize(Integer.parseInt(tmp));
+    else
+      setSketchSize(DEFAULT_SKETCH_SIZE);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getColumns().isEmpty()) {
+      result.add("-columns");
+      result.add(getColumns());
+    }
+
+    result.add("-strategy");
+    result.add(getStrategy());
+
+    result.add("-constant");
+    result.add(getConstant());
+
+    result.add("-sketch-size");
+    result.add("" + getSketchSize());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Returns whether the strategy is known.
+   *
+   * @param strategy	the strategy to check
+   * @return		true if valid
+   */
+  protected boolean isValid(String strategy) {
+    return strategy.equals(STRATEGY_MEAN) || strategy.equals(STRATEGY_MEDIAN) || strategy.equals(STRATEGY_MODE)
+      || strategy.equals(STRATEGY_CONSTANT) || strategy.equals(STRATEGY_FFILL) || strategy.equals(STRATEGY_BFILL);
+  }
+
+  /**
+   * Returns whether the strategy fills from neighboring rows.
+   *
+   * @param strategy	the strategy to check
+   * @return		true if forward/backward fill
+   */
+  protected boolean isFill(String strategy) {
+    return strategy.equals(STRATEGY_FFILL) || strategy.equals(STRATEGY_BFILL);
+  }
+
+  /**
+   * Returns whether the strategy is available for the column.
+   *
+   * @param strategy	the strategy to check
+   * @param column	the column
+   * @return		true if applicable
+   */
+  protected boolean appliesTo(String strategy, Column<?> column) {
+    if (isFill(strategy))
+      return true;
+    if (column instanceof NumericColumn)
+      return true;
+    if (strategy.equals(STRATEGY_MEAN) || strategy.equals(STRATEGY_MEDIAN))
+      return false;
+    return column.type().equals(ColumnType.STRING) || column.type().equals(ColumnType.TEXT);
+  }
+
+  /**
+   * Splits the columns into names and strategies.
+   *
+   * @return		the name/strategy pairs, empty if no columns specified
+   */
+  protected List<String[]> parseColumns() {
+    List<String[]>	result;
+    String		name;
+    String		strategy;
+    int			pos;
+
+    result = new ArrayList<String[]>();
+    if (m_Columns.isEmpty())
+      return result;
+
+    for (String column: m_Columns.split(",")) {
+      pos = column.lastIndexOf(':');
+      if ((pos > -1) && isValid(column.substring(pos + 1).trim())) {
+	name     = column.substring(0, pos).trim();
+	strategy = column.substring(pos + 1).trim();
+      }
+      else {
+	name     = column.trim();
+	strategy = m_Strategy;
+      }
+      result.add(new String[]{name, strategy});
+    }
+
+    return result;
+  }
+
+  /**
+   * Fits the fill values on the table.
+   *
+   * @param table	the table to fit on
+   */
+  protected void fit(Table table) {
+    final List<Column<?>>	columns;
+    final List<String>		strategies;
+    List<Column<?>>		numeric;
+    ColumnStatistics[]		stats;
+    final double[]		numbers;
+    final String[]		labels;
+    double			constant;
+    String			strategy;
+    Column<?>			column;
+    int				i;
+    int				n;
+
+    if (!isValid(m_Strategy))
+      throw new IllegalArgumentException("Unknown strategy: " + m_Strategy);
+
+    columns    = new ArrayList<Column<?>>();
+    strategies = new ArrayList<String>();
+    if (m_Columns.isEmpty()) {
+      for (Column<?> col: table.columns()) {
+	if (appliesTo(m_Strategy, col)) {
+	  columns.add(col);
+	  strategies.add(m_Strategy);
+	}
+      }
+    }
+    else {
+      for (String[] pair: parseColumns()) {
+	column = table.column(pair[0]);
+	if (!appliesTo(pair[1], column))
+	  throw new IllegalArgumentException("Strategy '" + pair[1] + "' not available for column '" + pair[0] + "' of type " + column.type());
+	columns.add(column);
+	strategies.add(pair[1]);
+      }
+    }
+
+    numbers = new double[columns.size()];
+    labels  = new String[columns.size()];
+
+    // mean/median: single pass over all the columns
+    numeric = new ArrayList<Column<?>>();
+    for (i = 0; i < columns.size(); i++) {
+      if (strategies.get(i).equals(STRATEGY_MEAN) || strategies.get(i).equals(STRATEGY_MEDIAN))
+	numeric.add(columns.get(i));
+    }
+    if (!numeric.isEmpty()) {
+      stats = ColumnStatistics.compute(numeric, m_SketchSize);
+      n     = 0;
+      for (i = 0; i < columns.size(); i++) {
+	strategy = strategies.get(i);
+	if (!strategy.equals(STRATEGY_MEAN) && !strategy.equals(STRATEGY_MEDIAN))
+	  continue;
+	if (stats[n].getCount() == 0)
+	  numbers[i] = Double.NaN;
+	else if (strategy.equals(STRATEGY_MEAN))
+	  numbers[i] = stats[n].getMean();
+	else
+	  numbers[i] = stats[n].getQuantiles(new double[]{0.5})[0];
+	n++;
+      }
+    }
+
+    // mode: counts of the dictionary codes
+    IntStream.range(0, columns.size()).parallel().forEach((int c) -> {
+      if (!strategies.get(c).equals(STRATEGY_MODE))
+	return;
+      Column<?> col = columns.get(c);
+      ColumnCoder coder = new ColumnCoder(col);
+      int[] counts = new int[coder.size()];
+      int[] first = new int[coder.size()];
+      for (int row = 0; row < col.size(); row++) {
+	int code = coder.code(row);
+	if (counts[code]++ == 0)
+	  first[code] = row;
+      }
+      // ties: first occurrence
+      int mode = ColumnCoder.MISSING;
+      for (int code = 1; code < counts.length; code++) {
+	if ((mode == ColumnCoder.MISSING) || (counts[code] > counts[mode]))
+	  mode = code;
+      }
+      if (mode == ColumnCoder.MISSING)
+	numbers[c] = Double.NaN;
+      else if (col instanceof NumericColumn)
+	numbers[c] = ((NumericColumn<?>) col).getDouble(first[mode]);
+      else
+	labels[c] = col.getString(first[mode]);
+    });
+
+    // constant
+    for (i = 0; i < columns.size(); i++) {
+      if (!strategies.get(i).equals(STRATEGY_CONSTANT))
+	continue;
+      if (columns.get(i) instanceof NumericColumn) {
+	try {
+	  constant = Double.parseDouble(m_Constant);
+	}
+	catch (NumberFormatException e) {
+	  throw new IllegalArgumentException("Constant is not numeric, required for column '" + columns.get(i).name() + "': " + m_Constant);
+	}
+	numbers[i] = constant;
+      }
+      else {
+	labels[i] = m_Constant;
+      }
+    }
+
+    m_FittedColumns    = new String[columns.size()];
+    m_FittedStrategies = strategies.toArray(new String[0]);
+    for (i = 0; i < columns.size(); i++)
+      m_FittedColumns[i] = columns.get(i).name();
+    m_FittedNumbers = numbers;
+    m_FittedLabels  = labels;
+  }
+
+  /**
+   * Sets the value in the row of a numeric column.
+   *
+   * @param column	the column to update
+   * @param row		the row
+   * @param value	the value
+   */
+  protected void setNumber(Column<?> column, int row, double value) {
+    if (column instanceof DoubleColumn)
+      ((DoubleColumn) column).set(row, value);
+    else if (column instanceof FloatColumn)
+      ((FloatColumn) column).set(row, (float) value);
+    else if (column instanceof IntColumn)
+      ((IntColumn) column).set(row, (int) Math.round(value));
+    else if (column instanceof LongColumn)
+      ((LongColumn) column).set(row, Math.round(value));
+    else if (column instanceof ShortColumn)
+      ((ShortColumn) column).set(row, (short) Math.round(value));
+    else
+      throw new IllegalArgumentException("Unhandled numeric column type: " + column.type());
+  }
+
+  /**
+   * Sets the value in the row of a string column.
+   *
+   * @param column	the column to update
+   * @param row		the row
+   * @param value	the value
+   */
+  protected void setLabel(Column<?> column, int row, String value) {
+    if (column instanceof StringColumn)
+      ((StringColumn) column).set(row, value);
+    else if (column instanceof TextColumn)
+      ((TextColumn) column).set(row, value);
+    else
+      throw new IllegalArgumentException("Not a string column: " + column.type());
+  }
+
+  /**
+   * Copies the value from one row to another.
+   *
+   * @param column	the column to update
+   * @param from	the row to copy from
+   * @param to		the row to copy to
+   */
+  protected void copy(Column<?> column, int from, int to) {
+    if (column instanceof DoubleColumn)
+      ((DoubleColumn) column).set(to, ((DoubleColumn) column).getDouble(from));
+    else if (column instanceof FloatColumn)
+      ((FloatColumn) column).set(to, ((FloatColumn) column).getFloat(from));
+    else if (column instanceof IntColumn)
+      ((IntColumn) column).set(to, ((IntColumn) column).getInt(from));
+    else if (column instanceof LongColumn)
+      ((LongColumn) column).set(to, ((LongColumn) column).getLong(from));
+    else if (column instanceof ShortColumn)
+      ((ShortColumn) column).set(to, ((ShortColumn) column).getShort(from));
+    else if (column instanceof StringColumn)
+      ((StringColumn) column).set(to, ((StringColumn) column).get(from));
+    else if (column instanceof TextColumn)
+      ((TextColumn) column).set(to, ((TextColumn) column).get(from));
+    else if (column instanceof BooleanColumn)
+      ((BooleanColumn) column).set(to, ((BooleanColumn) column).get(from));
+    else if (column instanceof DateColumn)
+      ((DateColumn) column).set(to, ((DateColumn) column).get(from));
+    else if (column instanceof DateTimeColumn)
+      ((DateTimeColumn) column).set(to, ((DateTimeColumn) column).get(from));
+    else if (column instanceof TimeColumn)
+      ((TimeColumn) column).set(to, ((TimeColumn) column).get(from));
+    else if (column instanceof InstantColumn)
+      ((InstantColumn) column).set(to, ((InstantColumn) column).get(from));
+    else
+      throw new IllegalArgumentException("Unhandled column type: " + column.type());
+  }
+
+  /**
+   * Imputes the missing values of the column.
+   *
+   * @param column	the column to update
+   * @param missing	the rows with missing values
+   * @param strategy	the strategy
+   * @param number	the fill value for numeric columns
+   * @param label	the fill value for string columns
+   */
+  protected void impute(Column<?> column, RoaringBitmap missing, String strategy, double number, String label) {
+    IntIterator		iter;
+    int			row;
+
+    switch (strategy) {
+      case STRATEGY_FFILL:
+	// rows get filled in ascending order, i.e., the previous row is never missing unless leading
+	iter = missing.getIntIterator();
+	while (iter.hasNext()) {
+	  row = iter.next();
+	  if ((row > 0) && !column.isMissing(row - 1))
+	    copy(column, row - 1, row);
+	}
+	break;
+
+      case STRATEGY_BFILL:
+	iter = missing.getReverseIntIterator();
+	while (iter.hasNext()) {
+	  row = iter.next();
+	  if ((row < column.size() - 1) && !column.isMissing(row + 1))
+	    copy(column, row + 1, row);
+	}
+	break;
+
+      default:
+	if (column instanceof NumericColumn) {
+	  if (Double.isNaN(number))
+	    return;
+	  iter = missing.getIntIterator();
+	  while (iter.hasNext())
+	    setNumber(column, iter.next(), number);
+	}
+	else {
+	  if (label == null)
+	    return;
+	  iter = missing.getIntIterator();
+	  while (iter.hasNext())
+	    setLabel(column, iter.next(), label);
+	}
+    }
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    final MissingValueIndex	index;
+    final Column<?>[]		columns;
+    final int[]			indices;
+    final String[]		names;
+    int				i;
+
+    if (!isFitted())
+      fit(table);
+
+    names   = m_FittedColumns;
+    columns = new Column<?>[names.length];
+    indices = new int[names.length];
+    for (i = 0; i < names.length; i++) {
+      if (!table.columnNames().contains(names[i]))
+	throw new IllegalStateException("Fitted column not present: " + names[i]);
+      columns[i] = table.column(names[i]);
+      indices[i] = table.columnIndex(names[i]);
+    }
+
+    index = MissingValueIndex.of(table);
+    IntStream.range(0, names.length).parallel().forEach((int n) -> {
+      RoaringBitmap missing = index.getMissing(indices[n]);
+      if (missing.isEmpty())
+	return;
+      impute(columns[n], missing, m_FittedStrategies[n], m_FittedNumbers[n], m_FittedLabels[n]);
+      MissingValueIndex.invalidate(columns[n]);
+    });
+
+    return table;
+  }
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		true if statistics are required and not fitted yet, or when filling
+   */
+  @Override
+  public boolean isBlocking() {
+    List<String[]>	columns;
+    boolean		statistics;
+
+    columns = parseColumns();
+    if (columns.isEmpty())
+      columns.add(new String[]{"", m_Strategy});
+
+    // fills need to see the whole stream, as missing values can span chunks
+    statistics = false;
+    for (String[] pair: columns) {
+      if (isFill(pair[1]))
+	return true;
+      if (!pair[1].equals(STRATEGY_CONSTANT))
+	statistics = true;
+    }
+
+    return !isFitted() && statistics;
+  }
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+    m_Buffer = null;
+  }
+
+  /**
+   * Processes the next chunk. Chunks get buffered until the end of the
+   * stream if the fill values still need to be fitted or neighboring rows
+   * are used.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) throws IOException {
+    if ((m_Buffer == null) && !isBlocking()) {
+      sink.accept(processTable(chunk));
+      return;
+    }
+    if (m_Buffer == null)
+      m_Buffer = chunk.emptyCopy();
+    m_Buffer.append(chunk);
+  }
+
+  /**
+   * Finishes the stream, fits the fill values on the buffered chunks and
+   * outputs them.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void finish(TableSink sink) throws IOException {
+    Table	buffer;
+
+    if (m_Buffer == null)
+      return;
+    buffer   = m_Buffer;
+    m_Buffer = null;
+    sink.accept(processTable(buffer));
+  }
+}
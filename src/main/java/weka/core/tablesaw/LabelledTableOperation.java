@@ -0,0 +1,45 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LabelledTableOperation.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface for table operations that generate string columns with a known
+ * set of labels (e.g., bins), which turn into nominal attributes with all
+ * these labels in the declared order, regardless of the values that occur
+ * in a batch.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see weka.core.TablesawUtils#declareLabels(weka.core.Instances, Map)
+ */
+public interface LabelledTableOperation
+  extends TableOperation {
+
+  /**
+   * Returns the labels of the generated string columns, as determined by
+   * the last table that was processed.
+   *
+   * @return		the labels per column name, empty if none known (yet)
+   */
+  public Map<String, List<String>> getDeclaredLabels();
+}
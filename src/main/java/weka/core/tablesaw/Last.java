@@ -23,7 +23,9 @@ package weka.core.tablesaw;
 import tech.tablesaw.api.Table;
 import weka.core.Option;
 import weka.core.Utils;
+import weka.core.tablesaw.util.TableSink;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -31,11 +33,15 @@ import java.util.Vector;
 
 /**
  * Returns the last X rows.
+ * <br>
+ * When streaming, only the last X rows seen so far are kept, which get
+ * output once the stream is finished.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class Last
-  extends AbstractTableOperation {
+  extends AbstractTableOperation
+  implements StreamableTableOperation {
 
   private static final long serialVersionUID = 2062384379312131809L;
 
@@ -45,6 +51,9 @@ public class Last
   /** the number of rows. */
   protected int m_NumRows = DEFAULT_NUM_ROWS;
 
+  /** the last rows seen so far when streaming. */
+  protected transient Table m_Buffer;
+
   /**
    * Returns a string describing this object.
    *
@@ -149,4 +158,53 @@ public class Last
 
     return table.last(m_NumRows);
   }
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		always true
+   */
+  @Override
+  public boolean isBlocking() {
+    return true;
+  }
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+    m_Buffer = null;
+  }
+
+  /**
+   * Processes the next chunk, keeps only the last X rows.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) {
+    if (m_Buffer == null)
+      m_Buffer = chunk.emptyCopy();
+    if (chunk.rowCount() > m_NumRows)
+      chunk = chunk.last(m_NumRows);
+    m_Buffer.append(chunk);
+    if (m_Buffer.rowCount() > m_NumRows)
+      m_Buffer = m_Buffer.last(m_NumRows);
+  }
+
+  /**
+   * Finishes the stream, outputs the last X rows.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void finish(TableSink sink) throws IOException {
+    if (m_Buffer != null)
+      sink.accept(m_Buffer);
+    m_Buffer = null;
+  }
 }
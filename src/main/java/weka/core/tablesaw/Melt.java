@@ -0,0 +1,389 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Melt.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.Option;
+import weka.core.TablesawUtils;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnExpression;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+import java.util.stream.IntStream;
+
+/**
+ * Turns a wide table into a long one (the reverse of {@link Pivot}): each
+ * row gets turned into one row per value column, consisting of the id
+ * columns, the name of the value column and its value. The rows of a row
+ * are consecutive, i.e., the operation is row-local and can be applied to
+ * chunks.
+ * <br>
+ * The value column is numeric if all the value columns are numeric or
+ * date-like (dates as milliseconds), otherwise a string column. The output
+ * columns are allocated at their final size and filled in parallel, one
+ * value column at a time.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Melt
+  extends AbstractRowLocalTableOperation {
+
+  private static final long serialVersionUID = -5407734982061452180L;
+
+  /** the default id columns. */
+  public final static String DEFAULT_ID = "";
+
+  /** the default value columns. */
+  public final static String DEFAULT_VALUES = "";
+
+  /** the default name of the variable column. */
+  public final static String DEFAULT_VARIABLE_NAME = "variable";
+
+  /** the default name of the value column. */
+  public final static String DEFAULT_VALUE_NAME = "value";
+
+  /** the id columns (comma-separated). */
+  protected String m_Id = DEFAULT_ID;
+
+  /** the value columns (comma-separated, empty for all non-id columns). */
+  protected String m_Values = DEFAULT_VALUES;
+
+  /** the name of the variable column. */
+  protected String m_VariableName = DEFAULT_VARIABLE_NAME;
+
+  /** the name of the value column. */
+  protected String m_ValueName = DEFAULT_VALUE_NAME;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Turns a wide table into a long one: each row becomes one row per value column, "
+      + "with the id columns, the name of the value column and its value.\n"
+      + "The value column is numeric if all value columns are numeric or date-like, otherwise a string column.";
+  }
+
+  /**
+   * Sets the id columns.
+   *
+   * @param value	the columns (comma-separated names)
+   */
+  public void setId(String value) {
+    m_Id = value;
+  }
+
+  /**
+   * Returns the id columns.
+   *
+   * @return		the columns (comma-separated names)
+   */
+  public String getId() {
+    return m_Id;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String idTipText() {
+    return "The columns to keep with each output row (comma-separated names).";
+  }
+
+  /**
+   * Sets the value columns.
+   *
+   * @param value	the columns (comma-separated names), empty for all non-id ones
+   */
+  public void setValues(String value) {
+    m_Values = value;
+  }
+
+  /**
+   * Returns the value columns.
+   *
+   * @return		the columns (comma-separated names), empty for all non-id ones
+   */
+  public String getValues() {
+    return m_Values;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String valuesTipText() {
+    return "The columns to turn into rows (comma-separated names, empty for all non-id columns).";
+  }
+
+  /**
+   * Sets the name of the variable column.
+   *
+   * @param value	the name
+   */
+  public void setVariableName(String value) {
+    m_VariableName = value;
+  }
+
+  /**
+   * Returns the name of the variable column.
+   *
+   * @return		the name
+   */
+  public String getVariableName() {
+    return m_VariableName;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String variableNameTipText() {
+    return "The name of the output column with the names of the value columns.";
+  }
+
+  /**
+   * Sets the name of the value column.
+   *
+   * @param value	the name
+   */
+  public void setValueName(String value) {
+    m_ValueName = value;
+  }
+
+  /**
+   * Returns the name of the value column.
+   *
+   * @return		the name
+   */
+  public String getValueName() {
+    return m_ValueName;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String valueNameTipText() {
+    return "The name of the output column with the values.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns to keep with each output row (comma-separated names)\n"
+      + "\t(default: " + DEFAULT_ID + ")",
+      "id", 1, "-id <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe columns to turn into rows (comma-separated names, empty for all non-id columns)\n"
+      + "\t(default: " + DEFAULT_VALUES + ")",
+      "values", 1, "-values <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe name of the column with the names of the value columns\n"
+      + "\t(default: " + DEFAULT_VARIABLE_NAME + ")",
+      "variable-name", 1, "-variable-name <name>"));
+
+    result.addElement(new Option("\tThe name of the column with the values\n"
+      + "\t(default: " + DEFAULT_VALUE_NAME + ")",
+      "value-name", 1, "-value-name <name>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    setId(Utils.getOption("id", options));
+    setValues(Utils.getOption("values", options));
+
+    tmp = Utils.getOption("variable-name", options);
+    if (!tmp.isEmpty())
+      setVariableName(tmp);
+    else
+      setVariableName(DEFAULT_VARIABLE_NAME);
+
+    tmp = Utils.getOption("value-name", options);
+    if (!tmp.isEmpty())
+      setValueName(tmp);
+    else
+      setValueName(DEFAULT_VALUE_NAME);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getId().isEmpty()) {
+      result.add("-id");
+      result.add(getId());
+    }
+
+    if (!getValues().isEmpty()) {
+      result.add("-values");
+      result.add(getValues());
+    }
+
+    result.add("-variable-name");
+    result.add(getVariableName());
+
+    result.add("-value-name");
+    result.add(getValueName());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    final List<Column<?>>	values;
+    final int			rows;
+    final int			width;
+    final double[]		numbers;
+    final String[]		strings;
+    List<Column<?>>		ids;
+    List<Column<?>>		columns;
+    Set<String>			idNames;
+    StringColumn		variable;
+    int[]			repeated;
+    boolean			numeric;
+    String			type;
+    long			total;
+    int				i;
+    int				n;
+
+    ids     = new ArrayList<Column<?>>();
+    idNames = new HashSet<String>();
+    if (!m_Id.isEmpty()) {
+      for (String name: m_Id.split(",")) {
+	ids.add(table.column(name.trim()));
+	idNames.add(name.trim());
+      }
+    }
+    values = new ArrayList<Column<?>>();
+    if (m_Values.isEmpty()) {
+      for (Column<?> column: table.columns()) {
+	if (!idNames.contains(column.name()))
+	  values.add(column);
+      }
+    }
+    else {
+      for (String name: m_Values.split(","))
+	values.add(table.column(name.trim()));
+    }
+    if (values.isEmpty())
+      throw new IllegalStateException("No value columns to melt!");
+
+    rows  = table.rowCount();
+    width = values.size();
+    total = (long) rows * width;
+    if (total > Integer.MAX_VALUE)
+      throw new IllegalStateException("Too many output rows: " + total);
+
+    // id columns: each row repeated once per value column
+    repeated = new int[(int) total];
+    for (i = 0; i < rows; i++) {
+      for (n = 0; n < width; n++)
+	repeated[i * width + n] = i;
+    }
+    columns = new ArrayList<Column<?>>();
+    for (Column<?> id: ids)
+      columns.add(id.subset(repeated));
+
+    variable = StringColumn.create(m_VariableName, (int) total);
+    for (i = 0; i < total; i++)
+      variable.set(i, values.get(i % width).name());
+    columns.add(variable);
+
+    numeric = true;
+    for (Column<?> column: values) {
+      type = TablesawUtils.getColumnType(column.type());
+      if (type.isEmpty() || type.startsWith("s")) {
+	numeric = false;
+	break;
+      }
+    }
+
+    if (numeric) {
+      numbers = new double[(int) total];
+      IntStream.range(0, width).parallel().forEach((int c) -> {
+	double[] v = ColumnExpression.toDoubles(values.get(c));
+	for (int row = 0; row < rows; row++)
+	  numbers[row * width + c] = v[row];
+      });
+      columns.add(DoubleColumn.create(m_ValueName, numbers));
+    }
+    else {
+      strings = new String[(int) total];
+      IntStream.range(0, width).parallel().forEach((int c) -> {
+	Column<?> v = values.get(c);
+	for (int row = 0; row < rows; row++)
+	  strings[row * width + c] = v.isMissing(row) ? null : v.getString(row);
+      });
+      columns.add(StringColumn.create(m_ValueName, strings));
+    }
+
+    return Table.create(table.name(), columns);
+  }
+}
@@ -20,18 +20,36 @@
 
 package weka.core.tablesaw;
 
+import tech.tablesaw.api.DoubleColumn;
 import tech.tablesaw.api.Table;
+import weka.core.tablesaw.util.MissingValueIndex;
+import weka.core.tablesaw.util.TableSink;
+
+import java.io.IOException;
 
 /**
  * Returns counts of missing values.
+ * <br>
+ * Uses the shared missing value index (see {@link MissingValueIndex}).
+ * When streaming, the counts get accumulated across the chunks.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class MissingValueCounts
-  extends AbstractTableOperation {
+  extends AbstractTableOperation
+  implements StreamableTableOperation {
 
   private static final long serialVersionUID = 2062384379312131809L;
 
+  /** the name of the streamed table. */
+  protected transient String m_Name;
+
+  /** the column names of the streamed table. */
+  protected transient String[] m_Columns;
+
+  /** the accumulated counts when streaming. */
+  protected transient long[] m_Counts;
+
   /**
    * Returns a string describing this object.
    *
@@ -51,6 +69,76 @@ public class MissingValueCounts
    */
   @Override
   public Table processTable(Table table) {
-    return table.missingValueCounts();
+    Table		result;
+    MissingValueIndex	index;
+    int			i;
+
+    index  = MissingValueIndex.of(table);
+    result = Table.create(table.name() + " summary");
+    for (i = 0; i < index.getNumColumns(); i++)
+      result.addColumns(DoubleColumn.create("Missing Values [" + index.getName(i) + "]", new double[]{index.getCount(i)}));
+
+    return result;
+  }
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		always true
+   */
+  @Override
+  public boolean isBlocking() {
+    return true;
+  }
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+    m_Name    = null;
+    m_Columns = null;
+    m_Counts  = null;
+  }
+
+  /**
+   * Processes the next chunk, adds its missing values to the counts.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) {
+    int		i;
+
+    if (m_Counts == null) {
+      m_Name    = chunk.name();
+      m_Columns = chunk.columnNames().toArray(new String[0]);
+      m_Counts  = new long[m_Columns.length];
+    }
+    for (i = 0; i < m_Counts.length; i++)
+      m_Counts[i] += chunk.column(i).countMissing();
+  }
+
+  /**
+   * Finishes the stream, outputs the counts.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void finish(TableSink sink) throws IOException {
+    Table	result;
+    int		i;
+
+    if (m_Counts == null)
+      return;
+
+    result = Table.create(m_Name + " summary");
+    for (i = 0; i < m_Counts.length; i++)
+      result.addColumns(DoubleColumn.create("Missing Values [" + m_Columns[i] + "]", new double[]{m_Counts[i]}));
+    startStream();
+    sink.accept(result);
   }
 }
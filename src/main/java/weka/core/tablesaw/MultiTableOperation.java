@@ -23,25 +23,41 @@ package weka.core.tablesaw;
 import tech.tablesaw.api.Table;
 import weka.core.Option;
 import weka.core.Utils;
+import weka.core.tablesaw.util.ChunkedPipeline;
+import weka.core.tablesaw.util.TableSink;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 /**
  * Applies multiple table operations sequentially.
+ * <br>
+ * When streaming, the chunks get pushed through the operations using a
+ * {@link ChunkedPipeline}, i.e., operations that are not streamable fall
+ * back to batch processing.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class MultiTableOperation
-  extends AbstractTableOperation {
+  extends AbstractTableOperation
+  implements StreamableTableOperation, FittableTableOperation, LabelledTableOperation {
 
   private static final long serialVersionUID = 2062384379312131809L;
 
   /** the operations. */
   protected TableOperation[] m_Operations = new TableOperation[0];
 
+  /** the pipeline when streaming. */
+  protected transient ChunkedPipeline m_Pipeline;
+
+  /** the sink to forward the output of the pipeline to. */
+  protected transient TableSink m_Sink;
+
   /**
    * Returns a string describing this object.
    *
@@ -140,6 +156,50 @@ public class MultiTableOperation
     return result.toArray(new String[0]);
   }
 
+  /**
+   * Discards the fitted parameters of all operations that learn them.
+   */
+  @Override
+  public void resetFit() {
+    for (TableOperation op: m_Operations) {
+      if (op instanceof FittableTableOperation)
+        ((FittableTableOperation) op).resetFit();
+    }
+  }
+
+  /**
+   * Returns whether all operations that learn parameters have been fitted.
+   *
+   * @return		true if fitted
+   */
+  @Override
+  public boolean isFitted() {
+    for (TableOperation op: m_Operations) {
+      if ((op instanceof FittableTableOperation) && !((FittableTableOperation) op).isFitted())
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the labels declared by the operations, later operations
+   * overriding earlier ones for the same column.
+   *
+   * @return		the labels per column name, empty if none
+   */
+  @Override
+  public Map<String, List<String>> getDeclaredLabels() {
+    Map<String, List<String>>	result;
+
+    result = new LinkedHashMap<String, List<String>>();
+    for (TableOperation op: m_Operations) {
+      if (op instanceof LabelledTableOperation)
+        result.putAll(((LabelledTableOperation) op).getDeclaredLabels());
+    }
+
+    return result;
+  }
+
   /**
    * Processes the rows.
    *
@@ -158,4 +218,68 @@ public class MultiTableOperation
 
     return result;
   }
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		true if any of the operations is blocking
+   */
+  @Override
+  public boolean isBlocking() {
+    return ChunkedPipeline.isBlocking(m_Operations);
+  }
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+    m_Sink     = null;
+    m_Pipeline = new ChunkedPipeline(m_Operations, new TableSink() {
+      @Override
+      public void accept(Table batch) throws IOException {
+        m_Sink.accept(batch);
+      }
+    });
+  }
+
+  /**
+   * Processes the next chunk, pushes it through the operations.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   * @throws IOException	if processing or the sink fails
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) throws IOException {
+    if (m_Operations.length == 0) {
+      sink.accept(chunk);
+      return;
+    }
+    if (m_Pipeline == null)
+      startStream();
+    m_Sink = sink;
+    m_Pipeline.accept(chunk);
+  }
+
+  /**
+   * Finishes the stream, outputs any remaining data.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if processing or the sink fails
+   */
+  @Override
+  public void finish(TableSink sink) throws IOException {
+    if (m_Pipeline == null)
+      return;
+    m_Sink = sink;
+    try {
+      m_Pipeline.finish();
+    }
+    finally {
+      m_Pipeline = null;
+      m_Sink     = null;
+    }
+  }
 }
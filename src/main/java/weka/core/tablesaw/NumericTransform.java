@@ -0,0 +1,602 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * NumericTransform.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnExpression;
+import weka.core.tablesaw.util.ColumnStatistics;
+import weka.core.tablesaw.util.KllSketch;
+import weka.core.tablesaw.util.TableSink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+import java.util.stream.IntStream;
+
+/**
+ * Transforms numeric columns: z-score (standardize), min-max (normalize to
+ * 0-1), log1p, clipping to fixed bounds or winsorizing (clipping to
+ * quantiles). Integer columns become double columns.
+ * <br>
+ * The statistics for z-score, min-max and winsorizing get computed in a
+ * single parallel pass over all the columns (see {@link ColumnStatistics}),
+ * the first time the operation is applied. The fitted parameters are stored
+ * with the operation, i.e., later batches (or chunks) are transformed with
+ * them rather than with their own statistics, until the operation gets
+ * reconfigured. The columns get transformed in parallel on their primitive
+ * values.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class NumericTransform
+  extends AbstractTableOperation
+  implements StreamableTableOperation, FittableTableOperation {
+
+  private static final long serialVersionUID = 4617260153878190382L;
+
+  /** z-score. */
+  public final static String METHOD_ZSCORE = "zscore";
+
+  /** min-max. */
+  public final static String METHOD_MINMAX = "minmax";
+
+  /** log1p. */
+  public final static String METHOD_LOG1P = "log1p";
+
+  /** clipping to fixed bounds. */
+  public final static String METHOD_CLIP = "clip";
+
+  /** clipping to quantiles. */
+  public final static String METHOD_WINSORIZE = "winsorize";
+
+  /** the default columns. */
+  public final static String DEFAULT_COLUMNS = "";
+
+  /** the default method. */
+  public final static String DEFAULT_METHOD = METHOD_ZSCORE;
+
+  /** the default lower bound/quantile. */
+  public final static double DEFAULT_LOWER = 0.05;
+
+  /** the default upper bound/quantile. */
+  public final static double DEFAULT_UPPER = 0.95;
+
+  /** the default accuracy parameter of the quantile sketches. */
+  public final static int DEFAULT_SKETCH_SIZE = KllSketch.DEFAULT_K;
+
+  /** the columns to transform (comma-separated, empty for all numeric ones). */
+  protected String m_Columns = DEFAULT_COLUMNS;
+
+  /** the method. */
+  protected String m_Method = DEFAULT_METHOD;
+
+  /** the lower bound (clip) or quantile (winsorize). */
+  protected double m_Lower = DEFAULT_LOWER;
+
+  /** the upper bound (clip) or quantile (winsorize). */
+  protected double m_Upper = DEFAULT_UPPER;
+
+  /** the accuracy parameter of the quantile sketches. */
+  protected int m_SketchSize = DEFAULT_SKETCH_SIZE;
+
+  /** the fitted columns, null if not fitted yet. */
+  protected String[] m_FittedColumns;
+
+  /** the fitted parameters per column (offset/scale or lower/upper bound). */
+  protected double[][] m_FittedParameters;
+
+  /** the buffered chunks when streaming before being fitted. */
+  protected transient Table m_Buffer;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Transforms numeric columns: z-score (" + METHOD_ZSCORE + "), min-max to 0-1 (" + METHOD_MINMAX + "), "
+      + "log1p (" + METHOD_LOG1P + "), clipping to lower/upper bound (" + METHOD_CLIP + ") or winsorizing, "
+      + "i.e., clipping to the lower/upper quantile (" + METHOD_WINSORIZE + ").\n"
+      + "The statistics get computed in a single parallel pass when first applied and are stored "
+      + "with the operation, i.e., subsequent batches get transformed with the same parameters.";
+  }
+
+  /**
+   * Discards the fitted parameters.
+   */
+  @Override
+  public void resetFit() {
+    m_FittedColumns    = null;
+    m_FittedParameters = null;
+  }
+
+  /**
+   * Returns whether the parameters have been fitted.
+   *
+   * @return		true if fitted
+   */
+  @Override
+  public boolean isFitted() {
+    return (m_FittedColumns != null);
+  }
+
+  /**
+   * Sets the columns to transform.
+   *
+   * @param value	the columns (comma-separated names), empty for all numeric ones
+   */
+  public void setColumns(String value) {
+    m_Columns = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the columns to transform.
+   *
+   * @return		the columns (comma-separated names), empty for all numeric ones
+   */
+  public String getColumns() {
+    return m_Columns;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String columnsTipText() {
+    return "The columns to transform (comma-separated names, empty for all numeric ones).";
+  }
+
+  /**
+   * Sets the method.
+   *
+   * @param value	the method
+   */
+  public void setMethod(String value) {
+    m_Method = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the method.
+   *
+   * @return		the method
+   */
+  public String getMethod() {
+    return m_Method;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String methodTipText() {
+    return "The transformation: " + METHOD_ZSCORE + ", " + METHOD_MINMAX + ", " + METHOD_LOG1P + ", "
+      + METHOD_CLIP + " or " + METHOD_WINSORIZE + ".";
+  }
+
+  /**
+   * Sets the lower bound (clip) or quantile (winsorize).
+   *
+   * @param value	the bound or fraction (0-1)
+   */
+  public void setLower(double value) {
+    m_Lower = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the lower bound (clip) or quantile (winsorize).
+   *
+   * @return		the bound or fraction (0-1)
+   */
+  public double getLower() {
+    return m_Lower;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String lowerTipText() {
+    return "The lower bound when clipping, the lower quantile (0-1) when winsorizing.";
+  }
+
+  /**
+   * Sets the upper bound (clip) or quantile (winsorize).
+   *
+   * @param value	the bound or fraction (0-1)
+   */
+  public void setUpper(double value) {
+    m_Upper = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the upper bound (clip) or quantile (winsorize).
+   *
+   * @return		the bound or fraction (0-1)
+   */
+  public double getUpper() {
+    return m_Upper;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String upperTipText() {
+    return "The upper bound when clipping, the upper quantile (0-1) when winsorizing.";
+  }
+
+  /**
+   * Sets the accuracy parameter of the quantile sketches.
+   *
+   * @param value	the parameter (larger is more accurate)
+   */
+  public void setSketchSize(int value) {
+    m_SketchSize = value;
+    resetFit();
+  }
+
+  /**
+   * Returns the accuracy parameter of the quantile sketches.
+   *
+   * @return		the parameter (larger is more accurate)
+   */
+  public int getSketchSize() {
+    return m_SketchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sketchSizeTipText() {
+    return "The accuracy parameter k of the KLL quantile sketches used for winsorizing (rank error roughly 1.65/k).";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns to transform (comma-separated names, empty for all numeric ones)\n"
+      + "\t(default: " + DEFAULT_COLUMNS + ")",
+      "columns", 1, "-columns <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe transformation ("
+      + METHOD_ZSCORE + "|" + METHOD_MINMAX + "|" + METHOD_LOG1P + "|" + METHOD_CLIP + "|" + METHOD_WINSORIZE + ")\n"
+      + "\t(default: " + DEFAULT_METHOD + ")",
+      "method", 1, "-method <method>"));
+
+    result.addElement(new Option("\tThe lower bound (clip) or quantile (winsorize)\n"
+      + "\t(default: " + DEFAULT_LOWER + ")",
+      "lower", 1, "-lower <num>"));
+
+    result.addElement(new Option("\tThe upper bound (clip) or quantile (winsorize)\n"
+      + "\t(default: " + DEFAULT_UPPER + ")",
+      "upper", 1, "-upper <num>"));
+
+    result.addElement(new Option("\tThe accuracy parameter k of the quantile sketches\n"
+      + "\t(default: " + DEFAULT_SKETCH_SIZE + ")",
+      "sketch-size", 1, "-sketch-size <int>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    setColumns(Utils.getOption("columns", options));
+
+    tmp = Utils.getOption("method", options);
+    if (!tmp.isEmpty())
+      setMethod(tmp);
+    else
+      setMethod(DEFAULT_METHOD);
+
+    tmp = Utils.getOption("lower", options);
+    if (!tmp.isEmpty())
+      setLower(Double.parseDouble(tmp));
+    else
+      setLower(DEFAULT_LOWER);
+
+    tmp = Utils.getOption("upper", options);
+    if (!tmp.isEmpty())
+      setUpper(Double.parseDouble(tmp));
+    else
+      setUpper(DEFAULT_UPPER);
+
+    tmp = Utils.getOption("sketch-size", options);
+    if (!tmp.isEmpty())
+      setSketchSize(Integer.parseInt(tmp));
+    else
+      setSketchSize(DEFAULT_SKETCH_SIZE);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getColumns().isEmpty()) {
+      result.add("-columns");
+      result.add(getColumns());
+    }
+
+    result.add("-method");
+    result.add(getMethod());
+
+    result.add("-lower");
+    result.add("" + getLower());
+
+    result.add("-upper");
+    result.add("" + getUpper());
+
+    result.add("-sketch-size");
+    result.add("" + getSketchSize());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Returns whether the method requires statistics.
+   *
+   * @return		true if statistics required
+   */
+  protected boolean requiresStatistics() {
+    return m_Method.equals(METHOD_ZSCORE) || m_Method.equals(METHOD_MINMAX) || m_Method.equals(METHOD_WINSORIZE);
+  }
+
+  /**
+   * Fits the parameters on the table.
+   *
+   * @param table	the table to fit on
+   */
+  protected void fit(Table table) {
+    List<Column<?>>		columns;
+    ColumnStatistics[]		stats;
+    double[]			quantiles;
+    double			range;
+    int				i;
+
+    if (!m_Method.equals(METHOD_ZSCORE) && !m_Method.equals(METHOD_MINMAX) && !m_Method.equals(METHOD_LOG1P)
+      && !m_Method.equals(METHOD_CLIP) && !m_Method.equals(METHOD_WINSORIZE))
+      throw new IllegalArgumentException("Unknown method: " + m_Method);
+
+    columns = new ArrayList<Column<?>>();
+    if (m_Columns.isEmpty()) {
+      for (Column<?> column: table.columns()) {
+	if (column instanceof NumericColumn)
+	  columns.add(column);
+      }
+    }
+    else {
+      for (String name: m_Columns.split(",")) {
+	if (!(table.column(name.trim()) instanceof NumericColumn))
+	  throw new IllegalArgumentException("Column is not numeric: " + name);
+	columns.add(table.column(name.trim()));
+      }
+    }
+
+    stats = null;
+    if (requiresStatistics())
+      stats = ColumnStatistics.compute(columns, m_SketchSize);
+
+    m_FittedColumns    = new String[columns.size()];
+    m_FittedParameters = new double[columns.size()][];
+    for (i = 0; i < columns.size(); i++) {
+      m_FittedColumns[i] = columns.get(i).name();
+      switch (m_Method) {
+	case METHOD_ZSCORE:
+	  // constant (or single-valued) columns get centered only
+	  range = stats[i].getStdDev();
+	  m_FittedParameters[i] = new double[]{stats[i].getMean(), (Double.isNaN(range) || (range == 0)) ? 1 : range};
+	  break;
+	case METHOD_MINMAX:
+	  range = stats[i].getMax() - stats[i].getMin();
+	  m_FittedParameters[i] = new double[]{stats[i].getMin(), (Double.isNaN(range) || (range == 0)) ? 1 : range};
+	  break;
+	case METHOD_WINSORIZE:
+	  quantiles = stats[i].getQuantiles(new double[]{m_Lower, m_Upper});
+	  m_FittedParameters[i] = new double[]{quantiles[0], quantiles[1]};
+	  break;
+	case METHOD_CLIP:
+	  m_FittedParameters[i] = new double[]{m_Lower, m_Upper};
+	  break;
+	default:
+	  m_FittedParameters[i] = new double[0];
+      }
+    }
+  }
+
+  /**
+   * Transforms the values in place.
+   *
+   * @param values	the values to transform, NaN for missing
+   * @param params	the fitted parameters of the column
+   */
+  protected void transform(double[] values, double[] params) {
+    double	a;
+    double	b;
+    int		i;
+
+    switch (m_Method) {
+      case METHOD_ZSCORE:
+      case METHOD_MINMAX:
+	a = params[0];
+	b = 1.0 / params[1];
+	for (i = 0; i < values.length; i++)
+	  values[i] = (values[i] - a) * b;
+	break;
+      case METHOD_LOG1P:
+	for (i = 0; i < values.length; i++)
+	  values[i] = Math.log1p(values[i]);
+	break;
+      case METHOD_CLIP:
+      case METHOD_WINSORIZE:
+	a = params[0];
+	b = params[1];
+	// NaN stays NaN, as both comparisons fail
+	for (i = 0; i < values.length; i++) {
+	  if (values[i] < a)
+	    values[i] = a;
+	  else if (values[i] > b)
+	    values[i] = b;
+	}
+	break;
+      default:
+	throw new IllegalArgumentException("Unknown method: " + m_Method);
+    }
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    final DoubleColumn[]	transformed;
+    final Column<?>[]		columns;
+    final String[]		names;
+    final double[][]		params;
+    int				i;
+
+    if (!isFitted())
+      fit(table);
+
+    names   = m_FittedColumns;
+    params  = m_FittedParameters;
+    columns = new Column<?>[names.length];
+    for (i = 0; i < names.length; i++) {
+      if (!table.columnNames().contains(names[i]))
+	throw new IllegalStateException("Fitted column not present: " + names[i]);
+      columns[i] = table.column(names[i]);
+    }
+
+    transformed = new DoubleColumn[names.length];
+    IntStream.range(0, names.length).parallel().forEach((int n) -> {
+      double[] values = ColumnExpression.toDoubles(columns[n]);
+      transform(values, params[n]);
+      transformed[n] = DoubleColumn.create(names[n], values);
+    });
+
+    for (i = 0; i < names.length; i++)
+      table.replaceColumn(names[i], transformed[i]);
+
+    return table;
+  }
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		true if statistics are required and not fitted yet
+   */
+  @Override
+  public boolean isBlocking() {
+    return !isFitted() && requiresStatistics();
+  }
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+    m_Buffer = null;
+  }
+
+  /**
+   * Processes the next chunk. Chunks get buffered until the end of the
+   * stream if the parameters still need to be fitted.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) throws IOException {
+    if ((m_Buffer == null) && !isBlocking()) {
+      sink.accept(processTable(chunk));
+      return;
+    }
+    if (m_Buffer == null)
+      m_Buffer = chunk.emptyCopy();
+    m_Buffer.append(chunk);
+  }
+
+  /**
+   * Finishes the stream, fits the parameters on the buffered chunks and
+   * outputs them.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if the sink fails
+   */
+  @Override
+  public void finish(TableSink sink) throws IOException {
+    Table	buffer;
+
+    if (m_Buffer == null)
+      return;
+    buffer   = m_Buffer;
+    m_Buffer = null;
+    sink.accept(processTable(buffer));
+  }
+}
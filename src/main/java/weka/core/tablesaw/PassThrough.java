@@ -28,7 +28,7 @@ import tech.tablesaw.api.Table;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class PassThrough
-  extends AbstractTableOperation {
+  extends AbstractRowLocalTableOperation {
 
   private static final long serialVersionUID = -1582427936858479910L;
 
@@ -0,0 +1,461 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Pivot.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnCoder;
+import weka.core.tablesaw.util.ColumnExpression;
+import weka.core.tablesaw.util.GroupCounter;
+import weka.core.tablesaw.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+import java.util.stream.IntStream;
+
+/**
+ * Turns a long table into a wide one: one row per distinct combination of
+ * the index columns, one column per distinct value of the key column, with
+ * the aggregated values of the value column in the cells (missing if there
+ * were no values, 0 for counts).
+ * <br>
+ * The rows get mapped to their output row via the dictionary codes of the
+ * index columns (see {@link ColumnCoder}), combined into a single long key
+ * and looked up in a primitive hash map (see {@link LongIntHashMap}) that is
+ * pre-sized from the number of distinct values of the columns. The rows then
+ * get partitioned by their key value, i.e., output column, and the
+ * partitions get aggregated in parallel, each into its own primitive array.
+ * Output rows and columns are in order of first occurrence.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Pivot
+  extends AbstractTableOperation {
+
+  private static final long serialVersionUID = 2238468147103725841L;
+
+  /** sum. */
+  public final static String AGGREGATE_SUM = "sum";
+
+  /** mean. */
+  public final static String AGGREGATE_MEAN = "mean";
+
+  /** minimum. */
+  public final static String AGGREGATE_MIN = "min";
+
+  /** maximum. */
+  public final static String AGGREGATE_MAX = "max";
+
+  /** number of non-missing values. */
+  public final static String AGGREGATE_COUNT = "count";
+
+  /** first non-missing value. */
+  public final static String AGGREGATE_FIRST = "first";
+
+  /** last non-missing value. */
+  public final static String AGGREGATE_LAST = "last";
+
+  /** the default index columns. */
+  public final static String DEFAULT_INDEX = "";
+
+  /** the default key column. */
+  public final static String DEFAULT_KEY = "";
+
+  /** the default value column. */
+  public final static String DEFAULT_VALUE = "";
+
+  /** the default aggregate. */
+  public final static String DEFAULT_AGGREGATE = AGGREGATE_SUM;
+
+  /** the index columns (comma-separated). */
+  protected String m_Index = DEFAULT_INDEX;
+
+  /** the column whose values become the output columns. */
+  protected String m_Key = DEFAULT_KEY;
+
+  /** the column with the values to aggregate. */
+  protected String m_Value = DEFAULT_VALUE;
+
+  /** the aggregate. */
+  protected String m_Aggregate = DEFAULT_AGGREGATE;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Turns a long table into a wide one: one row per combination of the index columns, "
+      + "one column per value of the key column and the aggregated (" + AGGREGATE_SUM + ", " + AGGREGATE_MEAN + ", "
+      + AGGREGATE_MIN + ", " + AGGREGATE_MAX + ", " + AGGREGATE_COUNT + ", " + AGGREGATE_FIRST + ", " + AGGREGATE_LAST + ") "
+      + "values of the value column in the cells.\n"
+      + "Without value column, the rows get counted.\n"
+      + "Rows and columns are in order of first occurrence, missing key values get ignored.";
+  }
+
+  /**
+   * Sets the index columns.
+   *
+   * @param value	the columns (comma-separated names)
+   */
+  public void setIndex(String value) {
+    m_Index = value;
+  }
+
+  /**
+   * Returns the index columns.
+   *
+   * @return		the columns (comma-separated names)
+   */
+  public String getIndex() {
+    return m_Index;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String indexTipText() {
+    return "The columns identifying the output rows (comma-separated names).";
+  }
+
+  /**
+   * Sets the key column.
+   *
+   * @param value	the column
+   */
+  public void setKey(String value) {
+    m_Key = value;
+  }
+
+  /**
+   * Returns the key column.
+   *
+   * @return		the column
+   */
+  public String getKey() {
+    return m_Key;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String keyTipText() {
+    return "The column whose distinct values become the output columns.";
+  }
+
+  /**
+   * Sets the value column.
+   *
+   * @param value	the column, empty for counting rows
+   */
+  public void setValue(String value) {
+    m_Value = value;
+  }
+
+  /**
+   * Returns the value column.
+   *
+   * @return		the column, empty for counting rows
+   */
+  public String getValue() {
+    return m_Value;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String valueTipText() {
+    return "The numeric or date-like column with the values to aggregate (empty for counting the rows).";
+  }
+
+  /**
+   * Sets the aggregate.
+   *
+   * @param value	the aggregate
+   */
+  public void setAggregate(String value) {
+    m_Aggregate = value;
+  }
+
+  /**
+   * Returns the aggregate.
+   *
+   * @return		the aggregate
+   */
+  public String getAggregate() {
+    return m_Aggregate;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String aggregateTipText() {
+    return "The aggregate: " + AGGREGATE_SUM + ", " + AGGREGATE_MEAN + ", " + AGGREGATE_MIN + ", " + AGGREGATE_MAX + ", "
+      + AGGREGATE_COUNT + ", " + AGGREGATE_FIRST + " or " + AGGREGATE_LAST + ".";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns identifying the output rows (comma-separated names)\n"
+      + "\t(default: " + DEFAULT_INDEX + ")",
+      "index", 1, "-index <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe column whose values become the output columns\n"
+      + "\t(default: " + DEFAULT_KEY + ")",
+      "key", 1, "-key <name>"));
+
+    result.addElement(new Option("\tThe column with the values to aggregate (empty for counting rows)\n"
+      + "\t(default: " + DEFAULT_VALUE + ")",
+      "value", 1, "-value <name>"));
+
+    result.addElement(new Option("\tThe aggregate ("
+      + AGGREGATE_SUM + "|" + AGGREGATE_MEAN + "|" + AGGREGATE_MIN + "|" + AGGREGATE_MAX + "|"
+      + AGGREGATE_COUNT + "|" + AGGREGATE_FIRST + "|" + AGGREGATE_LAST + ")\n"
+      + "\t(default: " + DEFAULT_AGGREGATE + ")",
+      "aggregate", 1, "-aggregate <aggregate>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    setIndex(Utils.getOption("index", options));
+    setKey(Utils.getOption("key", options));
+    setValue(Utils.getOption("value", options));
+
+    tmp = Utils.getOption("aggregate", options);
+    if (!tmp.isEmpty())
+      setAggregate(tmp);
+    else
+      setAggregate(DEFAULT_AGGREGATE);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getIndex().isEmpty()) {
+      result.add("-index");
+      result.add(getIndex());
+    }
+
+    if (!getKey().isEmpty()) {
+      result.add("-key");
+      result.add(getKey());
+    }
+
+    if (!getValue().isEmpty()) {
+      result.add("-value");
+      result.add(getValue());
+    }
+
+    result.add("-aggregate");
+    result.add(getAggregate());
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Aggregates the values of the rows of an output column.
+   *
+   * @param values	the values, null for counting rows
+   * @param rows	the rows (sorted by partition)
+   * @param from	the first row of the partition (incl)
+   * @param to		the last row of the partition (excl)
+   * @param output	the output row per row
+   * @param cells	the array for the aggregated values, one per output row
+   */
+  protected void aggregate(double[] values, int[] rows, int from, int to, int[] output, double[] cells) {
+    int[]	counts;
+    double	value;
+    int		cell;
+    int		i;
+
+    counts = new int[cells.length];
+    for (i = from; i < to; i++) {
+      value = (values == null) ? 1 : values[rows[i]];
+      if (Double.isNaN(value))
+	continue;
+      cell = output[rows[i]];
+      switch (m_Aggregate) {
+	case AGGREGATE_SUM:
+	case AGGREGATE_MEAN:
+	  cells[cell] += value;
+	  break;
+	case AGGREGATE_MIN:
+	  if ((counts[cell] == 0) || (value < cells[cell]))
+	    cells[cell] = value;
+	  break;
+	case AGGREGATE_MAX:
+	  if ((counts[cell] == 0) || (value > cells[cell]))
+	    cells[cell] = value;
+	  break;
+	case AGGREGATE_FIRST:
+	  if (counts[cell] == 0)
+	    cells[cell] = value;
+	  break;
+	case AGGREGATE_LAST:
+	  cells[cell] = value;
+	  break;
+      }
+      counts[cell]++;
+    }
+
+    for (cell = 0; cell < cells.length; cell++) {
+      if (m_Aggregate.equals(AGGREGATE_COUNT))
+	cells[cell] = counts[cell];
+      else if (counts[cell] == 0)
+	cells[cell] = Double.NaN;
+      else if (m_Aggregate.equals(AGGREGATE_MEAN))
+	cells[cell] /= counts[cell];
+    }
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    final double[]	values;
+    final int[]		output;
+    final int[]		rows;
+    final int[]		starts;
+    final double[][]	cells;
+    final int		numOutput;
+    List<Column<?>>	index;
+    List<Integer>	first;
+    List<String>	indexNames;
+    ColumnCoder		keys;
+    int[]		codes;
+    int[]		next;
+    int[]		firstRows;
+    List<Column<?>>	columns;
+    Table		result;
+    String		name;
+    int			i;
+
+    if (m_Index.isEmpty())
+      throw new IllegalStateException("No index columns specified!");
+    if (m_Key.isEmpty())
+      throw new IllegalStateException("No key column specified!");
+    if (!m_Aggregate.equals(AGGREGATE_SUM) && !m_Aggregate.equals(AGGREGATE_MEAN) && !m_Aggregate.equals(AGGREGATE_MIN)
+      && !m_Aggregate.equals(AGGREGATE_MAX) && !m_Aggregate.equals(AGGREGATE_COUNT) && !m_Aggregate.equals(AGGREGATE_FIRST)
+      && !m_Aggregate.equals(AGGREGATE_LAST))
+      throw new IllegalArgumentException("Unknown aggregate: " + m_Aggregate);
+
+    values = m_Value.isEmpty() ? null : ColumnExpression.toDoubles(table.column(m_Value));
+    if (!m_Value.isEmpty() && (values == null))
+      throw new IllegalArgumentException("Value column is neither numeric nor date-like: " + m_Value);
+
+    index      = new ArrayList<Column<?>>();
+    indexNames = new ArrayList<String>();
+    for (String col: m_Index.split(",")) {
+      index.add(table.column(col.trim()));
+      indexNames.add(col.trim());
+    }
+    first     = new ArrayList<Integer>();
+    output    = GroupCounter.assign(index, table.rowCount(), first);
+    numOutput = first.size();
+
+    // partition rows by key code (counting sort, stable)
+    keys   = new ColumnCoder(table.column(m_Key));
+    codes  = new int[table.rowCount()];
+    starts = new int[keys.size() + 1];
+    for (i = 0; i < codes.length; i++) {
+      codes[i] = keys.code(i);
+      starts[codes[i] + 1]++;
+    }
+    for (i = 1; i < starts.length; i++)
+      starts[i] += starts[i - 1];
+    rows = new int[codes.length];
+    next = Arrays.copyOf(starts, keys.size());
+    for (i = 0; i < codes.length; i++)
+      rows[next[codes[i]]++] = i;
+
+    // code 0 (missing keys) gets skipped
+    cells = new double[keys.size()][];
+    IntStream.range(1, keys.size()).parallel().forEach((int code) -> {
+      cells[code] = new double[numOutput];
+      aggregate(values, rows, starts[code], starts[code + 1], output, cells[code]);
+    });
+
+    firstRows = new int[numOutput];
+    for (i = 0; i < numOutput; i++)
+      firstRows[i] = first.get(i);
+    columns = new ArrayList<Column<?>>();
+    for (Column<?> column: index)
+      columns.add(column.subset(firstRows));
+    for (i = 1; i < keys.size(); i++) {
+      name = keys.hasLabels() ? keys.getLabel(i) : table.column(m_Key).getString(rows[starts[i]]);
+      if (indexNames.contains(name))
+	throw new IllegalArgumentException("Key value clashes with index column: " + name);
+      columns.add(DoubleColumn.create(name, cells[i]));
+    }
+    result = Table.create(table.name(), columns);
+
+    return result;
+  }
+}
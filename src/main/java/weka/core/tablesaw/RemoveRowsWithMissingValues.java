@@ -20,18 +20,37 @@
 
 package weka.core.tablesaw;
 
+import org.roaringbitmap.RoaringBitmap;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.selection.BitmapBackedSelection;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.MissingValueIndex;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
 
 /**
- * Removes rows with missing values.
+ * Removes rows with missing values, or, with a threshold, the ones with
+ * more than the specified fraction of missing values across the columns.
+ * <br>
+ * Uses the shared missing value index (see {@link MissingValueIndex}).
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class RemoveRowsWithMissingValues
-  extends AbstractTableOperation {
+  extends AbstractRowLocalTableOperation {
 
   private static final long serialVersionUID = 2062384379312131809L;
 
+  /** the default maximum fraction of missing values. */
+  public final static double DEFAULT_MAX_MISSING = 0.0;
+
+  /** the maximum fraction of missing values (0-1) to keep a row. */
+  protected double m_MaxMissing = DEFAULT_MAX_MISSING;
+
   /**
    * Returns a string describing this object.
    *
@@ -40,7 +59,88 @@ public class RemoveRowsWithMissingValues
    */
   @Override
   public String globalInfo() {
-    return "Removes rows with missing values.";
+    return "Removes rows with missing values.\n"
+      + "With a threshold, only rows with a fraction of missing values (across the columns) above it get removed.";
+  }
+
+  /**
+   * Sets the maximum fraction of missing values to keep a row.
+   *
+   * @param value	the fraction (0-1)
+   */
+  public void setMaxMissing(double value) {
+    m_MaxMissing = value;
+  }
+
+  /**
+   * Returns the maximum fraction of missing values to keep a row.
+   *
+   * @return		the fraction (0-1)
+   */
+  public double getMaxMissing() {
+    return m_MaxMissing;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxMissingTipText() {
+    return "The maximum fraction of missing values (0-1) across the columns a row may have to be kept; 0 removes rows with any missing values.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe maximum fraction of missing values (0-1) to keep a row\n\t(0 = remove rows with any missing values)\n"
+      + "\t(default: " + DEFAULT_MAX_MISSING + ")",
+      "max-missing", 1, "-max-missing <0-1>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    String	tmp;
+
+    tmp = Utils.getOption("max-missing", options);
+    if (!tmp.isEmpty())
+      setMaxMissing(Double.parseDouble(tmp));
+    else
+      setMaxMissing(DEFAULT_MAX_MISSING);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the operation.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  @Override
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    result.add("-max-missing");
+    result.add("" + getMaxMissing());
+
+    return result.toArray(new String[0]);
   }
 
   /**
@@ -51,6 +151,24 @@ public class RemoveRowsWithMissingValues
    */
   @Override
   public Table processTable(Table table) {
-    return table.dropRowsWithMissingValues();
+    MissingValueIndex	index;
+    RoaringBitmap	remove;
+    int[]		counts;
+    int			i;
+
+    index = MissingValueIndex.of(table);
+    if (m_MaxMissing <= 0) {
+      remove = index.getRowsWithMissing();
+    }
+    else {
+      remove = new RoaringBitmap();
+      counts = index.getRowCounts();
+      for (i = 0; i < counts.length; i++) {
+	if ((double) counts[i] / index.getNumColumns() > m_MaxMissing)
+	  remove.add(i);
+      }
+    }
+
+    return table.dropWhere(new BitmapBackedSelection(remove));
   }
 }
@@ -35,7 +35,7 @@ import java.util.Vector;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class RetainColumns
-  extends AbstractTableOperation {
+  extends AbstractRowLocalTableOperation {
 
   private static final long serialVersionUID = 2062384379312131809L;
 
@@ -22,7 +22,9 @@ package weka.core.tablesaw;
 
 import tech.tablesaw.api.Table;
 import weka.core.Option;
+import weka.core.TablesawUtils;
 import weka.core.Utils;
+import weka.core.tablesaw.util.ReservoirSampler;
 
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -31,6 +33,7 @@ import java.util.Vector;
 
 /**
  * Returns a sub-sample of specified size.
+ * Uses reservoir sampling (Algorithm L) with a seeded random number generator.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
@@ -42,9 +45,15 @@ public class SampleN
   /** the default size. */
   public final static int DEFAULT_SIZE = 100;
 
+  /** the default seed. */
+  public final static long DEFAULT_SEED = 1;
+
   /** the size. */
   protected int m_Size = DEFAULT_SIZE;
 
+  /** the seed. */
+  protected long m_Seed = DEFAULT_SEED;
+
   /**
    * Returns a string describing this object.
    *
@@ -53,7 +62,7 @@ public class SampleN
    */
   @Override
   public String globalInfo() {
-    return "Returns a sub-sample of specified size.";
+    return "Returns a sub-sample of specified size, using seeded reservoir sampling.";
   }
 
   /**
@@ -86,6 +95,34 @@ public class SampleN
     return "The size of the sample to return.";
   }
 
+  /**
+   * Sets the seed for the random number generator.
+   *
+   * @param value	the seed
+   */
+  public void setSeed(long value) {
+    m_Seed = value;
+  }
+
+  /**
+   * Returns the seed for the random number generator.
+   *
+   * @return		the seed
+   */
+  public long getSeed() {
+    return m_Seed;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String seedTipText() {
+    return "The seed for the random number generator.";
+  }
+
   /**
    * Returns an enumeration describing the available options.
    *
@@ -98,6 +135,10 @@ public class SampleN
       + "\t(default: " + DEFAULT_SIZE + ")",
       "size", 1, "-size <int>"));
 
+    result.addElement(new Option("\tThe seed for the random number generator\n"
+      + "\t(default: " + DEFAULT_SEED + ")",
+      "seed", 1, "-seed <long>"));
+
     return result.elements();
   }
 
@@ -117,6 +158,12 @@ public class SampleN
     else
       setSize(DEFAULT_SIZE);
 
+    tmp = Utils.getOption("seed", options);
+    if (!tmp.isEmpty())
+      setSeed(Long.parseLong(tmp));
+    else
+      setSeed(DEFAULT_SEED);
+
     Utils.checkForRemainingOptions(options);
   }
 
@@ -133,6 +180,9 @@ public class SampleN
     result.add("-size");
     result.add("" + getSize());
 
+    result.add("-seed");
+    result.add("" + getSeed());
+
     return result.toArray(new String[0]);
   }
 
@@ -152,6 +202,6 @@ public class SampleN
       return table;
     }
 
-    return table.sampleN(m_Size);
+    return TablesawUtils.subset(table, ReservoirSampler.sample(table.rowCount(), m_Size, m_Seed));
   }
 }
@@ -21,8 +21,11 @@
 package weka.core.tablesaw;
 
 import tech.tablesaw.api.Table;
+import tech.tablesaw.selection.BitmapBackedSelection;
+import tech.tablesaw.selection.Selection;
 import weka.core.Option;
 import weka.core.Utils;
+import weka.core.tablesaw.util.ReservoirSampler;
 
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -31,6 +34,8 @@ import java.util.Vector;
 
 /**
  * Splits the data randomly in two and returns either the first or second.
+ * Uses a seeded random number generator, i.e., the first and second part
+ * are complementary for the same seed.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
@@ -45,9 +50,15 @@ public class SampleSplit
   /** the split proportion. */
   protected double m_Proportion = DEFAULT_PROPORTION;
 
+  /** the default seed. */
+  public final static long DEFAULT_SEED = 1;
+
   /** whether to return the second part. */
   protected boolean m_Second = false;
 
+  /** the seed. */
+  protected long m_Seed = DEFAULT_SEED;
+
   /**
    * Returns a string describing this object.
    *
@@ -118,6 +129,34 @@ public class SampleSplit
     return "If enabled, the second part gets returned.";
   }
 
+  /**
+   * Sets the seed for the random number generator.
+   *
+   * @param value	the seed
+   */
+  public void setSeed(long value) {
+    m_Seed = value;
+  }
+
+  /**
+   * Returns the seed for the random number generator.
+   *
+   * @return		the seed
+   */
+  public long getSeed() {
+    return m_Seed;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String seedTipText() {
+    return "The seed for the random number generator.";
+  }
+
   /**
    * Returns an enumeration describing the available options.
    *
@@ -134,6 +173,10 @@ public class SampleSplit
       + "\t(default: first)",
       "second", 0, "-second"));
 
+    result.addElement(new Option("\tThe seed for the random number generator\n"
+      + "\t(default: " + DEFAULT_SEED + ")",
+      "seed", 1, "-seed <long>"));
+
     return result.elements();
   }
 
@@ -155,6 +198,12 @@ public class SampleSplit
 
     setSecond(Utils.getFlag("second", options));
 
+    tmp = Utils.getOption("seed", options);
+    if (!tmp.isEmpty())
+      setSeed(Long.parseLong(tmp));
+    else
+      setSeed(DEFAULT_SEED);
+
     Utils.checkForRemainingOptions(options);
   }
 
@@ -174,6 +223,9 @@ public class SampleSplit
     if (getSecond())
       result.add("-second");
 
+    result.add("-seed");
+    result.add("" + getSeed());
+
     return result.toArray(new String[0]);
   }
 
@@ -185,9 +237,14 @@ public class SampleSplit
    */
   @Override
   public Table processTable(Table table) {
+    Selection	first;
+
+    first = new BitmapBackedSelection(
+      ReservoirSampler.sample(table.rowCount(), (int) Math.round(table.rowCount() * m_Proportion), m_Seed));
+
     if (m_Second)
-      return table.sampleSplit(m_Proportion)[1];
+      return table.dropWhere(first);
     else
-      return table.sampleSplit(m_Proportion)[0];
+      return table.where(first);
   }
 }
@@ -22,7 +22,9 @@ package weka.core.tablesaw;
 
 import tech.tablesaw.api.Table;
 import weka.core.Option;
+import weka.core.TablesawUtils;
 import weka.core.Utils;
+import weka.core.tablesaw.util.ReservoirSampler;
 
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -31,6 +33,7 @@ import java.util.Vector;
 
 /**
  * Returns a sub-sample of specified proportion.
+ * Uses reservoir sampling (Algorithm L) with a seeded random number generator.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
@@ -42,9 +45,15 @@ public class SampleX
   /** the default size. */
   public final static double DEFAULT_SIZE = 1.0;
 
+  /** the default seed. */
+  public final static long DEFAULT_SEED = 1;
+
   /** the size. */
   protected double m_Size = DEFAULT_SIZE;
 
+  /** the seed. */
+  protected long m_Seed = DEFAULT_SEED;
+
   /**
    * Returns a string describing this object.
    *
@@ -53,7 +62,7 @@ public class SampleX
    */
   @Override
   public String globalInfo() {
-    return "Returns a sub-sample of specified proportion.";
+    return "Returns a sub-sample of specified proportion, using seeded reservoir sampling.";
   }
 
   /**
@@ -88,6 +97,34 @@ public class SampleX
     return "The proportion of the sample to return.";
   }
 
+  /**
+   * Sets the seed for the random number generator.
+   *
+   * @param value	the seed
+   */
+  public void setSeed(long value) {
+    m_Seed = value;
+  }
+
+  /**
+   * Returns the seed for the random number generator.
+   *
+   * @return		the seed
+   */
+  public long getSeed() {
+    return m_Seed;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String seedTipText() {
+    return "The seed for the random number generator.";
+  }
+
   /**
    * Returns an enumeration describing the available options.
    *
@@ -100,6 +137,10 @@ public class SampleX
       + "\t(default: " + DEFAULT_SIZE + ")",
       "size", 1, "-size <double>"));
 
+    result.addElement(new Option("\tThe seed for the random number generator\n"
+      + "\t(default: " + DEFAULT_SEED + ")",
+      "seed", 1, "-seed <long>"));
+
     return result.elements();
   }
 
@@ -119,6 +160,12 @@ public class SampleX
     else
       setSize(DEFAULT_SIZE);
 
+    tmp = Utils.getOption("seed", options);
+    if (!tmp.isEmpty())
+      setSeed(Long.parseLong(tmp));
+    else
+      setSeed(DEFAULT_SEED);
+
     Utils.checkForRemainingOptions(options);
   }
 
@@ -135,6 +182,9 @@ public class SampleX
     result.add("-size");
     result.add("" + getSize());
 
+    result.add("-seed");
+    result.add("" + getSeed());
+
     return result.toArray(new String[0]);
   }
 
@@ -149,6 +199,6 @@ public class SampleX
     if (m_Size <= 0)
       return table;
 
-    return table.sampleX(m_Size);
+    return TablesawUtils.subset(table, ReservoirSampler.sample(table.rowCount(), (int) Math.round(table.rowCount() * m_Size), m_Seed));
   }
 }
@@ -0,0 +1,430 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Sketches.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.HyperLogLog;
+import weka.core.tablesaw.util.KllSketch;
+import weka.core.tablesaw.util.TableSketches;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Builds approximate quantile (KLL) and distinct count (HyperLogLog)
+ * sketches per column in a single parallel pass and outputs count, missing,
+ * distinct, min, max and the quantiles per column.
+ * <br>
+ * The sketches can be saved to a file and merged with the ones of a previous
+ * run, so results from multiple batches or files can be combined without
+ * scanning them again.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Sketches
+  extends AbstractTableOperation {
+
+  private static final long serialVersionUID = -3766155939734530224L;
+
+  /** the default columns. */
+  public final static String DEFAULT_COLUMNS = "";
+
+  /** the columns to sketch (comma-separated, empty for all). */
+  protected String m_Columns = DEFAULT_COLUMNS;
+
+  /** the default quantiles. */
+  public final static String DEFAULT_QUANTILES = "0.5,0.9,0.99";
+
+  /** the quantiles to output (comma-separated fractions). */
+  protected String m_Quantiles = DEFAULT_QUANTILES;
+
+  /** the default accuracy parameter of the quantile sketches. */
+  public final static int DEFAULT_SKETCH_SIZE = KllSketch.DEFAULT_K;
+
+  /** the accuracy parameter of the quantile sketches. */
+  protected int m_SketchSize = DEFAULT_SKETCH_SIZE;
+
+  /** the default precision of the distinct count sketches. */
+  public final static int DEFAULT_PRECISION = HyperLogLog.DEFAULT_PRECISION;
+
+  /** the precision of the distinct count sketches. */
+  protected int m_Precision = DEFAULT_PRECISION;
+
+  /** the default file with sketches to merge. */
+  public final static String DEFAULT_MERGE_FILE = "";
+
+  /** the file with previously saved sketches to merge (empty for none). */
+  protected String m_MergeFile = DEFAULT_MERGE_FILE;
+
+  /** the default file to save the sketches to. */
+  public final static String DEFAULT_SAVE_FILE = "";
+
+  /** the file to save the (merged) sketches to (empty for none). */
+  protected String m_SaveFile = DEFAULT_SAVE_FILE;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Builds approximate quantile (KLL) and distinct count (HyperLogLog) sketches per column "
+      + "in a single parallel pass and outputs count, missing, distinct, min, max and quantiles.\n"
+      + "The sketches can be saved and merged with previously saved ones, combining the results "
+      + "of multiple batches or files without re-scanning them.";
+  }
+
+  /**
+   * Sets the columns to sketch.
+   *
+   * @param value	the columns (comma-separated names), empty for all
+   */
+  public void setColumns(String value) {
+    m_Columns = value;
+  }
+
+  /**
+   * Returns the columns to sketch.
+   *
+   * @return		the columns (comma-separated names), empty for all
+   */
+  public String getColumns() {
+    return m_Columns;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String columnsTipText() {
+    return "The columns to sketch (comma-separated names, empty for all).";
+  }
+
+  /**
+   * Sets the quantiles to output.
+   *
+   * @param value	the fractions (comma-separated, 0-1)
+   */
+  public void setQuantiles(String value) {
+    m_Quantiles = value;
+  }
+
+  /**
+   * Returns the quantiles to output.
+   *
+   * @return		the fractions (comma-separated, 0-1)
+   */
+  public String getQuantiles() {
+    return m_Quantiles;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String quantilesTipText() {
+    return "The approximate quantiles to output (comma-separated fractions, 0-1).";
+  }
+
+  /**
+   * Sets the accuracy parameter of the quantile sketches.
+   *
+   * @param value	the parameter (larger is more accurate)
+   */
+  public void setSketchSize(int value) {
+    m_SketchSize = value;
+  }
+
+  /**
+   * Returns the accuracy parameter of the quantile sketches.
+   *
+   * @return		the parameter (larger is more accurate)
+   */
+  public int getSketchSize() {
+    return m_SketchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sketchSizeTipText() {
+    return "The accuracy parameter k of the KLL quantile sketches (rank error roughly 1.65/k).";
+  }
+
+  /**
+   * Sets the precision of the distinct count sketches.
+   *
+   * @param value	the number of index bits (4-18)
+   */
+  public void setPrecision(int value) {
+    m_Precision = value;
+  }
+
+  /**
+   * Returns the precision of the distinct count sketches.
+   *
+   * @return		the number of index bits (4-18)
+   */
+  public int getPrecision() {
+    return m_Precision;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String precisionTipText() {
+    return "The precision of the HyperLogLog sketches (4-18); the relative error is about 1.04/sqrt(2^precision).";
+  }
+
+  /**
+   * Sets the file with previously saved sketches to merge.
+   *
+   * @param value	the file, empty for none
+   */
+  public void setMergeFile(String value) {
+    m_MergeFile = value;
+  }
+
+  /**
+   * Returns the file with previously saved sketches to merge.
+   *
+   * @return		the file, empty for none
+   */
+  public String getMergeFile() {
+    return m_MergeFile;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String mergeFileTipText() {
+    return "The file with previously saved sketches to merge with the ones of the current data (empty for none).";
+  }
+
+  /**
+   * Sets the file to save the sketches to.
+   *
+   * @param value	the file, empty for none
+   */
+  public void setSaveFile(String value) {
+    m_SaveFile = value;
+  }
+
+  /**
+   * Returns the file to save the sketches to.
+   *
+   * @return		the file, empty for none
+   */
+  public String getSaveFile() {
+    return m_SaveFile;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String saveFileTipText() {
+    return "The file to save the (merged) sketches to (empty for none); can be the same as the merge file.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns to sketch (comma-separated names, empty for all)\n"
+      + "\t(default: " + DEFAULT_COLUMNS + ")",
+      "columns", 1, "-columns <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe approximate quantiles to output (comma-separated fractions)\n"
+      + "\t(default: " + DEFAULT_QUANTILES + ")",
+      "quantiles", 1, "-quantiles <q1,q2,...>"));
+
+    result.addElement(new Option("\tThe accuracy parameter k of the quantile sketches\n"
+      + "\t(default: " + DEFAULT_SKETCH_SIZE + ")",
+      "sketch-size", 1, "-sketch-size <int>"));
+
+    result.addElement(new Option("\tThe precision of the distinct count sketches (4-18)\n"
+      + "\t(default: " + DEFAULT_PRECISION + ")",
+      "precision", 1, "-precision <int>"));
+
+    result.addElement(new Option("\tThe file with previously saved sketches to merge\n"
+      + "\t(default: none)",
+      "merge-file", 1, "-merge-file <file>"));
+
+    result.addElement(new Option("\tThe file to save the (merged) sketches to\n"
+      + "\t(default: none)",
+      "save-file", 1, "-save-file <file>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    setColumns(Utils.getOption("columns", options));
+
+    tmp = Utils.getOption("quantiles", options);
+    if (!tmp.isEmpty())
+      setQuantiles(tmp);
+    else
+      setQuantiles(DEFAULT_QUANTILES);
+
+    tmp = Utils.getOption("sketch-size", options);
+    if (!tmp.isEmpty())
+      setSketchSize(Integer.parseInt(tmp));
+    else
+      setSketchSize(DEFAULT_SKETCH_SIZE);
+
+    tmp = Utils.getOption("precision", options);
+    if (!tmp.isEmpty())
+      setPrecision(Integer.parseInt(tmp));
+    else
+      setPrecision(DEFAULT_PRECISION);
+
+    setMergeFile(Utils.getOption("merge-file", options));
+
+    setSaveFile(Utils.getOption("save-file", options));
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getColumns().isEmpty()) {
+      result.add("-columns");
+      result.add(getColumns());
+    }
+
+    result.add("-quantiles");
+    result.add(getQuantiles());
+
+    result.add("-sketch-size");
+    result.add("" + getSketchSize());
+
+    result.add("-precision");
+    result.add("" + getPrecision());
+
+    if (!getMergeFile().isEmpty()) {
+      result.add("-merge-file");
+      result.add(getMergeFile());
+    }
+
+    if (!getSaveFile().isEmpty()) {
+      result.add("-save-file");
+      result.add(getSaveFile());
+    }
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    List<Column<?>>	columns;
+    TableSketches	sketches;
+    TableSketches	previous;
+    double[]		fractions;
+    String[]		parts;
+    int			i;
+
+    if (m_Columns.isEmpty())
+      columns = table.columns();
+    else
+      columns = table.columns(m_Columns.split(","));
+
+    if (m_Quantiles.trim().isEmpty()) {
+      fractions = new double[0];
+    }
+    else {
+      parts     = m_Quantiles.split(",");
+      fractions = new double[parts.length];
+      for (i = 0; i < parts.length; i++)
+	fractions[i] = Double.parseDouble(parts[i].trim());
+    }
+
+    try {
+      if (!m_MergeFile.isEmpty() && new File(m_MergeFile).exists()) {
+	previous = TableSketches.read(new File(m_MergeFile));
+	sketches = TableSketches.compute(columns, m_SketchSize, m_Precision);
+	previous.merge(sketches);
+	sketches = previous;
+      }
+      else {
+	sketches = TableSketches.compute(columns, m_SketchSize, m_Precision);
+      }
+
+      if (!m_SaveFile.isEmpty())
+	sketches.write(new File(m_SaveFile));
+    }
+    catch (Exception e) {
+      throw new IllegalStateException("Failed to load/save sketches!", e);
+    }
+
+    return sketches.toTable(table.name() + " sketches", fractions);
+  }
+}
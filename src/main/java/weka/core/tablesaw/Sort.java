@@ -23,7 +23,13 @@ package weka.core.tablesaw;
 import tech.tablesaw.api.Table;
 import weka.core.Option;
 import weka.core.Utils;
+import weka.core.tablesaw.util.ExternalSorter;
+import weka.core.tablesaw.util.SortKey;
+import weka.core.tablesaw.util.TableSink;
+import weka.core.tablesaw.util.TableSorter;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -31,11 +37,23 @@ import java.util.Vector;
 
 /**
  * Sorts the data.
+ * <br>
+ * Each column can have its own direction and placement of missing values,
+ * using the format: name[:asc|:desc][:first|:last]. Columns without these
+ * suffixes use the global settings. By default, missing values get placed
+ * like Tablesaw does: as the largest value for numeric columns, as the
+ * smallest value for all other columns (see {@link SortKey}).
+ * <br>
+ * With a memory budget, the rows are sorted in runs that get spilled to the
+ * temp directory and merged afterwards (see {@link ExternalSorter}).
+ * When streaming, the chunks get fed into the sorter and the merged rows
+ * get output in batches once the stream is finished.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class Sort
-  extends AbstractTableOperation {
+  extends AbstractTableOperation
+  implements StreamableTableOperation {
 
   private static final long serialVersionUID = 2062384379312131809L;
 
@@ -48,6 +66,27 @@ public class Sort
   /** whether to sort in descending order. */
   protected boolean m_Descending = false;
 
+  /** the type-dependent placement of missing values. */
+  public final static String MISSING_DEFAULT = "default";
+
+  /** the placement of missing values. */
+  protected String m_Missing = MISSING_DEFAULT;
+
+  /** the default memory budget in MB. */
+  public final static int DEFAULT_MEMORY_BUDGET = -1;
+
+  /** the memory budget in MB (-1 for sorting in memory). */
+  protected int m_MemoryBudget = DEFAULT_MEMORY_BUDGET;
+
+  /** the sorter when streaming. */
+  protected transient ExternalSorter m_Sorter;
+
+  /** the default temp directory. */
+  public final static String DEFAULT_TEMP_DIR = "";
+
+  /** the temp directory for the runs (empty for the system's one). */
+  protected String m_TempDir = DEFAULT_TEMP_DIR;
+
   /**
    * Returns a string describing this object.
    *
@@ -84,7 +123,8 @@ public class Sort
    *         explorer/experimenter gui
    */
   public String columnsTipText() {
-    return "The columns to sort on (comma-separated names).";
+    return "The columns to sort on (comma-separated names); each name can be suffixed with "
+      + "':asc' or ':desc' for the direction and ':first' or ':last' for the placement of missing values.";
   }
 
   /**
@@ -112,7 +152,108 @@ public class Sort
    *         explorer/experimenter gui
    */
   public String descendingTipText() {
-    return "If enabled, sorting is done in descending fashion.";
+    return "If enabled, sorting is done in descending fashion (unless overridden for a column).";
+  }
+
+  /**
+   * Sets the placement of missing values.
+   *
+   * @param value	the placement (default|first|last)
+   */
+  public void setMissing(String value) {
+    if (!value.equals(MISSING_DEFAULT) && !value.equals(SortKey.MISSING_FIRST) && !value.equals(SortKey.MISSING_LAST))
+      throw new IllegalArgumentException("Unknown placement of missing values: " + value);
+    m_Missing = value;
+  }
+
+  /**
+   * Returns the placement of missing values.
+   *
+   * @return		the placement (default|first|last)
+   */
+  public String getMissing() {
+    return m_Missing;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String missingTipText() {
+    return "The placement of missing values (unless overridden for a column): 'first', 'last' or 'default' "
+      + "(largest value for numeric columns, smallest value for all others, like Tablesaw).";
+  }
+
+  /**
+   * Returns the placement of missing values for the sort keys.
+   *
+   * @return		true if first, false if last, null for the type's default
+   */
+  protected Boolean missingFirst() {
+    if (m_Missing.equals(SortKey.MISSING_FIRST))
+      return true;
+    else if (m_Missing.equals(SortKey.MISSING_LAST))
+      return false;
+    else
+      return null;
+  }
+
+  /**
+   * Sets the memory budget for the external sort.
+   *
+   * @param value	the budget in MB, -1 for sorting in memory
+   */
+  public void setMemoryBudget(int value) {
+    m_MemoryBudget = value;
+  }
+
+  /**
+   * Returns the memory budget for the external sort.
+   *
+   * @return		the budget in MB, -1 for sorting in memory
+   */
+  public int getMemoryBudget() {
+    return m_MemoryBudget;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String memoryBudgetTipText() {
+    return "The memory budget in MB for buffering rows before spilling a sorted run to disk; -1 to sort in memory.";
+  }
+
+  /**
+   * Sets the directory for storing the runs of the external sort.
+   *
+   * @param value	the directory, empty for the system's temp directory
+   */
+  public void setTempDir(String value) {
+    m_TempDir = value;
+  }
+
+  /**
+   * Returns the directory for storing the runs of the external sort.
+   *
+   * @return		the directory, empty for the system's temp directory
+   */
+  public String getTempDir() {
+    return m_TempDir;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String tempDirTipText() {
+    return "The directory for storing the sorted runs; empty for the system's temp directory.";
   }
 
   /**
@@ -124,13 +265,29 @@ public class Sort
     Vector result = new Vector();
 
     result.addElement(new Option("\tThe list of columns to sort on (comma-separated names)\n"
+      + "\tEach name can be suffixed with ':asc'/':desc' for the direction\n"
+      + "\tand ':first'/':last' for the placement of missing values.\n"
       + "\t(default: " + DEFAULT_COLUMNS + ")",
-      "columns", 1, "-columns <name1,[name2[,...]]>"));
+      "columns", 1, "-columns <name1[:asc|:desc][:first|:last],[name2[,...]]>"));
 
     result.addElement(new Option("\tChanges sorting from ascending to descending\n"
       + "\t(default: ascending)",
       "descending", 0, "-descending"));
 
+    result.addElement(new Option("\tThe placement of missing values: first, last or default\n"
+      + "\t(largest value for numeric columns, smallest for all others)\n"
+      + "\t(default: " + MISSING_DEFAULT + ")",
+      "missing", 1, "-missing <default|first|last>"));
+
+    result.addElement(new Option("\tThe memory budget in MB before spilling sorted runs to disk\n"
+      + "\t(-1 = sort in memory)\n"
+      + "\t(default: " + DEFAULT_MEMORY_BUDGET + ")",
+      "memory-budget", 1, "-memory-budget <MB>"));
+
+    result.addElement(new Option("\tThe directory for the sorted runs\n"
+      + "\t(default: system's temp directory)",
+      "temp-dir", 1, "-temp-dir <dir>"));
+
     return result.elements();
   }
 
@@ -152,6 +309,20 @@ public class Sort
 
     setDescending(Utils.getFlag("descending", options));
 
+    tmp = Utils.getOption("missing", options);
+    if (!tmp.isEmpty())
+      setMissing(tmp);
+    else
+      setMissing(MISSING_DEFAULT);
+
+    tmp = Utils.getOption("memory-budget", options);
+    if (!tmp.isEmpty())
+      setMemoryBudget(Integer.parseInt(tmp));
+    else
+      setMemoryBudget(DEFAULT_MEMORY_BUDGET);
+
+    setTempDir(Utils.getOption("temp-dir", options));
+
     Utils.checkForRemainingOptions(options);
   }
 
@@ -171,6 +342,17 @@ public class Sort
     if (getDescending())
       result.add("-descending");
 
+    result.add("-missing");
+    result.add(getMissing());
+
+    result.add("-memory-budget");
+    result.add("" + getMemoryBudget());
+
+    if (!getTempDir().isEmpty()) {
+      result.add("-temp-dir");
+      result.add(getTempDir());
+    }
+
     return result.toArray(new String[0]);
   }
 
@@ -182,13 +364,84 @@ public class Sort
    */
   @Override
   public Table processTable(Table table) {
-    String[]	columns;
+    SortKey[]		keys;
+    ExternalSorter	sorter;
+    int			chunk;
+    int			i;
+
+    keys = SortKey.parseList(m_Columns, m_Descending, missingFirst());
+    if ((m_MemoryBudget <= 0) || (table.rowCount() == 0))
+      return TableSorter.sort(table, keys);
+
+    sorter = new ExternalSorter(keys, m_TempDir.isEmpty() ? null : new File(m_TempDir), m_MemoryBudget * 1024L * 1024L);
+    chunk  = sorter.getBatchSize();
+    try {
+      for (i = 0; i < table.rowCount(); i += chunk)
+	sorter.add(table.inRange(i, Math.min(table.rowCount(), i + chunk)));
+      return sorter.finish();
+    }
+    catch (Exception e) {
+      throw new IllegalStateException("Failed to sort data externally!", e);
+    }
+    finally {
+      sorter.close();
+    }
+  }
 
-    columns = m_Columns.split(",");
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		always true
+   */
+  @Override
+  public boolean isBlocking() {
+    return true;
+  }
 
-    if (m_Descending)
-      return table.sortDescendingOn(columns);
-    else
-      return table.sortAscendingOn(columns);
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  @Override
+  public void startStream() {
+    if (m_Sorter != null)
+      m_Sorter.close();
+    m_Sorter = new ExternalSorter(
+      SortKey.parseList(m_Columns, m_Descending, missingFirst()),
+      m_TempDir.isEmpty() ? null : new File(m_TempDir),
+      (m_MemoryBudget <= 0) ? Long.MAX_VALUE : m_MemoryBudget * 1024L * 1024L);
+  }
+
+  /**
+   * Processes the next chunk, adds it to the sorter.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   * @throws IOException	if spilling fails
+   */
+  @Override
+  public void processChunk(Table chunk, TableSink sink) throws IOException {
+    if (m_Sorter == null)
+      startStream();
+    m_Sorter.add(chunk);
+  }
+
+  /**
+   * Finishes the stream, outputs the sorted rows in batches.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if merging or the sink fails
+   */
+  @Override
+  public void finish(TableSink sink) throws IOException {
+    if (m_Sorter == null)
+      return;
+    try {
+      m_Sorter.finish(sink);
+    }
+    finally {
+      m_Sorter.close();
+      m_Sorter = null;
+    }
   }
 }
@@ -0,0 +1,77 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Operation.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.Table;
+import weka.core.tablesaw.util.ChunkedPipeline;
+import weka.core.tablesaw.util.TableSink;
+
+import java.io.IOException;
+
+/**
+ * Interface for table operations that can process the data chunk by chunk,
+ * e.g., when streaming through a file, instead of requiring the complete
+ * table at once.
+ * <br>
+ * Row-local operations pass on the processed rows of each chunk straight
+ * away, blocking ones (e.g., sorting) collect what they need from the
+ * chunks and only output data when the stream is finished.
+ * <br>
+ * Usage: {@link #startStream()}, then {@link #processChunk(Table, TableSink)}
+ * for each chunk and finally {@link #finish(TableSink)}. All chunks have the
+ * same structure.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see ChunkedPipeline
+ */
+public interface StreamableTableOperation
+  extends TableOperation {
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed.
+   *
+   * @return		true if blocking
+   */
+  public boolean isBlocking();
+
+  /**
+   * Prepares the operation for a new stream of chunks.
+   */
+  public void startStream();
+
+  /**
+   * Processes the next chunk.
+   *
+   * @param chunk	the chunk to process
+   * @param sink	the sink for the output
+   * @throws IOException	if processing or the sink fails
+   */
+  public void processChunk(Table chunk, TableSink sink) throws IOException;
+
+  /**
+   * Finishes the stream, outputs any remaining data.
+   *
+   * @param sink	the sink for the output
+   * @throws IOException	if processing or the sink fails
+   */
+  public void finish(TableSink sink) throws IOException;
+}
@@ -20,9 +20,16 @@
 
 package weka.core.tablesaw;
 
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
 import weka.core.Option;
 import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnStatistics;
+import weka.core.tablesaw.util.KllSketch;
 
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -31,6 +38,13 @@ import java.util.Vector;
 
 /**
  * Generates a summary for the specified column.
+ * <br>
+ * Without a column, all the columns (or the ones specified via 'columns')
+ * get summarized in a single pass: count, missing, mean, variance, standard
+ * deviation, min/max and approximate quantiles. The columns are processed in
+ * chunks as parallel tasks, using mergeable accumulators
+ * (see {@link ColumnStatistics}). The output is either a wide table (one row
+ * per column) or a long one (column, statistic, value).
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
@@ -45,6 +59,27 @@ public class Summary
   /** the column. */
   protected String m_Column = DEFAULT_COLUMN;
 
+  /** the default columns for the multi-column summary. */
+  public final static String DEFAULT_COLUMNS = "";
+
+  /** the columns for the multi-column summary (comma-separated, empty for all). */
+  protected String m_Columns = DEFAULT_COLUMNS;
+
+  /** the default quantiles. */
+  public final static String DEFAULT_QUANTILES = "0.25,0.5,0.75";
+
+  /** the quantiles to compute (comma-separated fractions). */
+  protected String m_Quantiles = DEFAULT_QUANTILES;
+
+  /** the default accuracy parameter of the quantile sketches. */
+  public final static int DEFAULT_SKETCH_SIZE = KllSketch.DEFAULT_K;
+
+  /** the accuracy parameter of the quantile sketches. */
+  protected int m_SketchSize = DEFAULT_SKETCH_SIZE;
+
+  /** whether to output the multi-column summary in long format. */
+  protected boolean m_LongFormat = false;
+
   /**
    * Returns a string describing this object.
    *
@@ -53,7 +88,9 @@ public class Summary
    */
   @Override
   public String globalInfo() {
-    return "Generates a summary for the specified column.";
+    return "Generates a summary for the specified column.\n"
+      + "If no column is specified, all columns (or the selected ones) get summarized in a single "
+      + "(parallel) pass: count, missing, mean, variance, std. dev, min, max and approximate quantiles.";
   }
 
   /**
@@ -81,7 +118,119 @@ public class Summary
    *         explorer/experimenter gui
    */
   public String columnTipText() {
-    return "The column to generate the summary for.";
+    return "The column to generate the summary for; leave empty for a single-pass summary of multiple columns.";
+  }
+
+  /**
+   * Sets the columns for the multi-column summary.
+   *
+   * @param value	the columns (comma-separated names), empty for all
+   */
+  public void setColumns(String value) {
+    m_Columns = value;
+  }
+
+  /**
+   * Returns the columns for the multi-column summary.
+   *
+   * @return		the columns (comma-separated names), empty for all
+   */
+  public String getColumns() {
+    return m_Columns;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String columnsTipText() {
+    return "The columns to summarize if no single column is specified (comma-separated names, empty for all).";
+  }
+
+  /**
+   * Sets the quantiles to compute.
+   *
+   * @param value	the fractions (comma-separated, 0-1)
+   */
+  public void setQuantiles(String value) {
+    m_Quantiles = value;
+  }
+
+  /**
+   * Returns the quantiles to compute.
+   *
+   * @return		the fractions (comma-separated, 0-1)
+   */
+  public String getQuantiles() {
+    return m_Quantiles;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String quantilesTipText() {
+    return "The approximate quantiles to compute for the multi-column summary (comma-separated fractions, 0-1).";
+  }
+
+  /**
+   * Sets the accuracy parameter of the quantile sketches.
+   *
+   * @param value	the parameter (larger is more accurate)
+   */
+  public void setSketchSize(int value) {
+    m_SketchSize = value;
+  }
+
+  /**
+   * Returns the accuracy parameter of the quantile sketches.
+   *
+   * @return		the parameter (larger is more accurate)
+   */
+  public int getSketchSize() {
+    return m_SketchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sketchSizeTipText() {
+    return "The accuracy parameter k of the KLL quantile sketches (rank error roughly 1.65/k).";
+  }
+
+  /**
+   * Sets whether to output the multi-column summary in long format.
+   *
+   * @param value	true for long format
+   */
+  public void setLongFormat(boolean value) {
+    m_LongFormat = value;
+  }
+
+  /**
+   * Returns whether to output the multi-column summary in long format.
+   *
+   * @return		true for long format
+   */
+  public boolean getLongFormat() {
+    return m_LongFormat;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String longFormatTipText() {
+    return "If enabled, the multi-column summary is output as (column, statistic, value) rows rather than one row per column.";
   }
 
   /**
@@ -89,13 +238,30 @@ public class Summary
    *
    * @return an enumeration of all the available options.
    */
-  public Enumeration listOptions() {
-    Vector result = new Vector();
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
 
     result.addElement(new Option("\tThe column to generate the summary for.\n"
       + "\t(default: " + DEFAULT_COLUMN + ")",
       "column", 1, "-column <name>"));
 
+    result.addElement(new Option("\tThe columns to summarize in a single pass if no column specified\n"
+      + "\t(comma-separated names, empty for all)\n"
+      + "\t(default: " + DEFAULT_COLUMNS + ")",
+      "columns", 1, "-columns <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe approximate quantiles to compute (comma-separated fractions)\n"
+      + "\t(default: " + DEFAULT_QUANTILES + ")",
+      "quantiles", 1, "-quantiles <q1,q2,...>"));
+
+    result.addElement(new Option("\tThe accuracy parameter k of the quantile sketches\n"
+      + "\t(default: " + DEFAULT_SKETCH_SIZE + ")",
+      "sketch-size", 1, "-sketch-size <int>"));
+
+    result.addElement(new Option("\tOutputs the multi-column summary in long format\n"
+      + "\t(default: wide)",
+      "long", 0, "-long"));
+
     return result.elements();
   }
 
@@ -115,6 +281,22 @@ public class Summary
     else
       setColumn(DEFAULT_COLUMN);
 
+    setColumns(Utils.getOption("columns", options));
+
+    tmp = Utils.getOption("quantiles", options);
+    if (!tmp.isEmpty())
+      setQuantiles(tmp);
+    else
+      setQuantiles(DEFAULT_QUANTILES);
+
+    tmp = Utils.getOption("sketch-size", options);
+    if (!tmp.isEmpty())
+      setSketchSize(Integer.parseInt(tmp));
+    else
+      setSketchSize(DEFAULT_SKETCH_SIZE);
+
+    setLongFormat(Utils.getFlag("long", options));
+
     Utils.checkForRemainingOptions(options);
   }
 
@@ -131,6 +313,20 @@ public class Summary
     result.add("-column");
     result.add("" + getColumn());
 
+    if (!getColumns().isEmpty()) {
+      result.add("-columns");
+      result.add(getColumns());
+    }
+
+    result.add("-quantiles");
+    result.add(getQuantiles());
+
+    result.add("-sketch-size");
+    result.add("" + getSketchSize());
+
+    if (getLongFormat())
+      result.add("-long");
+
     return result.toArray(new String[0]);
   }
 
@@ -142,6 +338,139 @@ public class Summary
    */
   @Override
   public Table processTable(Table table) {
-    return table.column(m_Column).summary();
+    List<Column<?>>		columns;
+    ColumnStatistics[]		stats;
+    double[]			fractions;
+    String[]			parts;
+    int				i;
+
+    if (!m_Column.isEmpty())
+      return table.column(m_Column).summary();
+
+    if (m_Columns.isEmpty())
+      columns = table.columns();
+    else
+      columns = table.columns(m_Columns.split(","));
+
+    if (m_Quantiles.trim().isEmpty()) {
+      fractions = new double[0];
+    }
+    else {
+      parts     = m_Quantiles.split(",");
+      fractions = new double[parts.length];
+      for (i = 0; i < parts.length; i++)
+	fractions[i] = Double.parseDouble(parts[i].trim());
+    }
+
+    stats = ColumnStatistics.compute(columns, m_SketchSize);
+    if (m_LongFormat)
+      return toLongTable(table, columns, stats, fractions);
+    else
+      return toWideTable(table, columns, stats, fractions);
+  }
+
+  /**
+   * Returns the name for the quantile.
+   *
+   * @param fraction	the fraction
+   * @return		the name
+   */
+  protected String quantileName(double fraction) {
+    return "Q" + Utils.doubleToString(fraction, 4);
+  }
+
+  /**
+   * Generates the wide output, one row per column.
+   *
+   * @param table	the input table
+   * @param columns	the summarized columns
+   * @param stats	the statistics
+   * @param fractions	the quantile fractions
+   * @return		the summary
+   */
+  protected Table toWideTable(Table table, List<Column<?>> columns, ColumnStatistics[] stats, double[] fractions) {
+    Table		result;
+    StringColumn	name;
+    StringColumn	type;
+    IntColumn		count;
+    IntColumn		missing;
+    DoubleColumn	mean;
+    DoubleColumn	variance;
+    DoubleColumn	stdDev;
+    DoubleColumn	min;
+    DoubleColumn	max;
+    DoubleColumn[]	quantiles;
+    double[]		values;
+    int			i;
+    int			n;
+
+    name     = StringColumn.create("Column");
+    type     = StringColumn.create("Type");
+    count    = IntColumn.create("Count");
+    missing  = IntColumn.create("Missing");
+    mean     = DoubleColumn.create("Mean");
+    variance = DoubleColumn.create("Variance");
+    stdDev   = DoubleColumn.create("Std. Dev");
+    min      = DoubleColumn.create("Min");
+    max      = DoubleColumn.create("Max");
+    result   = Table.create(table.name() + " summary", name, type, count, missing, mean, variance, stdDev, min, max);
+    quantiles = new DoubleColumn[fractions.length];
+    for (i = 0; i < fractions.length; i++) {
+      quantiles[i] = DoubleColumn.create(quantileName(fractions[i]));
+      result.addColumns(quantiles[i]);
+    }
+
+    for (i = 0; i < columns.size(); i++) {
+      name.append(columns.get(i).name());
+      type.append(columns.get(i).type().name());
+      count.append((int) stats[i].getCount());
+      missing.append((int) stats[i].getMissing());
+      mean.append(stats[i].getMean());
+      variance.append(stats[i].getVariance());
+      stdDev.append(stats[i].getStdDev());
+      min.append(stats[i].getMin());
+      max.append(stats[i].getMax());
+      values = stats[i].getQuantiles(fractions);
+      for (n = 0; n < fractions.length; n++)
+	quantiles[n].append(values[n]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Generates the long output, one row per column and statistic.
+   *
+   * @param table	the input table
+   * @param columns	the summarized columns
+   * @param stats	the statistics
+   * @param fractions	the quantile fractions
+   * @return		the summary
+   */
+  protected Table toLongTable(Table table, List<Column<?>> columns, ColumnStatistics[] stats, double[] fractions) {
+    Table		wide;
+    Table		result;
+    StringColumn	name;
+    StringColumn	statistic;
+    DoubleColumn	value;
+    int			i;
+    int			n;
+
+    wide      = toWideTable(table, columns, stats, fractions);
+    name      = StringColumn.create("Column");
+    statistic = StringColumn.create("Statistic");
+    value     = DoubleColumn.create("Value");
+    result    = Table.create(table.name() + " summary", name, statistic, value);
+
+    for (i = 0; i < wide.rowCount(); i++) {
+      // skip column name and type
+      for (n = 2; n < wide.columnCount(); n++) {
+	name.append(wide.stringColumn(0).get(i));
+	statistic.append(wide.column(n).name());
+	value.append(((NumericColumn<?>) wide.column(n)).getDouble(i));
+      }
+    }
+
+    return result;
   }
 }
@@ -0,0 +1,951 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Window.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw;
+
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.Table;
+import weka.core.Option;
+import weka.core.Utils;
+import weka.core.tablesaw.util.ColumnCoder;
+import weka.core.tablesaw.util.ColumnExpression;
+import weka.core.tablesaw.util.SortKey;
+import weka.core.tablesaw.util.TableSorter;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+import java.util.stream.IntStream;
+
+/**
+ * Computes a window function over a numeric (or date-like) column and adds
+ * the result as new column, e.g., rolling means, lags/leads or cumulative
+ * sums per entity.
+ * <br>
+ * The rows get partitioned by the partition columns and ordered by the
+ * order columns within the partitions (see {@link TableSorter}), the output
+ * is in the original row order. The frame of a row is either a number of
+ * preceding/following rows ("rows") or a range of preceding/following
+ * values of the single order column ("range", date-like columns in
+ * milliseconds); a negative bound means unbounded. Rows with a missing
+ * order value get a missing value with range frames. Missing values in
+ * the column get ignored by the aggregates.
+ * <br>
+ * As the bounds of the frames only move forward, the aggregates get
+ * computed in O(n) per partition: running sums (sum, mean, count) and
+ * running mean/sum of squared differences (variance, standard deviation)
+ * that get updated when rows enter and leave the frame, monotonic deques
+ * for min/max. Partitions get processed in parallel.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Window
+  extends AbstractTableOperation {
+
+  private static final long serialVersionUID = 6512781923841073924L;
+
+  /** sum. */
+  public final static String FUNCTION_SUM = "sum";
+
+  /** mean. */
+  public final static String FUNCTION_MEAN = "mean";
+
+  /** minimum. */
+  public final static String FUNCTION_MIN = "min";
+
+  /** maximum. */
+  public final static String FUNCTION_MAX = "max";
+
+  /** number of non-missing values. */
+  public final static String FUNCTION_COUNT = "count";
+
+  /** sample variance. */
+  public final static String FUNCTION_VARIANCE = "variance";
+
+  /** sample standard deviation. */
+  public final static String FUNCTION_STDDEV = "stddev";
+
+  /** value of a preceding row. */
+  public final static String FUNCTION_LAG = "lag";
+
+  /** value of a following row. */
+  public final static String FUNCTION_LEAD = "lead";
+
+  /** frame in rows. */
+  public final static String FRAME_ROWS = "rows";
+
+  /** frame in values of the order column. */
+  public final static String FRAME_RANGE = "range";
+
+  /** the default partition columns. */
+  public final static String DEFAULT_PARTITION_BY = "";
+
+  /** the default order columns. */
+  public final static String DEFAULT_ORDER_BY = "";
+
+  /** the default column. */
+  public final static String DEFAULT_COLUMN = "";
+
+  /** the default function. */
+  public final static String DEFAULT_FUNCTION = FUNCTION_SUM;
+
+  /** the default frame. */
+  public final static String DEFAULT_FRAME = FRAME_ROWS;
+
+  /** the default preceding bound (unbounded). */
+  public final static double DEFAULT_PRECEDING = -1;
+
+  /** the default following bound (current row). */
+  public final static double DEFAULT_FOLLOWING = 0;
+
+  /** the default offset for lag/lead. */
+  public final static int DEFAULT_OFFSET = 1;
+
+  /** the default name of the output column. */
+  public final static String DEFAULT_NAME = "";
+
+  /** the partition columns (comma-separated, empty for none). */
+  protected String m_PartitionBy = DEFAULT_PARTITION_BY;
+
+  /** the order columns (comma-separated, with optional ":desc", empty for row order). */
+  protected String m_OrderBy = DEFAULT_ORDER_BY;
+
+  /** the column to compute the function on. */
+  protected String m_Column = DEFAULT_COLUMN;
+
+  /** the function. */
+  protected String m_Function = DEFAULT_FUNCTION;
+
+  /** the frame type. */
+  protected String m_Frame = DEFAULT_FRAME;
+
+  /** the preceding bound (negative for unbounded). */
+  protected double m_Preceding = DEFAULT_PRECEDING;
+
+  /** the following bound (negative for unbounded). */
+  protected double m_Following = DEFAULT_FOLLOWING;
+
+  /** the offset for lag/lead. */
+  protected int m_Offset = DEFAULT_OFFSET;
+
+  /** the name of the output column. */
+  protected String m_Name = DEFAULT_NAME;
+
+  /**
+   * Returns a string describing this object.
+   *
+   * @return a description of the Loader suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Computes a window function (" + FUNCTION_SUM + ", " + FUNCTION_MEAN + ", " + FUNCTION_MIN + ", "
+      + FUNCTION_MAX + ", " + FUNCTION_COUNT + ", " + FUNCTION_VARIANCE + ", " + FUNCTION_STDDEV + ", "
+      + FUNCTION_LAG + ", " + FUNCTION_LEAD + ") over a numeric or date-like column and adds it as new column.\n"
+      + "Rows get partitioned and ordered within the partitions, the frame of a row is either a number of "
+      + "preceding/following rows (" + FRAME_ROWS + ") or a range of preceding/following values of the "
+      + "order column (" + FRAME_RANGE + ", milliseconds for date-like columns); negative bounds are unbounded, "
+      + "e.g., cumulative sums use the default preceding bound of -1.\n"
+      + "The aggregates get computed in a single pass per partition, partitions in parallel.";
+  }
+
+  /**
+   * Sets the partition columns.
+   *
+   * @param value	the columns (comma-separated names), empty for none
+   */
+  public void setPartitionBy(String value) {
+    m_PartitionBy = value;
+  }
+
+  /**
+   * Returns the partition columns.
+   *
+   * @return		the columns (comma-separated names), empty for none
+   */
+  public String getPartitionBy() {
+    return m_PartitionBy;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String partitionByTipText() {
+    return "The columns to partition the rows by (comma-separated names, empty for a single partition).";
+  }
+
+  /**
+   * Sets the order columns.
+   *
+   * @param value	the columns (comma-separated names, optionally with ":desc"), empty for row order
+   */
+  public void setOrderBy(String value) {
+    m_OrderBy = value;
+  }
+
+  /**
+   * Returns the order columns.
+   *
+   * @return		the columns (comma-separated names, optionally with ":desc"), empty for row order
+   */
+  public String getOrderBy() {
+    return m_OrderBy;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String orderByTipText() {
+    return "The columns to order the rows within the partitions by (comma-separated names, optionally with ':desc'; "
+      + "empty for the row order); range frames require a single numeric or date-like column.";
+  }
+
+  /**
+   * Sets the column to compute the function on.
+   *
+   * @param value	the column
+   */
+  public void setColumn(String value) {
+    m_Column = value;
+  }
+
+  /**
+   * Returns the column to compute the function on.
+   *
+   * @return		the column
+   */
+  public String getColumn() {
+    return m_Column;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String columnTipText() {
+    return "The numeric or date-like column to compute the function on.";
+  }
+
+  /**
+   * Sets the function.
+   *
+   * @param value	the function
+   */
+  public void setFunction(String value) {
+    m_Function = value;
+  }
+
+  /**
+   * Returns the function.
+   *
+   * @return		the function
+   */
+  public String getFunction() {
+    return m_Function;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String functionTipText() {
+    return "The window function: " + FUNCTION_SUM + ", " + FUNCTION_MEAN + ", " + FUNCTION_MIN + ", " + FUNCTION_MAX + ", "
+      + FUNCTION_COUNT + ", " + FUNCTION_VARIANCE + ", " + FUNCTION_STDDEV + ", " + FUNCTION_LAG + " or " + FUNCTION_LEAD + ".";
+  }
+
+  /**
+   * Sets the frame type.
+   *
+   * @param value	the frame type
+   */
+  public void setFrame(String value) {
+    m_Frame = value;
+  }
+
+  /**
+   * Returns the frame type.
+   *
+   * @return		the frame type
+   */
+  public String getFrame() {
+    return m_Frame;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String frameTipText() {
+    return "The frame type: " + FRAME_ROWS + " (bounds in rows) or " + FRAME_RANGE + " (bounds in values of the order column).";
+  }
+
+  /**
+   * Sets the preceding bound of the frame.
+   *
+   * @param value	the bound, negative for unbounded
+   */
+  public void setPreceding(double value) {
+    m_Preceding = value;
+  }
+
+  /**
+   * Returns the preceding bound of the frame.
+   *
+   * @return		the bound, negative for unbounded
+   */
+  public double getPreceding() {
+    return m_Preceding;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String precedingTipText() {
+    return "The number of preceding rows or the range of preceding values in the frame (negative for unbounded).";
+  }
+
+  /**
+   * Sets the following bound of the frame.
+   *
+   * @param value	the bound, negative for unbounded
+   */
+  public void setFollowing(double value) {
+    m_Following = value;
+  }
+
+  /**
+   * Returns the following bound of the frame.
+   *
+   * @return		the bound, negative for unbounded
+   */
+  public double getFollowing() {
+    return m_Following;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String followingTipText() {
+    return "The number of following rows or the range of following values in the frame (negative for unbounded).";
+  }
+
+  /**
+   * Sets the offset for lag/lead.
+   *
+   * @param value	the offset in rows
+   */
+  public void setOffset(int value) {
+    m_Offset = value;
+  }
+
+  /**
+   * Returns the offset for lag/lead.
+   *
+   * @return		the offset in rows
+   */
+  public int getOffset() {
+    return m_Offset;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String offsetTipText() {
+    return "The offset in rows for " + FUNCTION_LAG + " and " + FUNCTION_LEAD + " (ignores the frame).";
+  }
+
+  /**
+   * Sets the name of the output column.
+   *
+   * @param value	the name, empty for "column_function"
+   */
+  public void setName(String value) {
+    m_Name = value;
+  }
+
+  /**
+   * Returns the name of the output column.
+   *
+   * @return		the name, empty for "column_function"
+   */
+  public String getName() {
+    return m_Name;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String nameTipText() {
+    return "The name of the output column (empty for 'column_function'), replaces an existing column of the same name.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tThe columns to partition by (comma-separated names, empty for none)\n"
+      + "\t(default: " + DEFAULT_PARTITION_BY + ")",
+      "partition-by", 1, "-partition-by <name1,name2,...>"));
+
+    result.addElement(new Option("\tThe columns to order by within the partitions\n"
+      + "\t(comma-separated names, optionally with ':desc'; empty for row order)\n"
+      + "\t(default: " + DEFAULT_ORDER_BY + ")",
+      "order-by", 1, "-order-by <name1[:desc],name2[:desc],...>"));
+
+    result.addElement(new Option("\tThe numeric or date-like column to compute the function on\n"
+      + "\t(default: " + DEFAULT_COLUMN + ")",
+      "column", 1, "-column <name>"));
+
+    result.addElement(new Option("\tThe window function ("
+      + FUNCTION_SUM + "|" + FUNCTION_MEAN + "|" + FUNCTION_MIN + "|" + FUNCTION_MAX + "|" + FUNCTION_COUNT + "|"
+      + FUNCTION_VARIANCE + "|" + FUNCTION_STDDEV + "|" + FUNCTION_LAG + "|" + FUNCTION_LEAD + ")\n"
+      + "\t(default: " + DEFAULT_FUNCTION + ")",
+      "function", 1, "-function <function>"));
+
+    result.addElement(new Option("\tThe frame type (" + FRAME_ROWS + "|" + FRAME_RANGE + ")\n"
+      + "\t(default: " + DEFAULT_FRAME + ")",
+      "frame", 1, "-frame <type>"));
+
+    result.addElement(new Option("\tThe preceding bound of the frame (negative for unbounded)\n"
+      + "\t(default: " + DEFAULT_PRECEDING + ")",
+      "preceding", 1, "-preceding <num>"));
+
+    result.addElement(new Option("\tThe following bound of the frame (negative for unbounded)\n"
+      + "\t(default: " + DEFAULT_FOLLOWING + ")",
+      "following", 1, "-following <num>"));
+
+    result.addElement(new Option("\tThe offset in rows for " + FUNCTION_LAG + "/" + FUNCTION_LEAD + "\n"
+      + "\t(default: " + DEFAULT_OFFSET + ")",
+      "offset", 1, "-offset <int>"));
+
+    result.addElement(new Option("\tThe name of the output column (empty for 'column_function')\n"
+      + "\t(default: " + DEFAULT_NAME + ")",
+      "name", 1, "-name <name>"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   *
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    String 	tmp;
+
+    setPartitionBy(Utils.getOption("partition-by", options));
+    setOrderBy(Utils.getOption("order-by", options));
+    setColumn(Utils.getOption("column", options));
+
+    tmp = Utils.getOption("function", options);
+    if (!tmp.isEmpty())
+      setFunction(tmp);
+    else
+      setFunction(DEFAULT_FUNCTION);
+
+    tmp = Utils.getOption("frame", options);
+    if (!tmp.isEmpty())
+      setFrame(tmp);
+    else
+      setFrame(DEFAULT_FRAME);
+
+    tmp = Utils.getOption("preceding", options);
+    if (!tmp.isEmpty())
+      setPreceding(Double.parseDouble(tmp));
+    else
+      setPreceding(DEFAULT_PRECEDING);
+
+    tmp = Utils.getOption("following", options);
+    if (!tmp.isEmpty())
+      setFollowing(Double.parseDouble(tmp));
+    else
+      setFollowing(DEFAULT_FOLLOWING);
+
+    tmp = Utils.getOption("offset", options);
+    if (!tmp.isEmpty())
+      setOffset(Integer.parseInt(tmp));
+    else
+      setOffset(DEFAULT_OFFSET);
+
+    setName(Utils.getOption("name", options));
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the Apriori object.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    List<String> result;
+
+    result = new ArrayList<String>();
+
+    if (!getPartitionBy().isEmpty()) {
+      result.add("-partition-by");
+      result.add(getPartitionBy());
+    }
+
+    if (!getOrderBy().isEmpty()) {
+      result.add("-order-by");
+      result.add(getOrderBy());
+    }
+
+    if (!getColumn().isEmpty()) {
+      result.add("-column");
+      result.add(getColumn());
+    }
+
+    result.add("-function");
+    result.add(getFunction());
+
+    result.add("-frame");
+    result.add(getFrame());
+
+    result.add("-preceding");
+    result.add("" + getPreceding());
+
+    result.add("-following");
+    result.add("" + getFollowing());
+
+    result.add("-offset");
+    result.add("" + getOffset());
+
+    if (!getName().isEmpty()) {
+      result.add("-name");
+      result.add(getName());
+    }
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Computes the lag/lead of a partition.
+   *
+   * @param values	the values of the partition, in order
+   * @param result	the array for the results
+   * @param offset	the offset (negative for lag)
+   */
+  protected void shift(double[] values, double[] result, int offset) {
+    int		i;
+
+    for (i = 0; i < values.length; i++) {
+      if ((i + offset >= 0) && (i + offset < values.length))
+	result[i] = values[i + offset];
+      else
+	result[i] = Double.NaN;
+    }
+  }
+
+  /**
+   * Computes the first position of the frames, i.e., the inclusive lower bounds.
+   *
+   * @param keys	the order values of the partition (range frames), null for rows
+   * @param size	the number of rows in the partition (excluding missing order values)
+   * @return		the bounds
+   */
+  protected int[] lowerBounds(double[] keys, int size) {
+    int[]	result;
+    int		i;
+    int		j;
+
+    result = new int[size];
+    if (m_Preceding < 0)
+      return result;
+
+    if (keys == null) {
+      for (i = 0; i < size; i++)
+	result[i] = (int) Math.max(0, i - (long) m_Preceding);
+    }
+    else {
+      j = 0;
+      for (i = 0; i < size; i++) {
+	while (keys[j] < keys[i] - m_Preceding)
+	  j++;
+	result[i] = j;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes the last position of the frames, i.e., the inclusive upper bounds.
+   *
+   * @param keys	the order values of the partition (range frames), null for rows
+   * @param size	the number of rows in the partition (excluding missing order values)
+   * @return		the bounds
+   */
+  protected int[] upperBounds(double[] keys, int size) {
+    int[]	result;
+    int		i;
+    int		j;
+
+    result = new int[size];
+    if (m_Following < 0) {
+      for (i = 0; i < size; i++)
+	result[i] = size - 1;
+      return result;
+    }
+
+    if (keys == null) {
+      for (i = 0; i < size; i++)
+	result[i] = (int) Math.min(size - 1, i + (long) m_Following);
+    }
+    else {
+      j = 0;
+      for (i = 0; i < size; i++) {
+	while ((j + 1 < size) && (keys[j + 1] <= keys[i] + m_Following))
+	  j++;
+	result[i] = j;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes sum, mean, count, variance or standard deviation with running
+   * sums that get updated when rows enter or leave the frame.
+   *
+   * @param values	the values of the partition, in order
+   * @param lower	the inclusive lower bounds of the frames
+   * @param upper	the inclusive upper bounds of the frames
+   * @param result	the array for the results
+   */
+  protected void running(double[] values, int[] lower, int[] upper, double[] result) {
+    double	sum;
+    double	mean;
+    double	m2;
+    double	delta;
+    long	count;
+    int		in;
+    int		out;
+    int		i;
+
+    sum   = 0;
+    mean  = 0;
+    m2    = 0;
+    count = 0;
+    in    = 0;
+    out   = 0;
+    for (i = 0; i < lower.length; i++) {
+      // enter
+      while (in <= upper[i]) {
+	if (!Double.isNaN(values[in])) {
+	  sum += values[in];
+	  count++;
+	  delta = values[in] - mean;
+	  mean += delta / count;
+	  m2   += delta * (values[in] - mean);
+	}
+	in++;
+      }
+      // leave
+      while (out < lower[i]) {
+	if (!Double.isNaN(values[out])) {
+	  sum -= values[out];
+	  count--;
+	  if (count == 0) {
+	    mean = 0;
+	    m2   = 0;
+	  }
+	  else {
+	    delta = values[out] - mean;
+	    mean -= delta / count;
+	    m2   -= delta * (values[out] - mean);
+	  }
+	}
+	out++;
+      }
+
+      switch (m_Function) {
+	case FUNCTION_SUM:
+	  result[i] = (count == 0) ? Double.NaN : sum;
+	  break;
+	case FUNCTION_MEAN:
+	  result[i] = (count == 0) ? Double.NaN : sum / count;
+	  break;
+	case FUNCTION_COUNT:
+	  result[i] = count;
+	  break;
+	case FUNCTION_VARIANCE:
+	  result[i] = (count < 2) ? Double.NaN : Math.max(0, m2 / (count - 1));
+	  break;
+	case FUNCTION_STDDEV:
+	  result[i] = (count < 2) ? Double.NaN : Math.sqrt(Math.max(0, m2 / (count - 1)));
+	  break;
+	default:
+	  throw new IllegalStateException("Unhandled function: " + m_Function);
+      }
+    }
+  }
+
+  /**
+   * Computes min or max with a monotonic deque of positions, whose values
+   * are decreasing (max) or increasing (min) from head to tail.
+   *
+   * @param values	the values of the partition, in order
+   * @param lower	the inclusive lower bounds of the frames
+   * @param upper	the inclusive upper bounds of the frames
+   * @param result	the array for the results
+   */
+  protected void extremes(double[] values, int[] lower, int[] upper, double[] result) {
+    int[]	deque;
+    int		head;
+    int		tail;
+    int		in;
+    int		i;
+    boolean	max;
+
+    // every position gets added at most once, i.e., no wrap-around required
+    max   = m_Function.equals(FUNCTION_MAX);
+    deque = new int[lower.length];
+    head  = 0;
+    tail  = 0;
+    in    = 0;
+    for (i = 0; i < lower.length; i++) {
+      while (in <= upper[i]) {
+	if (!Double.isNaN(values[in])) {
+	  while ((tail > head) && (max ? values[deque[tail - 1]] <= values[in] : values[deque[tail - 1]] >= values[in]))
+	    tail--;
+	  deque[tail++] = in;
+	}
+	in++;
+      }
+      while ((tail > head) && (deque[head] < lower[i]))
+	head++;
+      result[i] = (tail > head) ? values[deque[head]] : Double.NaN;
+    }
+  }
+
+  /**
+   * Computes the function for a partition.
+   *
+   * @param values	the values of the partition, in order
+   * @param keys	the order values of the partition (range frames), null for rows
+   * @return		the results
+   */
+  protected double[] compute(double[] values, double[] keys) {
+    double[]	result;
+    double[]	frame;
+    int[]	lower;
+    int[]	upper;
+    int		size;
+    int		i;
+
+    result = new double[values.length];
+    switch (m_Function) {
+      case FUNCTION_LAG:
+	shift(values, result, -m_Offset);
+	return result;
+      case FUNCTION_LEAD:
+	shift(values, result, m_Offset);
+	return result;
+    }
+
+    // rows with missing order values are at the end and excluded from range frames
+    size = values.length;
+    if (keys != null) {
+      while ((size > 0) && Double.isNaN(keys[size - 1]))
+	size--;
+    }
+    if (size == 0) {
+      for (i = 0; i < result.length; i++)
+	result[i] = Double.NaN;
+      return result;
+    }
+
+    lower = lowerBounds(keys, size);
+    upper = upperBounds(keys, size);
+    frame = new double[size];
+    if (m_Function.equals(FUNCTION_MIN) || m_Function.equals(FUNCTION_MAX))
+      extremes(values, lower, upper, frame);
+    else
+      running(values, lower, upper, frame);
+
+    System.arraycopy(frame, 0, result, 0, size);
+    for (i = size; i < result.length; i++)
+      result[i] = Double.NaN;
+
+    return result;
+  }
+
+  /**
+   * Processes the table.
+   *
+   * @param table the table to work on
+   * @return the updated table
+   */
+  @Override
+  public Table processTable(Table table) {
+    final double[]	values;
+    final double[]	keys;
+    final double[]	output;
+    final int[]		perm;
+    final int[]		starts;
+    List<SortKey>	sortKeys;
+    SortKey[]		order;
+    ColumnCoder[]	coders;
+    List<Integer>	bounds;
+    boolean		range;
+    boolean		changed;
+    String		name;
+    DoubleColumn	column;
+    int			index;
+    int			i;
+    int			n;
+
+    if (m_Column.isEmpty())
+      throw new IllegalStateException("No column specified!");
+    if (!m_Function.equals(FUNCTION_SUM) && !m_Function.equals(FUNCTION_MEAN) && !m_Function.equals(FUNCTION_MIN)
+      && !m_Function.equals(FUNCTION_MAX) && !m_Function.equals(FUNCTION_COUNT) && !m_Function.equals(FUNCTION_VARIANCE)
+      && !m_Function.equals(FUNCTION_STDDEV) && !m_Function.equals(FUNCTION_LAG) && !m_Function.equals(FUNCTION_LEAD))
+      throw new IllegalArgumentException("Unknown function: " + m_Function);
+    if (!m_Frame.equals(FRAME_ROWS) && !m_Frame.equals(FRAME_RANGE))
+      throw new IllegalArgumentException("Unknown frame type: " + m_Frame);
+
+    values = ColumnExpression.toDoubles(table.column(m_Column));
+    if (values == null)
+      throw new IllegalArgumentException("Column is neither numeric nor date-like: " + m_Column);
+
+    // sort keys: partitions first, then order within partitions
+    sortKeys = new ArrayList<SortKey>();
+    coders   = new ColumnCoder[0];
+    if (!m_PartitionBy.isEmpty()) {
+      coders = new ColumnCoder[m_PartitionBy.split(",").length];
+      i      = 0;
+      for (String partition: m_PartitionBy.split(",")) {
+	sortKeys.add(new SortKey(partition.trim(), false, false));
+	coders[i++] = new ColumnCoder(table.column(partition.trim()));
+      }
+    }
+    order = new SortKey[0];
+    if (!m_OrderBy.isEmpty())
+      order = SortKey.parseList(m_OrderBy, false, false);
+    range = m_Frame.equals(FRAME_RANGE) && !m_Function.equals(FUNCTION_LAG) && !m_Function.equals(FUNCTION_LEAD);
+    if (!range) {
+      keys = null;
+    }
+    else {
+      if (order.length != 1)
+	throw new IllegalArgumentException("Range frames require exactly one order column: " + m_OrderBy);
+      // missing order values must come last
+      order[0] = new SortKey(order[0].getColumn(), order[0].isDescending(), false);
+      keys     = ColumnExpression.toDoubles(table.column(order[0].getColumn()));
+      if (keys == null)
+	throw new IllegalArgumentException("Order column of range frames is neither numeric nor date-like: " + order[0].getColumn());
+      // descending: frames are defined in sort direction
+      if (order[0].isDescending()) {
+	for (i = 0; i < keys.length; i++)
+	  keys[i] = -keys[i];
+      }
+    }
+    for (SortKey key: order)
+      sortKeys.add(key);
+
+    if (sortKeys.isEmpty()) {
+      perm = new int[table.rowCount()];
+      for (i = 0; i < perm.length; i++)
+	perm[i] = i;
+    }
+    else {
+      perm = TableSorter.permutation(table, sortKeys.toArray(new SortKey[0]));
+    }
+
+    // partition boundaries
+    bounds = new ArrayList<Integer>();
+    if (perm.length > 0)
+      bounds.add(0);
+    for (i = 1; i < perm.length; i++) {
+      changed = false;
+      for (n = 0; n < coders.length; n++) {
+	if (coders[n].code(perm[i]) != coders[n].code(perm[i - 1])) {
+	  changed = true;
+	  break;
+	}
+      }
+      if (changed)
+	bounds.add(i);
+    }
+    bounds.add(perm.length);
+    starts = new int[bounds.size()];
+    for (i = 0; i < starts.length; i++)
+      starts[i] = bounds.get(i);
+
+    output = new double[table.rowCount()];
+    IntStream.range(0, starts.length - 1).parallel().forEach((int p) -> {
+      int from = starts[p];
+      int to = starts[p + 1];
+      double[] partValues = new double[to - from];
+      double[] partKeys = (keys == null) ? null : new double[to - from];
+      for (int r = from; r < to; r++) {
+	partValues[r - from] = values[perm[r]];
+	if (partKeys != null)
+	  partKeys[r - from] = keys[perm[r]];
+      }
+      double[] partResult = compute(partValues, partKeys);
+      for (int r = from; r < to; r++)
+	output[perm[r]] = partResult[r - from];
+    });
+
+    name   = m_Name.isEmpty() ? (m_Column + "_" + m_Function) : m_Name;
+    column = DoubleColumn.create(name, output);
+    index  = table.columnNames().indexOf(name);
+    if (index > -1)
+      table.replaceColumn(index, column);
+    else
+      table.addColumns(column);
+
+    return table;
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ChunkedPipeline.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.Table;
+import weka.core.Utils;
+import weka.core.tablesaw.PassThrough;
+import weka.core.tablesaw.StreamableTableOperation;
+import weka.core.tablesaw.TableOperation;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Pushes chunks of a table through a sequence of table operations, with the
+ * output of each operation being passed on to the next one and the output
+ * of the last operation going to the output sink.
+ * <br>
+ * Streamable operations (see {@link StreamableTableOperation}) process the
+ * chunks as they arrive. All other operations fall back to batch processing:
+ * the chunks get collected and the operation is applied to the complete
+ * table when the stream is finished.
+ * <br>
+ * Usage: {@link #accept(Table)} for each chunk, then {@link #finish()}.
+ * <br>
+ * From the command-line, a CSV file gets processed chunk by chunk into
+ * another CSV file (see {@link #process(File, File, TableOperation, int)}):
+ * <pre>
+ * java weka.core.tablesaw.util.ChunkedPipeline -i in.csv -o out.csv \
+ *   -operation "weka.core.tablesaw.RemoveRowsWithMissingValues" -chunk-size 100000
+ * </pre>
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ChunkedPipeline
+  implements TableSink {
+
+  /**
+   * A single operation in the pipeline.
+   */
+  protected static class Stage
+    implements TableSink {
+
+    /** the operation. */
+    protected TableOperation m_Operation;
+
+    /** the sink for the output of the operation. */
+    protected TableSink m_Next;
+
+    /** the collected chunks if the operation isn't streamable. */
+    protected Table m_Buffer;
+
+    /**
+     * Initializes the stage.
+     *
+     * @param operation	the operation to apply
+     * @param next	the sink for the output
+     */
+    public Stage(TableOperation operation, TableSink next) {
+      m_Operation = operation;
+      m_Next      = next;
+      m_Buffer    = null;
+      if (m_Operation instanceof StreamableTableOperation)
+        ((StreamableTableOperation) m_Operation).startStream();
+    }
+
+    /**
+     * Processes the chunk.
+     *
+     * @param chunk	the chunk to process
+     * @throws IOException	if processing or the next sink fails
+     */
+    @Override
+    public void accept(Table chunk) throws IOException {
+      if (m_Operation instanceof StreamableTableOperation) {
+        ((StreamableTableOperation) m_Operation).processChunk(chunk, m_Next);
+      }
+      else {
+        if (m_Buffer == null)
+          m_Buffer = chunk.emptyCopy();
+        m_Buffer.append(chunk);
+      }
+    }
+
+    /**
+     * Finishes the stream, outputs any remaining data.
+     *
+     * @throws IOException	if processing or the next sink fails
+     */
+    public void finish() throws IOException {
+      Table	buffer;
+
+      if (m_Operation instanceof StreamableTableOperation) {
+        ((StreamableTableOperation) m_Operation).finish(m_Next);
+      }
+      else if (m_Buffer != null) {
+        buffer   = m_Buffer;
+        m_Buffer = null;
+        m_Next.accept(m_Operation.processTable(buffer));
+      }
+    }
+  }
+
+  /** the stages. */
+  protected Stage[] m_Stages;
+
+  /** the number of chunks received. */
+  protected long m_NumChunks;
+
+  /**
+   * Initializes the pipeline.
+   *
+   * @param operations	the operations to apply in order
+   * @param output	the sink for the output of the last operation
+   */
+  public ChunkedPipeline(TableOperation[] operations, TableSink output) {
+    TableSink	next;
+    int		i;
+
+    m_Stages = new Stage[operations.length];
+    next     = output;
+    for (i = operations.length - 1; i >= 0; i--) {
+      m_Stages[i] = new Stage(operations[i], next);
+      next        = m_Stages[i];
+    }
+    m_NumChunks = 0;
+  }
+
+  /**
+   * Initializes the pipeline for a single operation.
+   *
+   * @param operation	the operation to apply
+   * @param output	the sink for the output of the operation
+   */
+  public ChunkedPipeline(TableOperation operation, TableSink output) {
+    this(new TableOperation[]{operation}, output);
+  }
+
+  /**
+   * Returns whether the operation only outputs data once all chunks have
+   * been processed, i.e., if it isn't streamable or is a blocking one.
+   *
+   * @param operation	the operation to check
+   * @return		true if blocking
+   */
+  public static boolean isBlocking(TableOperation operation) {
+    if (operation instanceof StreamableTableOperation)
+      return ((StreamableTableOperation) operation).isBlocking();
+    return true;
+  }
+
+  /**
+   * Returns whether any of the operations is blocking.
+   *
+   * @param operations	the operations to check
+   * @return		true if at least one blocking
+   * @see		#isBlocking(TableOperation)
+   */
+  public static boolean isBlocking(TableOperation[] operations) {
+    for (TableOperation operation: operations) {
+      if (isBlocking(operation))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of chunks pushed into the pipeline so far.
+   *
+   * @return		the number of chunks
+   */
+  public long getNumChunks() {
+    return m_NumChunks;
+  }
+
+  /**
+   * Pushes the chunk through the pipeline.
+   *
+   * @param chunk	the chunk to process
+   * @throws IOException	if processing or the output fails
+   */
+  @Override
+  public void accept(Table chunk) throws IOException {
+    m_NumChunks++;
+    if (m_Stages.length == 0)
+      throw new IllegalStateException("No operations in pipeline!");
+    m_Stages[0].accept(chunk);
+  }
+
+  /**
+   * Finishes the stream, the stages get finished in order so that the data
+   * output by a blocking stage can pass through the following ones.
+   *
+   * @throws IOException	if processing or the output fails
+   */
+  public void finish() throws IOException {
+    for (Stage stage: m_Stages)
+      stage.finish();
+  }
+
+  /**
+   * Streams the CSV file chunk by chunk through the operation and writes the
+   * output to a CSV file. Only blocking operations need to hold more than a
+   * chunk of rows in memory.
+   *
+   * @param input	the CSV file to read
+   * @param output	the CSV file to write
+   * @param operation	the operation to apply
+   * @param chunkSize	the number of rows per chunk
+   * @return		the number of rows written
+   * @throws IOException	if reading, processing or writing fails
+   */
+  public static long process(File input, File output, TableOperation operation, int chunkSize) throws IOException {
+    CsvTableWriter	writer;
+    ChunkedPipeline	pipeline;
+
+    writer = new CsvTableWriter(output);
+    try {
+      pipeline = new ChunkedPipeline(operation, writer);
+      new CsvChunkReader(chunkSize).read(input, pipeline);
+      pipeline.finish();
+    }
+    finally {
+      writer.close();
+    }
+
+    return writer.getRowCount();
+  }
+
+  /**
+   * Processes a CSV file chunk by chunk into another CSV file.
+   * <br>
+   * Options: -i input, -o output, -operation "classname + options"
+   * (default: PassThrough), -chunk-size rows (default: {@link CsvChunkReader#DEFAULT_CHUNK_SIZE}).
+   *
+   * @param args	the options, use -h for help
+   * @throws Exception	if the options are invalid or processing fails
+   */
+  public static void main(String[] args) throws Exception {
+    String		input;
+    String		output;
+    String		tmpStr;
+    String[]		tmpOptions;
+    String		classname;
+    TableOperation	operation;
+    int			chunkSize;
+    long		rows;
+
+    if ((args.length == 0) || Utils.getFlag('h', args)) {
+      System.out.println("Usage: " + ChunkedPipeline.class.getName()
+	+ " -i <input.csv> -o <output.csv> [-operation <classname + options>] [-chunk-size <int>]");
+      return;
+    }
+
+    input  = Utils.getOption('i', args);
+    output = Utils.getOption('o', args);
+    if (input.isEmpty() || output.isEmpty())
+      throw new IllegalArgumentException("Both input (-i) and output (-o) must be specified!");
+
+    tmpStr = Utils.getOption("operation", args);
+    if (tmpStr.isEmpty()) {
+      operation = new PassThrough();
+    }
+    else {
+      tmpOptions    = Utils.splitOptions(tmpStr);
+      classname     = tmpOptions[0];
+      tmpOptions[0] = "";
+      operation     = (TableOperation) Utils.forName(TableOperation.class, classname, tmpOptions);
+    }
+
+    tmpStr = Utils.getOption("chunk-size", args);
+    if (tmpStr.isEmpty())
+      chunkSize = CsvChunkReader.DEFAULT_CHUNK_SIZE;
+    else
+      chunkSize = Integer.parseInt(tmpStr);
+
+    Utils.checkForRemainingOptions(args);
+
+    rows = process(new File(input), new File(output), operation, chunkSize);
+    System.out.println("Rows written: " + rows);
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ColumnCoder.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.BooleanColumn;
+import tech.tablesaw.api.DateColumn;
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.InstantColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.TimeColumn;
+import tech.tablesaw.columns.Column;
+import weka.core.TablesawUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the values of a column to dense integer codes, in order of first
+ * occurrence. Code 0 is reserved for missing values.
+ * <br>
+ * Numeric, date/time and boolean values are coded via their primitive
+ * representation in a {@link LongIntHashMap}. Strings of a StringColumn are
+ * shared instances of the column's dictionary, hence they get looked up by
+ * identity first and only fall back to equality on a miss.
+ * <br>
+ * Once built, the coder can be queried concurrently.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ColumnCoder {
+
+  /** the code for missing values. */
+  public final static int MISSING = 0;
+
+  /** floating point values. */
+  protected final static int KIND_DOUBLE = 0;
+
+  /** integral values that fit into a double. */
+  protected final static int KIND_INTEGRAL = 1;
+
+  /** long values. */
+  protected final static int KIND_LONG = 2;
+
+  /** packed dates. */
+  protected final static int KIND_DATE = 3;
+
+  /** packed times. */
+  protected final static int KIND_TIME = 4;
+
+  /** packed date/times. */
+  protected final static int KIND_DATETIME = 5;
+
+  /** packed instants. */
+  protected final static int KIND_INSTANT = 6;
+
+  /** booleans. */
+  protected final static int KIND_BOOLEAN = 7;
+
+  /** dictionary encoded strings. */
+  protected final static int KIND_DICTIONARY = 8;
+
+  /** any other values, using their string representation. */
+  protected final static int KIND_STRING = 9;
+
+  /** the column to code. */
+  protected Column<?> m_Column;
+
+  /** the kind of values. */
+  protected int m_Kind;
+
+  /** the codes of primitive values. */
+  protected LongIntHashMap m_Primitives;
+
+  /** the codes of the dictionary strings, by identity. */
+  protected Map<String, Integer> m_Identity;
+
+  /** the codes of strings. */
+  protected Map<String, Integer> m_Strings;
+
+  /** the strings, in order of their codes (starting with code 1). */
+  protected List<String> m_Labels;
+
+  /** the number of codes (incl missing). */
+  protected int m_Size;
+
+  /**
+   * Builds the coder for the column.
+   *
+   * @param column	the column to code
+   */
+  public ColumnCoder(Column<?> column) {
+    int		i;
+
+    m_Column = column;
+    m_Size   = 1;
+    switch (TablesawUtils.getColumnType(column.type())) {
+      case "nd":
+      case "nf":
+	m_Kind = KIND_DOUBLE;
+	break;
+      case "ns":
+      case "ni":
+	m_Kind = KIND_INTEGRAL;
+	break;
+      case "nl":
+	m_Kind = KIND_LONG;
+	break;
+      case "dd":
+	m_Kind = KIND_DATE;
+	break;
+      case "dt":
+	m_Kind = KIND_TIME;
+	break;
+      case "ddt":
+	m_Kind = KIND_DATETIME;
+	break;
+      case "di":
+	m_Kind = KIND_INSTANT;
+	break;
+      case "b":
+	m_Kind = KIND_BOOLEAN;
+	break;
+      case "ss":
+	m_Kind = KIND_DICTIONARY;
+	break;
+      default:
+	m_Kind = KIND_STRING;
+    }
+
+    if (m_Kind == KIND_DICTIONARY) {
+      m_Identity = new IdentityHashMap<String, Integer>();
+      m_Strings  = new HashMap<String, Integer>();
+      m_Labels   = new ArrayList<String>();
+      for (i = 0; i < column.size(); i++) {
+	if (!column.isMissing(i))
+	  addString(column.getString(i));
+      }
+    }
+    else if (m_Kind == KIND_STRING) {
+      m_Strings = new HashMap<String, Integer>();
+      m_Labels  = new ArrayList<String>();
+      for (i = 0; i < column.size(); i++) {
+	if (!column.isMissing(i))
+	  addString(column.getString(i));
+      }
+    }
+    else {
+      m_Primitives = new LongIntHashMap();
+      for (i = 0; i < column.size(); i++) {
+	if (!column.isMissing(i)) {
+	  if (m_Primitives.putIfAbsent(bits(i), m_Size) == m_Size)
+	    m_Size++;
+	}
+      }
+    }
+  }
+
+  /**
+   * Adds the string, if not yet present.
+   *
+   * @param value	the string to add
+   */
+  protected void addString(String value) {
+    Integer	code;
+
+    if ((m_Identity != null) && m_Identity.containsKey(value))
+      return;
+    code = m_Strings.get(value);
+    if (code == null) {
+      code = m_Size++;
+      m_Strings.put(value, code);
+      m_Labels.add(value);
+    }
+    if (m_Identity != null)
+      m_Identity.put(value, code);
+  }
+
+  /**
+   * Returns the primitive representation of the (non-missing) value.
+   *
+   * @param row		the row
+   * @return		the representation
+   */
+  protected long bits(int row) {
+    switch (m_Kind) {
+      case KIND_DOUBLE:
+	// +0.0 turns -0.0 into 0.0
+	return Double.doubleToLongBits(((NumericColumn<?>) m_Column).getDouble(row) + 0.0);
+      case KIND_INTEGRAL:
+	return (long) ((NumericColumn<?>) m_Column).getDouble(row);
+      case KIND_LONG:
+	return ((LongColumn) m_Column).getLong(row);
+      case KIND_DATE:
+	return ((DateColumn) m_Column).getIntInternal(row);
+      case KIND_TIME:
+	return ((TimeColumn) m_Column).getIntInternal(row);
+      case KIND_DATETIME:
+	return ((DateTimeColumn) m_Column).getLongInternal(row);
+      case KIND_INSTANT:
+	return ((InstantColumn) m_Column).getLongInternal(row);
+      case KIND_BOOLEAN:
+	return ((BooleanColumn) m_Column).getByte(row);
+      default:
+	throw new IllegalStateException("Not a primitive column: " + m_Column.name());
+    }
+  }
+
+  /**
+   * Returns the column.
+   *
+   * @return		the column
+   */
+  public Column<?> getColumn() {
+    return m_Column;
+  }
+
+  /**
+   * Returns the number of codes, including the one for missing values.
+   *
+   * @return		the number of codes
+   */
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns whether the values are coded via their string representation.
+   *
+   * @return		true if string codes
+   */
+  public boolean hasLabels() {
+    return (m_Labels != null);
+  }
+
+  /**
+   * Returns the string for the code (string columns only).
+   *
+   * @param code	the code (1 or larger)
+   * @return		the string
+   * @see		#hasLabels()
+   */
+  public String getLabel(int code) {
+    return m_Labels.get(code - 1);
+  }
+
+  /**
+   * Returns the code for the value in the row.
+   *
+   * @param row		the row
+   * @return		the code, {@link #MISSING} for missing values
+   */
+  public int code(int row) {
+    Integer	code;
+    String	value;
+
+    if (m_Column.isMissing(row))
+      return MISSING;
+
+    switch (m_Kind) {
+      case KIND_DICTIONARY:
+	value = m_Column.getString(row);
+	code  = m_Identity.get(value);
+	if (code == null)
+	  code = m_Strings.get(value);
+	return code;
+      case KIND_STRING:
+	return m_Strings.get(m_Column.getString(row));
+      default:
+	return m_Primitives.get(bits(row));
+    }
+  }
+}
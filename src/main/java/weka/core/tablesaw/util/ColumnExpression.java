@@ -0,0 +1,1245 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ColumnExpression.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.TablesawUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Arithmetic expression over the columns of a table, which gets parsed once
+ * and then evaluated column-at-a-time rather than row by row: the expression
+ * tree gets compiled into a tree of kernels, each of which runs a tight loop
+ * over a block of {@link #BLOCK_SIZE} rows of primitive doubles. The blocks
+ * keep the intermediate results in the cache and operations with a constant
+ * operand get specialized kernels; constant sub-expressions get folded.
+ * <br>
+ * Numeric columns are used as is, date-like ones as milliseconds since the
+ * epoch (UTC) and boolean ones as 0/1 (see
+ * {@link TablesawUtils#getInternalValue(Column, String, int)}). Missing
+ * values are represented by NaN and propagate through all operations, apart
+ * from ismissing.
+ * <br>
+ * Grammar (lowest precedence first):
+ * <pre>
+ * expr       := or
+ * or         := and ( "|" and )*
+ * and        := not ( "&amp;" not )*
+ * not        := "!" not | comparison
+ * comparison := sum ( ( "&lt;" | "&lt;=" | "&gt;" | "&gt;=" | "=" | "!=" ) sum )?
+ * sum        := product ( ( "+" | "-" ) product )*
+ * product    := unary ( ( "*" | "/" | "%" ) unary )*
+ * unary      := "-" unary | power
+ * power      := primary ( "^" unary )?
+ * primary    := number | column | function "(" expr ( "," expr )* ")" | "(" expr ")"
+ * column     := name | "[" any name "]"
+ * </pre>
+ * Comparisons and logical operators return 1 for true and 0 for false.
+ * <br>
+ * Functions: abs, sqrt, log, log10, log1p, exp, floor, ceil, round, sin, cos,
+ * tan, sign, ismissing (1 if missing, also for string columns), min(a,b),
+ * max(a,b), pow(a,b), if(cond,a,b), and the date parts (UTC) year, month
+ * (1-12), day (1-31), dayofweek (1=Monday), dayofyear, hour, minute, second.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ColumnExpression {
+
+  /** the number of rows evaluated per block. */
+  public final static int BLOCK_SIZE = 1024;
+
+  /** the milliseconds per day. */
+  protected final static long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+  /** the unary operations/functions. */
+  protected enum UnaryOp {
+    NEG, NOT, ABS, SQRT, LOG, LOG10, LOG1P, EXP, FLOOR, CEIL, ROUND, SIN, COS, TAN, SIGN,
+    YEAR, MONTH, DAY, DAYOFWEEK, DAYOFYEAR, HOUR, MINUTE, SECOND
+  }
+
+  /** the binary operations/functions. */
+  protected enum BinaryOp {
+    ADD, SUB, MUL, DIV, MOD, POW, LT, LE, GT, GE, EQ, NE, AND, OR, MIN, MAX
+  }
+
+  /**
+   * Evaluates a block of rows.
+   */
+  protected static abstract class Kernel {
+
+    /**
+     * Evaluates the rows.
+     *
+     * @param from	the first row
+     * @param len	the number of rows (at most {@link #BLOCK_SIZE})
+     * @param out	the array to store the results in, starting at 0
+     */
+    public abstract void eval(int from, int len, double[] out);
+  }
+
+  /**
+   * Node of the parsed expression.
+   */
+  protected static abstract class Node {
+
+    /**
+     * Returns whether the node represents a constant.
+     *
+     * @return		true if constant
+     */
+    public boolean isConstant() {
+      return false;
+    }
+
+    /**
+     * Adds the names of the referenced columns.
+     *
+     * @param values	the columns whose values are used
+     * @param missing	the columns whose missing value indicators are used
+     */
+    public abstract void collectColumns(Set<String> values, Set<String> missing);
+
+    /**
+     * Compiles the node into a kernel.
+     *
+     * @param values	the column values, per column name
+     * @return		the kernel
+     */
+    public abstract Kernel compile(Map<String, double[]> values);
+  }
+
+  /**
+   * A constant.
+   */
+  protected static class ConstantNode
+    extends Node {
+
+    /** the value. */
+    protected double m_Value;
+
+    /**
+     * Initializes the node.
+     *
+     * @param value	the value
+     */
+    public ConstantNode(double value) {
+      m_Value = value;
+    }
+
+    @Override
+    public boolean isConstant() {
+      return true;
+    }
+
+    @Override
+    public void collectColumns(Set<String> values, Set<String> missing) {
+    }
+
+    @Override
+    public Kernel compile(Map<String, double[]> values) {
+      final double value = m_Value;
+      return new Kernel() {
+	@Override
+	public void eval(int from, int len, double[] out) {
+	  Arrays.fill(out, 0, len, value);
+	}
+      };
+    }
+  }
+
+  /**
+   * A column reference.
+   */
+  protected static class ColumnNode
+    extends Node {
+
+    /** the column name. */
+    protected String m_Name;
+
+    /**
+     * Initializes the node.
+     *
+     * @param name	the column name
+     */
+    public ColumnNode(String name) {
+      m_Name = name;
+    }
+
+    @Override
+    public void collectColumns(Set<String> values, Set<String> missing) {
+      values.add(m_Name);
+    }
+
+    @Override
+    public Kernel compile(Map<String, double[]> values) {
+      final double[] column = values.get(m_Name);
+      if (column == null)
+	throw new IllegalArgumentException("Column is not numeric, date-like or boolean: " + m_Name);
+      return new Kernel() {
+	@Override
+	public void eval(int from, int len, double[] out) {
+	  System.arraycopy(column, from, out, 0, len);
+	}
+      };
+    }
+  }
+
+  /**
+   * The missing value indicator of a column, which can be of any type.
+   */
+  protected static class MissingNode
+    extends Node {
+
+    /** the column name. */
+    protected String m_Name;
+
+    /**
+     * Initializes the node.
+     *
+     * @param name	the column name
+     */
+    public MissingNode(String name) {
+      m_Name = name;
+    }
+
+    @Override
+    public void collectColumns(Set<String> values, Set<String> missing) {
+      missing.add(m_Name);
+    }
+
+    @Override
+    public Kernel compile(Map<String, double[]> values) {
+      final double[] missing = values.get(missingKey(m_Name));
+      return new Kernel() {
+	@Override
+	public void eval(int from, int len, double[] out) {
+	  System.arraycopy(missing, from, out, 0, len);
+	}
+      };
+    }
+  }
+
+  /**
+   * A unary operation.
+   */
+  protected static class UnaryNode
+    extends Node {
+
+    /** the operation. */
+    protected UnaryOp m_Op;
+
+    /** the operand. */
+    protected Node m_Operand;
+
+    /**
+     * Initializes the node.
+     *
+     * @param op		the operation
+     * @param operand	the operand
+     */
+    public UnaryNode(UnaryOp op, Node operand) {
+      m_Op      = op;
+      m_Operand = operand;
+    }
+
+    @Override
+    public void collectColumns(Set<String> values, Set<String> missing) {
+      m_Operand.collectColumns(values, missing);
+    }
+
+    @Override
+    public Kernel compile(Map<String, double[]> values) {
+      final UnaryOp op = m_Op;
+      final Kernel operand = m_Operand.compile(values);
+      return new Kernel() {
+	@Override
+	public void eval(int from, int len, double[] out) {
+	  operand.eval(from, len, out);
+	  apply(op, out, len);
+	}
+      };
+    }
+  }
+
+  /**
+   * A binary operation.
+   */
+  protected static class BinaryNode
+    extends Node {
+
+    /** the operation. */
+    protected BinaryOp m_Op;
+
+    /** the left operand. */
+    protected Node m_Left;
+
+    /** the right operand. */
+    protected Node m_Right;
+
+    /**
+     * Initializes the node.
+     *
+     * @param op		the operation
+     * @param left	the left operand
+     * @param right	the right operand
+     */
+    public BinaryNode(BinaryOp op, Node left, Node right) {
+      m_Op    = op;
+      m_Left  = left;
+      m_Right = right;
+    }
+
+    @Override
+    public void collectColumns(Set<String> values, Set<String> missing) {
+      m_Left.collectColumns(values, missing);
+      m_Right.collectColumns(values, missing);
+    }
+
+    @Override
+    public Kernel compile(Map<String, double[]> values) {
+      final BinaryOp op = m_Op;
+      final Kernel left = m_Left.compile(values);
+      final Kernel right;
+      final double[] scratch;
+
+      // specialized kernel for constant right operand, no scratch buffer
+      if (m_Right.isConstant() && hasConstantKernel(op)) {
+	final double value = ((ConstantNode) m_Right).m_Value;
+	return new Kernel() {
+	  @Override
+	  public void eval(int from, int len, double[] out) {
+	    left.eval(from, len, out);
+	    applyConstant(op, out, value, len);
+	  }
+	};
+      }
+
+      right   = m_Right.compile(values);
+      scratch = new double[BLOCK_SIZE];
+      return new Kernel() {
+	@Override
+	public void eval(int from, int len, double[] out) {
+	  left.eval(from, len, out);
+	  right.eval(from, len, scratch);
+	  apply(op, out, scratch, len);
+	}
+      };
+    }
+  }
+
+  /**
+   * Conditional, if(cond,a,b).
+   */
+  protected static class IfNode
+    extends Node {
+
+    /** the condition. */
+    protected Node m_Condition;
+
+    /** the value if true. */
+    protected Node m_Then;
+
+    /** the value if false. */
+    protected Node m_Else;
+
+    /**
+     * Initializes the node.
+     *
+     * @param condition	the condition
+     * @param thenNode	the value if true
+     * @param elseNode	the value if false
+     */
+    public IfNode(Node condition, Node thenNode, Node elseNode) {
+      m_Condition = condition;
+      m_Then      = thenNode;
+      m_Else      = elseNode;
+    }
+
+    @Override
+    public void collectColumns(Set<String> values, Set<String> missing) {
+      m_Condition.collectColumns(values, missing);
+      m_Then.collectColumns(values, missing);
+      m_Else.collectColumns(values, missing);
+    }
+
+    @Override
+    public Kernel compile(Map<String, double[]> values) {
+      final Kernel condition = m_Condition.compile(values);
+      final Kernel thenKernel = m_Then.compile(values);
+      final Kernel elseKernel = m_Else.compile(values);
+      final double[] cond = new double[BLOCK_SIZE];
+      final double[] other = new double[BLOCK_SIZE];
+      return new Kernel() {
+	@Override
+	public void eval(int from, int len, double[] out) {
+	  int	i;
+	  condition.eval(from, len, cond);
+	  thenKernel.eval(from, len, out);
+	  elseKernel.eval(from, len, other);
+	  for (i = 0; i < len; i++) {
+	    if (Double.isNaN(cond[i]))
+	      out[i] = Double.NaN;
+	    else if (cond[i] == 0)
+	      out[i] = other[i];
+	  }
+	}
+      };
+    }
+  }
+
+  /** the expression. */
+  protected String m_Expression;
+
+  /** the parsed expression. */
+  protected Node m_Root;
+
+  /** the columns whose values are used. */
+  protected Set<String> m_ValueColumns;
+
+  /** the columns whose missing value indicators are used. */
+  protected Set<String> m_MissingColumns;
+
+  /** all referenced columns. */
+  protected List<String> m_Columns;
+
+  /** the current position when parsing. */
+  protected int m_Pos;
+
+  /**
+   * Parses the expression.
+   *
+   * @param expression	the expression
+   * @throws IllegalArgumentException	if the expression is invalid
+   */
+  public ColumnExpression(String expression) {
+    m_Expression = expression;
+    m_Pos        = 0;
+    m_Root       = parseOr();
+    skipWhitespace();
+    if (m_Pos < m_Expression.length())
+      throw error("Unexpected input");
+
+    m_ValueColumns   = new LinkedHashSet<String>();
+    m_MissingColumns = new LinkedHashSet<String>();
+    m_Root.collectColumns(m_ValueColumns, m_MissingColumns);
+    m_Columns = new ArrayList<String>(m_ValueColumns);
+    for (String name: m_MissingColumns) {
+      if (!m_ValueColumns.contains(name))
+	m_Columns.add(name);
+    }
+  }
+
+  /**
+   * Returns the expression.
+   *
+   * @return		the expression
+   */
+  public String getExpression() {
+    return m_Expression;
+  }
+
+  /**
+   * Returns the names of the referenced columns.
+   *
+   * @return		the names
+   */
+  public List<String> getColumns() {
+    return m_Columns;
+  }
+
+  /**
+   * Returns whether the expression is a constant.
+   *
+   * @return		true if constant
+   */
+  public boolean isConstant() {
+    return m_Root.isConstant();
+  }
+
+  /**
+   * Returns the key for the missing value indicator of a column.
+   *
+   * @param name	the column name
+   * @return		the key
+   */
+  protected static String missingKey(String name) {
+    return "\0missing\0" + name;
+  }
+
+  /**
+   * Returns the values of the column, with NaN for missing values.
+   *
+   * @param column	the column
+   * @return		the values, null if not numeric, date-like or boolean
+   */
+  public static double[] toDoubles(Column<?> column) {
+    double[]	result;
+    String	colType;
+    int		i;
+
+    if (column instanceof DoubleColumn)
+      return ((DoubleColumn) column).asDoubleArray();
+
+    colType = TablesawUtils.getColumnType(column.type());
+    if (colType.startsWith("s") || colType.isEmpty())
+      return null;
+
+    result = new double[column.size()];
+    for (i = 0; i < result.length; i++) {
+      if (column.isMissing(i))
+	result[i] = Double.NaN;
+      else
+	result[i] = TablesawUtils.getInternalValue(column, colType, i);
+    }
+
+    return result;
+  }
+
+  /**
+   * Evaluates the expression on the table.
+   *
+   * @param table	the table to evaluate on
+   * @return		the results, NaN for missing
+   * @throws IllegalArgumentException	if a column is unknown or not of a suitable type
+   */
+  public double[] evaluate(Table table) {
+    double[]			result;
+    double[]			block;
+    double[]			missing;
+    Map<String, double[]>	values;
+    Column<?>			column;
+    Kernel			kernel;
+    int				rows;
+    int				from;
+    int				len;
+    int				i;
+
+    rows   = table.rowCount();
+    values = new HashMap<String, double[]>();
+    for (String name: m_Columns) {
+      if (!table.columnNames().contains(name))
+	throw new IllegalArgumentException("Unknown column: " + name);
+      column = table.column(name);
+      if (m_ValueColumns.contains(name))
+	values.put(name, toDoubles(column));
+      if (m_MissingColumns.contains(name)) {
+	missing = new double[rows];
+	for (i = 0; i < rows; i++)
+	  missing[i] = column.isMissing(i) ? 1 : 0;
+	values.put(missingKey(name), missing);
+      }
+    }
+
+    kernel = m_Root.compile(values);
+    result = new double[rows];
+    block  = new double[BLOCK_SIZE];
+    for (from = 0; from < rows; from += BLOCK_SIZE) {
+      len = Math.min(BLOCK_SIZE, rows - from);
+      kernel.eval(from, len, block);
+      System.arraycopy(block, 0, result, from, len);
+    }
+
+    return result;
+  }
+
+  /**
+   * Evaluates the expression on the table and returns the results as column.
+   *
+   * @param table	the table to evaluate on
+   * @param name	the name of the column
+   * @return		the column
+   * @throws IllegalArgumentException	if a column is unknown or not of a suitable type
+   */
+  public DoubleColumn evaluate(Table table, String name) {
+    return DoubleColumn.create(name, evaluate(table));
+  }
+
+  /**
+   * Applies the unary operation to the values.
+   *
+   * @param op		the operation
+   * @param values	the values to update
+   * @param len		the number of values
+   */
+  protected static void apply(UnaryOp op, double[] values, int len) {
+    int		i;
+    long	millis;
+
+    switch (op) {
+      case NEG:
+	for (i = 0; i < len; i++)
+	  values[i] = -values[i];
+	break;
+      case NOT:
+	for (i = 0; i < len; i++)
+	  values[i] = Double.isNaN(values[i]) ? Double.NaN : (values[i] == 0 ? 1 : 0);
+	break;
+      case ABS:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.abs(values[i]);
+	break;
+      case SQRT:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.sqrt(values[i]);
+	break;
+      case LOG:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.log(values[i]);
+	break;
+      case LOG10:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.log10(values[i]);
+	break;
+      case LOG1P:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.log1p(values[i]);
+	break;
+      case EXP:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.exp(values[i]);
+	break;
+      case FLOOR:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.floor(values[i]);
+	break;
+      case CEIL:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.ceil(values[i]);
+	break;
+      case ROUND:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.rint(values[i]);
+	break;
+      case SIN:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.sin(values[i]);
+	break;
+      case COS:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.cos(values[i]);
+	break;
+      case TAN:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.tan(values[i]);
+	break;
+      case SIGN:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.signum(values[i]);
+	break;
+      case YEAR:
+      case MONTH:
+      case DAY:
+      case DAYOFYEAR:
+	for (i = 0; i < len; i++) {
+	  if (!Double.isNaN(values[i]))
+	    values[i] = datePart(op, LocalDate.ofEpochDay(Math.floorDiv((long) values[i], MILLIS_PER_DAY)));
+	}
+	break;
+      case DAYOFWEEK:
+	for (i = 0; i < len; i++) {
+	  if (!Double.isNaN(values[i]))
+	    values[i] = Math.floorMod(Math.floorDiv((long) values[i], MILLIS_PER_DAY) + 3, 7) + 1;
+	}
+	break;
+      case HOUR:
+	for (i = 0; i < len; i++) {
+	  if (!Double.isNaN(values[i]))
+	    values[i] = Math.floorMod((long) values[i], MILLIS_PER_DAY) / (60 * 60 * 1000);
+	}
+	break;
+      case MINUTE:
+	for (i = 0; i < len; i++) {
+	  if (!Double.isNaN(values[i]))
+	    values[i] = Math.floorMod((long) values[i], 60L * 60 * 1000) / (60 * 1000);
+	}
+	break;
+      case SECOND:
+	for (i = 0; i < len; i++) {
+	  if (!Double.isNaN(values[i])) {
+	    millis    = Math.floorMod((long) values[i], 60L * 1000);
+	    values[i] = millis / 1000;
+	  }
+	}
+	break;
+      default:
+	throw new IllegalStateException("Unhandled operation: " + op);
+    }
+  }
+
+  /**
+   * Returns the part of the date.
+   *
+   * @param op		the date part
+   * @param date	the date
+   * @return		the part
+   */
+  protected static double datePart(UnaryOp op, LocalDate date) {
+    switch (op) {
+      case YEAR:
+	return date.getYear();
+      case MONTH:
+	return date.getMonthValue();
+      case DAY:
+	return date.getDayOfMonth();
+      case DAYOFYEAR:
+	return date.getDayOfYear();
+      default:
+	throw new IllegalStateException("Not a date part: " + op);
+    }
+  }
+
+  /**
+   * Returns whether the binary operation has a specialized kernel for a
+   * constant right operand.
+   *
+   * @param op		the operation
+   * @return		true if specialized
+   */
+  protected static boolean hasConstantKernel(BinaryOp op) {
+    switch (op) {
+      case ADD:
+      case SUB:
+      case MUL:
+      case DIV:
+	return true;
+      default:
+	return false;
+    }
+  }
+
+  /**
+   * Applies the binary operation with a constant right operand.
+   *
+   * @param op		the operation
+   * @param values	the left operands, get replaced with the results
+   * @param value	the right operand
+   * @param len		the number of values
+   * @see		#hasConstantKernel(BinaryOp)
+   */
+  protected static void applyConstant(BinaryOp op, double[] values, double value, int len) {
+    int		i;
+
+    switch (op) {
+      case ADD:
+	for (i = 0; i < len; i++)
+	  values[i] += value;
+	break;
+      case SUB:
+	for (i = 0; i < len; i++)
+	  values[i] -= value;
+	break;
+      case MUL:
+	for (i = 0; i < len; i++)
+	  values[i] *= value;
+	break;
+      case DIV:
+	for (i = 0; i < len; i++)
+	  values[i] /= value;
+	break;
+      default:
+	throw new IllegalStateException("No constant kernel for operation: " + op);
+    }
+  }
+
+  /**
+   * Applies the binary operation.
+   *
+   * @param op		the operation
+   * @param values	the left operands, get replaced with the results
+   * @param right	the right operands
+   * @param len		the number of values
+   */
+  protected static void apply(BinaryOp op, double[] values, double[] right, int len) {
+    int		i;
+
+    switch (op) {
+      case ADD:
+	for (i = 0; i < len; i++)
+	  values[i] += right[i];
+	break;
+      case SUB:
+	for (i = 0; i < len; i++)
+	  values[i] -= right[i];
+	break;
+      case MUL:
+	for (i = 0; i < len; i++)
+	  values[i] *= right[i];
+	break;
+      case DIV:
+	for (i = 0; i < len; i++)
+	  values[i] /= right[i];
+	break;
+      case MOD:
+	for (i = 0; i < len; i++)
+	  values[i] %= right[i];
+	break;
+      // comparisons: both tests fail if either value is NaN
+      case LT:
+	for (i = 0; i < len; i++)
+	  values[i] = (values[i] < right[i]) ? 1 : ((values[i] >= right[i]) ? 0 : Double.NaN);
+	break;
+      case LE:
+	for (i = 0; i < len; i++)
+	  values[i] = (values[i] <= right[i]) ? 1 : ((values[i] > right[i]) ? 0 : Double.NaN);
+	break;
+      case GT:
+	for (i = 0; i < len; i++)
+	  values[i] = (values[i] > right[i]) ? 1 : ((values[i] <= right[i]) ? 0 : Double.NaN);
+	break;
+      case GE:
+	for (i = 0; i < len; i++)
+	  values[i] = (values[i] >= right[i]) ? 1 : ((values[i] < right[i]) ? 0 : Double.NaN);
+	break;
+      case EQ:
+	for (i = 0; i < len; i++)
+	  values[i] = (values[i] == right[i]) ? 1 : (((values[i] < right[i]) || (values[i] > right[i])) ? 0 : Double.NaN);
+	break;
+      case MIN:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.min(values[i], right[i]);
+	break;
+      case MAX:
+	for (i = 0; i < len; i++)
+	  values[i] = Math.max(values[i], right[i]);
+	break;
+      default:
+	for (i = 0; i < len; i++)
+	  values[i] = apply(op, values[i], right[i]);
+    }
+  }
+
+  /**
+   * Applies the binary operation to a pair of values.
+   *
+   * @param op		the operation
+   * @param a		the left operand
+   * @param b		the right operand
+   * @return		the result, NaN if either operand is missing
+   */
+  protected static double apply(BinaryOp op, double a, double b) {
+    if (Double.isNaN(a) || Double.isNaN(b))
+      return Double.NaN;
+
+    switch (op) {
+      case ADD:
+	return a + b;
+      case SUB:
+	return a - b;
+      case MUL:
+	return a * b;
+      case DIV:
+	return a / b;
+      case MOD:
+	return a % b;
+      case POW:
+	return Math.pow(a, b);
+      case LT:
+	return (a < b) ? 1 : 0;
+      case LE:
+	return (a <= b) ? 1 : 0;
+      case GT:
+	return (a > b) ? 1 : 0;
+      case GE:
+	return (a >= b) ? 1 : 0;
+      case EQ:
+	return (a == b) ? 1 : 0;
+      case NE:
+	return (a != b) ? 1 : 0;
+      case AND:
+	return ((a != 0) && (b != 0)) ? 1 : 0;
+      case OR:
+	return ((a != 0) || (b != 0)) ? 1 : 0;
+      case MIN:
+	return Math.min(a, b);
+      case MAX:
+	return Math.max(a, b);
+      default:
+	throw new IllegalStateException("Unhandled operation: " + op);
+    }
+  }
+
+  /**
+   * Creates a unary node, folding constants.
+   *
+   * @param op		the operation
+   * @param operand	the operand
+   * @return		the node
+   */
+  protected Node unary(UnaryOp op, Node operand) {
+    double[]	value;
+
+    if (operand.isConstant()) {
+      value = new double[]{((ConstantNode) operand).m_Value};
+      apply(op, value, 1);
+      return new ConstantNode(value[0]);
+    }
+    return new UnaryNode(op, operand);
+  }
+
+  /**
+   * Creates a binary node, folding constants.
+   *
+   * @param op		the operation
+   * @param left	the left operand
+   * @param right	the right operand
+   * @return		the node
+   */
+  protected Node binary(BinaryOp op, Node left, Node right) {
+    if (left.isConstant() && right.isConstant())
+      return new ConstantNode(apply(op, ((ConstantNode) left).m_Value, ((ConstantNode) right).m_Value));
+    return new BinaryNode(op, left, right);
+  }
+
+  /**
+   * Creates an exception for a parse error at the current position.
+   *
+   * @param msg		the message
+   * @return		the exception
+   */
+  protected IllegalArgumentException error(String msg) {
+    return new IllegalArgumentException(msg + " at position " + (m_Pos + 1) + " in expression: " + m_Expression);
+  }
+
+  /**
+   * Skips any whitespace.
+   */
+  protected void skipWhitespace() {
+    while ((m_Pos < m_Expression.length()) && Character.isWhitespace(m_Expression.charAt(m_Pos)))
+      m_Pos++;
+  }
+
+  /**
+   * Consumes the token if present.
+   *
+   * @param token	the token to look for
+   * @return		true if consumed
+   */
+  protected boolean consume(String token) {
+    skipWhitespace();
+    if (m_Expression.startsWith(token, m_Pos)) {
+      m_Pos += token.length();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Consumes the token or fails.
+   *
+   * @param token	the expected token
+   */
+  protected void expect(String token) {
+    if (!consume(token))
+      throw error("Expected '" + token + "'");
+  }
+
+  /**
+   * Parses "or".
+   *
+   * @return		the node
+   */
+  protected Node parseOr() {
+    Node	result;
+
+    result = parseAnd();
+    while (consume("|"))
+      result = binary(BinaryOp.OR, result, parseAnd());
+
+    return result;
+  }
+
+  /**
+   * Parses "and".
+   *
+   * @return		the node
+   */
+  protected Node parseAnd() {
+    Node	result;
+
+    result = parseNot();
+    while (consume("&"))
+      result = binary(BinaryOp.AND, result, parseNot());
+
+    return result;
+  }
+
+  /**
+   * Parses "not".
+   *
+   * @return		the node
+   */
+  protected Node parseNot() {
+    skipWhitespace();
+    if (m_Expression.startsWith("!", m_Pos) && !m_Expression.startsWith("!=", m_Pos)) {
+      m_Pos++;
+      return unary(UnaryOp.NOT, parseNot());
+    }
+    return parseComparison();
+  }
+
+  /**
+   * Parses a comparison.
+   *
+   * @return		the node
+   */
+  protected Node parseComparison() {
+    Node	left;
+
+    left = parseSum();
+    if (consume("<="))
+      return binary(BinaryOp.LE, left, parseSum());
+    if (consume(">="))
+      return binary(BinaryOp.GE, left, parseSum());
+    if (consume("!="))
+      return binary(BinaryOp.NE, left, parseSum());
+    if (consume("<"))
+      return binary(BinaryOp.LT, left, parseSum());
+    if (consume(">"))
+      return binary(BinaryOp.GT, left, parseSum());
+    if (consume("=="))
+      return binary(BinaryOp.EQ, left, parseSum());
+    if (consume("="))
+      return binary(BinaryOp.EQ, left, parseSum());
+    return left;
+  }
+
+  /**
+   * Parses a sum.
+   *
+   * @return		the node
+   */
+  protected Node parseSum() {
+    Node	result;
+
+    result = parseProduct();
+    while (true) {
+      if (consume("+"))
+	result = binary(BinaryOp.ADD, result, parseProduct());
+      else if (consume("-"))
+	result = binary(BinaryOp.SUB, result, parseProduct());
+      else
+	return result;
+    }
+  }
+
+  /**
+   * Parses a product.
+   *
+   * @return		the node
+   */
+  protected Node parseProduct() {
+    Node	result;
+
+    result = parseUnary();
+    while (true) {
+      if (consume("*"))
+	result = binary(BinaryOp.MUL, result, parseUnary());
+      else if (consume("/"))
+	result = binary(BinaryOp.DIV, result, parseUnary());
+      else if (consume("%"))
+	result = binary(BinaryOp.MOD, result, parseUnary());
+      else
+	return result;
+    }
+  }
+
+  /**
+   * Parses a unary minus.
+   *
+   * @return		the node
+   */
+  protected Node parseUnary() {
+    if (consume("-"))
+      return unary(UnaryOp.NEG, parseUnary());
+    return parsePower();
+  }
+
+  /**
+   * Parses a power.
+   *
+   * @return		the node
+   */
+  protected Node parsePower() {
+    Node	base;
+
+    base = parsePrimary();
+    if (consume("^"))
+      return binary(BinaryOp.POW, base, parseUnary());
+    return base;
+  }
+
+  /**
+   * Parses a number, column, function call or parenthesized expression.
+   *
+   * @return		the node
+   */
+  protected Node parsePrimary() {
+    Node	result;
+    int		start;
+    int		end;
+    char	c;
+    String	name;
+
+    skipWhitespace();
+    if (m_Pos >= m_Expression.length())
+      throw error("Unexpected end");
+
+    c = m_Expression.charAt(m_Pos);
+    if (c == '(') {
+      m_Pos++;
+      result = parseOr();
+      expect(")");
+      return result;
+    }
+
+    if (c == '[') {
+      end = m_Expression.indexOf(']', m_Pos);
+      if (end == -1)
+	throw error("Unterminated column name");
+      name  = m_Expression.substring(m_Pos + 1, end);
+      m_Pos = end + 1;
+      return new ColumnNode(name);
+    }
+
+    start = m_Pos;
+    if (Character.isDigit(c) || (c == '.')) {
+      while ((m_Pos < m_Expression.length()) && (Character.isDigit(m_Expression.charAt(m_Pos)) || (m_Expression.charAt(m_Pos) == '.')))
+	m_Pos++;
+      if ((m_Pos < m_Expression.length()) && ((m_Expression.charAt(m_Pos) == 'e') || (m_Expression.charAt(m_Pos) == 'E'))) {
+	m_Pos++;
+	if ((m_Pos < m_Expression.length()) && ((m_Expression.charAt(m_Pos) == '+') || (m_Expression.charAt(m_Pos) == '-')))
+	  m_Pos++;
+	while ((m_Pos < m_Expression.length()) && Character.isDigit(m_Expression.charAt(m_Pos)))
+	  m_Pos++;
+      }
+      try {
+	return new ConstantNode(Double.parseDouble(m_Expression.substring(start, m_Pos)));
+      }
+      catch (NumberFormatException e) {
+	m_Pos = start;
+	throw error("Invalid number");
+      }
+    }
+
+    if (Character.isLetter(c) || (c == '_')) {
+      while ((m_Pos < m_Expression.length())
+	&& (Character.isLetterOrDigit(m_Expression.charAt(m_Pos)) || (m_Expression.charAt(m_Pos) == '_') || (m_Expression.charAt(m_Pos) == '.')))
+	m_Pos++;
+      name = m_Expression.substring(start, m_Pos);
+      if (consume("("))
+	return parseFunction(name);
+      return new ColumnNode(name);
+    }
+
+    throw error("Unexpected character '" + c + "'");
+  }
+
+  /**
+   * Parses the arguments of the function, the opening parenthesis has been
+   * consumed already.
+   *
+   * @param name	the name of the function
+   * @return		the node
+   */
+  protected Node parseFunction(String name) {
+    List<Node>	args;
+    String	lower;
+
+    lower = name.toLowerCase();
+
+    // operates on the column itself, so that string columns can be checked as well
+    if (lower.equals("ismissing")) {
+      args = parseArguments();
+      if ((args.size() != 1) || !(args.get(0) instanceof ColumnNode))
+	throw error("Function 'ismissing' requires a single column as argument");
+      return new MissingNode(((ColumnNode) args.get(0)).m_Name);
+    }
+
+    args = parseArguments();
+    switch (lower) {
+      case "min":
+	checkArguments(name, args, 2);
+	return binary(BinaryOp.MIN, args.get(0), args.get(1));
+      case "max":
+	checkArguments(name, args, 2);
+	return binary(BinaryOp.MAX, args.get(0), args.get(1));
+      case "pow":
+	checkArguments(name, args, 2);
+	return binary(BinaryOp.POW, args.get(0), args.get(1));
+      case "if":
+	checkArguments(name, args, 3);
+	if (args.get(0).isConstant())
+	  return (((ConstantNode) args.get(0)).m_Value != 0) ? args.get(1) : args.get(2);
+	return new IfNode(args.get(0), args.get(1), args.get(2));
+      default:
+	checkArguments(name, args, 1);
+	try {
+	  return unary(UnaryOp.valueOf(lower.toUpperCase()), args.get(0));
+	}
+	catch (IllegalArgumentException e) {
+	  throw error("Unknown function '" + name + "'");
+	}
+    }
+  }
+
+  /**
+   * Parses the comma-separated arguments, including the closing parenthesis.
+   *
+   * @return		the arguments
+   */
+  protected List<Node> parseArguments() {
+    List<Node>	result;
+
+    result = new ArrayList<Node>();
+    if (consume(")"))
+      return result;
+    do {
+      result.add(parseOr());
+    }
+    while (consume(","));
+    expect(")");
+
+    return result;
+  }
+
+  /**
+   * Checks the number of arguments.
+   *
+   * @param name	the name of the function
+   * @param args	the arguments
+   * @param count	the expected number
+   */
+  protected void checkArguments(String name, List<Node> args, int count) {
+    if (args.size() != count)
+      throw error("Function '" + name + "' requires " + count + " argument(s), but got " + args.size());
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ColumnSketch.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.BooleanColumn;
+import tech.tablesaw.api.DateColumn;
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.InstantColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.TimeColumn;
+import tech.tablesaw.columns.Column;
+import weka.core.TablesawUtils;
+
+import java.io.Serializable;
+
+/**
+ * Mergeable sketches of a single column: statistics with approximate
+ * quantiles (see {@link ColumnStatistics}) and the approximate number of
+ * distinct values (see {@link HyperLogLog}).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ColumnSketch
+  implements Serializable {
+
+  private static final long serialVersionUID = -2200498063914566423L;
+
+  /** the name of the column. */
+  protected String m_Name;
+
+  /** the type of the column (see {@link TablesawUtils#getColumnType(tech.tablesaw.api.ColumnType)}). */
+  protected String m_Type;
+
+  /** the statistics. */
+  protected ColumnStatistics m_Statistics;
+
+  /** the distinct count sketch. */
+  protected HyperLogLog m_Distinct;
+
+  /**
+   * Initializes the sketch.
+   *
+   * @param name	the name of the column
+   * @param type	the type of the column
+   * @param numeric	whether the column is numeric
+   * @param k		the accuracy parameter of the quantile sketch
+   * @param precision	the precision of the distinct count sketch
+   */
+  public ColumnSketch(String name, String type, boolean numeric, int k, int precision) {
+    this(name, type, numeric, k, precision, KllSketch.DEFAULT_SEED);
+  }
+
+  /**
+   * Initializes the sketch.
+   *
+   * @param name	the name of the column
+   * @param type	the type of the column
+   * @param numeric	whether the column is numeric
+   * @param k		the accuracy parameter of the quantile sketch
+   * @param precision	the precision of the distinct count sketch
+   * @param seed	the seed for the quantile sketch
+   */
+  public ColumnSketch(String name, String type, boolean numeric, int k, int precision, long seed) {
+    m_Name       = name;
+    m_Type       = type;
+    m_Statistics = new ColumnStatistics(numeric, k, seed);
+    m_Distinct   = new HyperLogLog(precision);
+  }
+
+  /**
+   * Initializes the sketch for the column.
+   *
+   * @param column	the column
+   * @param k		the accuracy parameter of the quantile sketch
+   * @param precision	the precision of the distinct count sketch
+   */
+  public ColumnSketch(Column<?> column, int k, int precision) {
+    this(column, k, precision, KllSketch.DEFAULT_SEED);
+  }
+
+  /**
+   * Initializes the sketch for the column.
+   *
+   * @param column	the column
+   * @param k		the accuracy parameter of the quantile sketch
+   * @param precision	the precision of the distinct count sketch
+   * @param seed	the seed for the quantile sketch
+   */
+  public ColumnSketch(Column<?> column, int k, int precision, long seed) {
+    this(column.name(), TablesawUtils.getColumnType(column.type()), column instanceof NumericColumn, k, precision, seed);
+  }
+
+  /**
+   * Returns the name of the column.
+   *
+   * @return		the name
+   */
+  public String getName() {
+    return m_Name;
+  }
+
+  /**
+   * Returns the type of the column.
+   *
+   * @return		the type
+   */
+  public String getType() {
+    return m_Type;
+  }
+
+  /**
+   * Returns the statistics.
+   *
+   * @return		the statistics
+   */
+  public ColumnStatistics getStatistics() {
+    return m_Statistics;
+  }
+
+  /**
+   * Returns the distinct count sketch.
+   *
+   * @return		the sketch
+   */
+  public HyperLogLog getDistinct() {
+    return m_Distinct;
+  }
+
+  /**
+   * Adds the rows of the column.
+   *
+   * @param column	the column to add
+   * @param from	the first row (incl)
+   * @param to		the last row (excl)
+   */
+  public void add(Column<?> column, int from, int to) {
+    int		i;
+
+    m_Statistics.add(column, from, to);
+
+    switch (m_Type) {
+      case "nd":
+      case "nf":
+      case "ns":
+      case "ni":
+      case "nl":
+	for (i = from; i < to; i++) {
+	  if (!column.isMissing(i))
+	    m_Distinct.add(((NumericColumn<?>) column).getDouble(i));
+	}
+	break;
+      case "dd":
+	for (i = from; i < to; i++) {
+	  if (!column.isMissing(i))
+	    m_Distinct.add(((DateColumn) column).getIntInternal(i));
+	}
+	break;
+      case "dt":
+	for (i = from; i < to; i++) {
+	  if (!column.isMissing(i))
+	    m_Distinct.add(((TimeColumn) column).getIntInternal(i));
+	}
+	break;
+      case "ddt":
+	for (i = from; i < to; i++) {
+	  if (!column.isMissing(i))
+	    m_Distinct.add(((DateTimeColumn) column).getLongInternal(i));
+	}
+	break;
+      case "di":
+	for (i = from; i < to; i++) {
+	  if (!column.isMissing(i))
+	    m_Distinct.add(((InstantColumn) column).getLongInternal(i));
+	}
+	break;
+      case "b":
+	for (i = from; i < to; i++) {
+	  if (!column.isMissing(i))
+	    m_Distinct.add(((BooleanColumn) column).getByte(i));
+	}
+	break;
+      default:
+	for (i = from; i < to; i++) {
+	  if (!column.isMissing(i))
+	    m_Distinct.add(column.getString(i));
+	}
+    }
+  }
+
+  /**
+   * Merges the other sketch into this one.
+   *
+   * @param other	the sketch to merge
+   */
+  public void merge(ColumnSketch other) {
+    if (!m_Type.equals(other.m_Type))
+      throw new IllegalArgumentException("Column '" + m_Name + "' has different types: " + m_Type + " != " + other.m_Type);
+    m_Statistics.merge(other.m_Statistics);
+    m_Distinct.merge(other.m_Distinct);
+  }
+}
@@ -0,0 +1,292 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ColumnStatistics.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.columns.Column;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mergeable accumulator for the statistics of a column: count, missing
+ * values, mean, variance (Welford, merged with the parallel formula of Chan
+ * et al.), min/max and approximate quantiles (see {@link KllSketch}).
+ * <br>
+ * Non-numeric columns only get their values and missing values counted.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ColumnStatistics
+  implements Serializable {
+
+  private static final long serialVersionUID = 3399135011402749187L;
+
+  /** the number of non-missing values. */
+  protected long m_Count;
+
+  /** the number of missing values. */
+  protected long m_Missing;
+
+  /** the running mean. */
+  protected double m_Mean;
+
+  /** the running sum of squared differences from the mean. */
+  protected double m_M2;
+
+  /** the smallest value. */
+  protected double m_Min;
+
+  /** the largest value. */
+  protected double m_Max;
+
+  /** the quantile sketch, null if not numeric. */
+  protected KllSketch m_Sketch;
+
+  /**
+   * Initializes the accumulator.
+   *
+   * @param numeric	whether numeric statistics are to be collected
+   * @param k		the accuracy parameter of the quantile sketch
+   */
+  public ColumnStatistics(boolean numeric, int k) {
+    this(numeric, k, KllSketch.DEFAULT_SEED);
+  }
+
+  /**
+   * Initializes the accumulator.
+   *
+   * @param numeric	whether numeric statistics are to be collected
+   * @param k		the accuracy parameter of the quantile sketch
+   * @param seed	the seed for the quantile sketch
+   */
+  public ColumnStatistics(boolean numeric, int k, long seed) {
+    m_Count   = 0;
+    m_Missing = 0;
+    m_Mean    = 0.0;
+    m_M2      = 0.0;
+    m_Min     = Double.NaN;
+    m_Max     = Double.NaN;
+    m_Sketch  = numeric ? new KllSketch(k, seed) : null;
+  }
+
+  /**
+   * Returns whether numeric statistics are collected.
+   *
+   * @return		true if numeric
+   */
+  public boolean isNumeric() {
+    return (m_Sketch != null);
+  }
+
+  /**
+   * Adds the value.
+   *
+   * @param value	the value to add, NaN is counted as missing
+   */
+  public void add(double value) {
+    double	delta;
+
+    if (Double.isNaN(value)) {
+      m_Missing++;
+      return;
+    }
+
+    m_Count++;
+    delta   = value - m_Mean;
+    m_Mean += delta / m_Count;
+    m_M2   += delta * (value - m_Mean);
+    if ((m_Count == 1) || (value < m_Min))
+      m_Min = value;
+    if ((m_Count == 1) || (value > m_Max))
+      m_Max = value;
+    m_Sketch.update(value);
+  }
+
+  /**
+   * Adds the rows of the column.
+   *
+   * @param column	the column to add
+   * @param from	the first row (incl)
+   * @param to		the last row (excl)
+   */
+  public void add(Column<?> column, int from, int to) {
+    NumericColumn<?>	numeric;
+    int			i;
+
+    if (isNumeric()) {
+      numeric = (NumericColumn<?>) column;
+      for (i = from; i < to; i++) {
+	if (numeric.isMissing(i))
+	  m_Missing++;
+	else
+	  add(numeric.getDouble(i));
+      }
+    }
+    else {
+      for (i = from; i < to; i++) {
+	if (column.isMissing(i))
+	  m_Missing++;
+	else
+	  m_Count++;
+      }
+    }
+  }
+
+  /**
+   * Merges the other accumulator into this one.
+   *
+   * @param other	the accumulator to merge
+   */
+  public void merge(ColumnStatistics other) {
+    long	count;
+    double	delta;
+
+    m_Missing += other.m_Missing;
+    if (other.m_Count == 0)
+      return;
+
+    if (isNumeric()) {
+      if (m_Count == 0) {
+	m_Mean = other.m_Mean;
+	m_M2   = other.m_M2;
+	m_Min  = other.m_Min;
+	m_Max  = other.m_Max;
+      }
+      else {
+	count  = m_Count + other.m_Count;
+	delta  = other.m_Mean - m_Mean;
+	m_Mean += delta * other.m_Count / count;
+	m_M2   += other.m_M2 + delta * delta * ((double) m_Count * other.m_Count / count);
+	m_Min  = Math.min(m_Min, other.m_Min);
+	m_Max  = Math.max(m_Max, other.m_Max);
+      }
+      m_Sketch.merge(other.m_Sketch);
+    }
+    m_Count += other.m_Count;
+  }
+
+  /**
+   * Returns the number of non-missing values.
+   *
+   * @return		the count
+   */
+  public long getCount() {
+    return m_Count;
+  }
+
+  /**
+   * Returns the number of missing values.
+   *
+   * @return		the count
+   */
+  public long getMissing() {
+    return m_Missing;
+  }
+
+  /**
+   * Returns the mean.
+   *
+   * @return		the mean, NaN if not numeric or no values
+   */
+  public double getMean() {
+    if (!isNumeric() || (m_Count == 0))
+      return Double.NaN;
+    return m_Mean;
+  }
+
+  /**
+   * Returns the (sample) variance.
+   *
+   * @return		the variance, NaN if not numeric or less than two values
+   */
+  public double getVariance() {
+    if (!isNumeric() || (m_Count < 2))
+      return Double.NaN;
+    return m_M2 / (m_Count - 1);
+  }
+
+  /**
+   * Returns the (sample) standard deviation.
+   *
+   * @return		the standard deviation, NaN if not numeric or less than two values
+   */
+  public double getStdDev() {
+    return Math.sqrt(getVariance());
+  }
+
+  /**
+   * Returns the smallest value.
+   *
+   * @return		the minimum, NaN if not numeric or no values
+   */
+  public double getMin() {
+    return m_Min;
+  }
+
+  /**
+   * Returns the largest value.
+   *
+   * @return		the maximum, NaN if not numeric or no values
+   */
+  public double getMax() {
+    return m_Max;
+  }
+
+  /**
+   * Returns the approximate quantiles.
+   *
+   * @param fractions	the fractions (0-1)
+   * @return		the quantiles, NaN if not numeric or no values
+   */
+  public double[] getQuantiles(double[] fractions) {
+    double[]	result;
+
+    if (isNumeric())
+      return m_Sketch.getQuantiles(fractions);
+
+    result = new double[fractions.length];
+    Arrays.fill(result, Double.NaN);
+    return result;
+  }
+
+  /**
+   * Computes the statistics of all the columns in a single parallel pass
+   * (see {@link ParallelColumnScan}). The quantile sketch of each chunk uses
+   * its own seed (see {@link KllSketch#seed(int, int)}).
+   *
+   * @param columns	the columns to compute the statistics for
+   * @param k		the accuracy parameter of the quantile sketches
+   * @return		the statistics, one per column
+   */
+  public static ColumnStatistics[] compute(final List<Column<?>> columns, final int k) {
+    List<ColumnStatistics>	result;
+
+    result = ParallelColumnScan.scan(columns, (int col, int from, int to) -> {
+      ColumnStatistics stats = new ColumnStatistics(columns.get(col) instanceof NumericColumn, k, KllSketch.seed(col, ParallelColumnScan.chunk(from)));
+      stats.add(columns.get(col), from, to);
+      return stats;
+    }, ColumnStatistics::merge);
+
+    return result.toArray(new ColumnStatistics[0]);
+  }
+}
@@ -0,0 +1,342 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ColumnStore.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Persistent column store for {@link OffHeapTable}s, which gets opened by
+ * memory-mapping the column files, i.e., without parsing the data. The pages
+ * get faulted in on demand and are shared via the page cache between all
+ * processes that open the same store.
+ * <br>
+ * A store consists of the schema file (extension {@link #EXTENSION}, a
+ * properties file with the name, the number of rows and the name, type and
+ * kind of each column) and a directory next to it (schema file name with
+ * {@link #COLUMNS_SUFFIX} instead of the extension), which contains a file
+ * per column with the raw little-endian values ("&lt;index&gt;.col") and a file
+ * per dictionary column with its strings ("&lt;index&gt;.dict").
+ * <br>
+ * Only the dictionaries get read into the heap when opening a store.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ColumnStore {
+
+  /** the extension of the schema file. */
+  public final static String EXTENSION = ".tcs";
+
+  /** the suffix of the directory with the column files. */
+  public final static String COLUMNS_SUFFIX = ".columns";
+
+  /** the version of the format. */
+  public final static int VERSION = 1;
+
+  /** the kind for double columns. */
+  public final static String KIND_DOUBLE = "double";
+
+  /** the kind for long columns. */
+  public final static String KIND_LONG = "long";
+
+  /** the kind for dictionary columns. */
+  public final static String KIND_DICTIONARY = "dictionary";
+
+  /**
+   * Returns the directory with the column files for the schema file.
+   *
+   * @param schema	the schema file
+   * @return		the directory
+   */
+  public static File getColumnsDir(File schema) {
+    String	name;
+
+    name = schema.getName();
+    if (name.endsWith(EXTENSION))
+      name = name.substring(0, name.length() - EXTENSION.length());
+
+    return new File(schema.getAbsoluteFile().getParentFile(), name + COLUMNS_SUFFIX);
+  }
+
+  /**
+   * Writes the table to the store.
+   *
+   * @param table	the table to write
+   * @param schema	the schema file of the store
+   * @throws IOException	if writing fails
+   */
+  public static void write(OffHeapTable table, File schema) throws IOException {
+    File		dir;
+    Properties		props;
+    OffHeapColumn	column;
+    int			i;
+    Writer		writer;
+
+    dir = getColumnsDir(schema);
+    if (!dir.exists() && !dir.mkdirs())
+      throw new IOException("Failed to create column directory: " + dir);
+
+    props = new Properties();
+    props.setProperty("version", "" + VERSION);
+    props.setProperty("name", (table.name() == null) ? "" : table.name());
+    props.setProperty("rows", "" + table.rowCount());
+    props.setProperty("columns", "" + table.columnCount());
+    for (i = 0; i < table.columnCount(); i++) {
+      column = table.column(i);
+      props.setProperty("column." + i + ".name", column.getName());
+      props.setProperty("column." + i + ".type", column.getType());
+      if (column instanceof OffHeapDictionaryColumn) {
+        props.setProperty("column." + i + ".kind", KIND_DICTIONARY);
+        writeDictionary((OffHeapDictionaryColumn) column, new File(dir, i + ".dict"));
+      }
+      else if (column instanceof OffHeapLongColumn) {
+        props.setProperty("column." + i + ".kind", KIND_LONG);
+      }
+      else {
+        props.setProperty("column." + i + ".kind", KIND_DOUBLE);
+      }
+      writeValues(column, new File(dir, i + ".col"));
+    }
+
+    // schema last, a store without one is incomplete
+    writer = new OutputStreamWriter(new FileOutputStream(schema), StandardCharsets.UTF_8);
+    try {
+      props.store(writer, "Tablesaw column store");
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes the raw values of the column to the file.
+   *
+   * @param column	the column to write
+   * @param file	the file to write to
+   * @throws IOException	if writing fails
+   */
+  protected static void writeValues(OffHeapColumn column, File file) throws IOException {
+    FileOutputStream	out;
+    FileChannel		channel;
+    ByteBuffer		view;
+    int			i;
+
+    out = new FileOutputStream(file);
+    try {
+      channel = out.getChannel();
+      for (i = 0; i < column.numChunks(); i++) {
+        view = column.chunkView(i);
+        while (view.hasRemaining())
+          channel.write(view);
+      }
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes the strings of the dictionary column to the file (number of
+   * strings, followed by length and UTF-8 bytes of each string).
+   *
+   * @param column	the column to write
+   * @param file	the file to write to
+   * @throws IOException	if writing fails
+   */
+  protected static void writeDictionary(OffHeapDictionaryColumn column, File file) throws IOException {
+    DataOutputStream	out;
+    byte[]		bytes;
+    int			code;
+
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(column.numCodes() - 1);
+      for (code = 1; code < column.numCodes(); code++) {
+        bytes = column.getLabel(code).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Opens the store by memory-mapping the column files. The returned table
+   * is read-only and must be closed to unmap the files.
+   *
+   * @param schema	the schema file of the store
+   * @return		the table
+   * @throws IOException	if the store is invalid or mapping fails
+   */
+  public static OffHeapTable open(File schema) throws IOException {
+    OffHeapTable		result;
+    File			dir;
+    Properties			props;
+    Reader			reader;
+    int				rows;
+    int				columns;
+    int				i;
+    String			name;
+    String			type;
+    String			kind;
+    OffHeapColumn		column;
+    OffHeapDictionaryColumn	dict;
+
+    props  = new Properties();
+    reader = new InputStreamReader(new FileInputStream(schema), StandardCharsets.UTF_8);
+    try {
+      props.load(reader);
+    }
+    finally {
+      reader.close();
+    }
+    if (!("" + VERSION).equals(props.getProperty("version")))
+      throw new IOException("Unsupported column store version in " + schema + ": " + props.getProperty("version"));
+
+    dir     = getColumnsDir(schema);
+    rows    = Integer.parseInt(props.getProperty("rows"));
+    columns = Integer.parseInt(props.getProperty("columns"));
+    result  = new OffHeapTable(props.getProperty("name"));
+    column  = null;
+    try {
+      for (i = 0; i < columns; i++) {
+        name = props.getProperty("column." + i + ".name");
+        type = props.getProperty("column." + i + ".type");
+        kind = props.getProperty("column." + i + ".kind");
+        if ((name == null) || (type == null) || (kind == null))
+          throw new IOException("Incomplete definition of column #" + (i+1) + " in " + schema);
+        if (kind.equals(KIND_DICTIONARY)) {
+          dict   = new OffHeapDictionaryColumn(name, type);
+          column = dict;
+          readDictionary(dict, new File(dir, i + ".dict"));
+        }
+        else if (kind.equals(KIND_DOUBLE)) {
+          column = new OffHeapDoubleColumn(name, type);
+        }
+        else if (kind.equals(KIND_LONG)) {
+          column = new OffHeapLongColumn(name, type);
+        }
+        else {
+          throw new IOException("Unknown kind of column #" + (i+1) + " in " + schema + ": " + kind);
+        }
+        column.wrap(mapValues(new File(dir, i + ".col"), rows, column.getElementBytes()), rows);
+        result.addColumn(column);
+        column = null;
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      if (column != null)
+        column.close();
+      result.close();
+      throw e;
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the strings of the dictionary column from the file.
+   *
+   * @param column	the column to add the strings to
+   * @param file	the file to read
+   * @throws IOException	if reading fails
+   */
+  protected static void readDictionary(OffHeapDictionaryColumn column, File file) throws IOException {
+    DataInputStream	in;
+    byte[]		bytes;
+    int			count;
+    int			i;
+
+    in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      count = in.readInt();
+      for (i = 0; i < count; i++) {
+        bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        column.addLabel(new String(bytes, StandardCharsets.UTF_8));
+      }
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Maps the column file into memory, one region per chunk.
+   *
+   * @param file	the file to map
+   * @param rows	the number of values
+   * @param width	the number of bytes per value
+   * @return		the mapped chunks
+   * @throws IOException	if the file has the wrong size or mapping fails
+   */
+  protected static List<ByteBuffer> mapValues(File file, int rows, int width) throws IOException {
+    List<ByteBuffer>	result;
+    FileChannel		channel;
+    long		position;
+    long		length;
+    long		total;
+
+    result  = new ArrayList<ByteBuffer>();
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      total = (long) rows * width;
+      if (channel.size() != total)
+        throw new IOException("Expected " + total + " bytes in " + file + ", but found: " + channel.size());
+      position = 0;
+      while (position < total) {
+        length = Math.min((long) OffHeapColumn.CHUNK_SIZE * width, total - position);
+        result.add(channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(OffHeapColumn.BYTE_ORDER));
+        position += length;
+      }
+    }
+    catch (IOException e) {
+      for (ByteBuffer buffer: result)
+        OffHeapColumn.free(buffer);
+      throw e;
+    }
+    finally {
+      // mappings stay valid after closing the channel
+      channel.close();
+    }
+
+    return result;
+  }
+}
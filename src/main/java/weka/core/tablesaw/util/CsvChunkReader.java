@@ -0,0 +1,301 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CsvChunkReader.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import com.univocity.parsers.csv.CsvParser;
+import com.univocity.parsers.csv.CsvParserSettings;
+import tech.tablesaw.api.ColumnType;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.AbstractColumnParser;
+import tech.tablesaw.columns.Column;
+import tech.tablesaw.io.ColumnTypeDetector;
+import tech.tablesaw.io.ReadOptions;
+import tech.tablesaw.io.csv.CsvReadOptions;
+import weka.core.TablesawUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams through a CSV file and passes the rows on to a {@link TableSink}
+ * in chunks of fixed size, i.e., only a single chunk of rows is held on the
+ * heap at a time. The column types get detected on the first chunk, with
+ * numeric columns being read as doubles; all chunks share these types.
+ * A file without data rows results in a single empty chunk, to convey the
+ * structure.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class CsvChunkReader {
+
+  /** the extension of compressed files. */
+  public final static String EXTENSION_COMPRESSED = ".gz";
+
+  /** the default number of rows per chunk. */
+  public final static int DEFAULT_CHUNK_SIZE = 100000;
+
+  /** the number of rows per chunk. */
+  protected int m_ChunkSize;
+
+  /** the number of rows read. */
+  protected long m_RowCount;
+
+  /** the column types determined from the first chunk. */
+  protected ColumnType[] m_Types;
+
+  /**
+   * Initializes the reader with the default chunk size.
+   */
+  public CsvChunkReader() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Initializes the reader.
+   *
+   * @param chunkSize	the number of rows per chunk
+   */
+  public CsvChunkReader(int chunkSize) {
+    if (chunkSize < 1)
+      throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+    m_ChunkSize = chunkSize;
+  }
+
+  /**
+   * Returns the number of rows per chunk.
+   *
+   * @return		the chunk size
+   */
+  public int getChunkSize() {
+    return m_ChunkSize;
+  }
+
+  /**
+   * Returns the number of rows read by the last call to
+   * {@link #read(File, TableSink)}.
+   *
+   * @return		the number of rows
+   */
+  public long getRowCount() {
+    return m_RowCount;
+  }
+
+  /**
+   * Returns the column types determined from the first chunk of the last
+   * file that was read.
+   *
+   * @return		the types, null if nothing read yet
+   */
+  public ColumnType[] getColumnTypes() {
+    return m_Types;
+  }
+
+  /**
+   * Opens a reader for the file, decompressing it if the name ends with
+   * {@link #EXTENSION_COMPRESSED}.
+   *
+   * @param file	the file to open
+   * @return		the reader
+   * @throws IOException	if opening fails
+   */
+  public static Reader openReader(File file) throws IOException {
+    InputStream		in;
+
+    in = new FileInputStream(file);
+    if (file.getName().endsWith(EXTENSION_COMPRESSED))
+      in = new GZIPInputStream(in);
+
+    return new BufferedReader(new InputStreamReader(in, "UTF-8"));
+  }
+
+  /**
+   * Returns a new parser for CSV files.
+   *
+   * @return		the parser
+   */
+  public static CsvParser newParser() {
+    CsvParserSettings	settings;
+
+    settings = new CsvParserSettings();
+    settings.setLineSeparatorDetectionEnabled(true);
+    settings.setMaxColumns(10000);
+    settings.setMaxCharsPerColumn(-1);
+
+    return new CsvParser(settings);
+  }
+
+  /**
+   * Returns the read options for detecting and parsing the values, i.e.,
+   * Tablesaw's defaults for CSV files.
+   *
+   * @param name	the name of the table
+   * @return		the options
+   */
+  protected static ReadOptions readOptions(String name) {
+    return CsvReadOptions.builder(new StringReader(""))
+      .tableName(name)
+      .header(true)
+      .build();
+  }
+
+  /**
+   * Detects the column types of the parsed rows using Tablesaw's type
+   * detection. Without any rows, all columns are string columns.
+   *
+   * @param name	the name of the table
+   * @param header	the column names
+   * @param rows	the rows
+   * @return		the column types
+   */
+  public static ColumnType[] detectColumnTypes(String name, String[] header, List<String[]> rows) {
+    ColumnType[]	result;
+    ReadOptions		options;
+
+    if (rows.isEmpty()) {
+      result = new ColumnType[header.length];
+      Arrays.fill(result, ColumnType.STRING);
+    }
+    else {
+      options = readOptions(name);
+      result  = new ColumnTypeDetector(options.columnTypesToDetect()).detectColumnTypes(rows.iterator(), options);
+    }
+
+    return result;
+  }
+
+  /**
+   * Turns the parsed rows into a table, appending the values directly to
+   * columns of the given types (parsed with Tablesaw's parsers).
+   *
+   * @param name	the name of the table
+   * @param header	the column names
+   * @param rows	the rows
+   * @param types	the column types, null for detecting them
+   * @return		the table
+   * @throws IOException	if a row has the wrong number of values
+   */
+  public static Table rowsToTable(String name, String[] header, List<String[]> rows, ColumnType[] types) throws IOException {
+    ReadOptions			options;
+    List<Column<?>>		columns;
+    AbstractColumnParser<?>[]	parsers;
+    String			colName;
+    int				i;
+    int				n;
+
+    options = readOptions(name);
+    if (types == null)
+      types = detectColumnTypes(name, header, rows);
+    if (types.length != header.length)
+      throw new IOException("Expected " + header.length + " column types, but got: " + types.length);
+
+    columns = new ArrayList<Column<?>>();
+    parsers = new AbstractColumnParser<?>[header.length];
+    for (i = 0; i < header.length; i++) {
+      colName = (header[i] == null) ? "" : header[i].trim();
+      if (colName.isEmpty())
+        colName = "C" + i;
+      columns.add(types[i].create(colName));
+      parsers[i] = types[i].customParser(options);
+    }
+
+    for (n = 0; n < rows.size(); n++) {
+      if (rows.get(n).length != header.length) {
+        // like Tablesaw, skip empty lines
+        if ((rows.get(n).length == 1) && ((rows.get(n)[0] == null) || rows.get(n)[0].isEmpty()))
+          continue;
+        throw new IOException("Row #" + (n+1) + " contains " + rows.get(n).length + " columns, " + header.length + " expected!");
+      }
+      for (i = 0; i < header.length; i++)
+        columns.get(i).appendCell(rows.get(n)[i], parsers[i]);
+    }
+
+    return Table.create(name, columns);
+  }
+
+  /**
+   * Streams through the file and passes the rows on to the sink in chunks.
+   *
+   * @param file	the file to read
+   * @param sink	the sink for the chunks
+   * @throws IOException	if reading fails, a later chunk does not match the column types or the sink fails
+   */
+  public void read(File file, TableSink sink) throws IOException {
+    CsvParser			parser;
+    String[]			header;
+    String[]			row;
+    Reader			reader;
+    List<String[]>		chunk;
+    Table			table;
+    int				i;
+
+    parser     = newParser();
+    reader     = openReader(file);
+    m_Types    = null;
+    m_RowCount = 0;
+    try {
+      parser.beginParsing(reader);
+      header = parser.parseNext();
+      if (header == null)
+	throw new IOException("No header row in file: " + file);
+      chunk = new ArrayList<String[]>();
+      while (true) {
+	row = parser.parseNext();
+	if (row != null)
+	  chunk.add(row);
+	if ((chunk.size() == m_ChunkSize) || ((row == null) && ((m_Types == null) || !chunk.isEmpty()))) {
+	  if (m_Types == null) {
+	    m_Types = detectColumnTypes(file.getName(), header, chunk);
+	    for (i = 0; i < m_Types.length; i++) {
+	      if (TablesawUtils.isNumeric(m_Types[i]))
+		m_Types[i] = ColumnType.DOUBLE;
+	    }
+	  }
+	  try {
+	    table = rowsToTable(file.getName(), header, chunk, m_Types);
+	  }
+	  catch (RuntimeException e) {
+	    throw new IOException("Failed to parse rows " + (m_RowCount + 1) + "-" + (m_RowCount + chunk.size())
+	      + " using the column types determined from the first chunk (increase the chunk size?)", e);
+	  }
+	  m_RowCount += chunk.size();
+	  chunk.clear();
+	  sink.accept(table);
+	}
+	if (row == null)
+	  break;
+      }
+    }
+    finally {
+      parser.stopParsing();
+      reader.close();
+    }
+  }
+}
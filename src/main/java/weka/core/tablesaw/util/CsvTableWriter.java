@@ -0,0 +1,284 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CsvTableWriter.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import com.univocity.parsers.csv.CsvWriter;
+import com.univocity.parsers.csv.CsvWriterSettings;
+import tech.tablesaw.api.Table;
+import weka.core.TablesawUtils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes tables batch by batch to a CSV file, in the same format as
+ * Tablesaw's own CSV writer. The header gets written with the first batch.
+ * {@link OneHotColumn}s get written as their 0/1 columns.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class CsvTableWriter
+  implements TableSink, Closeable {
+
+  /**
+   * Counts the bytes of the characters written to the wrapped writer, when
+   * encoded as UTF-8.
+   */
+  protected static class CountingWriter
+    extends FilterWriter {
+
+    /** the number of bytes written. */
+    protected long m_Count;
+
+    /**
+     * Initializes the writer.
+     *
+     * @param out	the writer to wrap
+     */
+    protected CountingWriter(Writer out) {
+      super(out);
+      m_Count = 0;
+    }
+
+    /**
+     * Returns the number of UTF-8 bytes of the character. Surrogates count
+     * 2 bytes each, i.e., 4 bytes per supplementary character.
+     *
+     * @param c		the character
+     * @return		the number of bytes
+     */
+    protected static int utf8Length(int c) {
+      if (c < 0x80)
+        return 1;
+      else if ((c < 0x800) || Character.isSurrogate((char) c))
+        return 2;
+      else
+        return 3;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      super.write(c);
+      m_Count += utf8Length(c & 0xFFFF);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      int	i;
+
+      super.write(cbuf, off, len);
+      for (i = off; i < off + len; i++)
+        m_Count += utf8Length(cbuf[i]);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      int	i;
+
+      super.write(str, off, len);
+      for (i = off; i < off + len; i++)
+        m_Count += utf8Length(str.charAt(i));
+    }
+  }
+
+  /** the underlying writer. */
+  protected CsvWriter m_Writer;
+
+  /** for counting the bytes written. */
+  protected CountingWriter m_Counter;
+
+  /** whether the header has been written. */
+  protected boolean m_HeaderWritten;
+
+  /** the number of rows written. */
+  protected long m_RowCount;
+
+  /**
+   * Initializes the writer.
+   *
+   * @param writer	the writer to write to
+   */
+  public CsvTableWriter(Writer writer) {
+    CsvWriterSettings	settings;
+
+    settings = new CsvWriterSettings();
+    settings.setNullValue("");
+    m_Counter       = new CountingWriter(writer);
+    m_Writer        = new CsvWriter(m_Counter, settings);
+    m_HeaderWritten = false;
+    m_RowCount      = 0;
+  }
+
+  /**
+   * Initializes the writer for the file, compressing the output if the file
+   * name ends with ".gz".
+   *
+   * @param file	the file to write to
+   * @throws IOException	if the file cannot be opened
+   */
+  public CsvTableWriter(File file) throws IOException {
+    this(open(file));
+  }
+
+  /**
+   * Opens a buffered writer for the file.
+   *
+   * @param file	the file to write to
+   * @return		the writer
+   * @throws IOException	if the file cannot be opened
+   */
+  protected static Writer open(File file) throws IOException {
+    if (file.getName().endsWith(".gz"))
+      return new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), "UTF-8"), 1 << 16);
+    else
+      return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+  }
+
+  /**
+   * Writes the rows of the batch.
+   *
+   * @param batch	the batch
+   * @throws IOException	if writing fails
+   */
+  @Override
+  public void accept(Table batch) throws IOException {
+    String[]	row;
+    int		r;
+
+    writeHeader(batch);
+    row = new String[TablesawUtils.numAttributes(batch)];
+    for (r = 0; r < batch.rowCount(); r++) {
+      fillRow(batch, r, row);
+      m_Writer.writeRow(row);
+    }
+    m_RowCount += batch.rowCount();
+  }
+
+  /**
+   * Writes the selected rows of the table, without copying them into a
+   * batch first.
+   *
+   * @param table	the table
+   * @param rows	the row indices
+   * @param from	the first index in rows (incl)
+   * @param to		the last index in rows (excl)
+   * @throws IOException	if writing fails
+   */
+  public void accept(Table table, int[] rows, int from, int to) throws IOException {
+    String[]	row;
+    int		r;
+
+    writeHeader(table);
+    row = new String[TablesawUtils.numAttributes(table)];
+    for (r = from; r < to; r++) {
+      fillRow(table, rows[r], row);
+      m_Writer.writeRow(row);
+    }
+    m_RowCount += to - from;
+  }
+
+  /**
+   * Fills in the cells of the row.
+   *
+   * @param table	the table
+   * @param r		the row index
+   * @param row		the array to fill, with one-hot columns expanded
+   */
+  protected void fillRow(Table table, int r, String[] row) {
+    OneHotColumn	hot;
+    int			c;
+    int			i;
+    int			n;
+
+    i = 0;
+    for (c = 0; c < table.columnCount(); c++) {
+      if (table.column(c) instanceof OneHotColumn) {
+	hot = (OneHotColumn) table.column(c);
+	for (n = 0; n < hot.getNames().length; n++)
+	  row[i++] = hot.isMissing(r) ? "" : ((hot.getInt(r) == n) ? "1" : "0");
+      }
+      else {
+	row[i++] = table.getUnformatted(r, c);
+      }
+    }
+  }
+
+  /**
+   * Writes the header, if not yet written.
+   *
+   * @param table	the table to get the column names from
+   */
+  protected void writeHeader(Table table) {
+    String[]	header;
+    int		c;
+    int		i;
+
+    if (m_HeaderWritten)
+      return;
+    header = new String[TablesawUtils.numAttributes(table)];
+    i      = 0;
+    for (c = 0; c < table.columnCount(); c++) {
+      if (table.column(c) instanceof OneHotColumn) {
+	for (String name: ((OneHotColumn) table.column(c)).getNames())
+	  header[i++] = name;
+      }
+      else {
+	header[i++] = table.column(c).name();
+      }
+    }
+    m_Writer.writeHeaders(header);
+    m_HeaderWritten = true;
+  }
+
+  /**
+   * Returns the number of rows written so far.
+   *
+   * @return		the number of rows
+   */
+  public long getRowCount() {
+    return m_RowCount;
+  }
+
+  /**
+   * Returns the number of bytes written so far (UTF-8, uncompressed).
+   *
+   * @return		the number of bytes
+   */
+  public long getByteCount() {
+    return m_Counter.m_Count;
+  }
+
+  /**
+   * Flushes and closes the writer.
+   */
+  @Override
+  public void close() {
+    m_Writer.flush();
+    m_Writer.close();
+  }
+}
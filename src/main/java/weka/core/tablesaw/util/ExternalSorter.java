@@ -0,0 +1,890 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ExternalSorter.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.BooleanColumn;
+import tech.tablesaw.api.DateColumn;
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.InstantColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.ShortColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.api.TextColumn;
+import tech.tablesaw.api.TimeColumn;
+import tech.tablesaw.columns.Column;
+import weka.core.TablesawUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * External (spill-to-disk) sort for tables that do not fit into the heap.
+ * <br>
+ * Tables get added chunk by chunk and are buffered until the memory budget
+ * is exhausted. The buffered rows then get sorted in memory (see
+ * {@link TableSorter}) and spilled as a run to a temporary file. Finally, all
+ * runs are merged (k-way merge) and the sorted rows get passed on batch by
+ * batch to a {@link TableSink}, e.g., a {@link CsvTableWriter}. To limit the
+ * number of open files, at most {@link #getMaxFanIn()} runs get merged at a
+ * time: if there are more runs, consecutive groups of runs get merged into
+ * larger runs first (multi-pass merge).
+ * <br>
+ * The run files use a compact binary row format: the header lists the column
+ * names and types, followed by the number of rows. Each row starts with a
+ * bitmap of its missing values, followed by the non-missing values in their
+ * internal representation (e.g., packed dates).
+ * <br>
+ * If no run was spilled, the data gets sorted in memory.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ExternalSorter
+  implements Closeable {
+
+  /** the default number of rows per output batch. */
+  public final static int DEFAULT_BATCH_SIZE = 10000;
+
+  /** the default maximum number of runs to merge at a time. */
+  public final static int DEFAULT_MAX_FAN_IN = 64;
+
+  /** the estimated heap overhead per dictionary entry of a string column in bytes (string object, array header, map entries). */
+  protected final static int DICTIONARY_ENTRY_OVERHEAD = 96;
+
+  /** the sort keys. */
+  protected SortKey[] m_Keys;
+
+  /** the directory for the run files. */
+  protected File m_TempDir;
+
+  /** the memory budget in bytes for buffering rows. */
+  protected long m_MemoryBudget;
+
+  /** the number of rows per output batch. */
+  protected int m_BatchSize;
+
+  /** the maximum number of runs to merge at a time. */
+  protected int m_MaxFanIn;
+
+  /** the structure of the data. */
+  protected Table m_Structure;
+
+  /** the column types (see {@link TablesawUtils#getColumnType(tech.tablesaw.api.ColumnType)}). */
+  protected String[] m_Types;
+
+  /** the indices of the key columns. */
+  protected int[] m_KeyIndices;
+
+  /** whether missing values come first, per key. */
+  protected boolean[] m_KeyMissingFirst;
+
+  /** the buffered chunks. */
+  protected List<Table> m_Buffer;
+
+  /** the estimated size of the buffered chunks in bytes. */
+  protected long m_BufferBytes;
+
+  /** the run files. */
+  protected List<File> m_Runs;
+
+  /**
+   * Initializes the sorter.
+   *
+   * @param keys		the sort keys
+   * @param tempDir		the directory for the run files, null for the system's temp dir
+   * @param memoryBudget	the memory budget in bytes for buffering rows
+   */
+  public ExternalSorter(SortKey[] keys, File tempDir, long memoryBudget) {
+    if (tempDir == null)
+      tempDir = new File(System.getProperty("java.io.tmpdir"));
+
+    m_Keys         = keys;
+    m_TempDir      = tempDir;
+    m_MemoryBudget = memoryBudget;
+    m_BatchSize    = DEFAULT_BATCH_SIZE;
+    m_MaxFanIn     = DEFAULT_MAX_FAN_IN;
+    m_Buffer       = new ArrayList<Table>();
+    m_BufferBytes  = 0;
+    m_Runs         = new ArrayList<File>();
+  }
+
+  /**
+   * Sets the number of rows per output batch.
+   *
+   * @param value	the batch size
+   */
+  public void setBatchSize(int value) {
+    m_BatchSize = Math.max(1, value);
+  }
+
+  /**
+   * Returns the number of rows per output batch.
+   *
+   * @return		the batch size
+   */
+  public int getBatchSize() {
+    return m_BatchSize;
+  }
+
+  /**
+   * Sets the maximum number of runs to merge at a time.
+   *
+   * @param value	the fan-in, at least 2
+   */
+  public void setMaxFanIn(int value) {
+    m_MaxFanIn = Math.max(2, value);
+  }
+
+  /**
+   * Returns the maximum number of runs to merge at a time.
+   *
+   * @return		the fan-in
+   */
+  public int getMaxFanIn() {
+    return m_MaxFanIn;
+  }
+
+  /**
+   * Returns the number of runs spilled to disk so far.
+   *
+   * @return		the number of runs
+   */
+  public int getNumRuns() {
+    return m_Runs.size();
+  }
+
+  /**
+   * Estimates the heap size of the table in bytes. For dictionary-coded
+   * string columns, the size of the dictionary (the distinct strings) gets
+   * added to the codes.
+   *
+   * @param table	the table
+   * @return		the estimated size
+   */
+  public static long estimateBytes(Table table) {
+    long	result;
+    String	type;
+    int		i;
+
+    result = 0;
+    for (i = 0; i < table.columnCount(); i++) {
+      type = TablesawUtils.getColumnType(table.column(i).type());
+      switch (type) {
+	case "nd":
+	case "nl":
+	case "ddt":
+	case "di":
+	  result += 8L * table.rowCount();
+	  break;
+	case "ns":
+	  result += 2L * table.rowCount();
+	  break;
+	case "b":
+	  result += table.rowCount();
+	  break;
+	case "st":
+	  result += 64L * table.rowCount();
+	  break;
+	case "ss":
+	  result += 4L * table.rowCount();
+	  for (String value: ((StringColumn) table.column(i)).asSet())
+	    result += 2L * value.length() + DICTIONARY_ENTRY_OVERHEAD;
+	  break;
+	default:
+	  // ints, floats, packed dates/times
+	  result += 4L * table.rowCount();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Adds the chunk of rows. Spills a run if the memory budget is exceeded.
+   *
+   * @param chunk	the rows to add
+   * @throws IOException	if spilling fails
+   */
+  public void add(Table chunk) throws IOException {
+    int		i;
+
+    if (m_Structure == null) {
+      m_Structure  = chunk.emptyCopy();
+      m_Types      = new String[chunk.columnCount()];
+      for (i = 0; i < m_Types.length; i++)
+	m_Types[i] = TablesawUtils.getColumnType(chunk.column(i).type());
+      m_KeyIndices      = new int[m_Keys.length];
+      m_KeyMissingFirst = new boolean[m_Keys.length];
+      for (i = 0; i < m_Keys.length; i++) {
+	m_KeyIndices[i]      = chunk.columnIndex(m_Keys[i].getColumn());
+	m_KeyMissingFirst[i] = m_Keys[i].isMissingFirst(m_Types[m_KeyIndices[i]].startsWith("n"));
+      }
+    }
+    else if (chunk.columnCount() != m_Structure.columnCount()) {
+      throw new IllegalArgumentException(
+	"Chunk has different number of columns: " + chunk.columnCount() + " != " + m_Structure.columnCount());
+    }
+
+    m_Buffer.add(chunk);
+    m_BufferBytes += estimateBytes(chunk);
+    if (m_BufferBytes >= m_MemoryBudget)
+      spill();
+  }
+
+  /**
+   * Combines the buffered chunks into a single table and clears the buffer.
+   *
+   * @return		the combined table
+   */
+  protected Table drainBuffer() {
+    Table	result;
+
+    if (m_Buffer.size() == 1) {
+      result = m_Buffer.get(0);
+    }
+    else {
+      result = m_Structure.emptyCopy();
+      for (Table chunk: m_Buffer)
+	result.append(chunk);
+    }
+    m_Buffer.clear();
+    m_BufferBytes = 0;
+
+    return result;
+  }
+
+  /**
+   * Sorts the buffered rows and writes them to a new run file.
+   *
+   * @throws IOException	if writing fails
+   */
+  protected void spill() throws IOException {
+    Table		run;
+    int[]		perm;
+    File		file;
+    DataOutputStream	out;
+    byte[]		missing;
+    int			i;
+    int			c;
+    int			row;
+    Column<?>		col;
+
+    if (m_Buffer.isEmpty())
+      return;
+
+    run  = drainBuffer();
+    perm = TableSorter.permutation(run, m_Keys);
+    file = File.createTempFile("tablesaw-sort-", ".run", m_TempDir);
+    m_Runs.add(file);
+
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    try {
+      writeHeader(out, perm.length);
+
+      missing = new byte[(m_Types.length + 7) / 8];
+      for (i = 0; i < perm.length; i++) {
+	row = perm[i];
+	for (c = 0; c < missing.length; c++)
+	  missing[c] = 0;
+	for (c = 0; c < m_Types.length; c++) {
+	  if (run.column(c).isMissing(row))
+	    missing[c / 8] |= (byte) (1 << (c % 8));
+	}
+	out.write(missing);
+	for (c = 0; c < m_Types.length; c++) {
+	  col = run.column(c);
+	  if (!col.isMissing(row))
+	    writeValue(out, m_Types[c], col, row);
+	}
+      }
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes the header of a run file.
+   *
+   * @param out		the stream to write to
+   * @param numRows	the number of rows in the run
+   * @throws IOException	if writing fails
+   */
+  protected void writeHeader(DataOutputStream out, int numRows) throws IOException {
+    int		c;
+
+    out.writeInt(m_Types.length);
+    for (c = 0; c < m_Types.length; c++) {
+      out.writeUTF(m_Structure.column(c).name());
+      out.writeUTF(m_Types[c]);
+    }
+    out.writeInt(numRows);
+  }
+
+  /**
+   * Writes a single (non-missing) value.
+   *
+   * @param out		the stream to write to
+   * @param type	the column type
+   * @param col		the column
+   * @param row		the row
+   * @throws IOException	if writing fails
+   */
+  protected static void writeValue(DataOutputStream out, String type, Column<?> col, int row) throws IOException {
+    byte[]	bytes;
+
+    switch (type) {
+      case "nd":
+	out.writeDouble(((DoubleColumn) col).getDouble(row));
+	break;
+      case "nf":
+	out.writeFloat(((FloatColumn) col).getFloat(row));
+	break;
+      case "ns":
+	out.writeShort(((ShortColumn) col).getShort(row));
+	break;
+      case "ni":
+	out.writeInt(((IntColumn) col).getInt(row));
+	break;
+      case "nl":
+	out.writeLong(((LongColumn) col).getLong(row));
+	break;
+      case "dd":
+	out.writeInt(((DateColumn) col).getIntInternal(row));
+	break;
+      case "dt":
+	out.writeInt(((TimeColumn) col).getIntInternal(row));
+	break;
+      case "ddt":
+	out.writeLong(((DateTimeColumn) col).getLongInternal(row));
+	break;
+      case "di":
+	out.writeLong(((InstantColumn) col).getLongInternal(row));
+	break;
+      case "b":
+	out.writeByte(((BooleanColumn) col).getByte(row));
+	break;
+      default:
+	bytes = col.getString(row).getBytes(StandardCharsets.UTF_8);
+	out.writeInt(bytes.length);
+	out.write(bytes);
+    }
+  }
+
+  /**
+   * Reads the runs and provides access to the current row.
+   */
+  protected static class RunReader
+    implements Closeable {
+
+    /** the index of the run. */
+    protected int m_Index;
+
+    /** the stream to read from. */
+    protected DataInputStream m_In;
+
+    /** the column types. */
+    protected String[] m_Types;
+
+    /** the number of rows in the run. */
+    protected int m_NumRows;
+
+    /** the number of rows left to read. */
+    protected int m_Remaining;
+
+    /** the missing value bitmap of the current row. */
+    protected byte[] m_Missing;
+
+    /** the integral/packed values of the current row. */
+    protected long[] m_Longs;
+
+    /** the floating point values of the current row. */
+    protected double[] m_Doubles;
+
+    /** the string values of the current row. */
+    protected String[] m_Strings;
+
+    /**
+     * Opens the run file.
+     *
+     * @param file	the file to read
+     * @param index	the index of the run
+     * @throws IOException	if opening fails
+     */
+    public RunReader(File file, int index) throws IOException {
+      int	n;
+      int	i;
+
+      m_Index = index;
+      m_In = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+      n    = m_In.readInt();
+      m_Types = new String[n];
+      for (i = 0; i < n; i++) {
+	m_In.readUTF();
+	m_Types[i] = m_In.readUTF();
+      }
+      m_NumRows   = m_In.readInt();
+      m_Remaining = m_NumRows;
+      m_Missing   = new byte[(n + 7) / 8];
+      m_Longs     = new long[n];
+      m_Doubles   = new double[n];
+      m_Strings   = new String[n];
+    }
+
+    /**
+     * Reads the next row.
+     *
+     * @return		true if a row was read, false if the run is exhausted
+     * @throws IOException	if reading fails
+     */
+    public boolean next() throws IOException {
+      byte[]	bytes;
+      int	c;
+
+      if (m_Remaining == 0)
+	return false;
+      m_Remaining--;
+
+      m_In.readFully(m_Missing);
+      for (c = 0; c < m_Types.length; c++) {
+	if (isMissing(c))
+	  continue;
+	switch (m_Types[c]) {
+	  case "nd":
+	    m_Doubles[c] = m_In.readDouble();
+	    break;
+	  case "nf":
+	    m_Doubles[c] = m_In.readFloat();
+	    break;
+	  case "ns":
+	    m_Longs[c] = m_In.readShort();
+	    break;
+	  case "ni":
+	  case "dd":
+	  case "dt":
+	    m_Longs[c] = m_In.readInt();
+	    break;
+	  case "nl":
+	  case "ddt":
+	  case "di":
+	    m_Longs[c] = m_In.readLong();
+	    break;
+	  case "b":
+	    m_Longs[c] = m_In.readByte();
+	    break;
+	  default:
+	    bytes = new byte[m_In.readInt()];
+	    m_In.readFully(bytes);
+	    m_Strings[c] = new String(bytes, StandardCharsets.UTF_8);
+	}
+      }
+
+      return true;
+    }
+
+    /**
+     * Returns whether the value in the column of the current row is missing.
+     *
+     * @param col	the column index
+     * @return		true if missing
+     */
+    public boolean isMissing(int col) {
+      return (m_Missing[col / 8] & (1 << (col % 8))) != 0;
+    }
+
+    /**
+     * Writes the current row to a run file, in the format it was read.
+     *
+     * @param out	the stream to write to
+     * @throws IOException	if writing fails
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+      byte[]	bytes;
+      int	c;
+
+      out.write(m_Missing);
+      for (c = 0; c < m_Types.length; c++) {
+	if (isMissing(c))
+	  continue;
+	switch (m_Types[c]) {
+	  case "nd":
+	    out.writeDouble(m_Doubles[c]);
+	    break;
+	  case "nf":
+	    out.writeFloat((float) m_Doubles[c]);
+	    break;
+	  case "ns":
+	    out.writeShort((short) m_Longs[c]);
+	    break;
+	  case "ni":
+	  case "dd":
+	  case "dt":
+	    out.writeInt((int) m_Longs[c]);
+	    break;
+	  case "nl":
+	  case "ddt":
+	  case "di":
+	    out.writeLong(m_Longs[c]);
+	    break;
+	  case "b":
+	    out.writeByte((byte) m_Longs[c]);
+	    break;
+	  default:
+	    bytes = m_Strings[c].getBytes(StandardCharsets.UTF_8);
+	    out.writeInt(bytes.length);
+	    out.write(bytes);
+	}
+      }
+    }
+
+    /**
+     * Appends the current row to the table.
+     *
+     * @param table	the table to append to
+     */
+    public void appendTo(Table table) {
+      Column<?>	col;
+      int	c;
+
+      for (c = 0; c < m_Types.length; c++) {
+	col = table.column(c);
+	if (isMissing(c)) {
+	  col.appendMissing();
+	  continue;
+	}
+	switch (m_Types[c]) {
+	  case "nd":
+	    ((DoubleColumn) col).append(m_Doubles[c]);
+	    break;
+	  case "nf":
+	    ((FloatColumn) col).append((float) m_Doubles[c]);
+	    break;
+	  case "ns":
+	    ((ShortColumn) col).append((short) m_Longs[c]);
+	    break;
+	  case "ni":
+	    ((IntColumn) col).append((int) m_Longs[c]);
+	    break;
+	  case "nl":
+	    ((LongColumn) col).append(m_Longs[c]);
+	    break;
+	  case "dd":
+	    ((DateColumn) col).appendInternal((int) m_Longs[c]);
+	    break;
+	  case "dt":
+	    ((TimeColumn) col).appendInternal((int) m_Longs[c]);
+	    break;
+	  case "ddt":
+	    ((DateTimeColumn) col).appendInternal(m_Longs[c]);
+	    break;
+	  case "di":
+	    ((InstantColumn) col).appendInternal(m_Longs[c]);
+	    break;
+	  case "b":
+	    ((BooleanColumn) col).append((byte) m_Longs[c]);
+	    break;
+	  case "ss":
+	    ((StringColumn) col).append(m_Strings[c]);
+	    break;
+	  case "st":
+	    ((TextColumn) col).append(m_Strings[c]);
+	    break;
+	  default:
+	    col.appendCell(m_Strings[c]);
+	}
+      }
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException	if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+      m_In.close();
+    }
+  }
+
+  /**
+   * Compares the current rows of two run readers on the sort keys.
+   *
+   * @param r1		the first reader
+   * @param r2		the second reader
+   * @return		the comparison
+   */
+  protected int compare(RunReader r1, RunReader r2) {
+    int		result;
+    int		k;
+    int		c;
+    boolean	m1;
+    boolean	m2;
+
+    for (k = 0; k < m_Keys.length; k++) {
+      c  = m_KeyIndices[k];
+      m1 = r1.isMissing(c);
+      m2 = r2.isMissing(c);
+      if (m1 || m2) {
+	if (m1 && m2)
+	  continue;
+	if (m1)
+	  return m_KeyMissingFirst[k] ? -1 : 1;
+	else
+	  return m_KeyMissingFirst[k] ? 1 : -1;
+      }
+      switch (m_Types[c]) {
+	case "nd":
+	case "nf":
+	  result = Double.compare(r1.m_Doubles[c], r2.m_Doubles[c]);
+	  break;
+	case "ss":
+	case "st":
+	  result = r1.m_Strings[c].compareTo(r2.m_Strings[c]);
+	  break;
+	default:
+	  result = Long.compare(r1.m_Longs[c], r2.m_Longs[c]);
+      }
+      if (result != 0)
+	return m_Keys[k].isDescending() ? -result : result;
+    }
+
+    return 0;
+  }
+
+  /**
+   * Sorts the rows added so far and passes them on to the sink in batches.
+   *
+   * @param sink	the sink to receive the sorted rows
+   * @throws IOException	if spilling, merging or the sink fails
+   */
+  public void finish(TableSink sink) throws IOException {
+    Table			sorted;
+    Table			batch;
+    PriorityQueue<RunReader>	queue;
+    List<RunReader>		readers;
+    RunReader			reader;
+    int				i;
+
+    if (m_Structure == null)
+      return;
+
+    // everything fit into memory?
+    if (m_Runs.isEmpty()) {
+      sorted = TableSorter.sort(drainBuffer(), m_Keys);
+      if (sorted.rowCount() == 0)
+	sink.accept(sorted);
+      for (i = 0; i < sorted.rowCount(); i += m_BatchSize)
+	sink.accept(sorted.inRange(i, Math.min(sorted.rowCount(), i + m_BatchSize)));
+      return;
+    }
+
+    spill();
+
+    // reduce the number of runs to the fan-in
+    while (m_Runs.size() > m_MaxFanIn)
+      mergePass();
+
+    readers = new ArrayList<RunReader>();
+    try {
+      queue = openRuns(m_Runs, readers);
+      batch = m_Structure.emptyCopy();
+      while (!queue.isEmpty()) {
+	reader = queue.poll();
+	reader.appendTo(batch);
+	if (reader.next())
+	  queue.add(reader);
+	if (batch.rowCount() >= m_BatchSize) {
+	  sink.accept(batch);
+	  batch = m_Structure.emptyCopy();
+	}
+      }
+      if (batch.rowCount() > 0)
+	sink.accept(batch);
+    }
+    finally {
+      for (RunReader r: readers)
+	r.close();
+    }
+  }
+
+  /**
+   * Opens the runs for a k-way merge. Ties get resolved by run order to
+   * keep the sort stable.
+   *
+   * @param runs	the run files, in order
+   * @param readers	for storing the opened readers (for closing them)
+   * @return		the queue with the readers positioned on their first row
+   * @throws IOException	if opening fails
+   */
+  protected PriorityQueue<RunReader> openRuns(List<File> runs, List<RunReader> readers) throws IOException {
+    PriorityQueue<RunReader>	result;
+    int				i;
+
+    result = new PriorityQueue<RunReader>(runs.size(), (a, b) -> {
+      int cmp = compare(a, b);
+      if (cmp == 0)
+	cmp = Integer.compare(a.m_Index, b.m_Index);
+      return cmp;
+    });
+    for (i = 0; i < runs.size(); i++)
+      readers.add(new RunReader(runs.get(i), i));
+    for (RunReader r: readers) {
+      if (r.next())
+	result.add(r);
+    }
+
+    return result;
+  }
+
+  /**
+   * Merges consecutive groups of at most {@link #getMaxFanIn()} runs into
+   * single runs, which replace them (in order).
+   *
+   * @throws IOException	if merging fails
+   */
+  protected void mergePass() throws IOException {
+    List<File>	merged;
+    List<File>	group;
+    int		i;
+
+    merged = new ArrayList<File>();
+    try {
+      for (i = 0; i < m_Runs.size(); i += m_MaxFanIn) {
+	group = m_Runs.subList(i, Math.min(m_Runs.size(), i + m_MaxFanIn));
+	if (group.size() == 1)
+	  merged.add(group.get(0));
+	else
+	  merged.add(mergeRuns(group));
+      }
+    }
+    catch (IOException e) {
+      // remove the runs merged so far, the original ones are still in place
+      for (File run: merged) {
+	if (!m_Runs.contains(run))
+	  run.delete();
+      }
+      throw e;
+    }
+
+    // remove the runs that got merged
+    for (File run: m_Runs) {
+      if (!merged.contains(run))
+	run.delete();
+    }
+    m_Runs = merged;
+  }
+
+  /**
+   * Merges the runs into a new run file.
+   *
+   * @param runs	the runs to merge, in order
+   * @return		the new run file
+   * @throws IOException	if merging fails
+   */
+  protected File mergeRuns(List<File> runs) throws IOException {
+    File			result;
+    PriorityQueue<RunReader>	queue;
+    List<RunReader>		readers;
+    RunReader			reader;
+    DataOutputStream		out;
+    int				numRows;
+    boolean			success;
+
+    result  = File.createTempFile("tablesaw-sort-", ".run", m_TempDir);
+    readers = new ArrayList<RunReader>();
+    out     = null;
+    success = false;
+    try {
+      queue   = openRuns(runs, readers);
+      numRows = 0;
+      for (RunReader r: readers)
+	numRows += r.m_NumRows;
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(result), 1 << 16));
+      writeHeader(out, numRows);
+      while (!queue.isEmpty()) {
+	reader = queue.poll();
+	reader.writeTo(out);
+	if (reader.next())
+	  queue.add(reader);
+      }
+      success = true;
+    }
+    finally {
+      for (RunReader r: readers)
+	r.close();
+      if (out != null)
+	out.close();
+      if (!success)
+	result.delete();
+    }
+
+    return result;
+  }
+
+  /**
+   * Sorts the rows added so far and returns them as a single table.
+   *
+   * @return		the sorted table
+   * @throws IOException	if spilling or merging fails
+   */
+  public Table finish() throws IOException {
+    final Table	result;
+
+    if (m_Structure == null)
+      return null;
+
+    result = m_Structure.emptyCopy();
+    finish(new TableSink() {
+      @Override
+      public void accept(Table batch) {
+	result.append(batch);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Removes all run files.
+   */
+  @Override
+  public void close() {
+    for (File run: m_Runs)
+      run.delete();
+    m_Runs.clear();
+    m_Buffer.clear();
+    m_BufferBytes = 0;
+  }
+}
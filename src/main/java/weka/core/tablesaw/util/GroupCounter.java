@@ -0,0 +1,460 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * GroupCounter.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.columns.Column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Counts the combinations of values of one or more columns.
+ * <br>
+ * The values of each column get mapped to dense codes first
+ * (see {@link ColumnCoder}). The codes of a row are then combined into a
+ * single long key (mixed radix). If the number of possible combinations is
+ * small, the keys index directly into count arrays; otherwise they get
+ * counted with a primitive open-addressing hash map
+ * (see {@link LongIntHashMap}). The rows are processed in chunks as parallel
+ * tasks, whose partial counts get merged in chunk order. Only if the number
+ * of combinations does not fit into a long, the rows are counted
+ * sequentially with boxed keys.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class GroupCounter {
+
+  /** the number of rows per task. */
+  public final static int CHUNK_SIZE = 1 << 20;
+
+  /** the maximum number of combinations for counting with arrays. */
+  public final static int DENSE_LIMIT = 1 << 20;
+
+  /**
+   * The groups with their counts.
+   */
+  public static class Groups {
+
+    /** the first row of each group. */
+    protected int[] m_Rows;
+
+    /** the count of each group. */
+    protected int[] m_Counts;
+
+    /** the number of groups. */
+    protected int m_Size;
+
+    /**
+     * Initializes the groups.
+     *
+     * @param capacity	the initial capacity
+     */
+    public Groups(int capacity) {
+      m_Rows   = new int[Math.max(16, capacity)];
+      m_Counts = new int[m_Rows.length];
+      m_Size   = 0;
+    }
+
+    /**
+     * Adds a new group.
+     *
+     * @param row	the first row of the group
+     * @param count	the count
+     * @return		the index of the group
+     */
+    protected int add(int row, int count) {
+      if (m_Size == m_Rows.length) {
+	m_Rows   = Arrays.copyOf(m_Rows, m_Size * 2);
+	m_Counts = Arrays.copyOf(m_Counts, m_Size * 2);
+      }
+      m_Rows[m_Size]   = row;
+      m_Counts[m_Size] = count;
+      return m_Size++;
+    }
+
+    /**
+     * Returns the number of groups.
+     *
+     * @return		the number
+     */
+    public int size() {
+      return m_Size;
+    }
+
+    /**
+     * Returns the first row of the group.
+     *
+     * @param group	the group index
+     * @return		the row
+     */
+    public int getRow(int group) {
+      return m_Rows[group];
+    }
+
+    /**
+     * Returns the count of the group.
+     *
+     * @param group	the group index
+     * @return		the count
+     */
+    public int getCount(int group) {
+      return m_Counts[group];
+    }
+
+    /**
+     * Returns the group indices sorted by count (descending), ties by first
+     * occurrence.
+     *
+     * @return		the sorted indices
+     */
+    public int[] sortedByCount() {
+      int[]	result;
+      int	i;
+
+      result = new int[m_Size];
+      for (i = 0; i < m_Size; i++)
+	result[i] = i;
+      ParallelMergeSort.sort(result, (a, b) -> {
+	int cmp = Integer.compare(m_Counts[b], m_Counts[a]);
+	if (cmp == 0)
+	  cmp = Integer.compare(m_Rows[a], m_Rows[b]);
+	return cmp;
+      });
+
+      return result;
+    }
+  }
+
+  /**
+   * Partial counts of a chunk of rows.
+   */
+  protected static class Partial {
+
+    /** the combined keys of the groups. */
+    protected long[] m_Keys;
+
+    /** the groups. */
+    protected Groups m_Groups;
+
+    /**
+     * Initializes the partial counts.
+     */
+    protected Partial() {
+      m_Keys   = new long[16];
+      m_Groups = new Groups(16);
+    }
+  }
+
+  /**
+   * Computes the multipliers for combining the codes of a row into a single
+   * long key (mixed radix).
+   *
+   * @param coders	the coders of the columns
+   * @return		the multiplier per column, null if the number of
+   * 			combinations does not fit into a long
+   */
+  protected static long[] radix(ColumnCoder[] coders) {
+    long[]	result;
+    int		i;
+
+    result = new long[coders.length];
+    for (i = coders.length - 1; i >= 0; i--) {
+      if (i == coders.length - 1)
+	result[i] = 1;
+      else if (result[i + 1] > Long.MAX_VALUE / coders[i + 1].size())
+	return null;
+      else
+	result[i] = result[i + 1] * coders[i + 1].size();
+    }
+    // the largest key is below radix * size of the first column
+    if ((coders.length > 0) && (result[0] > Long.MAX_VALUE / coders[0].size()))
+      return null;
+
+    return result;
+  }
+
+  /**
+   * Counts the combinations of values of the columns.
+   *
+   * @param columns	the columns to count (same size)
+   * @return		the groups in order of first occurrence
+   */
+  public static Groups count(final List<Column<?>> columns) {
+    final ColumnCoder[]	coders;
+    final long[]	radix;
+    final int		rows;
+    int			i;
+    Partial[]		partials;
+    LongIntHashMap	index;
+    Groups		result;
+    Partial		partial;
+    int			group;
+    int			existing;
+
+    rows   = columns.isEmpty() ? 0 : columns.get(0).size();
+    coders = IntStream.range(0, columns.size()).parallel()
+      .mapToObj((int c) -> new ColumnCoder(columns.get(c)))
+      .toArray(ColumnCoder[]::new);
+
+    radix = radix(coders);
+    if (radix == null)
+      return countBoxed(coders, rows);
+    if ((coders.length > 0) && (radix[0] <= DENSE_LIMIT / coders[0].size()))
+      return countDense(coders, radix, (int) radix[0] * coders[0].size(), rows);
+
+    partials = IntStream.range(0, (rows + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel()
+      .mapToObj((int chunk) -> countChunk(coders, radix, chunk * CHUNK_SIZE, Math.min(rows, (chunk + 1) * CHUNK_SIZE)))
+      .toArray(Partial[]::new);
+
+    if (partials.length == 1)
+      return partials[0].m_Groups;
+
+    // merge in chunk order to keep the order of first occurrence
+    result = new Groups(16);
+    index  = new LongIntHashMap();
+    for (i = 0; i < partials.length; i++) {
+      partial = partials[i];
+      for (group = 0; group < partial.m_Groups.size(); group++) {
+	existing = index.get(partial.m_Keys[group]);
+	if (existing == LongIntHashMap.NO_VALUE)
+	  index.put(partial.m_Keys[group], result.add(partial.m_Groups.getRow(group), partial.m_Groups.getCount(group)));
+	else
+	  result.m_Counts[existing] += partial.m_Groups.getCount(group);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Counts a chunk of rows.
+   *
+   * @param coders	the coders of the columns
+   * @param radix	the multiplier per column
+   * @param from	the first row (incl)
+   * @param to		the last row (excl)
+   * @return		the partial counts
+   */
+  protected static Partial countChunk(ColumnCoder[] coders, long[] radix, int from, int to) {
+    Partial		result;
+    LongIntHashMap	index;
+    long		key;
+    int			group;
+    int			row;
+    int			c;
+
+    result = new Partial();
+    index  = new LongIntHashMap();
+    for (row = from; row < to; row++) {
+      key = 0;
+      for (c = 0; c < coders.length; c++)
+	key += coders[c].code(row) * radix[c];
+      group = index.get(key);
+      if (group == LongIntHashMap.NO_VALUE) {
+	group = result.m_Groups.add(row, 1);
+	if (group == result.m_Keys.length)
+	  result.m_Keys = Arrays.copyOf(result.m_Keys, group * 2);
+	result.m_Keys[group] = key;
+	index.put(key, group);
+      }
+      else {
+	result.m_Groups.m_Counts[group]++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Counts the rows using arrays indexed by the combined keys. The rows are
+   * split into one range per available processor, each with its own arrays.
+   *
+   * @param coders	the coders of the columns
+   * @param radix	the multiplier per column
+   * @param total	the number of possible combinations
+   * @param rows	the number of rows
+   * @return		the groups
+   */
+  protected static Groups countDense(final ColumnCoder[] coders, final long[] radix, final int total, final int rows) {
+    Groups		result;
+    int[][]		counts;
+    int[][]		first;
+    final int		tasks;
+    long[]		order;
+    int			key;
+    int			n;
+    int			t;
+    int			i;
+
+    tasks  = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), rows / CHUNK_SIZE));
+    counts = new int[tasks][];
+    first  = new int[tasks][];
+    IntStream.range(0, tasks).parallel().forEach((int task) -> {
+      int[] c = new int[total];
+      int[] f = new int[total];
+      int from = (int) ((long) rows * task / tasks);
+      int to = (int) ((long) rows * (task + 1) / tasks);
+      for (int row = from; row < to; row++) {
+	int k = 0;
+	for (int col = 0; col < coders.length; col++)
+	  k += coders[col].code(row) * (int) radix[col];
+	if (c[k]++ == 0)
+	  f[k] = row;
+      }
+      counts[task] = c;
+      first[task]  = f;
+    });
+
+    // merge, the earliest task has the first occurrence
+    for (t = 1; t < tasks; t++) {
+      for (key = 0; key < total; key++) {
+	if (counts[t][key] == 0)
+	  continue;
+	if (counts[0][key] == 0)
+	  first[0][key] = first[t][key];
+	counts[0][key] += counts[t][key];
+      }
+    }
+
+    // order groups by first occurrence: first row (upper bits), key (lower bits)
+    n = 0;
+    for (key = 0; key < total; key++) {
+      if (counts[0][key] > 0)
+	n++;
+    }
+    order = new long[n];
+    n     = 0;
+    for (key = 0; key < total; key++) {
+      if (counts[0][key] > 0)
+	order[n++] = ((long) first[0][key] << 32) | key;
+    }
+    Arrays.sort(order);
+
+    result = new Groups(order.length);
+    for (i = 0; i < order.length; i++) {
+      key = (int) order[i];
+      result.add(first[0][key], counts[0][key]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Counts the rows sequentially, using the code tuples as keys. Only used if
+   * the number of combinations exceeds the range of a long.
+   *
+   * @param coders	the coders of the columns
+   * @param rows	the number of rows
+   * @return		the groups
+   */
+  protected static Groups countBoxed(ColumnCoder[] coders, int rows) {
+    Groups			result;
+    Map<List<Integer>, Integer>	index;
+    List<Integer>		key;
+    Integer			group;
+    int				row;
+    int				c;
+
+    result = new Groups(16);
+    index  = new HashMap<List<Integer>, Integer>();
+    for (row = 0; row < rows; row++) {
+      key = new ArrayList<Integer>(coders.length);
+      for (c = 0; c < coders.length; c++)
+	key.add(coders[c].code(row));
+      group = index.get(key);
+      if (group == null)
+	index.put(key, result.add(row, 1));
+      else
+	result.m_Counts[group]++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Determines the group (combination of values) of each row, with the
+   * groups numbered in order of first occurrence.
+   *
+   * @param columns	the columns to group on
+   * @param rows	the number of rows
+   * @param first	the list to add the first row of each group to
+   * @return		the group per row
+   */
+  public static int[] assign(final List<Column<?>> columns, int rows, List<Integer> first) {
+    int[]			result;
+    ColumnCoder[]		coders;
+    long[]			radix;
+    long			expected;
+    LongIntHashMap		index;
+    Map<List<Integer>, Integer>	boxed;
+    List<Integer>		tuple;
+    long			key;
+    int				group;
+    Integer			existing;
+    int				row;
+    int				c;
+
+    coders = IntStream.range(0, columns.size()).parallel()
+      .mapToObj((int i) -> new ColumnCoder(columns.get(i)))
+      .toArray(ColumnCoder[]::new);
+
+    // mixed radix of the codes, number of combinations (bounded by rows) for pre-sizing
+    radix    = radix(coders);
+    expected = 1;
+    for (c = coders.length - 1; c >= 0; c--)
+      expected = Math.min(rows, expected * coders[c].size());
+
+    result = new int[rows];
+    if (radix == null) {
+      boxed = new HashMap<List<Integer>, Integer>((int) expected * 2);
+      for (row = 0; row < rows; row++) {
+	tuple = new ArrayList<Integer>(coders.length);
+	for (c = 0; c < coders.length; c++)
+	  tuple.add(coders[c].code(row));
+	existing = boxed.get(tuple);
+	if (existing == null) {
+	  existing = first.size();
+	  boxed.put(tuple, existing);
+	  first.add(row);
+	}
+	result[row] = existing;
+      }
+    }
+    else {
+      index = new LongIntHashMap((int) expected);
+      for (row = 0; row < rows; row++) {
+	key = 0;
+	for (c = 0; c < coders.length; c++)
+	  key += coders[c].code(row) * radix[c];
+	group = index.putIfAbsent(key, first.size());
+	if (group == first.size())
+	  first.add(row);
+	result[row] = group;
+      }
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * HyperLogLog.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.io.Serializable;
+
+/**
+ * HyperLogLog sketch for approximate distinct counts (Flajolet et al.), using
+ * 64-bit hashes and linear counting for small cardinalities. Sketches with
+ * the same precision are mergeable.
+ * <br>
+ * The relative standard error is about 1.04/sqrt(2^precision), e.g., 1.6%
+ * for precision 12 (4KB of registers).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class HyperLogLog
+  implements Serializable {
+
+  private static final long serialVersionUID = -1536069939414935393L;
+
+  /** the default precision. */
+  public final static int DEFAULT_PRECISION = 12;
+
+  /** the minimum precision. */
+  public final static int MIN_PRECISION = 4;
+
+  /** the maximum precision. */
+  public final static int MAX_PRECISION = 18;
+
+  /** the precision (number of index bits). */
+  protected int m_Precision;
+
+  /** the registers. */
+  protected byte[] m_Registers;
+
+  /**
+   * Initializes the sketch with the default precision.
+   */
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * Initializes the sketch.
+   *
+   * @param precision	the number of index bits (4-18)
+   */
+  public HyperLogLog(int precision) {
+    if ((precision < MIN_PRECISION) || (precision > MAX_PRECISION))
+      throw new IllegalArgumentException("Precision must be in [" + MIN_PRECISION + ", " + MAX_PRECISION + "], provided: " + precision);
+    m_Precision = precision;
+    m_Registers = new byte[1 << precision];
+  }
+
+  /**
+   * Returns the precision.
+   *
+   * @return		the number of index bits
+   */
+  public int getPrecision() {
+    return m_Precision;
+  }
+
+  /**
+   * Adds the 64-bit hash of a value.
+   *
+   * @param hash	the (well mixed) hash
+   */
+  public void addHash(long hash) {
+    int		index;
+    int		rank;
+
+    index = (int) (hash >>> (64 - m_Precision));
+    rank  = Math.min(Long.numberOfLeadingZeros(hash << m_Precision), 64 - m_Precision) + 1;
+    if (rank > m_Registers[index])
+      m_Registers[index] = (byte) rank;
+  }
+
+  /**
+   * Adds the value.
+   *
+   * @param value	the value
+   */
+  public void add(long value) {
+    addHash(LongIntHashMap.mix(value));
+  }
+
+  /**
+   * Adds the value. 0.0 and -0.0 are treated the same.
+   *
+   * @param value	the value
+   */
+  public void add(double value) {
+    add(Double.doubleToLongBits(value + 0.0));
+  }
+
+  /**
+   * Adds the value.
+   *
+   * @param value	the value
+   */
+  public void add(String value) {
+    addHash(hash(value));
+  }
+
+  /**
+   * Computes a 64-bit hash of the string (FNV-1a over the chars, followed by
+   * a finalizer).
+   *
+   * @param value	the string
+   * @return		the hash
+   */
+  public static long hash(String value) {
+    long	result;
+    int		i;
+
+    result = 0xcbf29ce484222325L;
+    for (i = 0; i < value.length(); i++) {
+      result ^= value.charAt(i);
+      result *= 0x100000001b3L;
+    }
+
+    return LongIntHashMap.mix(result);
+  }
+
+  /**
+   * Merges the other sketch into this one.
+   *
+   * @param other	the sketch to merge
+   */
+  public void merge(HyperLogLog other) {
+    int		i;
+
+    if (other.m_Precision != m_Precision)
+      throw new IllegalArgumentException("Precisions differ: " + m_Precision + " != " + other.m_Precision);
+    for (i = 0; i < m_Registers.length; i++) {
+      if (other.m_Registers[i] > m_Registers[i])
+	m_Registers[i] = other.m_Registers[i];
+    }
+  }
+
+  /**
+   * Returns the estimated number of distinct values.
+   *
+   * @return		the estimate
+   */
+  public long getEstimate() {
+    double	sum;
+    double	alpha;
+    double	estimate;
+    int		m;
+    int		zeros;
+    int		i;
+
+    m     = m_Registers.length;
+    sum   = 0.0;
+    zeros = 0;
+    for (i = 0; i < m; i++) {
+      sum += 1.0 / (1L << m_Registers[i]);
+      if (m_Registers[i] == 0)
+	zeros++;
+    }
+
+    switch (m) {
+      case 16:
+	alpha = 0.673;
+	break;
+      case 32:
+	alpha = 0.697;
+	break;
+      case 64:
+	alpha = 0.709;
+	break;
+      default:
+	alpha = 0.7213 / (1.0 + 1.079 / m);
+    }
+    estimate = alpha * m * m / sum;
+
+    // linear counting for small cardinalities
+    if ((estimate <= 2.5 * m) && (zeros > 0))
+      estimate = m * Math.log((double) m / zeros);
+
+    return Math.round(estimate);
+  }
+}
@@ -0,0 +1,471 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * KllSketch.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * KLL sketch for approximate quantiles of a stream of doubles
+ * (Karnin, Lang and Liberty, "Optimal Quantile Approximation in Streams").
+ * <br>
+ * Values are stored in a hierarchy of compactors; an item on level h
+ * represents 2^h values. Once a level exceeds its capacity, it gets sorted
+ * and every other item (random offset) gets promoted to the next level. The
+ * capacities shrink geometrically (factor 2/3) from the top level down, so
+ * the sketch uses O(k) space. Sketches are mergeable, i.e., partial sketches
+ * can be computed in parallel and combined afterwards.
+ * <br>
+ * Min and max are tracked exactly. NaN values are ignored.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class KllSketch
+  implements Serializable {
+
+  private static final long serialVersionUID = -4529581318851498329L;
+
+  /** the default accuracy parameter. */
+  public final static int DEFAULT_K = 200;
+
+  /** the default seed for choosing the compaction offsets. */
+  public final static long DEFAULT_SEED = 1;
+
+  /** the decay of the capacities from one level to the next lower one. */
+  protected final static double DECAY = 2.0 / 3.0;
+
+  /** the accuracy parameter (capacity of the top level). */
+  protected int m_K;
+
+  /** the items per level. */
+  protected double[][] m_Items;
+
+  /** the number of items per level. */
+  protected int[] m_Sizes;
+
+  /** the number of levels. */
+  protected int m_NumLevels;
+
+  /** the number of items retained over all levels. */
+  protected int m_NumRetained;
+
+  /** the total capacity of all levels. */
+  protected int m_TotalCapacity;
+
+  /** the number of values seen. */
+  protected long m_N;
+
+  /** the smallest value. */
+  protected double m_Min;
+
+  /** the largest value. */
+  protected double m_Max;
+
+  /** for choosing the compaction offsets. */
+  protected Random m_Random;
+
+  /**
+   * Initializes the sketch with the default accuracy.
+   */
+  public KllSketch() {
+    this(DEFAULT_K);
+  }
+
+  /**
+   * Initializes the sketch.
+   *
+   * @param k		the accuracy parameter (normalized rank error ~1.65/k)
+   */
+  public KllSketch(int k) {
+    this(k, DEFAULT_SEED);
+  }
+
+  /**
+   * Initializes the sketch.
+   *
+   * @param k		the accuracy parameter (normalized rank error ~1.65/k)
+   * @param seed	the seed for choosing the compaction offsets
+   */
+  public KllSketch(int k, long seed) {
+    if (k < 8)
+      throw new IllegalArgumentException("k must be at least 8, provided: " + k);
+    m_K           = k;
+    m_Items       = new double[4][];
+    m_Sizes       = new int[4];
+    m_NumLevels   = 0;
+    m_NumRetained = 0;
+    m_N           = 0;
+    m_Min         = Double.NaN;
+    m_Max         = Double.NaN;
+    m_Random      = new Random(seed);
+    addLevel();
+  }
+
+  /**
+   * Derives a seed for the sketch of a chunk of a column, so that the
+   * sketches of different columns and chunks (see {@link ParallelColumnScan})
+   * do not choose the same compaction offsets.
+   *
+   * @param column	the index of the column
+   * @param chunk	the index of the chunk within the column
+   * @return		the seed
+   */
+  public static long seed(int column, int chunk) {
+    long	result;
+
+    // SplitMix64 finalizer
+    result = DEFAULT_SEED + 0x9E3779B97F4A7C15L * (((long) column << 32) + chunk + 1);
+    result = (result ^ (result >>> 30)) * 0xBF58476D1CE4E5B9L;
+    result = (result ^ (result >>> 27)) * 0x94D049BB133111EBL;
+    return result ^ (result >>> 31);
+  }
+
+  /**
+   * Returns the accuracy parameter.
+   *
+   * @return		the parameter
+   */
+  public int getK() {
+    return m_K;
+  }
+
+  /**
+   * Returns the number of values seen.
+   *
+   * @return		the number of values
+   */
+  public long getN() {
+    return m_N;
+  }
+
+  /**
+   * Returns whether no values have been seen yet.
+   *
+   * @return		true if empty
+   */
+  public boolean isEmpty() {
+    return m_N == 0;
+  }
+
+  /**
+   * Returns the smallest value.
+   *
+   * @return		the minimum, NaN if empty
+   */
+  public double getMin() {
+    return m_Min;
+  }
+
+  /**
+   * Returns the largest value.
+   *
+   * @return		the maximum, NaN if empty
+   */
+  public double getMax() {
+    return m_Max;
+  }
+
+  /**
+   * Returns the number of items retained by the sketch.
+   *
+   * @return		the number of items
+   */
+  public int getNumRetained() {
+    return m_NumRetained;
+  }
+
+  /**
+   * Adds a new (empty) top level.
+   */
+  protected void addLevel() {
+    int		len;
+
+    if (m_NumLevels == m_Items.length) {
+      len     = m_Items.length * 2;
+      m_Items = Arrays.copyOf(m_Items, len);
+      m_Sizes = Arrays.copyOf(m_Sizes, len);
+    }
+    m_Items[m_NumLevels] = new double[8];
+    m_Sizes[m_NumLevels] = 0;
+    m_NumLevels++;
+    m_TotalCapacity = totalCapacity();
+  }
+
+  /**
+   * Returns the capacity of the level.
+   *
+   * @param level	the level
+   * @return		the capacity
+   */
+  protected int capacity(int level) {
+    return Math.max(2, (int) Math.ceil(m_K * Math.pow(DECAY, m_NumLevels - 1 - level)));
+  }
+
+  /**
+   * Appends the value to the level.
+   *
+   * @param level	the level
+   * @param value	the value
+   */
+  protected void append(int level, double value) {
+    if (m_Sizes[level] == m_Items[level].length)
+      m_Items[level] = Arrays.copyOf(m_Items[level], m_Items[level].length * 2);
+    m_Items[level][m_Sizes[level]++] = value;
+    m_NumRetained++;
+  }
+
+  /**
+   * Returns the total capacity of all levels.
+   *
+   * @return		the capacity
+   */
+  protected int totalCapacity() {
+    int		result;
+    int		h;
+
+    result = 0;
+    for (h = 0; h < m_NumLevels; h++)
+      result += capacity(h);
+
+    return result;
+  }
+
+  /**
+   * Compacts the level, promoting every other item (random offset) to the
+   * next level. An odd item stays on this level.
+   *
+   * @param level	the level to compact
+   */
+  protected void compact(int level) {
+    int		size;
+    int		i;
+    double[]	items;
+
+    if (level + 1 == m_NumLevels)
+      addLevel();
+    items = m_Items[level];
+    size  = m_Sizes[level];
+    Arrays.sort(items, 0, size & ~1);
+    for (i = m_Random.nextBoolean() ? 1 : 0; i < (size & ~1); i += 2)
+      append(level + 1, items[i]);
+    if ((size & 1) == 1) {
+      items[0]       = items[size - 1];
+      m_Sizes[level] = 1;
+    }
+    else {
+      m_Sizes[level] = 0;
+    }
+    m_NumRetained -= size & ~1;
+  }
+
+  /**
+   * Compacts the lowest level that exceeds its capacity, as long as the
+   * sketch retains more items than its total capacity.
+   */
+  protected void compress() {
+    int		h;
+
+    while (m_NumRetained >= m_TotalCapacity) {
+      for (h = 0; h < m_NumLevels; h++) {
+	if (m_Sizes[h] >= capacity(h)) {
+	  compact(h);
+	  break;
+	}
+      }
+    }
+  }
+
+  /**
+   * Adds the value to the sketch. NaN is ignored.
+   *
+   * @param value	the value to add
+   */
+  public void update(double value) {
+    if (Double.isNaN(value))
+      return;
+
+    if (m_N == 0) {
+      m_Min = value;
+      m_Max = value;
+    }
+    else {
+      if (value < m_Min)
+	m_Min = value;
+      if (value > m_Max)
+	m_Max = value;
+    }
+    m_N++;
+
+    append(0, value);
+    compress();
+  }
+
+  /**
+   * Merges the other sketch into this one.
+   *
+   * @param other	the sketch to merge
+   */
+  public void merge(KllSketch other) {
+    int		h;
+    int		i;
+
+    if (other.isEmpty())
+      return;
+
+    while (m_NumLevels < other.m_NumLevels)
+      addLevel();
+    for (h = 0; h < other.m_NumLevels; h++) {
+      for (i = 0; i < other.m_Sizes[h]; i++)
+	append(h, other.m_Items[h][i]);
+    }
+
+    if (m_N == 0) {
+      m_Min = other.m_Min;
+      m_Max = other.m_Max;
+    }
+    else {
+      m_Min = Math.min(m_Min, other.m_Min);
+      m_Max = Math.max(m_Max, other.m_Max);
+    }
+    m_N += other.m_N;
+
+    compress();
+  }
+
+  /**
+   * Returns the retained items sorted by value, with their cumulative
+   * weights.
+   *
+   * @param values	for storing the sorted values
+   * @param cumWeights	for storing the cumulative weights
+   */
+  protected void sorted(final double[] values, long[] cumWeights) {
+    final long[]	weights;
+    double[]		copy;
+    int[]		order;
+    int			n;
+    int			h;
+    int			i;
+
+    weights = new long[values.length];
+    n       = 0;
+    for (h = 0; h < m_NumLevels; h++) {
+      for (i = 0; i < m_Sizes[h]; i++) {
+	values[n]  = m_Items[h][i];
+	weights[n] = 1L << h;
+	n++;
+      }
+    }
+
+    order = new int[n];
+    for (i = 0; i < n; i++)
+      order[i] = i;
+    ParallelMergeSort.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+    copy = values.clone();
+    for (i = 0; i < n; i++) {
+      values[i]     = copy[order[i]];
+      cumWeights[i] = ((i > 0) ? cumWeights[i - 1] : 0) + weights[order[i]];
+    }
+  }
+
+  /**
+   * Returns the approximate quantiles.
+   *
+   * @param fractions	the fractions (0-1) to get the quantiles for
+   * @return		the quantiles, NaN if empty
+   */
+  public double[] getQuantiles(double[] fractions) {
+    double[]	result;
+    double[]	values;
+    long[]	cumWeights;
+    long	total;
+    int		n;
+    int		i;
+    int		pos;
+
+    result = new double[fractions.length];
+    if (isEmpty()) {
+      Arrays.fill(result, Double.NaN);
+      return result;
+    }
+
+    n          = getNumRetained();
+    values     = new double[n];
+    cumWeights = new long[n];
+    sorted(values, cumWeights);
+    total      = cumWeights[n - 1];
+
+    for (i = 0; i < fractions.length; i++) {
+      if (fractions[i] <= 0) {
+	result[i] = m_Min;
+      }
+      else if (fractions[i] >= 1) {
+	result[i] = m_Max;
+      }
+      else {
+	pos = Arrays.binarySearch(cumWeights, (long) Math.ceil(fractions[i] * total));
+	if (pos < 0)
+	  pos = -pos - 1;
+	result[i] = values[Math.min(pos, n - 1)];
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the approximate quantile.
+   *
+   * @param fraction	the fraction (0-1)
+   * @return		the quantile, NaN if empty
+   */
+  public double getQuantile(double fraction) {
+    return getQuantiles(new double[]{fraction})[0];
+  }
+
+  /**
+   * Returns the approximate normalized rank of the value, i.e., the fraction
+   * of values that are less or equal.
+   *
+   * @param value	the value
+   * @return		the rank (0-1), NaN if empty
+   */
+  public double getRank(double value) {
+    long	weight;
+    int		h;
+    int		i;
+
+    if (isEmpty())
+      return Double.NaN;
+
+    weight = 0;
+    for (h = 0; h < m_NumLevels; h++) {
+      for (i = 0; i < m_Sizes[h]; i++) {
+	if (m_Items[h][i] <= value)
+	  weight += 1L << h;
+      }
+    }
+
+    return (double) weight / m_N;
+  }
+}
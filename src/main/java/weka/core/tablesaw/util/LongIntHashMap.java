@@ -0,0 +1,278 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LongIntHashMap.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map (linear probing) from primitive long keys to
+ * primitive int values, avoiding boxing of keys and values.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class LongIntHashMap
+  implements Serializable {
+
+  private static final long serialVersionUID = -3302436145425364447L;
+
+  /** the maximum load factor. */
+  public final static double LOAD_FACTOR = 0.5;
+
+  /** the value returned for missing keys. */
+  public final static int NO_VALUE = -1;
+
+  /** the keys. */
+  protected long[] m_Keys;
+
+  /** the values. */
+  protected int[] m_Values;
+
+  /** whether a slot is used. */
+  protected boolean[] m_Used;
+
+  /** the number of entries. */
+  protected int m_Size;
+
+  /** the mask for computing the slot. */
+  protected int m_Mask;
+
+  /**
+   * Initializes the map with a default capacity.
+   */
+  public LongIntHashMap() {
+    this(16);
+  }
+
+  /**
+   * Initializes the map so that the expected number of entries can be
+   * stored without resizing.
+   *
+   * @param expected	the expected number of entries
+   */
+  public LongIntHashMap(int expected) {
+    allocate(capacityFor(expected));
+  }
+
+  /**
+   * Returns the table capacity (power of 2) for the number of entries.
+   *
+   * @param expected	the number of entries
+   * @return		the capacity
+   */
+  protected static int capacityFor(int expected) {
+    long	result;
+
+    result = 16;
+    while (result * LOAD_FACTOR < expected)
+      result <<= 1;
+    if (result > (1 << 30))
+      throw new IllegalStateException("Too many entries: " + expected);
+
+    return (int) result;
+  }
+
+  /**
+   * Allocates the arrays.
+   *
+   * @param capacity	the capacity (power of 2)
+   */
+  protected void allocate(int capacity) {
+    m_Keys   = new long[capacity];
+    m_Values = new int[capacity];
+    m_Used   = new boolean[capacity];
+    m_Mask   = capacity - 1;
+    m_Size   = 0;
+  }
+
+  /**
+   * Mixes the bits of the key (finalizer of MurmurHash3).
+   *
+   * @param key		the key
+   * @return		the hash
+   */
+  public static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+
+  /**
+   * Returns the slot for the key, either the one containing it or the
+   * first empty one.
+   *
+   * @param key		the key
+   * @return		the slot
+   */
+  protected int slot(long key) {
+    int		result;
+
+    result = (int) mix(key) & m_Mask;
+    while (m_Used[result] && (m_Keys[result] != key))
+      result = (result + 1) & m_Mask;
+
+    return result;
+  }
+
+  /**
+   * Doubles the capacity.
+   */
+  protected void grow() {
+    long[]	keys;
+    int[]	values;
+    boolean[]	used;
+    int		i;
+
+    keys   = m_Keys;
+    values = m_Values;
+    used   = m_Used;
+    allocate(m_Keys.length * 2);
+    for (i = 0; i < keys.length; i++) {
+      if (used[i])
+	put(keys[i], values[i]);
+    }
+  }
+
+  /**
+   * Returns the value associated with the key.
+   *
+   * @param key		the key
+   * @return		the value, {@link #NO_VALUE} if not present
+   */
+  public int get(long key) {
+    int		slot;
+
+    slot = slot(key);
+    if (m_Used[slot])
+      return m_Values[slot];
+    else
+      return NO_VALUE;
+  }
+
+  /**
+   * Checks whether the key is present.
+   *
+   * @param key		the key
+   * @return		true if present
+   */
+  public boolean containsKey(long key) {
+    return m_Used[slot(key)];
+  }
+
+  /**
+   * Stores the value under the key.
+   *
+   * @param key		the key
+   * @param value	the value
+   */
+  public void put(long key, int value) {
+    int		slot;
+
+    slot = slot(key);
+    if (!m_Used[slot]) {
+      if ((m_Size + 1) > m_Keys.length * LOAD_FACTOR) {
+	grow();
+	slot = slot(key);
+      }
+      m_Used[slot] = true;
+      m_Keys[slot] = key;
+      m_Size++;
+    }
+    m_Values[slot] = value;
+  }
+
+  /**
+   * Returns the value associated with the key, adding the key with the
+   * specified value if not yet present.
+   *
+   * @param key		the key
+   * @param value	the value to store if key not present
+   * @return		the associated value
+   */
+  public int putIfAbsent(long key, int value) {
+    int		slot;
+
+    slot = slot(key);
+    if (m_Used[slot])
+      return m_Values[slot];
+    put(key, value);
+    return value;
+  }
+
+  /**
+   * Adds the increment to the value associated with the key (starting from 0).
+   *
+   * @param key		the key
+   * @param increment	the increment
+   * @return		the new value
+   */
+  public int addTo(long key, int increment) {
+    int		slot;
+
+    slot = slot(key);
+    if (m_Used[slot]) {
+      m_Values[slot] += increment;
+      return m_Values[slot];
+    }
+    put(key, increment);
+    return increment;
+  }
+
+  /**
+   * Returns the number of entries.
+   *
+   * @return		the number of entries
+   */
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns all keys (in no particular order).
+   *
+   * @return		the keys
+   */
+  public long[] keys() {
+    long[]	result;
+    int		i;
+    int		n;
+
+    result = new long[m_Size];
+    n      = 0;
+    for (i = 0; i < m_Keys.length; i++) {
+      if (m_Used[i])
+	result[n++] = m_Keys[i];
+    }
+
+    return result;
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public void clear() {
+    Arrays.fill(m_Used, false);
+    m_Size = 0;
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MissingValueIndex.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import org.roaringbitmap.RoaringBitmap;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Index of the missing values of a table, with one bitmap (of row indices)
+ * per column.
+ * <br>
+ * The bitmaps of all the columns are computed in a single parallel scan
+ * (see {@link ParallelColumnScan}) and cached per column object, so that
+ * subsequent operations in a pipeline (e.g., counting missing values and then
+ * removing rows) can reuse them. A cached bitmap is only used as long as the
+ * size of its column is unchanged; columns that get modified in place via
+ * setters need to be invalidated explicitly (see {@link #invalidate(Column)}).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class MissingValueIndex {
+
+  /**
+   * A cached bitmap.
+   */
+  protected static class CacheEntry {
+
+    /** the size of the column at the time of the computation. */
+    protected int m_Size;
+
+    /** the missing values. */
+    protected RoaringBitmap m_Missing;
+
+    /**
+     * Initializes the entry.
+     *
+     * @param size	the size of the column
+     * @param missing	the missing values
+     */
+    protected CacheEntry(int size, RoaringBitmap missing) {
+      m_Size    = size;
+      m_Missing = missing;
+    }
+  }
+
+  /** the cache (columns use identity for equals/hashCode). */
+  protected static final Map<Column<?>, CacheEntry> CACHE = Collections.synchronizedMap(new WeakHashMap<Column<?>, CacheEntry>());
+
+  /** the number of rows. */
+  protected int m_NumRows;
+
+  /** the column names. */
+  protected List<String> m_Names;
+
+  /** the missing values per column. */
+  protected List<RoaringBitmap> m_Missing;
+
+  /**
+   * Initializes the index.
+   *
+   * @param numRows	the number of rows
+   * @param names	the column names
+   * @param missing	the bitmaps of the columns
+   */
+  protected MissingValueIndex(int numRows, List<String> names, List<RoaringBitmap> missing) {
+    m_NumRows = numRows;
+    m_Names   = names;
+    m_Missing = missing;
+  }
+
+  /**
+   * Returns the index for the table, computing the bitmaps of the columns
+   * that are not cached yet.
+   *
+   * @param table	the table to get the index for
+   * @return		the index
+   */
+  public static MissingValueIndex of(Table table) {
+    List<String>		names;
+    List<RoaringBitmap>		missing;
+    final List<Column<?>>	todo;
+    List<RoaringBitmap>		computed;
+    Column<?>			column;
+    CacheEntry			entry;
+    int				i;
+    int				n;
+
+    names   = new ArrayList<String>();
+    missing = new ArrayList<RoaringBitmap>();
+    todo    = new ArrayList<Column<?>>();
+    for (i = 0; i < table.columnCount(); i++) {
+      column = table.column(i);
+      names.add(column.name());
+      entry = CACHE.get(column);
+      if ((entry != null) && (entry.m_Size == column.size())) {
+	missing.add(entry.m_Missing);
+      }
+      else {
+	missing.add(null);
+	todo.add(column);
+      }
+    }
+
+    if (!todo.isEmpty()) {
+      computed = ParallelColumnScan.scan(todo, (int col, int from, int to) -> {
+	Column<?> c = todo.get(col);
+	RoaringBitmap bitmap = new RoaringBitmap();
+	for (int row = from; row < to; row++) {
+	  if (c.isMissing(row))
+	    bitmap.add(row);
+	}
+	return bitmap;
+      }, (RoaringBitmap target, RoaringBitmap source) -> target.or(source));
+
+      n = 0;
+      for (i = 0; i < missing.size(); i++) {
+	if (missing.get(i) == null) {
+	  computed.get(n).runOptimize();
+	  missing.set(i, computed.get(n));
+	  CACHE.put(todo.get(n), new CacheEntry(todo.get(n).size(), computed.get(n)));
+	  n++;
+	}
+      }
+    }
+
+    return new MissingValueIndex(table.rowCount(), names, missing);
+  }
+
+  /**
+   * Removes the column from the cache.
+   *
+   * @param column	the column to invalidate
+   */
+  public static void invalidate(Column<?> column) {
+    CACHE.remove(column);
+  }
+
+  /**
+   * Removes all columns from the cache.
+   */
+  public static void clearCache() {
+    CACHE.clear();
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return		the number of rows
+   */
+  public int getNumRows() {
+    return m_NumRows;
+  }
+
+  /**
+   * Returns the number of columns.
+   *
+   * @return		the number of columns
+   */
+  public int getNumColumns() {
+    return m_Names.size();
+  }
+
+  /**
+   * Returns the name of the column.
+   *
+   * @param col		the column index
+   * @return		the name
+   */
+  public String getName(int col) {
+    return m_Names.get(col);
+  }
+
+  /**
+   * Returns the missing values of the column. Must not be modified.
+   *
+   * @param col		the column index
+   * @return		the bitmap of rows with missing values
+   */
+  public RoaringBitmap getMissing(int col) {
+    return m_Missing.get(col);
+  }
+
+  /**
+   * Returns the number of missing values in the column.
+   *
+   * @param col		the column index
+   * @return		the count
+   */
+  public int getCount(int col) {
+    return m_Missing.get(col).getCardinality();
+  }
+
+  /**
+   * Returns the fraction of missing values in the column.
+   *
+   * @param col		the column index
+   * @return		the fraction (0-1), 0 if no rows
+   */
+  public double getFraction(int col) {
+    if (m_NumRows == 0)
+      return 0.0;
+    return (double) getCount(col) / m_NumRows;
+  }
+
+  /**
+   * Returns the rows with at least one missing value.
+   *
+   * @return		the rows
+   */
+  public RoaringBitmap getRowsWithMissing() {
+    return RoaringBitmap.or(m_Missing.iterator());
+  }
+
+  /**
+   * Returns the number of missing values per row.
+   *
+   * @return		the counts
+   */
+  public int[] getRowCounts() {
+    final int[]	result;
+
+    result = new int[m_NumRows];
+    for (RoaringBitmap missing: m_Missing)
+      missing.forEach((int row) -> result[row]++);
+
+    return result;
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OffHeapColumn.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ancestor for append-only columns that store fixed-width values outside
+ * the Java heap, in direct {@link ByteBuffer}s.
+ * <br>
+ * The values are stored in chunks of {@link #CHUNK_SIZE} elements, as a
+ * single buffer cannot exceed 2GB. Only the last chunk grows (by doubling),
+ * all others are full, so locating a row is a shift and a mask.
+ * <br>
+ * The memory gets freed explicitly with {@link #close()}, rather than
+ * whenever the garbage collector gets around to collecting the buffers.
+ * Columns can also be backed by read-only memory-mapped files (see
+ * {@link ColumnStore}), in which case closing unmaps them.
+ * The values are always stored little-endian, so the chunks can be written
+ * to and mapped from files as they are.
+ * Not thread-safe for appending, but can be read concurrently once filled.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public abstract class OffHeapColumn
+  implements Closeable {
+
+  /** the bits for the row within a chunk. */
+  public final static int CHUNK_BITS = 20;
+
+  /** the number of elements per chunk. */
+  public final static int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  /** the mask for the row within a chunk. */
+  protected final static int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /** the byte order of the values. */
+  public final static ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  /** the initial number of elements of the first chunk. */
+  protected final static int INITIAL_CAPACITY = 1024;
+
+  /** the method for freeing direct buffers (Java 9+). */
+  protected static Method m_InvokeCleaner;
+
+  /** the unsafe instance for freeing direct buffers (Java 9+). */
+  protected static Object m_Unsafe;
+
+  /** whether the freeing mechanism has been determined. */
+  protected static boolean m_CleanerInitialized;
+
+  /** the name of the column. */
+  protected String m_Name;
+
+  /** the column type code of the original column. */
+  protected String m_Type;
+
+  /** the chunks. */
+  protected List<ByteBuffer> m_Chunks;
+
+  /** the capacity of the last chunk in elements. */
+  protected int m_LastCapacity;
+
+  /** the number of values. */
+  protected int m_Size;
+
+  /** whether the column is read-only (e.g., memory-mapped). */
+  protected boolean m_ReadOnly;
+
+  /**
+   * Initializes the column.
+   *
+   * @param name	the name of the column
+   * @param type	the type code of the original column (see {@link weka.core.TablesawUtils#getColumnType})
+   */
+  protected OffHeapColumn(String name, String type) {
+    m_Name         = name;
+    m_Type         = type;
+    m_Chunks       = new ArrayList<ByteBuffer>();
+    m_LastCapacity = 0;
+    m_Size         = 0;
+    m_ReadOnly     = false;
+  }
+
+  /**
+   * Returns the number of bytes per element.
+   *
+   * @return		the width
+   */
+  protected abstract int getElementBytes();
+
+  /**
+   * Returns the name of the column.
+   *
+   * @return		the name
+   */
+  public String getName() {
+    return m_Name;
+  }
+
+  /**
+   * Returns the type code of the original column.
+   *
+   * @return		the type code
+   */
+  public String getType() {
+    return m_Type;
+  }
+
+  /**
+   * Returns the number of values.
+   *
+   * @return		the number of values
+   */
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns whether the value in the row is missing.
+   *
+   * @param row		the row
+   * @return		true if missing
+   */
+  public abstract boolean isMissing(int row);
+
+  /**
+   * Returns the number of bytes allocated outside the heap.
+   *
+   * @return		the number of bytes
+   */
+  public long getAllocatedBytes() {
+    long	result;
+
+    result = 0;
+    for (ByteBuffer chunk: m_Chunks)
+      result += chunk.capacity();
+
+    return result;
+  }
+
+  /**
+   * Allocates a direct buffer.
+   *
+   * @param elements	the number of elements
+   * @return		the buffer
+   */
+  protected ByteBuffer allocate(int elements) {
+    return ByteBuffer.allocateDirect(elements * getElementBytes()).order(BYTE_ORDER);
+  }
+
+  /**
+   * Makes sure there is room for appending another value and returns the
+   * byte offset of the next value in the last chunk.
+   *
+   * @return		the byte offset
+   * @throws IllegalStateException	if the column has been closed or is read-only
+   */
+  protected int nextOffset() {
+    ByteBuffer	oldChunk;
+    ByteBuffer	newChunk;
+    int		offset;
+
+    if (m_Chunks == null)
+      throw new IllegalStateException("Column '" + m_Name + "' has been closed!");
+    if (m_ReadOnly)
+      throw new IllegalStateException("Column '" + m_Name + "' is read-only!");
+
+    offset = m_Size & CHUNK_MASK;
+    if ((offset == 0) && (m_Size == m_Chunks.size() * CHUNK_SIZE)) {
+      // new chunk
+      m_LastCapacity = m_Chunks.isEmpty() ? INITIAL_CAPACITY : CHUNK_SIZE;
+      m_Chunks.add(allocate(m_LastCapacity));
+    }
+    else if (offset == m_LastCapacity) {
+      // grow last chunk
+      oldChunk       = m_Chunks.get(m_Chunks.size() - 1);
+      m_LastCapacity = Math.min(CHUNK_SIZE, m_LastCapacity * 2);
+      newChunk       = allocate(m_LastCapacity);
+      oldChunk.clear();
+      newChunk.put(oldChunk);
+      newChunk.clear();
+      m_Chunks.set(m_Chunks.size() - 1, newChunk);
+      free(oldChunk);
+    }
+
+    return offset * getElementBytes();
+  }
+
+  /**
+   * Returns the chunk for the row.
+   *
+   * @param row		the row
+   * @return		the chunk
+   * @throws IllegalStateException	if the column has been closed
+   */
+  protected ByteBuffer chunk(int row) {
+    if (m_Chunks == null)
+      throw new IllegalStateException("Column '" + m_Name + "' has been closed!");
+    if ((row < 0) || (row >= m_Size))
+      throw new IndexOutOfBoundsException("Row " + row + " not in [0," + m_Size + ") for column '" + m_Name + "'!");
+    return m_Chunks.get(row >>> CHUNK_BITS);
+  }
+
+  /**
+   * Returns the byte offset of the row within its chunk.
+   *
+   * @param row		the row
+   * @return		the offset
+   */
+  protected int offset(int row) {
+    return (row & CHUNK_MASK) * getElementBytes();
+  }
+
+  /**
+   * Returns the last chunk for appending.
+   *
+   * @return		the chunk
+   */
+  protected ByteBuffer lastChunk() {
+    return m_Chunks.get(m_Chunks.size() - 1);
+  }
+
+  /**
+   * Replaces the storage with the (read-only) chunks, e.g., memory-mapped
+   * file regions. All chunks but the last must hold {@link #CHUNK_SIZE}
+   * elements.
+   *
+   * @param chunks	the chunks, little-endian
+   * @param size	the number of values
+   */
+  protected void wrap(List<ByteBuffer> chunks, int size) {
+    close();
+    m_Chunks       = new ArrayList<ByteBuffer>(chunks);
+    m_Size         = size;
+    m_LastCapacity = chunks.isEmpty() ? 0 : chunks.get(chunks.size() - 1).capacity() / getElementBytes();
+    m_ReadOnly     = true;
+  }
+
+  /**
+   * Returns the number of chunks.
+   *
+   * @return		the number of chunks
+   */
+  protected int numChunks() {
+    return m_Chunks.size();
+  }
+
+  /**
+   * Returns a read-only view of the used part of the chunk.
+   *
+   * @param index	the index of the chunk
+   * @return		the view, positioned at 0
+   */
+  protected ByteBuffer chunkView(int index) {
+    ByteBuffer	result;
+    int		elements;
+
+    elements = Math.min(CHUNK_SIZE, m_Size - index * CHUNK_SIZE);
+    result   = m_Chunks.get(index).asReadOnlyBuffer();
+    result.position(0);
+    result.limit(elements * getElementBytes());
+
+    return result;
+  }
+
+  /**
+   * Returns whether the column is read-only.
+   *
+   * @return		true if read-only
+   */
+  public boolean isReadOnly() {
+    return m_ReadOnly;
+  }
+
+  /**
+   * Returns whether the column has been closed.
+   *
+   * @return		true if closed
+   */
+  public boolean isClosed() {
+    return (m_Chunks == null);
+  }
+
+  /**
+   * Frees the memory of the column. The column can no longer be used afterwards.
+   */
+  @Override
+  public void close() {
+    if (m_Chunks == null)
+      return;
+    for (ByteBuffer chunk: m_Chunks)
+      free(chunk);
+    m_Chunks = null;
+  }
+
+  /**
+   * Frees the memory of the direct buffer immediately, if supported by the
+   * JVM (Unsafe.invokeCleaner on Java 9+, the buffer's cleaner on Java 8).
+   * Otherwise the memory gets freed once the buffer gets garbage collected.
+   *
+   * @param buffer	the buffer to free, must not be used afterwards
+   */
+  public static synchronized void free(ByteBuffer buffer) {
+    Class<?>	cls;
+    Field	field;
+    Method	method;
+    Object	cleaner;
+
+    if (!buffer.isDirect())
+      return;
+
+    if (!m_CleanerInitialized) {
+      m_CleanerInitialized = true;
+      try {
+        cls   = Class.forName("sun.misc.Unsafe");
+        field = cls.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        m_Unsafe        = field.get(null);
+        m_InvokeCleaner = cls.getMethod("invokeCleaner", ByteBuffer.class);
+      }
+      catch (Throwable t) {
+        m_Unsafe        = null;
+        m_InvokeCleaner = null;
+      }
+    }
+
+    try {
+      if (m_InvokeCleaner != null) {
+        m_InvokeCleaner.invoke(m_Unsafe, buffer);
+      }
+      else {
+        method = buffer.getClass().getMethod("cleaner");
+        method.setAccessible(true);
+        cleaner = method.invoke(buffer);
+        if (cleaner != null)
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    }
+    catch (Throwable t) {
+      // left to the garbage collector
+    }
+  }
+}
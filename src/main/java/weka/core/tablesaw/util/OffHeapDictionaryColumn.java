@@ -0,0 +1,174 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OffHeapDictionaryColumn.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Off-heap column of dictionary-encoded strings. The int codes of the rows
+ * are stored outside the heap, the dictionary (one entry per distinct
+ * string) on the heap. Like {@link ColumnCoder}, code 0 is reserved for
+ * missing values and the strings get their codes in order of first
+ * occurrence.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class OffHeapDictionaryColumn
+  extends OffHeapColumn {
+
+  /** the code for missing values. */
+  public final static int MISSING = ColumnCoder.MISSING;
+
+  /** the strings, in order of their codes (starting with code 1). */
+  protected List<String> m_Labels;
+
+  /** the codes of the strings. */
+  protected Map<String, Integer> m_Codes;
+
+  /**
+   * Initializes the column.
+   *
+   * @param name	the name of the column
+   * @param type	the type code of the original column ("ss" or "st")
+   */
+  public OffHeapDictionaryColumn(String name, String type) {
+    super(name, type);
+    m_Labels = new ArrayList<String>();
+    m_Codes  = new HashMap<String, Integer>();
+  }
+
+  /**
+   * Returns the number of bytes per element.
+   *
+   * @return		the width
+   */
+  @Override
+  protected int getElementBytes() {
+    return 4;
+  }
+
+  /**
+   * Returns the code of the string, adding it to the dictionary if necessary.
+   *
+   * @param value	the string
+   * @return		the code (1 or larger)
+   */
+  public int addLabel(String value) {
+    Integer	code;
+
+    code = m_Codes.get(value);
+    if (code == null) {
+      m_Labels.add(value);
+      code = m_Labels.size();
+      m_Codes.put(value, code);
+    }
+
+    return code;
+  }
+
+  /**
+   * Returns the number of codes, including the one for missing values.
+   *
+   * @return		the number of codes
+   */
+  public int numCodes() {
+    return m_Labels.size() + 1;
+  }
+
+  /**
+   * Returns the string for the code.
+   *
+   * @param code	the code (1 or larger)
+   * @return		the string
+   */
+  public String getLabel(int code) {
+    return m_Labels.get(code - 1);
+  }
+
+  /**
+   * Appends the code.
+   *
+   * @param code	the code, {@link #MISSING} for missing
+   * @see		#addLabel(String)
+   */
+  public void appendCode(int code) {
+    int		offset;
+
+    offset = nextOffset();
+    lastChunk().putInt(offset, code);
+    m_Size++;
+  }
+
+  /**
+   * Appends the string.
+   *
+   * @param value	the string, null for missing
+   */
+  public void append(String value) {
+    appendCode((value == null) ? MISSING : addLabel(value));
+  }
+
+  /**
+   * Appends a missing value.
+   */
+  public void appendMissing() {
+    appendCode(MISSING);
+  }
+
+  /**
+   * Returns the code in the row.
+   *
+   * @param row		the row
+   * @return		the code, {@link #MISSING} if missing
+   */
+  public int getCode(int row) {
+    return chunk(row).getInt(offset(row));
+  }
+
+  /**
+   * Returns the string in the row.
+   *
+   * @param row		the row
+   * @return		the string, null if missing
+   */
+  public String getString(int row) {
+    int		code;
+
+    code = getCode(row);
+    if (code == MISSING)
+      return null;
+    return m_Labels.get(code - 1);
+  }
+
+  /**
+   * Returns whether the value in the row is missing.
+   *
+   * @param row		the row
+   * @return		true if missing
+   */
+  @Override
+  public boolean isMissing(int row) {
+    return (getCode(row) == MISSING);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OffHeapDoubleColumn.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+/**
+ * Off-heap column of doubles, with NaN representing missing values (like
+ * Weka and Tablesaw's DoubleColumn).
+ * <br>
+ * Besides numbers, it stores the internal Weka values of date-like and
+ * boolean columns (see {@link weka.core.TablesawUtils#getInternalValue}),
+ * with the original column type code kept for restoring the column.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class OffHeapDoubleColumn
+  extends OffHeapColumn {
+
+  /**
+   * Initializes the column.
+   *
+   * @param name	the name of the column
+   * @param type	the type code of the original column (see {@link weka.core.TablesawUtils#getColumnType})
+   */
+  public OffHeapDoubleColumn(String name, String type) {
+    super(name, type);
+  }
+
+  /**
+   * Returns the number of bytes per element.
+   *
+   * @return		the width
+   */
+  @Override
+  protected int getElementBytes() {
+    return 8;
+  }
+
+  /**
+   * Appends the value.
+   *
+   * @param value	the value, NaN for missing
+   */
+  public void append(double value) {
+    int		offset;
+
+    offset = nextOffset();
+    lastChunk().putDouble(offset, value);
+    m_Size++;
+  }
+
+  /**
+   * Appends a missing value.
+   */
+  public void appendMissing() {
+    append(Double.NaN);
+  }
+
+  /**
+   * Returns the value in the row.
+   *
+   * @param row		the row
+   * @return		the value, NaN if missing
+   */
+  public double getDouble(int row) {
+    return chunk(row).getDouble(offset(row));
+  }
+
+  /**
+   * Copies the values of the rows into the array.
+   *
+   * @param from	the first row (incl)
+   * @param to		the last row (excl)
+   * @param values	the array to copy to
+   * @param start	the position in the array to start at
+   */
+  public void getDoubles(int from, int to, double[] values, int start) {
+    int		row;
+
+    for (row = from; row < to; row++)
+      values[start + row - from] = chunk(row).getDouble(offset(row));
+  }
+
+  /**
+   * Returns whether the value in the row is missing.
+   *
+   * @param row		the row
+   * @return		true if missing
+   */
+  @Override
+  public boolean isMissing(int row) {
+    return Double.isNaN(getDouble(row));
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OffHeapLongColumn.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+/**
+ * Off-heap column of longs, with {@link #MISSING} representing missing
+ * values (like Tablesaw's LongColumn).
+ * <br>
+ * Keeps all 64 bits of the values, e.g., of IDs or timestamps in
+ * nanoseconds, which doubles can only represent exactly up to 2^53.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class OffHeapLongColumn
+  extends OffHeapColumn {
+
+  /** the value representing missing values. */
+  public final static long MISSING = Long.MIN_VALUE;
+
+  /**
+   * Initializes the column.
+   *
+   * @param name	the name of the column
+   * @param type	the type code of the original column (see {@link weka.core.TablesawUtils#getColumnType})
+   */
+  public OffHeapLongColumn(String name, String type) {
+    super(name, type);
+  }
+
+  /**
+   * Returns the number of bytes per element.
+   *
+   * @return		the width
+   */
+  @Override
+  protected int getElementBytes() {
+    return 8;
+  }
+
+  /**
+   * Appends the value.
+   *
+   * @param value	the value, {@link #MISSING} for missing
+   */
+  public void append(long value) {
+    int		offset;
+
+    offset = nextOffset();
+    lastChunk().putLong(offset, value);
+    m_Size++;
+  }
+
+  /**
+   * Appends a missing value.
+   */
+  public void appendMissing() {
+    append(MISSING);
+  }
+
+  /**
+   * Returns the value in the row.
+   *
+   * @param row		the row
+   * @return		the value, {@link #MISSING} if missing
+   */
+  public long getLong(int row) {
+    return chunk(row).getLong(offset(row));
+  }
+
+  /**
+   * Returns the value in the row as double (e.g., for Weka).
+   *
+   * @param row		the row
+   * @return		the value, NaN if missing
+   */
+  public double getDouble(int row) {
+    long	value;
+
+    value = getLong(row);
+    if (value == MISSING)
+      return Double.NaN;
+    else
+      return value;
+  }
+
+  /**
+   * Copies the values of the rows into the array.
+   *
+   * @param from	the first row (incl)
+   * @param to		the last row (excl)
+   * @param values	the array to copy to
+   * @param start	the position in the array to start at
+   */
+  public void getLongs(int from, int to, long[] values, int start) {
+    int		row;
+
+    for (row = from; row < to; row++)
+      values[start + row - from] = chunk(row).getLong(offset(row));
+  }
+
+  /**
+   * Returns whether the value in the row is missing.
+   *
+   * @param row		the row
+   * @return		true if missing
+   */
+  @Override
+  public boolean isMissing(int row) {
+    return (getLong(row) == MISSING);
+  }
+}
@@ -0,0 +1,484 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OffHeapTable.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.BooleanColumn;
+import tech.tablesaw.api.DateColumn;
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.InstantColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.api.TextColumn;
+import tech.tablesaw.api.TimeColumn;
+import tech.tablesaw.columns.Column;
+import weka.core.TablesawUtils;
+
+import java.io.Closeable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table whose columns are stored outside the Java heap, for keeping large
+ * datasets with a small heap and short garbage collection pauses.
+ * <br>
+ * Long columns are stored as {@link OffHeapLongColumn}s (all 64 bits),
+ * other numeric, date-like and boolean columns as
+ * {@link OffHeapDoubleColumn}s (internal Weka values, see
+ * {@link TablesawUtils#getInternalValue}), all other columns as
+ * {@link OffHeapDictionaryColumn}s. Only the dictionaries of the string
+ * columns reside on the heap.
+ * <br>
+ * Rows get appended in chunks (Tablesaw tables) and can be turned back into
+ * Tablesaw tables, either completely or a range of rows at a time. The
+ * column types get restored, with dates and times in UTC.
+ * <br>
+ * The memory must be freed with {@link #close()}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class OffHeapTable
+  implements Closeable {
+
+  /** the name of the table. */
+  protected String m_Name;
+
+  /** the columns, null if not yet defined by the first chunk. */
+  protected List<OffHeapColumn> m_Columns;
+
+  /** the number of rows. */
+  protected int m_RowCount;
+
+  /**
+   * Initializes the table.
+   *
+   * @param name	the name of the table
+   */
+  public OffHeapTable(String name) {
+    m_Name     = name;
+    m_Columns  = null;
+    m_RowCount = 0;
+  }
+
+  /**
+   * Copies the table into a new off-heap table.
+   *
+   * @param table	the table to copy
+   * @return		the off-heap table
+   */
+  public static OffHeapTable fromTable(Table table) {
+    OffHeapTable	result;
+
+    result = new OffHeapTable(table.name());
+    result.append(table);
+
+    return result;
+  }
+
+  /**
+   * Returns whether the type code gets stored as doubles.
+   *
+   * @param type	the type code
+   * @return		true if stored as doubles
+   */
+  public static boolean isDoubleType(String type) {
+    switch (type) {
+      case "nd":
+      case "nf":
+      case "ns":
+      case "ni":
+      case "ddt":
+      case "dd":
+      case "dt":
+      case "di":
+      case "b":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns whether the type code gets stored as longs.
+   *
+   * @param type	the type code
+   * @return		true if stored as longs
+   */
+  public static boolean isLongType(String type) {
+    return type.equals("nl");
+  }
+
+  /**
+   * Returns the name of the table.
+   *
+   * @return		the name
+   */
+  public String name() {
+    return m_Name;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return		the number of rows
+   */
+  public int rowCount() {
+    return m_RowCount;
+  }
+
+  /**
+   * Returns the number of columns.
+   *
+   * @return		the number of columns
+   */
+  public int columnCount() {
+    return (m_Columns == null) ? 0 : m_Columns.size();
+  }
+
+  /**
+   * Returns the specified column.
+   *
+   * @param index	the index of the column
+   * @return		the column
+   */
+  public OffHeapColumn column(int index) {
+    return m_Columns.get(index);
+  }
+
+  /**
+   * Returns the column with the specified name.
+   *
+   * @param name	the name of the column
+   * @return		the column
+   * @throws IllegalArgumentException	if no such column
+   */
+  public OffHeapColumn column(String name) {
+    if (m_Columns != null) {
+      for (OffHeapColumn column: m_Columns) {
+        if (column.getName().equals(name))
+          return column;
+      }
+    }
+    throw new IllegalArgumentException("Column not found: " + name);
+  }
+
+  /**
+   * Adds the column (must have the same number of rows as the others).
+   *
+   * @param column	the column to add
+   */
+  public void addColumn(OffHeapColumn column) {
+    if (m_Columns == null) {
+      m_Columns  = new ArrayList<OffHeapColumn>();
+      m_RowCount = column.size();
+    }
+    if (column.size() != m_RowCount)
+      throw new IllegalArgumentException("Column '" + column.getName() + "' has " + column.size() + " rows instead of " + m_RowCount + "!");
+    m_Columns.add(column);
+  }
+
+  /**
+   * Returns the number of bytes allocated outside the heap.
+   *
+   * @return		the number of bytes
+   */
+  public long getAllocatedBytes() {
+    long	result;
+
+    result = 0;
+    if (m_Columns != null) {
+      for (OffHeapColumn column: m_Columns)
+        result += column.getAllocatedBytes();
+    }
+
+    return result;
+  }
+
+  /**
+   * Appends the rows of the chunk. The first chunk defines the columns,
+   * all others must have the same columns.
+   *
+   * @param chunk	the rows to append
+   * @throws IllegalArgumentException	if the columns differ
+   */
+  public void append(Table chunk) {
+    int				i;
+    int				n;
+    Column<?>			column;
+    String			type;
+    OffHeapDoubleColumn		doubles;
+    OffHeapLongColumn		longs;
+    LongColumn			longColumn;
+    OffHeapDictionaryColumn	dict;
+    ColumnCoder			coder;
+    int[]			codes;
+    int				code;
+
+    if (m_Columns == null) {
+      m_Columns = new ArrayList<OffHeapColumn>();
+      for (i = 0; i < chunk.columnCount(); i++) {
+        column = chunk.column(i);
+        type   = TablesawUtils.getColumnType(column.type());
+        if (isLongType(type))
+          m_Columns.add(new OffHeapLongColumn(column.name(), type));
+        else if (isDoubleType(type))
+          m_Columns.add(new OffHeapDoubleColumn(column.name(), type));
+        else
+          m_Columns.add(new OffHeapDictionaryColumn(column.name(), type));
+      }
+    }
+
+    if (chunk.columnCount() != m_Columns.size())
+      throw new IllegalArgumentException("Expected " + m_Columns.size() + " columns, but chunk has " + chunk.columnCount() + "!");
+    for (i = 0; i < chunk.columnCount(); i++) {
+      if (!chunk.column(i).name().equals(m_Columns.get(i).getName()))
+        throw new IllegalArgumentException("Expected column '" + m_Columns.get(i).getName() + "' at #" + (i+1) + ", but found: " + chunk.column(i).name());
+    }
+
+    for (i = 0; i < chunk.columnCount(); i++) {
+      column = chunk.column(i);
+      type   = TablesawUtils.getColumnType(column.type());
+      if (m_Columns.get(i) instanceof OffHeapLongColumn) {
+        if (!isLongType(type))
+          throw new IllegalArgumentException("Column '" + column.name() + "' is no longer a long column: " + column.type());
+        longs      = (OffHeapLongColumn) m_Columns.get(i);
+        longColumn = (LongColumn) column;
+        for (n = 0; n < longColumn.size(); n++) {
+          if (longColumn.isMissing(n))
+            longs.appendMissing();
+          else
+            longs.append(longColumn.getLong(n));
+        }
+      }
+      else if (m_Columns.get(i) instanceof OffHeapDoubleColumn) {
+        if (!isDoubleType(type))
+          throw new IllegalArgumentException("Column '" + column.name() + "' is no longer numeric/date-like/boolean: " + column.type());
+        doubles = (OffHeapDoubleColumn) m_Columns.get(i);
+        for (n = 0; n < column.size(); n++) {
+          if (column.isMissing(n))
+            doubles.appendMissing();
+          else
+            doubles.append(TablesawUtils.getInternalValue(column, type, n));
+        }
+      }
+      else {
+        dict  = (OffHeapDictionaryColumn) m_Columns.get(i);
+        coder = new ColumnCoder(column);
+        if (coder.hasLabels()) {
+          // look up each distinct string only once
+          codes = new int[coder.size()];
+          for (code = 1; code < coder.size(); code++)
+            codes[code] = dict.addLabel(coder.getLabel(code));
+          for (n = 0; n < column.size(); n++)
+            dict.appendCode(codes[coder.code(n)]);
+        }
+        else {
+          for (n = 0; n < column.size(); n++)
+            dict.append(column.isMissing(n) ? null : column.getString(n));
+        }
+      }
+    }
+
+    m_RowCount += chunk.rowCount();
+  }
+
+  /**
+   * Turns the column into a Tablesaw one.
+   *
+   * @param column	the column to convert
+   * @param from	the first row (incl)
+   * @param to		the last row (excl)
+   * @return		the Tablesaw column
+   */
+  protected Column<?> toColumn(OffHeapColumn column, int from, int to) {
+    Column<?>			result;
+    OffHeapDoubleColumn		doubles;
+    OffHeapLongColumn		longs;
+    OffHeapDictionaryColumn	dict;
+    long[]			longValues;
+    double[]			values;
+    double			value;
+    String[]			labels;
+    StringColumn		strings;
+    TextColumn			texts;
+    DateTimeColumn		datetimes;
+    DateColumn			dates;
+    TimeColumn			times;
+    InstantColumn		instants;
+    BooleanColumn		booleans;
+    int				n;
+    int				code;
+
+    if (column instanceof OffHeapLongColumn) {
+      longs      = (OffHeapLongColumn) column;
+      longValues = new long[to - from];
+      longs.getLongs(from, to, longValues, 0);
+      result = LongColumn.create(column.getName(), longValues);
+    }
+    else if (column instanceof OffHeapDoubleColumn) {
+      doubles = (OffHeapDoubleColumn) column;
+      values  = new double[to - from];
+      doubles.getDoubles(from, to, values, 0);
+      switch (column.getType()) {
+        case "nf":
+          result = DoubleColumn.create(column.getName(), values).asFloatColumn();
+          break;
+        case "ns":
+          result = DoubleColumn.create(column.getName(), values).asShortColumn();
+          break;
+        case "ni":
+          result = DoubleColumn.create(column.getName(), values).asIntColumn();
+          break;
+        case "ddt":
+          datetimes = DateTimeColumn.create(column.getName());
+          for (n = 0; n < values.length; n++) {
+            if (Double.isNaN(values[n]))
+              datetimes.appendMissing();
+            else
+              datetimes.append(LocalDateTime.ofInstant(Instant.ofEpochMilli((long) values[n]), ZoneOffset.UTC));
+          }
+          result = datetimes;
+          break;
+        case "dd":
+          dates = DateColumn.create(column.getName());
+          for (n = 0; n < values.length; n++) {
+            if (Double.isNaN(values[n]))
+              dates.appendMissing();
+            else
+              dates.append(LocalDate.ofEpochDay(Math.floorDiv((long) values[n], 24L * 60 * 60 * 1000)));
+          }
+          result = dates;
+          break;
+        case "dt":
+          times = TimeColumn.create(column.getName());
+          for (n = 0; n < values.length; n++) {
+            if (Double.isNaN(values[n]))
+              times.appendMissing();
+            else
+              times.append(LocalTime.ofNanoOfDay((long) values[n] * 1000 * 1000));
+          }
+          result = times;
+          break;
+        case "di":
+          instants = InstantColumn.create(column.getName());
+          for (n = 0; n < values.length; n++) {
+            if (Double.isNaN(values[n]))
+              instants.appendMissing();
+            else
+              instants.append(Instant.ofEpochMilli((long) values[n]));
+          }
+          result = instants;
+          break;
+        case "b":
+          booleans = BooleanColumn.create(column.getName());
+          for (n = 0; n < values.length; n++) {
+            value = values[n];
+            if (Double.isNaN(value))
+              booleans.appendMissing();
+            else
+              booleans.append(value != 0);
+          }
+          result = booleans;
+          break;
+        default:
+          result = DoubleColumn.create(column.getName(), values);
+      }
+    }
+    else {
+      dict   = (OffHeapDictionaryColumn) column;
+      labels = new String[dict.numCodes()];
+      for (code = 1; code < labels.length; code++)
+        labels[code] = dict.getLabel(code);
+      if (column.getType().equals("st")) {
+        texts = TextColumn.create(column.getName());
+        for (n = from; n < to; n++) {
+          code = dict.getCode(n);
+          if (code == OffHeapDictionaryColumn.MISSING)
+            texts.appendMissing();
+          else
+            texts.append(labels[code]);
+        }
+        result = texts;
+      }
+      else {
+        strings = StringColumn.create(column.getName());
+        for (n = from; n < to; n++) {
+          code = dict.getCode(n);
+          if (code == OffHeapDictionaryColumn.MISSING)
+            strings.appendMissing();
+          else
+            strings.append(labels[code]);
+        }
+        result = strings;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Turns the range of rows into a Tablesaw table on the heap.
+   *
+   * @param from	the first row (incl)
+   * @param to		the last row (excl)
+   * @return		the table
+   */
+  public Table toTable(int from, int to) {
+    List<Column<?>>	columns;
+
+    if ((from < 0) || (to > m_RowCount) || (from > to))
+      throw new IndexOutOfBoundsException("Invalid row range [" + from + "," + to + ") for " + m_RowCount + " rows!");
+
+    columns = new ArrayList<Column<?>>();
+    if (m_Columns != null) {
+      for (OffHeapColumn column: m_Columns)
+        columns.add(toColumn(column, from, to));
+    }
+
+    return Table.create(m_Name, columns);
+  }
+
+  /**
+   * Turns all the rows into a Tablesaw table on the heap.
+   *
+   * @return		the table
+   */
+  public Table toTable() {
+    return toTable(0, m_RowCount);
+  }
+
+  /**
+   * Frees the memory of all columns. The table can no longer be used afterwards.
+   */
+  @Override
+  public void close() {
+    if (m_Columns == null)
+      return;
+    for (OffHeapColumn column: m_Columns)
+      column.close();
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OneHotColumn.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import tech.tablesaw.api.IntColumn;
+
+/**
+ * Sparse representation of one-hot encoded columns: stores the index of
+ * the hot column per row, rather than a 0/1 column per category, i.e., the
+ * memory does not grow with the number of categories.
+ * <br>
+ * Within a table it behaves like an int column of indices, with
+ * {@link #NONE} for rows where all columns are 0 and missing values for
+ * rows where all of them are missing. Copies and row subsets (e.g., from
+ * sorting or sampling) keep the names of the one-hot columns.
+ * {@link weka.core.TablesawUtils} turns it into one numeric attribute per
+ * one-hot column, generating only the non-zero values for sparse instances,
+ * and {@link CsvTableWriter} writes it as 0/1 columns.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class OneHotColumn
+  extends IntColumn {
+
+  /** the index for rows where all one-hot columns are 0. */
+  public final static int NONE = -1;
+
+  /** the names of the one-hot columns. */
+  protected String[] m_Names;
+
+  /**
+   * Initializes the column.
+   *
+   * @param name	the name of the column
+   * @param names	the names of the one-hot columns
+   * @param data	the indices
+   */
+  protected OneHotColumn(String name, String[] names, IntArrayList data) {
+    super(name, data);
+    m_Names = names;
+  }
+
+  /**
+   * Creates the column.
+   *
+   * @param name	the name of the column
+   * @param names	the names of the one-hot columns
+   * @param indices	the index of the hot column per row, {@link #NONE} if none, missing value indicator for missing
+   * @return		the column
+   */
+  public static OneHotColumn create(String name, String[] names, int[] indices) {
+    return new OneHotColumn(name, names, new IntArrayList(indices));
+  }
+
+  /**
+   * Returns the names of the one-hot columns.
+   *
+   * @return		the names
+   */
+  public String[] getNames() {
+    return m_Names;
+  }
+
+  /**
+   * Creates an empty column with the same one-hot columns.
+   *
+   * @param name	the name of the column
+   * @return		the column
+   */
+  @Override
+  public IntColumn createCol(String name) {
+    return new OneHotColumn(name, m_Names, new IntArrayList());
+  }
+
+  /**
+   * Creates a column with the same one-hot columns and all rows missing.
+   *
+   * @param name	the name of the column
+   * @param size	the number of rows
+   * @return		the column
+   */
+  @Override
+  public IntColumn createCol(String name, int size) {
+    OneHotColumn	result;
+    int			i;
+
+    result = new OneHotColumn(name, m_Names, new IntArrayList(size));
+    for (i = 0; i < size; i++)
+      result.appendMissing();
+
+    return result;
+  }
+
+  /**
+   * Returns a copy of the column.
+   *
+   * @return		the copy
+   */
+  @Override
+  public IntColumn copy() {
+    IntArrayList	data;
+    int			i;
+
+    data = new IntArrayList(size());
+    for (i = 0; i < size(); i++)
+      data.add(getInt(i));
+
+    return new OneHotColumn(name(), m_Names, data);
+  }
+
+  /**
+   * Returns the value of the one-hot column in the row.
+   *
+   * @param row		the row
+   * @param index	the index of the one-hot column
+   * @return		0 or 1, NaN if missing
+   */
+  public double getIndicator(int row, int index) {
+    if (isMissing(row))
+      return Double.NaN;
+    return (getInt(row) == index) ? 1 : 0;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelColumnScan.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.columns.Column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Scans multiple columns in a single parallel pass. Each column gets split
+ * into chunks, which are processed as independent tasks. The partial results
+ * of a column are then merged in chunk order, so the outcome does not depend
+ * on the scheduling of the tasks.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ParallelColumnScan {
+
+  /** the number of rows per task. */
+  public final static int CHUNK_SIZE = 65536;
+
+  /**
+   * Processes a chunk of a column.
+   *
+   * @param <T>	the type of the partial result
+   */
+  public interface ChunkFunction<T> {
+
+    /**
+     * Processes the rows of the column.
+     *
+     * @param column	the index of the column
+     * @param from	the first row (incl)
+     * @param to	the last row (excl)
+     * @return		the partial result
+     */
+    T apply(int column, int from, int to);
+  }
+
+  /**
+   * Merges partial results.
+   *
+   * @param <T>	the type of the partial result
+   */
+  public interface MergeFunction<T> {
+
+    /**
+     * Merges the source into the target.
+     *
+     * @param target	the result to merge into
+     * @param source	the result to merge
+     */
+    void merge(T target, T source);
+  }
+
+  /**
+   * Returns the index of the chunk within the column.
+   *
+   * @param from	the first row of the chunk
+   * @return		the index
+   */
+  public static int chunk(int from) {
+    return from / CHUNK_SIZE;
+  }
+
+  /**
+   * Scans the columns.
+   *
+   * @param columns	the columns to scan
+   * @param function	for processing a chunk
+   * @param merger	for merging the partial results of a column
+   * @param <T>		the type of the result
+   * @return		the results, one per column
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> List<T> scan(List<Column<?>> columns, final ChunkFunction<T> function, MergeFunction<T> merger) {
+    List<T>		result;
+    List<Object>	partial;
+    final int[]		offsets;
+    final int[]		sizes;
+    int			i;
+    int			n;
+    T			merged;
+
+    // tasks per column, at least one (offsets are therefore strictly increasing)
+    sizes   = new int[columns.size()];
+    offsets = new int[columns.size() + 1];
+    for (i = 0; i < columns.size(); i++) {
+      sizes[i]       = columns.get(i).size();
+      offsets[i + 1] = offsets[i] + Math.max(1, (sizes[i] + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    partial = Arrays.asList(IntStream.range(0, offsets[columns.size()]).parallel().mapToObj((int task) -> {
+      int col = Arrays.binarySearch(offsets, task);
+      if (col < 0)
+	col = -col - 2;
+      int from = (task - offsets[col]) * CHUNK_SIZE;
+      return (Object) function.apply(col, from, Math.min(sizes[col], from + CHUNK_SIZE));
+    }).toArray());
+
+    result = new ArrayList<T>();
+    for (i = 0; i < columns.size(); i++) {
+      merged = (T) partial.get(offsets[i]);
+      for (n = offsets[i] + 1; n < offsets[i + 1]; n++)
+	merger.merge(merged, (T) partial.get(n));
+      result.add(merged);
+    }
+
+    return result;
+  }
+}
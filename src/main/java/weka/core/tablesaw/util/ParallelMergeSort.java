@@ -0,0 +1,198 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelMergeSort.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable, parallel merge sort for int arrays (e.g., row permutations)
+ * using a primitive {@link RowComparator}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ParallelMergeSort {
+
+  /** below this size, sub-arrays get sorted sequentially. */
+  public final static int PARALLEL_THRESHOLD = 8192;
+
+  /** below this size, insertion sort is used. */
+  public final static int INSERTION_THRESHOLD = 32;
+
+  /**
+   * Sorts a range of the array with insertion sort.
+   *
+   * @param a		the array
+   * @param from	the first index (incl)
+   * @param to		the last index (excl)
+   * @param comp	the comparator
+   */
+  protected static void insertionSort(int[] a, int from, int to, RowComparator comp) {
+    int		i;
+    int		j;
+    int		v;
+
+    for (i = from + 1; i < to; i++) {
+      v = a[i];
+      j = i - 1;
+      while ((j >= from) && (comp.compare(a[j], v) > 0)) {
+	a[j + 1] = a[j];
+	j--;
+      }
+      a[j + 1] = v;
+    }
+  }
+
+  /**
+   * Merges the sorted ranges [from,mid) and [mid,to) of src into dest.
+   *
+   * @param src		the source array
+   * @param dest	the destination array
+   * @param from	the first index (incl)
+   * @param mid		the start of the second range
+   * @param to		the last index (excl)
+   * @param comp	the comparator
+   */
+  protected static void merge(int[] src, int[] dest, int from, int mid, int to, RowComparator comp) {
+    int		i;
+    int		j;
+    int		k;
+
+    i = from;
+    j = mid;
+    k = from;
+    while ((i < mid) && (j < to)) {
+      // "<=" keeps the sort stable
+      if (comp.compare(src[i], src[j]) <= 0)
+	dest[k++] = src[i++];
+      else
+	dest[k++] = src[j++];
+    }
+    while (i < mid)
+      dest[k++] = src[i++];
+    while (j < to)
+      dest[k++] = src[j++];
+  }
+
+  /**
+   * Sorts the range of a, using buf as buffer. The sorted result ends up
+   * in a.
+   *
+   * @param a		the array to sort
+   * @param buf		the buffer, same content as a in the range
+   * @param from	the first index (incl)
+   * @param to		the last index (excl)
+   * @param comp	the comparator
+   */
+  protected static void sequentialSort(int[] a, int[] buf, int from, int to, RowComparator comp) {
+    int		mid;
+
+    if (to - from <= INSERTION_THRESHOLD) {
+      insertionSort(a, from, to, comp);
+      return;
+    }
+
+    mid = (from + to) >>> 1;
+    // sort halves into buf, then merge back into a
+    sequentialSort(buf, a, from, mid, comp);
+    sequentialSort(buf, a, mid, to, comp);
+    if (comp.compare(buf[mid - 1], buf[mid]) <= 0)
+      System.arraycopy(buf, from, a, from, to - from);
+    else
+      merge(buf, a, from, mid, to, comp);
+  }
+
+  /**
+   * Fork/join task for sorting a range.
+   */
+  protected static class SortTask
+    extends RecursiveAction {
+
+    private static final long serialVersionUID = 6214096383208617380L;
+
+    /** the array to sort. */
+    protected int[] m_Array;
+
+    /** the buffer. */
+    protected int[] m_Buffer;
+
+    /** the first index (incl). */
+    protected int m_From;
+
+    /** the last index (excl). */
+    protected int m_To;
+
+    /** the comparator. */
+    protected RowComparator m_Comparator;
+
+    /**
+     * Initializes the task.
+     *
+     * @param array	the array to sort
+     * @param buffer	the buffer, same content as the array in the range
+     * @param from	the first index (incl)
+     * @param to	the last index (excl)
+     * @param comp	the comparator
+     */
+    public SortTask(int[] array, int[] buffer, int from, int to, RowComparator comp) {
+      m_Array      = array;
+      m_Buffer     = buffer;
+      m_From       = from;
+      m_To         = to;
+      m_Comparator = comp;
+    }
+
+    /**
+     * Performs the sort.
+     */
+    @Override
+    protected void compute() {
+      int	mid;
+
+      if (m_To - m_From <= PARALLEL_THRESHOLD) {
+	sequentialSort(m_Array, m_Buffer, m_From, m_To, m_Comparator);
+	return;
+      }
+
+      mid = (m_From + m_To) >>> 1;
+      invokeAll(
+	new SortTask(m_Buffer, m_Array, m_From, mid, m_Comparator),
+	new SortTask(m_Buffer, m_Array, mid, m_To, m_Comparator));
+      merge(m_Buffer, m_Array, m_From, mid, m_To, m_Comparator);
+    }
+  }
+
+  /**
+   * Sorts the array in place, stable.
+   *
+   * @param a		the array to sort
+   * @param comp	the comparator
+   */
+  public static void sort(int[] a, RowComparator comp) {
+    int[]	buf;
+
+    buf = a.clone();
+    if (a.length <= PARALLEL_THRESHOLD)
+      sequentialSort(a, buf, 0, a.length, comp);
+    else
+      ForkJoinPool.commonPool().invoke(new SortTask(a, buf, 0, a.length, comp));
+  }
+}
@@ -0,0 +1,411 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PartitionedCsvWriter.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a table as multiple CSV files into a directory, partitioned by the
+ * values of columns (Hive-style sub-directories "col=value", without the
+ * partition columns in the files), by a maximum number of rows per file
+ * and/or by a maximum size per file.
+ * <br>
+ * The rows get grouped by the dictionary codes of the partition columns
+ * (see {@link GroupCounter#assign(List, int, List)}) and the files get
+ * written concurrently on a fixed thread pool, each task with its own
+ * buffered writer (see {@link CsvTableWriter}). Without partition columns,
+ * the rows get split into contiguous ranges, one per thread (or one per file
+ * when only limiting the rows), so that the order of the rows is the order
+ * of the file names.
+ * <br>
+ * Files are named "part-TTTTT-cNNN.csv" (task and file counter of the task),
+ * with ".gz" appended when compressing.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class PartitionedCsvWriter {
+
+  /** the directory name for missing partition values (as used by Hive). */
+  public final static String MISSING_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+
+  /** the suffix of the directory with the files, replacing the extension of the manifest. */
+  public final static String PARTS_SUFFIX = ".parts";
+
+  /** the maximum number of rows written at a time. */
+  public final static int BLOCK_SIZE = 4096;
+
+  /** the characters that get escaped in partition directory names (besides control characters). */
+  public final static String ESCAPED_CHARS = "\"#%'*/:=?\\{[]^";
+
+  /**
+   * A file that has been written.
+   */
+  public static class Part {
+
+    /** the file, relative to the output directory. */
+    protected String m_File;
+
+    /** the number of rows. */
+    protected long m_Rows;
+
+    /**
+     * Initializes the part.
+     *
+     * @param file	the file, relative to the output directory
+     * @param rows	the number of rows
+     */
+    public Part(String file, long rows) {
+      m_File = file;
+      m_Rows = rows;
+    }
+
+    /**
+     * Returns the file.
+     *
+     * @return		the file, relative to the output directory
+     */
+    public String getFile() {
+      return m_File;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return		the number of rows
+     */
+    public long getRows() {
+      return m_Rows;
+    }
+  }
+
+  /** the columns to partition by. */
+  protected List<String> m_PartitionBy;
+
+  /** the maximum number of rows per file (&lt;=0 for unlimited). */
+  protected long m_MaxRows;
+
+  /** the maximum number of bytes per file (&lt;=0 for unlimited). */
+  protected long m_MaxBytes;
+
+  /** the number of threads. */
+  protected int m_NumThreads;
+
+  /** whether to compress the files. */
+  protected boolean m_Compress;
+
+  /**
+   * Initializes the writer.
+   *
+   * @param partitionBy	the columns to partition by, empty for none
+   * @param maxRows	the maximum number of rows per file, &lt;=0 for unlimited
+   * @param maxBytes	the maximum number of bytes (uncompressed) per file, &lt;=0 for unlimited
+   * @param numThreads	the number of threads, &lt;=0 for the number of processors
+   * @param compress	whether to compress the files (gzip)
+   */
+  public PartitionedCsvWriter(List<String> partitionBy, long maxRows, long maxBytes, int numThreads, boolean compress) {
+    m_PartitionBy = new ArrayList<String>(partitionBy);
+    m_MaxRows     = maxRows;
+    m_MaxBytes    = maxBytes;
+    m_NumThreads  = (numThreads <= 0) ? Runtime.getRuntime().availableProcessors() : numThreads;
+    m_Compress    = compress;
+  }
+
+  /**
+   * Returns the directory for the files written for the manifest file, i.e.,
+   * the manifest's name with ".csv" or ".csv.gz" replaced by ".parts".
+   *
+   * @param manifest	the manifest file
+   * @return		the directory
+   */
+  public static File getPartsDir(File manifest) {
+    String	name;
+
+    name = manifest.getName();
+    if (name.endsWith(".gz"))
+      name = name.substring(0, name.length() - ".gz".length());
+    if (name.endsWith(".csv"))
+      name = name.substring(0, name.length() - ".csv".length());
+
+    return new File(manifest.getAbsoluteFile().getParentFile(), name + PARTS_SUFFIX);
+  }
+
+  /**
+   * Escapes the value for use as directory name, like Hive does.
+   *
+   * @param value	the value, null if missing
+   * @return		the escaped value
+   */
+  public static String escape(String value) {
+    StringBuilder	result;
+    char		c;
+    int			i;
+
+    if ((value == null) || value.isEmpty())
+      return MISSING_PARTITION;
+
+    result = new StringBuilder();
+    for (i = 0; i < value.length(); i++) {
+      c = value.charAt(i);
+      if ((c < 0x20) || (c == 0x7F) || (ESCAPED_CHARS.indexOf(c) > -1))
+	result.append('%').append(String.format("%02X", (int) c));
+      else
+	result.append(c);
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Writes the rows of one task, starting a new file whenever a limit has
+   * been reached. The rows get written in blocks and the limits checked
+   * after each block. With a size limit, the blocks get sized by the
+   * average size of the rows written to the file so far, i.e., a file
+   * exceeds the limit by about a row at most.
+   *
+   * @param table	the table with the columns to write
+   * @param order	the row indices
+   * @param from	the first index in order (incl)
+   * @param to		the last index in order (excl)
+   * @param dir		the output directory
+   * @param subDir	the partition directory (relative), empty for none
+   * @param task	the task number, used in the file names
+   * @return		the written files
+   * @throws IOException	if writing fails
+   */
+  protected List<Part> write(Table table, int[] order, int from, int to, File dir, String subDir, int task) throws IOException {
+    List<Part>		result;
+    CsvTableWriter	writer;
+    String		name;
+    File		file;
+    int			step;
+    int			i;
+
+    result = new ArrayList<Part>();
+    if (!subDir.isEmpty())
+      dir = new File(dir, subDir);
+    if (!dir.exists() && !dir.mkdirs())
+      throw new IOException("Failed to create directory: " + dir);
+
+    writer = null;
+    name   = null;
+    i      = from;
+    try {
+      do {
+	if (writer == null) {
+	  name   = String.format("part-%05d-c%03d.csv", task, result.size()) + (m_Compress ? ".gz" : "");
+	  file   = new File(dir, name);
+	  writer = new CsvTableWriter(file);
+	}
+	step = BLOCK_SIZE;
+	if (m_MaxBytes > 0) {
+	  // estimate the rows that still fit from the average row size so far
+	  if (writer.getRowCount() == 0)
+	    step = 1;
+	  else
+	    step = (int) Math.max(1, Math.min(BLOCK_SIZE, (double) (m_MaxBytes - writer.getByteCount()) * writer.getRowCount() / writer.getByteCount()));
+	}
+	if (m_MaxRows > 0)
+	  step = (int) Math.min(step, m_MaxRows - writer.getRowCount());
+	step = Math.min(step, to - i);
+	writer.accept(table, order, i, i + step);
+	i += step;
+	if (((m_MaxRows > 0) && (writer.getRowCount() >= m_MaxRows))
+	  || ((m_MaxBytes > 0) && (writer.getByteCount() >= m_MaxBytes))
+	  || (i == to)) {
+	  writer.close();
+	  result.add(new Part(subDir.isEmpty() ? name : subDir + "/" + name, writer.getRowCount()));
+	  writer = null;
+	}
+      }
+      while (i < to);
+    }
+    finally {
+      if (writer != null)
+	writer.close();
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes the table into the directory.
+   *
+   * @param table	the table to write
+   * @param order	the order of the rows
+   * @param dir		the output directory, must be empty if it exists
+   * @return		the written files, in order of the tasks
+   * @throws IOException	if writing fails
+   */
+  public List<Part> write(final Table table, final int[] order, final File dir) throws IOException {
+    List<Part>			result;
+    final Table			data;
+    List<Column<?>>		partitionCols;
+    List<Column<?>>		dataCols;
+    final List<String>		subDirs;
+    List<Integer>		first;
+    List<int[]>			ranges;
+    List<Future<List<Part>>>	futures;
+    ExecutorService		executor;
+    final int[]			sorted;
+    int[]			group;
+    int[]			starts;
+    int[]			next;
+    StringBuilder		path;
+    String[]			files;
+    long			size;
+    int				segments;
+    int				g;
+    int				i;
+    int				c;
+
+    files = dir.list();
+    if ((files != null) && (files.length > 0))
+      throw new IOException("Output directory is not empty: " + dir);
+    if (!dir.exists() && !dir.mkdirs())
+      throw new IOException("Failed to create output directory: " + dir);
+
+    partitionCols = new ArrayList<Column<?>>();
+    for (String name: m_PartitionBy)
+      partitionCols.add(table.column(name));
+    dataCols = new ArrayList<Column<?>>();
+    for (Column<?> column: table.columns()) {
+      if (!m_PartitionBy.contains(column.name()))
+	dataCols.add(column);
+    }
+    data = Table.create(table.name(), dataCols);
+
+    // group the rows by partition (stable counting sort of the order)
+    subDirs = new ArrayList<String>();
+    if (partitionCols.isEmpty()) {
+      sorted = order;
+      starts = new int[]{0, order.length};
+      subDirs.add("");
+    }
+    else {
+      first  = new ArrayList<Integer>();
+      group  = GroupCounter.assign(partitionCols, table.rowCount(), first);
+      starts = new int[first.size() + 1];
+      for (i = 0; i < order.length; i++)
+	starts[group[order[i]] + 1]++;
+      for (g = 0; g < first.size(); g++)
+	starts[g + 1] += starts[g];
+      sorted = new int[order.length];
+      next   = starts.clone();
+      for (i = 0; i < order.length; i++)
+	sorted[next[group[order[i]]]++] = order[i];
+      for (g = 0; g < first.size(); g++) {
+	path = new StringBuilder();
+	for (c = 0; c < partitionCols.size(); c++) {
+	  if (c > 0)
+	    path.append("/");
+	  path.append(escape(partitionCols.get(c).name())).append("=");
+	  path.append(escape(partitionCols.get(c).isMissing(first.get(g)) ? null : table.getUnformatted(first.get(g), table.columnIndex(partitionCols.get(c)))));
+	}
+	subDirs.add(path.toString());
+      }
+    }
+
+    // tasks: partition, first and last index in sorted
+    ranges = new ArrayList<int[]>();
+    for (g = 0; g < subDirs.size(); g++) {
+      size = starts[g + 1] - starts[g];
+      if (!partitionCols.isEmpty())
+	segments = 1;
+      else if ((m_MaxRows > 0) && (m_MaxBytes <= 0))
+	segments = (int) Math.max(1, (size + m_MaxRows - 1) / m_MaxRows);
+      else
+	segments = (int) Math.max(1, Math.min(m_NumThreads, size / BLOCK_SIZE));
+      for (i = 0; i < segments; i++) {
+	if ((m_MaxRows > 0) && (m_MaxBytes <= 0) && partitionCols.isEmpty())
+	  ranges.add(new int[]{g, starts[g] + (int) Math.min(size, i * m_MaxRows), starts[g] + (int) Math.min(size, (i + 1) * m_MaxRows)});
+	else
+	  ranges.add(new int[]{g, starts[g] + (int) (size * i / segments), starts[g] + (int) (size * (i + 1) / segments)});
+      }
+    }
+
+    result   = new ArrayList<Part>();
+    executor = Executors.newFixedThreadPool(Math.max(1, Math.min(m_NumThreads, ranges.size())));
+    try {
+      futures = new ArrayList<Future<List<Part>>>();
+      for (i = 0; i < ranges.size(); i++) {
+	final int[] range = ranges.get(i);
+	final int task = partitionCols.isEmpty() ? i : 0;
+	futures.add(executor.submit(new Callable<List<Part>>() {
+	  @Override
+	  public List<Part> call() throws Exception {
+	    return write(data, sorted, range[1], range[2], dir, subDirs.get(range[0]), task);
+	  }
+	}));
+      }
+      for (Future<List<Part>> future: futures)
+	result.addAll(future.get());
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException)
+	throw (IOException) e.getCause();
+      throw new IOException("Failed to write partitions to: " + dir, e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted writing partitions to: " + dir, e);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    return result;
+  }
+
+  /**
+   * Turns the written files into a table (columns "file" and "rows"), e.g.,
+   * for writing a manifest.
+   *
+   * @param parts	the written files
+   * @return		the table
+   */
+  public static Table toTable(List<Part> parts) {
+    StringColumn	file;
+    LongColumn		rows;
+    int			i;
+
+    file = StringColumn.create("file", parts.size());
+    rows = LongColumn.create("rows", parts.size());
+    for (i = 0; i < parts.size(); i++) {
+      file.set(i, parts.get(i).getFile());
+      rows.set(i, parts.get(i).getRows());
+    }
+
+    return Table.create("parts", file, rows);
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RadixSort.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Stable, parallel LSD radix sort of a row permutation by long keys
+ * (interpreted as unsigned). Only as many 8-bit passes are performed as
+ * are required by the range of the keys.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class RadixSort {
+
+  /** the number of bits per pass. */
+  public final static int BITS = 8;
+
+  /** the number of buckets per pass. */
+  public final static int BUCKETS = 1 << BITS;
+
+  /** below this size, a single thread is used. */
+  public final static int PARALLEL_THRESHOLD = 1 << 16;
+
+  /**
+   * Maps a signed long to a long whose unsigned order matches the signed order.
+   *
+   * @param value	the value
+   * @return		the key
+   */
+  public static long fromSigned(long value) {
+    return value ^ Long.MIN_VALUE;
+  }
+
+  /**
+   * Maps a double to a long whose unsigned order matches the numeric order
+   * of the double (-0.0 sorts before 0.0).
+   *
+   * @param value	the value
+   * @return		the key
+   */
+  public static long fromDouble(double value) {
+    long	bits;
+
+    bits = Double.doubleToLongBits(value);
+    if (bits < 0)
+      return ~bits;
+    else
+      return bits ^ Long.MIN_VALUE;
+  }
+
+  /**
+   * Sorts the permutation by the keys, stable. The keys array must be
+   * aligned with the permutation, i.e., keys[i] is the key of perm[i];
+   * both arrays get rearranged.
+   *
+   * @param perm	the permutation to sort
+   * @param keys	the unsigned keys
+   */
+  public static void sort(final int[] perm, final long[] keys) {
+    final int		n;
+    final int		chunks;
+    final int		chunkSize;
+    final int[][]	offsets;
+    int[]		srcPerm;
+    int[]		dstPerm;
+    long[]		srcKeys;
+    long[]		dstKeys;
+    int[]		tmpPerm;
+    long[]		tmpKeys;
+    long		min;
+    long		range;
+    int			passes;
+    int			pass;
+    int			d;
+    int			c;
+    int			total;
+    int			i;
+
+    n = perm.length;
+    if (n < 2)
+      return;
+
+    // determine range
+    min = keys[0];
+    for (i = 1; i < n; i++) {
+      if (Long.compareUnsigned(keys[i], min) < 0)
+	min = keys[i];
+    }
+    range = 0;
+    for (i = 0; i < n; i++)
+      range |= keys[i] - min;
+    passes = (64 - Long.numberOfLeadingZeros(range) + BITS - 1) / BITS;
+    if (passes == 0)
+      return;
+
+    if (n < PARALLEL_THRESHOLD)
+      chunks = 1;
+    else
+      chunks = ForkJoinPool.commonPool().getParallelism() * 4;
+    chunkSize = (n + chunks - 1) / chunks;
+    offsets   = new int[chunks][BUCKETS];
+
+    srcPerm = perm;
+    srcKeys = keys;
+    dstPerm = new int[n];
+    dstKeys = new long[n];
+
+    for (pass = 0; pass < passes; pass++) {
+      final int		shift = pass * BITS;
+      final long	base = min;
+      final int[]	sp = srcPerm;
+      final long[]	sk = srcKeys;
+      final int[]	dp = dstPerm;
+      final long[]	dk = dstKeys;
+
+      // histograms
+      IntStream.range(0, chunks).parallel().forEach(ch -> {
+	int[] hist = offsets[ch];
+	java.util.Arrays.fill(hist, 0);
+	int to = Math.min(n, (ch + 1) * chunkSize);
+	for (int j = ch * chunkSize; j < to; j++)
+	  hist[(int) (((sk[j] - base) >>> shift) & (BUCKETS - 1))]++;
+      });
+
+      // offsets: digit-major, chunk-minor keeps the sort stable
+      total = 0;
+      for (d = 0; d < BUCKETS; d++) {
+	for (c = 0; c < chunks; c++) {
+	  i = offsets[c][d];
+	  offsets[c][d] = total;
+	  total += i;
+	}
+      }
+
+      // scatter
+      IntStream.range(0, chunks).parallel().forEach(ch -> {
+	int[] off = offsets[ch];
+	int to = Math.min(n, (ch + 1) * chunkSize);
+	for (int j = ch * chunkSize; j < to; j++) {
+	  int digit = (int) (((sk[j] - base) >>> shift) & (BUCKETS - 1));
+	  int pos = off[digit]++;
+	  dp[pos] = sp[j];
+	  dk[pos] = sk[j];
+	}
+      });
+
+      tmpPerm = srcPerm; srcPerm = dstPerm; dstPerm = tmpPerm;
+      tmpKeys = srcKeys; srcKeys = dstKeys; dstKeys = tmpKeys;
+    }
+
+    if (srcPerm != perm) {
+      System.arraycopy(srcPerm, 0, perm, 0, n);
+      System.arraycopy(srcKeys, 0, keys, 0, n);
+    }
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ReservoirSampler.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Streaming reservoir sampler using Algorithm L (Li, 1994), which only
+ * generates random numbers for items that actually make it into the
+ * reservoir. Only the sample is held in memory, never the full stream.
+ * <br>
+ * The sample is returned in stream order.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @param <T> the type of items to sample
+ */
+public class ReservoirSampler<T>
+  implements Serializable {
+
+  private static final long serialVersionUID = 7427938712036811823L;
+
+  /** the size of the reservoir. */
+  protected int m_Capacity;
+
+  /** the random number generator. */
+  protected Random m_Random;
+
+  /** the reservoir. */
+  protected List<T> m_Reservoir;
+
+  /** the stream positions of the items in the reservoir. */
+  protected long[] m_Positions;
+
+  /** the number of items offered so far. */
+  protected long m_Count;
+
+  /** the current weight of Algorithm L. */
+  protected double m_W;
+
+  /** the 0-based stream position of the next item that gets accepted. */
+  protected long m_Next;
+
+  /**
+   * Initializes the sampler.
+   *
+   * @param capacity	the size of the sample to draw (&gt;0)
+   * @param seed	the seed for the random number generator
+   */
+  public ReservoirSampler(int capacity, long seed) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Capacity must be at least 1, provided: " + capacity);
+
+    m_Capacity  = capacity;
+    m_Random    = new Random(seed);
+    m_Reservoir = new ArrayList<T>();
+    m_Positions = new long[capacity];
+    m_Count     = 0;
+    m_Next      = 0;
+  }
+
+  /**
+   * Returns a uniformly distributed random number from the open interval (0,1).
+   *
+   * @param random	the random number generator to use
+   * @return		the random number
+   */
+  protected static double nextUniform(Random random) {
+    double	result;
+
+    do {
+      result = random.nextDouble();
+    }
+    while (result == 0.0);
+
+    return result;
+  }
+
+  /**
+   * Multiplies the weight with a new random factor and determines the
+   * position of the next item to accept.
+   *
+   * @param random	the random number generator to use
+   * @param capacity	the size of the reservoir
+   * @param w		the current weight
+   * @param pos		the position of the last accepted item
+   * @param next	for storing the new weight (index 0) and position (index 1)
+   */
+  protected static void advance(Random random, int capacity, double w, long pos, double[] next) {
+    w      *= Math.exp(Math.log(nextUniform(random)) / capacity);
+    next[0] = w;
+    next[1] = pos + Math.floor(Math.log(nextUniform(random)) / Math.log1p(-w)) + 1;
+  }
+
+  /**
+   * Returns whether the next item offered will be stored in the reservoir.
+   * Can be used to avoid materializing items that will get skipped anyway.
+   *
+   * @return		true if the next item gets stored
+   */
+  public boolean accepts() {
+    return (m_Count == m_Next);
+  }
+
+  /**
+   * Offers the next item of the stream.
+   *
+   * @param item	the item
+   * @return		true if the item was stored in the reservoir
+   */
+  public boolean offer(T item) {
+    boolean	result;
+    double[]	next;
+    int		index;
+
+    result = accepts();
+
+    if (result) {
+      if (m_Count < m_Capacity) {
+	m_Positions[m_Reservoir.size()] = m_Count;
+	m_Reservoir.add(item);
+	if (m_Reservoir.size() == m_Capacity) {
+	  m_W    = 1.0;
+	  next   = new double[2];
+	  advance(m_Random, m_Capacity, m_W, m_Count, next);
+	  m_W    = next[0];
+	  m_Next = (long) next[1];
+	}
+	else {
+	  m_Next++;
+	}
+      }
+      else {
+	index = m_Random.nextInt(m_Capacity);
+	m_Reservoir.set(index, item);
+	m_Positions[index] = m_Count;
+	next   = new double[2];
+	advance(m_Random, m_Capacity, m_W, m_Count, next);
+	m_W    = next[0];
+	m_Next = (long) next[1];
+      }
+    }
+
+    m_Count++;
+
+    return result;
+  }
+
+  /**
+   * Returns the number of items offered so far.
+   *
+   * @return		the number of items
+   */
+  public long getCount() {
+    return m_Count;
+  }
+
+  /**
+   * Returns the size of the reservoir.
+   *
+   * @return		the capacity
+   */
+  public int getCapacity() {
+    return m_Capacity;
+  }
+
+  /**
+   * Returns the current sample, in stream order.
+   *
+   * @return		the sample
+   */
+  public List<T> getSample() {
+    List<T>	result;
+    Integer[]	slots;
+    int		i;
+
+    slots = new Integer[m_Reservoir.size()];
+    for (i = 0; i < slots.length; i++)
+      slots[i] = i;
+    Arrays.sort(slots, (a, b) -> Long.compare(m_Positions[a], m_Positions[b]));
+
+    result = new ArrayList<T>(slots.length);
+    for (i = 0; i < slots.length; i++)
+      result.add(m_Reservoir.get(slots[i]));
+
+    return result;
+  }
+
+  /**
+   * Draws a sample of row indices without replacement, using Algorithm L.
+   * Skips directly from one accepted index to the next, i.e., only
+   * O(k(1+log(n/k))) random numbers get generated.
+   *
+   * @param n		the number of rows
+   * @param k		the size of the sample
+   * @param seed	the seed for the random number generator
+   * @return		the sorted row indices
+   */
+  public static int[] sample(int n, int k, long seed) {
+    int[]	result;
+    Random	random;
+    double[]	next;
+    double	w;
+    long	pos;
+    int		i;
+
+    if (k >= n) {
+      result = new int[n];
+      for (i = 0; i < n; i++)
+	result[i] = i;
+      return result;
+    }
+
+    random = new Random(seed);
+    result = new int[k];
+    for (i = 0; i < k; i++)
+      result[i] = i;
+
+    next = new double[2];
+    advance(random, k, 1.0, k - 1, next);
+    w   = next[0];
+    pos = (long) next[1];
+    while (pos < n) {
+      result[random.nextInt(k)] = (int) pos;
+      advance(random, k, w, pos, next);
+      w   = next[0];
+      pos = (long) next[1];
+    }
+
+    Arrays.sort(result);
+
+    return result;
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RowComparator.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+/**
+ * Compares two rows using primitive data, avoiding boxing.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface RowComparator {
+
+  /**
+   * Compares the two rows.
+   *
+   * @param row1	the first row
+   * @param row2	the second row
+   * @return		less than, equal to or greater than zero if the first row
+   * 			sorts before, with or after the second one
+   */
+  public int compare(int row1, int row2);
+}
@@ -0,0 +1,189 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SortKey.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import java.io.Serializable;
+
+/**
+ * Specification of a sort key: column, direction and placement of
+ * missing values.
+ * <br>
+ * String representation: name[:asc|:desc][:first|:last], with "first"/"last"
+ * referring to the placement of missing values.
+ * <br>
+ * Without an explicit placement, missing values get placed like Tablesaw's
+ * own sorting does: as the largest value for numeric columns, as the
+ * smallest value for all other columns (e.g., strings or dates), i.e.,
+ * depending on the direction.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SortKey
+  implements Serializable {
+
+  private static final long serialVersionUID = 3315961520337911407L;
+
+  /** the suffix for ascending order. */
+  public final static String ASCENDING = "asc";
+
+  /** the suffix for descending order. */
+  public final static String DESCENDING = "desc";
+
+  /** the suffix for missing values first. */
+  public final static String MISSING_FIRST = "first";
+
+  /** the suffix for missing values last. */
+  public final static String MISSING_LAST = "last";
+
+  /** the column name. */
+  protected String m_Column;
+
+  /** whether to sort in descending order. */
+  protected boolean m_Descending;
+
+  /** whether missing values come first, null for the type's default. */
+  protected Boolean m_MissingFirst;
+
+  /**
+   * Initializes the key.
+   *
+   * @param column		the column name
+   * @param descending		whether to sort in descending order
+   * @param missingFirst	whether to place missing values first, null for the type's default
+   */
+  public SortKey(String column, boolean descending, Boolean missingFirst) {
+    m_Column       = column;
+    m_Descending   = descending;
+    m_MissingFirst = missingFirst;
+  }
+
+  /**
+   * Returns the column name.
+   *
+   * @return		the name
+   */
+  public String getColumn() {
+    return m_Column;
+  }
+
+  /**
+   * Returns whether to sort in descending order.
+   *
+   * @return		true if descending
+   */
+  public boolean isDescending() {
+    return m_Descending;
+  }
+
+  /**
+   * Returns whether the placement of missing values was specified
+   * explicitly.
+   *
+   * @return		true if explicit, false if the type's default
+   */
+  public boolean hasMissingPlacement() {
+    return (m_MissingFirst != null);
+  }
+
+  /**
+   * Returns whether missing values are placed first.
+   *
+   * @param missingLargest	whether the column type treats missing values as the largest value by default (numeric columns)
+   * @return			true if first
+   */
+  public boolean isMissingFirst(boolean missingLargest) {
+    if (m_MissingFirst != null)
+      return m_MissingFirst;
+    return (missingLargest == m_Descending);
+  }
+
+  /**
+   * Returns the key in its string representation.
+   *
+   * @return		the string representation
+   */
+  @Override
+  public String toString() {
+    return m_Column
+      + ":" + (m_Descending ? DESCENDING : ASCENDING)
+      + (hasMissingPlacement() ? ":" + (m_MissingFirst ? MISSING_FIRST : MISSING_LAST) : "");
+  }
+
+  /**
+   * Parses a single key specification. Suffixes are only stripped from the
+   * name if they are one of the known keywords, so names containing colons
+   * are still supported.
+   *
+   * @param spec		the specification, name[:asc|:desc][:first|:last]
+   * @param descending		the default direction
+   * @param missingFirst	the default placement of missing values, null for the type's default
+   * @return			the key
+   */
+  public static SortKey parse(String spec, boolean descending, Boolean missingFirst) {
+    String	name;
+    String	suffix;
+    int		pos;
+    int		i;
+
+    name = spec.trim();
+    for (i = 0; i < 2; i++) {
+      pos = name.lastIndexOf(':');
+      if (pos == -1)
+	break;
+      suffix = name.substring(pos + 1).trim().toLowerCase();
+      if (suffix.equals(ASCENDING))
+	descending = false;
+      else if (suffix.equals(DESCENDING))
+	descending = true;
+      else if (suffix.equals(MISSING_FIRST))
+	missingFirst = true;
+      else if (suffix.equals(MISSING_LAST))
+	missingFirst = false;
+      else
+	break;
+      name = name.substring(0, pos);
+    }
+
+    return new SortKey(name, descending, missingFirst);
+  }
+
+  /**
+   * Parses a comma-separated list of key specifications.
+   *
+   * @param specs		the specifications
+   * @param descending		the default direction
+   * @param missingFirst	the default placement of missing values, null for the type's default
+   * @return			the keys
+   * @see			#parse(String, boolean, Boolean)
+   */
+  public static SortKey[] parseList(String specs, boolean descending, Boolean missingFirst) {
+    String[]	parts;
+    SortKey[]	result;
+    int		i;
+
+    parts  = specs.split(",");
+    result = new SortKey[parts.length];
+    for (i = 0; i < parts.length; i++)
+      result[i] = parse(parts[i], descending, missingFirst);
+
+    return result;
+  }
+}
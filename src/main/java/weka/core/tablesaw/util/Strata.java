@@ -0,0 +1,275 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Strata.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.columns.Column;
+import tech.tablesaw.selection.BitmapBackedSelection;
+import tech.tablesaw.selection.Selection;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Groups the rows of a table into strata, based on the values of a column,
+ * and selects stratified random samples. The stratum of each row and the
+ * per-stratum counts are determined in a single pass over the column;
+ * missing values form their own stratum.
+ * <br>
+ * The selection of rows within each stratum is performed in parallel, with
+ * each stratum using its own random number generator that was split off a
+ * {@link SplittableRandom} in stratum order, i.e., the results are
+ * reproducible for a given seed regardless of the number of threads.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Strata {
+
+  /** the stratum for each row. */
+  protected int[] m_Codes;
+
+  /** the number of rows per stratum. */
+  protected int[] m_Counts;
+
+  /**
+   * Initializes the strata.
+   *
+   * @param codes	the stratum for each row
+   * @param counts	the number of rows per stratum
+   */
+  protected Strata(int[] codes, int[] counts) {
+    m_Codes  = codes;
+    m_Counts = counts;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return		the number of rows
+   */
+  public int numRows() {
+    return m_Codes.length;
+  }
+
+  /**
+   * Returns the number of strata.
+   *
+   * @return		the number of strata
+   */
+  public int numStrata() {
+    return m_Counts.length;
+  }
+
+  /**
+   * Returns the number of rows per stratum.
+   *
+   * @return		the counts
+   */
+  public int[] getCounts() {
+    return m_Counts;
+  }
+
+  /**
+   * Returns the stratum for each row.
+   *
+   * @return		the codes
+   */
+  public int[] getCodes() {
+    return m_Codes;
+  }
+
+  /**
+   * Determines the strata for the column in a single pass.
+   *
+   * @param column	the column to use for stratification
+   * @return		the strata
+   */
+  public static Strata compute(Column<?> column) {
+    int[]			codes;
+    int[]			counts;
+    int				numStrata;
+    int				missing;
+    int				code;
+    int				i;
+    LongIntHashMap		numMap;
+    Map<String,Integer>		strMap;
+    Integer			strCode;
+    NumericColumn<?>		numCol;
+
+    codes     = new int[column.size()];
+    counts    = new int[16];
+    numStrata = 0;
+    missing   = -1;
+    numMap    = null;
+    strMap    = null;
+    numCol    = null;
+    if (column instanceof NumericColumn)
+      numCol = (NumericColumn<?>) column;
+    if (numCol != null)
+      numMap = new LongIntHashMap();
+    else
+      strMap = new HashMap<String,Integer>();
+
+    for (i = 0; i < codes.length; i++) {
+      if (column.isMissing(i)) {
+	if (missing == -1)
+	  missing = numStrata++;
+	code = missing;
+      }
+      else if (numCol != null) {
+	code = numMap.putIfAbsent(Double.doubleToLongBits(numCol.getDouble(i)), numStrata);
+	if (code == numStrata)
+	  numStrata++;
+      }
+      else {
+	// string columns return the instance stored in their dictionary, no copies
+	strCode = strMap.get(column.getString(i));
+	if (strCode == null) {
+	  strCode = numStrata++;
+	  strMap.put(column.getString(i), strCode);
+	}
+	code = strCode;
+      }
+      if (code >= counts.length)
+	counts = Arrays.copyOf(counts, counts.length * 2);
+      counts[code]++;
+      codes[i] = code;
+    }
+
+    return new Strata(codes, Arrays.copyOf(counts, numStrata));
+  }
+
+  /**
+   * Distributes the total sample size proportionally across the strata,
+   * using the largest remainder method so that the targets sum up to the
+   * total.
+   *
+   * @param total	the total sample size
+   * @return		the sample size per stratum
+   */
+  public int[] allocate(int total) {
+    int[]	result;
+    double[]	remainder;
+    Integer[]	order;
+    double	exact;
+    int		assigned;
+    int		i;
+    int		n;
+
+    n         = numRows();
+    total     = Math.max(0, Math.min(total, n));
+    result    = new int[numStrata()];
+    remainder = new double[numStrata()];
+    assigned  = 0;
+    for (i = 0; i < result.length; i++) {
+      exact        = (double) total * m_Counts[i] / n;
+      result[i]    = (int) Math.floor(exact);
+      remainder[i] = exact - result[i];
+      assigned    += result[i];
+    }
+
+    order = new Integer[result.length];
+    for (i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, (a, b) -> Double.compare(remainder[b], remainder[a]));
+    for (i = 0; (i < order.length) && (assigned < total); i++) {
+      if (result[order[i]] < m_Counts[order[i]]) {
+	result[order[i]]++;
+	assigned++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Selects the specified number of rows from each stratum at random.
+   *
+   * @param targets	the number of rows to select per stratum
+   * @param seed	the seed for the random number generator
+   * @return		the sorted row indices
+   */
+  public int[] select(int[] targets, long seed) {
+    final int[]			result;
+    final int[]			rows;
+    final int[]			rowOffsets;
+    final int[]			outOffsets;
+    final SplittableRandom[]	random;
+    SplittableRandom		root;
+    int[]			pos;
+    int				i;
+
+    if (targets.length != numStrata())
+      throw new IllegalArgumentException("Expected " + numStrata() + " targets, got: " + targets.length);
+
+    // group rows by stratum (counting sort)
+    rowOffsets = new int[numStrata() + 1];
+    outOffsets = new int[numStrata() + 1];
+    for (i = 0; i < numStrata(); i++) {
+      rowOffsets[i + 1] = rowOffsets[i] + m_Counts[i];
+      outOffsets[i + 1] = outOffsets[i] + Math.min(targets[i], m_Counts[i]);
+    }
+    rows = new int[numRows()];
+    pos  = Arrays.copyOf(rowOffsets, numStrata());
+    for (i = 0; i < m_Codes.length; i++)
+      rows[pos[m_Codes[i]]++] = i;
+
+    // one generator per stratum, split off in stratum order
+    root   = new SplittableRandom(seed);
+    random = new SplittableRandom[numStrata()];
+    for (i = 0; i < random.length; i++)
+      random[i] = root.split();
+
+    // partial Fisher-Yates shuffle within each stratum
+    result = new int[outOffsets[numStrata()]];
+    IntStream.range(0, numStrata()).parallel().forEach(s -> {
+      int start = rowOffsets[s];
+      int size = m_Counts[s];
+      int k = outOffsets[s + 1] - outOffsets[s];
+      for (int j = 0; j < k; j++) {
+	int r = j + random[s].nextInt(size - j);
+	int tmp = rows[start + j];
+	rows[start + j] = rows[start + r];
+	rows[start + r] = tmp;
+	result[outOffsets[s] + j] = rows[start + j];
+      }
+    });
+
+    Arrays.parallelSort(result);
+
+    return result;
+  }
+
+  /**
+   * Selects the specified number of rows from each stratum at random and
+   * returns them as a selection.
+   *
+   * @param targets	the number of rows to select per stratum
+   * @param seed	the seed for the random number generator
+   * @return		the selection
+   */
+  public Selection selection(int[] targets, long seed) {
+    return new BitmapBackedSelection(select(targets, seed));
+  }
+}
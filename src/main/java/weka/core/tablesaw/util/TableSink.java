@@ -0,0 +1,42 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TableSink.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.Table;
+
+import java.io.IOException;
+
+/**
+ * Receives tables batch by batch, e.g., the output of a streaming process.
+ * All batches have the same structure.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface TableSink {
+
+  /**
+   * Accepts the next batch.
+   *
+   * @param batch	the batch
+   * @throws IOException	if processing of the batch fails
+   */
+  public void accept(Table batch) throws IOException;
+}
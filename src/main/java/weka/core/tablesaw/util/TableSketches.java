@@ -0,0 +1,193 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TableSketches.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.SerializationHelper;
+import weka.core.Utils;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sketches of all the columns of a table, keyed by column name.
+ * Sketches can be serialized and merged later on, e.g., for combining the
+ * results of multiple batches or files without scanning them again.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TableSketches
+  implements Serializable {
+
+  private static final long serialVersionUID = 6263700962367596394L;
+
+  /** the sketches per column. */
+  protected Map<String, ColumnSketch> m_Sketches;
+
+  /**
+   * Initializes the container.
+   */
+  public TableSketches() {
+    m_Sketches = new LinkedHashMap<String, ColumnSketch>();
+  }
+
+  /**
+   * Builds the sketches for the columns in a single parallel pass
+   * (see {@link ParallelColumnScan}). The quantile sketch of each chunk uses
+   * its own seed (see {@link KllSketch#seed(int, int)}).
+   *
+   * @param columns	the columns to sketch
+   * @param k		the accuracy parameter of the quantile sketches
+   * @param precision	the precision of the distinct count sketches
+   * @return		the sketches
+   */
+  public static TableSketches compute(final List<Column<?>> columns, final int k, final int precision) {
+    TableSketches	result;
+    List<ColumnSketch>	sketches;
+
+    sketches = ParallelColumnScan.scan(columns, (int col, int from, int to) -> {
+      ColumnSketch sketch = new ColumnSketch(columns.get(col), k, precision, KllSketch.seed(col, ParallelColumnScan.chunk(from)));
+      sketch.add(columns.get(col), from, to);
+      return sketch;
+    }, ColumnSketch::merge);
+
+    result = new TableSketches();
+    for (ColumnSketch sketch: sketches)
+      result.m_Sketches.put(sketch.getName(), sketch);
+
+    return result;
+  }
+
+  /**
+   * Returns the names of the sketched columns.
+   *
+   * @return		the names
+   */
+  public List<String> getNames() {
+    return new ArrayList<String>(m_Sketches.keySet());
+  }
+
+  /**
+   * Returns the sketch for the column.
+   *
+   * @param name	the name of the column
+   * @return		the sketch, null if not available
+   */
+  public ColumnSketch getSketch(String name) {
+    return m_Sketches.get(name);
+  }
+
+  /**
+   * Merges the other sketches into these ones. Columns not present yet get
+   * added.
+   *
+   * @param other	the sketches to merge
+   */
+  public void merge(TableSketches other) {
+    for (ColumnSketch sketch: other.m_Sketches.values()) {
+      if (m_Sketches.containsKey(sketch.getName()))
+	m_Sketches.get(sketch.getName()).merge(sketch);
+      else
+	m_Sketches.put(sketch.getName(), sketch);
+    }
+  }
+
+  /**
+   * Serializes the sketches to the file.
+   *
+   * @param file	the file to write to
+   * @throws Exception	if writing fails
+   */
+  public void write(File file) throws Exception {
+    SerializationHelper.write(file.getAbsolutePath(), this);
+  }
+
+  /**
+   * Deserializes sketches from the file.
+   *
+   * @param file	the file to read
+   * @return		the sketches
+   * @throws Exception	if reading fails
+   */
+  public static TableSketches read(File file) throws Exception {
+    return (TableSketches) SerializationHelper.read(file.getAbsolutePath());
+  }
+
+  /**
+   * Turns the sketches into a table, one row per column.
+   *
+   * @param name	the name of the table
+   * @param fractions	the fractions (0-1) of the quantiles to output
+   * @return		the table
+   */
+  public Table toTable(String name, double[] fractions) {
+    Table		result;
+    StringColumn	column;
+    StringColumn	type;
+    LongColumn		count;
+    LongColumn		missing;
+    LongColumn		distinct;
+    DoubleColumn	min;
+    DoubleColumn	max;
+    DoubleColumn[]	quantiles;
+    ColumnStatistics	stats;
+    double[]		values;
+    int			i;
+
+    column   = StringColumn.create("Column");
+    type     = StringColumn.create("Type");
+    count    = LongColumn.create("Count");
+    missing  = LongColumn.create("Missing");
+    distinct = LongColumn.create("Distinct");
+    min      = DoubleColumn.create("Min");
+    max      = DoubleColumn.create("Max");
+    result   = Table.create(name, column, type, count, missing, distinct, min, max);
+    quantiles = new DoubleColumn[fractions.length];
+    for (i = 0; i < fractions.length; i++) {
+      quantiles[i] = DoubleColumn.create("Q" + Utils.doubleToString(fractions[i], 4));
+      result.addColumns(quantiles[i]);
+    }
+
+    for (ColumnSketch sketch: m_Sketches.values()) {
+      stats = sketch.getStatistics();
+      column.append(sketch.getName());
+      type.append(sketch.getType());
+      count.append(stats.getCount());
+      missing.append(stats.getMissing());
+      distinct.append(sketch.getDistinct().getEstimate());
+      min.append(stats.getMin());
+      max.append(stats.getMax());
+      values = stats.getQuantiles(fractions);
+      for (i = 0; i < fractions.length; i++)
+	quantiles[i].append(values[i]);
+    }
+
+    return result;
+  }
+}
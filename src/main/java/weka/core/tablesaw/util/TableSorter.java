@@ -0,0 +1,466 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TableSorter.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import tech.tablesaw.api.BooleanColumn;
+import tech.tablesaw.api.DateColumn;
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.InstantColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.ShortColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.api.TimeColumn;
+import tech.tablesaw.columns.Column;
+import weka.core.TablesawUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sorts tables on multiple keys. Works on an int[] row permutation, which
+ * gets applied to the columns with bulk gathers at the end.
+ * <br>
+ * The values of the key columns get extracted into primitive arrays first:
+ * integral and date/time columns as long values, strings as ranks of their
+ * distinct values and floating point columns as doubles. If all keys are
+ * integral (incl. ranks), a stable parallel LSD radix sort is applied key by
+ * key, otherwise a stable parallel merge sort with primitive comparators.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TableSorter {
+
+  /**
+   * The extracted values of a sort key.
+   */
+  protected static abstract class KeyData
+    implements RowComparator {
+
+    /** the key specification. */
+    protected SortKey m_Key;
+
+    /** the missing value flags, null if no missing values. */
+    protected boolean[] m_Missing;
+
+    /** whether missing values come first. */
+    protected boolean m_MissingFirst;
+
+    /**
+     * Initializes the data.
+     *
+     * @param key		the key specification
+     * @param missingLargest	whether missing values are the largest values by default
+     */
+    protected KeyData(SortKey key, boolean missingLargest) {
+      m_Key          = key;
+      m_MissingFirst = key.isMissingFirst(missingLargest);
+    }
+
+    /**
+     * Returns whether the row has a missing value.
+     *
+     * @param row	the row
+     * @return		true if missing
+     */
+    public boolean isMissing(int row) {
+      return (m_Missing != null) && m_Missing[row];
+    }
+
+    /**
+     * Compares the missing state of the two rows.
+     *
+     * @param row1	the first row
+     * @param row2	the second row
+     * @return		the comparison, Integer.MIN_VALUE if neither is missing
+     */
+    protected int compareMissing(int row1, int row2) {
+      boolean	m1;
+      boolean	m2;
+
+      m1 = isMissing(row1);
+      m2 = isMissing(row2);
+      if (!m1 && !m2)
+	return Integer.MIN_VALUE;
+      if (m1 && m2)
+	return 0;
+      if (m1)
+	return m_MissingFirst ? -1 : 1;
+      else
+	return m_MissingFirst ? 1 : -1;
+    }
+  }
+
+  /**
+   * Integral key values (also ranks of strings).
+   */
+  protected static class LongKeyData
+    extends KeyData {
+
+    /** the values. */
+    protected long[] m_Values;
+
+    /**
+     * Initializes the data.
+     *
+     * @param key		the key specification
+     * @param values		the values
+     * @param missing		the missing flags, null if none
+     * @param missingLargest	whether missing values are the largest values by default (numeric columns)
+     */
+    public LongKeyData(SortKey key, long[] values, boolean[] missing, boolean missingLargest) {
+      super(key, missingLargest);
+      m_Values  = values;
+      m_Missing = missing;
+    }
+
+    /**
+     * Compares the two rows.
+     *
+     * @param row1	the first row
+     * @param row2	the second row
+     * @return		the comparison
+     */
+    @Override
+    public int compare(int row1, int row2) {
+      int	result;
+
+      result = compareMissing(row1, row2);
+      if (result != Integer.MIN_VALUE)
+	return result;
+      result = Long.compare(m_Values[row1], m_Values[row2]);
+      return m_Key.isDescending() ? -result : result;
+    }
+
+    /**
+     * Returns the radix key for the row, unsigned order matching the
+     * requested direction.
+     *
+     * @param row	the row
+     * @return		the radix key
+     */
+    public long radixKey(int row) {
+      long	result;
+
+      result = RadixSort.fromSigned(m_Values[row]);
+      return m_Key.isDescending() ? ~result : result;
+    }
+  }
+
+  /**
+   * Floating point key values, missing values are NaN, i.e., the largest
+   * values by default.
+   */
+  protected static class DoubleKeyData
+    extends KeyData {
+
+    /** the values. */
+    protected double[] m_Values;
+
+    /**
+     * Initializes the data.
+     *
+     * @param key	the key specification
+     * @param values	the values
+     * @param missing	the missing flags, null if none
+     */
+    public DoubleKeyData(SortKey key, double[] values, boolean[] missing) {
+      super(key, true);
+      m_Values  = values;
+      m_Missing = missing;
+    }
+
+    /**
+     * Compares the two rows.
+     *
+     * @param row1	the first row
+     * @param row2	the second row
+     * @return		the comparison
+     */
+    @Override
+    public int compare(int row1, int row2) {
+      int	result;
+
+      result = compareMissing(row1, row2);
+      if (result != Integer.MIN_VALUE)
+	return result;
+      result = Double.compare(m_Values[row1], m_Values[row2]);
+      return m_Key.isDescending() ? -result : result;
+    }
+  }
+
+  /**
+   * Combines the comparators of all keys.
+   */
+  protected static class CompositeComparator
+    implements RowComparator {
+
+    /** the keys. */
+    protected KeyData[] m_Keys;
+
+    /**
+     * Initializes the comparator.
+     *
+     * @param keys	the keys
+     */
+    public CompositeComparator(KeyData[] keys) {
+      m_Keys = keys;
+    }
+
+    /**
+     * Compares the two rows.
+     *
+     * @param row1	the first row
+     * @param row2	the second row
+     * @return		the comparison
+     */
+    @Override
+    public int compare(int row1, int row2) {
+      int	result;
+      int	i;
+
+      for (i = 0; i < m_Keys.length; i++) {
+	result = m_Keys[i].compare(row1, row2);
+	if (result != 0)
+	  return result;
+      }
+
+      return 0;
+    }
+  }
+
+  /**
+   * Sets the missing flag for the row, allocating the array if necessary.
+   *
+   * @param missing	the current flags, can be null
+   * @param size	the number of rows
+   * @param row		the row to flag
+   * @return		the (potentially new) flags
+   */
+  protected static boolean[] flagMissing(boolean[] missing, int size, int row) {
+    if (missing == null)
+      missing = new boolean[size];
+    missing[row] = true;
+    return missing;
+  }
+
+  /**
+   * Computes the rank of each row's value among the distinct values of the
+   * column (using the string representation).
+   *
+   * @param column	the column
+   * @param ranks	for storing the ranks
+   * @return		the missing value flags, null if none
+   */
+  protected static boolean[] ranks(Column<?> column, long[] ranks) {
+    boolean[]			result;
+    Map<String,Integer>		codes;
+    String[]			distinct;
+    int[]			rankOfCode;
+    int[]			rowCodes;
+    Integer[]			order;
+    Integer			code;
+    String			value;
+    int				i;
+
+    result   = null;
+    codes    = new HashMap<String,Integer>();
+    rowCodes = new int[column.size()];
+    for (i = 0; i < rowCodes.length; i++) {
+      if (column.isMissing(i)) {
+	result = flagMissing(result, rowCodes.length, i);
+	continue;
+      }
+      value = column.getString(i);
+      code  = codes.get(value);
+      if (code == null) {
+	code = codes.size();
+	codes.put(value, code);
+      }
+      rowCodes[i] = code;
+    }
+
+    distinct = new String[codes.size()];
+    for (Map.Entry<String,Integer> entry: codes.entrySet())
+      distinct[entry.getValue()] = entry.getKey();
+    order = new Integer[distinct.length];
+    for (i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, (a, b) -> distinct[a].compareTo(distinct[b]));
+    rankOfCode = new int[distinct.length];
+    for (i = 0; i < order.length; i++)
+      rankOfCode[order[i]] = i;
+
+    for (i = 0; i < rowCodes.length; i++)
+      ranks[i] = rankOfCode[rowCodes[i]];
+
+    return result;
+  }
+
+  /**
+   * Extracts the values of the key column into primitive arrays.
+   *
+   * @param table	the table
+   * @param key		the key specification
+   * @return		the extracted data
+   */
+  protected static KeyData extract(Table table, SortKey key) {
+    Column<?>	column;
+    long[]	longs;
+    double[]	doubles;
+    boolean[]	missing;
+    int		n;
+    int		i;
+
+    column  = table.column(key.getColumn());
+    n       = column.size();
+    missing = null;
+
+    if ((column instanceof DoubleColumn) || (column instanceof FloatColumn)) {
+      doubles = new double[n];
+      for (i = 0; i < n; i++) {
+	if (column.isMissing(i))
+	  missing = flagMissing(missing, n, i);
+	else if (column instanceof DoubleColumn)
+	  doubles[i] = ((DoubleColumn) column).getDouble(i);
+	else
+	  doubles[i] = ((FloatColumn) column).getFloat(i);
+      }
+      return new DoubleKeyData(key, doubles, missing);
+    }
+
+    longs = new long[n];
+    if ((column instanceof ShortColumn) || (column instanceof IntColumn) || (column instanceof LongColumn)
+      || (column instanceof DateColumn) || (column instanceof TimeColumn) || (column instanceof DateTimeColumn)
+      || (column instanceof InstantColumn) || (column instanceof BooleanColumn)) {
+      for (i = 0; i < n; i++) {
+	if (column.isMissing(i))
+	  missing = flagMissing(missing, n, i);
+	else if (column instanceof ShortColumn)
+	  longs[i] = ((ShortColumn) column).getShort(i);
+	else if (column instanceof IntColumn)
+	  longs[i] = ((IntColumn) column).getInt(i);
+	else if (column instanceof LongColumn)
+	  longs[i] = ((LongColumn) column).getLong(i);
+	else if (column instanceof DateColumn)
+	  longs[i] = ((DateColumn) column).getIntInternal(i);
+	else if (column instanceof TimeColumn)
+	  longs[i] = ((TimeColumn) column).getIntInternal(i);
+	else if (column instanceof DateTimeColumn)
+	  longs[i] = ((DateTimeColumn) column).getLongInternal(i);
+	else if (column instanceof InstantColumn)
+	  longs[i] = ((InstantColumn) column).getLongInternal(i);
+	else
+	  longs[i] = ((BooleanColumn) column).getByte(i);
+      }
+    }
+    else {
+      missing = ranks(column, longs);
+    }
+
+    return new LongKeyData(key, longs, missing,
+      (column instanceof ShortColumn) || (column instanceof IntColumn) || (column instanceof LongColumn));
+  }
+
+  /**
+   * Moves the rows with missing values to the front or back, keeping the
+   * order otherwise intact.
+   *
+   * @param perm	the permutation to partition
+   * @param data	the key data
+   */
+  protected static void partitionMissing(int[] perm, KeyData data) {
+    int[]	result;
+    int		n;
+    int		i;
+    boolean	pass;
+
+    result = new int[perm.length];
+    n      = 0;
+    for (pass = data.m_MissingFirst; ; pass = !pass) {
+      for (i = 0; i < perm.length; i++) {
+	if (data.isMissing(perm[i]) == pass)
+	  result[n++] = perm[i];
+      }
+      if (n == perm.length)
+	break;
+    }
+    System.arraycopy(result, 0, perm, 0, perm.length);
+  }
+
+  /**
+   * Computes the sorted row permutation.
+   *
+   * @param table	the table to sort
+   * @param keys	the sort keys
+   * @return		the permutation, i.e., the row indices in sorted order
+   */
+  public static int[] permutation(Table table, SortKey[] keys) {
+    int[]	result;
+    KeyData[]	data;
+    boolean	integral;
+    long[]	radixKeys;
+    int		i;
+    int		k;
+
+    result = new int[table.rowCount()];
+    for (i = 0; i < result.length; i++)
+      result[i] = i;
+
+    data     = new KeyData[keys.length];
+    integral = true;
+    for (k = 0; k < keys.length; k++) {
+      data[k]  = extract(table, keys[k]);
+      integral = integral && (data[k] instanceof LongKeyData);
+    }
+
+    if (integral) {
+      // LSD: least significant key first, each pass is stable
+      radixKeys = new long[result.length];
+      for (k = data.length - 1; k >= 0; k--) {
+	for (i = 0; i < result.length; i++)
+	  radixKeys[i] = ((LongKeyData) data[k]).radixKey(result[i]);
+	RadixSort.sort(result, radixKeys);
+	if (data[k].m_Missing != null)
+	  partitionMissing(result, data[k]);
+      }
+    }
+    else {
+      ParallelMergeSort.sort(result, new CompositeComparator(data));
+    }
+
+    return result;
+  }
+
+  /**
+   * Sorts the table.
+   *
+   * @param table	the table to sort
+   * @param keys	the sort keys
+   * @return		the sorted table
+   */
+  public static Table sort(Table table, SortKey[] keys) {
+    return TablesawUtils.subset(table, permutation(table, keys));
+  }
+}
@@ -24,13 +24,19 @@ package weka.filters;
 import tech.tablesaw.api.Table;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.RevisionUtils;
 import weka.core.TablesawUtils;
 import weka.core.Utils;
+import weka.core.tablesaw.FittableTableOperation;
+import weka.core.tablesaw.LabelledTableOperation;
+import weka.core.tablesaw.StreamableTableOperation;
 import weka.core.tablesaw.TableOperation;
 import weka.core.tablesaw.PassThrough;
+import weka.core.tablesaw.util.ChunkedPipeline;
+import weka.core.tablesaw.util.TableSink;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -40,7 +46,9 @@ import java.util.Vector;
 
 /**
  <!-- globalinfo-start -->
- * Applies the selected table operation to the data.
+ * Applies the selected table operation to the data.<br>
+ * With a micro-batch size greater than zero and a streamable, non-blocking operation, the incoming instances get processed in micro-batches of that size and the output is available straight away (other operations fall back to batch mode). In that case, the output format gets determined from the input format when setting it, i.e., only nominal attributes of the input are retained as nominal, other string columns become string attributes (the maximum number of labels does not apply), as the labels are not known in advance.<br>
+ * Operations that learn parameters from the data (e.g., NumericTransform) learn them from the first batch after the input format has been set.
  * <br><br>
  <!-- globalinfo-end -->
  *
@@ -51,6 +59,21 @@ import java.util.Vector;
  *  The table operation to apply.
  *  (default: weka.core.tablesaw.PassThrough)</pre>
  *
+ * <pre> -max-labels &lt;int&gt;
+ *  The maximum number of distinct values for turning string columns
+ *  into nominal attributes (&lt;=0 for string attributes).
+ *  (default: 0)</pre>
+ *
+ * <pre> -sparse-threshold &lt;0-1&gt;
+ *  The maximum fraction of non-zero values for generating sparse
+ *  instances (&lt;=0 for dense instances).
+ *  (default: 0.0)</pre>
+ *
+ * <pre> -micro-batch-size &lt;int&gt;
+ *  The number of instances per micro-batch when streaming
+ *  (&lt;=0 for batch mode).
+ *  (default: 0)</pre>
+ *
  * <pre> -output-debug-info
  *  If set, filter is run in debug mode and
  *  may output additional info to the console</pre>
@@ -65,7 +88,7 @@ import java.util.Vector;
  */
 public class Tablesaw
   extends SimpleBatchFilter
-  implements UnsupervisedFilter {
+  implements UnsupervisedFilter, StreamableFilter {
 
   /** for serialization */
   private final static long serialVersionUID = 8349568310991609867L;
@@ -73,9 +96,24 @@ public class Tablesaw
   /** the table operation to use. */
   protected TableOperation m_Operation = new PassThrough();
 
+  /** the maximum number of distinct values for nominal attributes. */
+  protected int m_MaxLabels = TablesawUtils.DEFAULT_MAX_LABELS;
+
+  /** the maximum density for generating sparse instances. */
+  protected double m_SparseThreshold = TablesawUtils.DEFAULT_SPARSE_THRESHOLD;
+
+  /** the default micro-batch size. */
+  public final static int DEFAULT_MICRO_BATCH_SIZE = 0;
+
+  /** the number of instances per micro-batch when streaming. */
+  protected int m_MicroBatchSize = DEFAULT_MICRO_BATCH_SIZE;
+
   /** the processed data. */
   protected transient Instances m_Processed;
 
+  /** whether the operation has started streaming the current batch. */
+  protected transient boolean m_Streaming;
+
   /**
    * Returns a string describing this filter
    *
@@ -84,17 +122,30 @@ public class Tablesaw
    */
   @Override
   public String globalInfo() {
-    return "Applies the selected table operation to the data.";
+    return "Applies the selected table operation to the data.\n"
+      + "With a micro-batch size greater than zero and a streamable, non-blocking operation, "
+      + "the incoming instances get processed in micro-batches of that size and the output "
+      + "is available straight away (other operations fall back to batch mode). In that case, "
+      + "the output format gets determined from the input format when setting it, i.e., "
+      + "only nominal attributes of the input are retained as nominal, other string columns "
+      + "become string attributes (the maximum number of labels does not apply), as the labels "
+      + "are not known in advance.\n"
+      + "Operations that learn parameters from the data (e.g., NumericTransform) learn them from the "
+      + "first batch after the input format has been set.";
   }
 
   /**
-   * Resets the filter.
+   * Resets the filter. Operations that learn parameters discard them, i.e.,
+   * they learn them again from the first batch.
    */
   @Override
   protected void reset() {
     super.reset();
 
     m_Processed = null;
+    m_Streaming = false;
+    if (m_Operation instanceof FittableTableOperation)
+      ((FittableTableOperation) m_Operation).resetFit();
   }
 
   /**
@@ -111,6 +162,24 @@ public class Tablesaw
         + "\t(default: " + PassThrough.class.getName() + ")",
       "operation", 1, "-operation <classname + options>"));
 
+    result.addElement(new Option(
+      "\tThe maximum number of distinct values for turning string columns\n"
+        + "\tinto nominal attributes (<=0 for string attributes).\n"
+        + "\t(default: " + TablesawUtils.DEFAULT_MAX_LABELS + ")",
+      "max-labels", 1, "-max-labels <int>"));
+
+    result.addElement(new Option(
+      "\tThe maximum fraction of non-zero values for generating sparse\n"
+        + "\tinstances (<=0 for dense instances).\n"
+        + "\t(default: " + TablesawUtils.DEFAULT_SPARSE_THRESHOLD + ")",
+      "sparse-threshold", 1, "-sparse-threshold <0-1>"));
+
+    result.addElement(new Option(
+      "\tThe number of instances per micro-batch when streaming\n"
+        + "\t(<=0 for batch mode).\n"
+        + "\t(default: " + DEFAULT_MICRO_BATCH_SIZE + ")",
+      "micro-batch-size", 1, "-micro-batch-size <int>"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     return result.elements();
@@ -128,6 +197,15 @@ public class Tablesaw
     result.add("-operation");
     result.add(Utils.toCommandLine(m_Operation));
 
+    result.add("-max-labels");
+    result.add("" + getMaxLabels());
+
+    result.add("-sparse-threshold");
+    result.add("" + getSparseThreshold());
+
+    result.add("-micro-batch-size");
+    result.add("" + getMicroBatchSize());
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -156,6 +234,24 @@ public class Tablesaw
       setOperation((TableOperation) Utils.forName(Object.class, classname, tmpOptions));
     }
 
+    tmpStr = Utils.getOption("max-labels", options);
+    if (tmpStr.isEmpty())
+      setMaxLabels(TablesawUtils.DEFAULT_MAX_LABELS);
+    else
+      setMaxLabels(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("sparse-threshold", options);
+    if (tmpStr.isEmpty())
+      setSparseThreshold(TablesawUtils.DEFAULT_SPARSE_THRESHOLD);
+    else
+      setSparseThreshold(Double.parseDouble(tmpStr));
+
+    tmpStr = Utils.getOption("micro-batch-size", options);
+    if (tmpStr.isEmpty())
+      setMicroBatchSize(DEFAULT_MICRO_BATCH_SIZE);
+    else
+      setMicroBatchSize(Integer.parseInt(tmpStr));
+
     super.setOptions(options);
 
     Utils.checkForRemainingOptions(options);
@@ -189,6 +285,109 @@ public class Tablesaw
     return "The table operation to apply.";
   }
 
+  /**
+   * Sets the maximum number of distinct values for turning string columns
+   * into nominal attributes.
+   *
+   * @param value the maximum, &lt;=0 for string attributes
+   */
+  public void setMaxLabels(int value) {
+    m_MaxLabels = value;
+  }
+
+  /**
+   * Returns the maximum number of distinct values for turning string columns
+   * into nominal attributes.
+   *
+   * @return the maximum, &lt;=0 for string attributes
+   */
+  public int getMaxLabels() {
+    return m_MaxLabels;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxLabelsTipText() {
+    return "The maximum number of distinct values for turning string columns into nominal attributes "
+      + "(<=0 for string attributes); nominal attributes of the input are retained if they cover all values. "
+      + "Values of subsequent batches that are not labels of a nominal output attribute become missing values.";
+  }
+
+  /**
+   * Sets the maximum fraction of non-zero values for generating sparse
+   * instances.
+   *
+   * @param value the threshold (0-1), &lt;=0 for dense instances
+   */
+  public void setSparseThreshold(double value) {
+    m_SparseThreshold = value;
+  }
+
+  /**
+   * Returns the maximum fraction of non-zero values for generating sparse
+   * instances.
+   *
+   * @return the threshold (0-1), &lt;=0 for dense instances
+   */
+  public double getSparseThreshold() {
+    return m_SparseThreshold;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sparseThresholdTipText() {
+    return "The maximum fraction of non-zero values (0-1) in the output for generating sparse instances "
+      + "rather than dense ones (<=0 for always dense instances).";
+  }
+
+  /**
+   * Sets the number of instances per micro-batch when streaming.
+   *
+   * @param value the size, &lt;=0 for batch mode
+   */
+  public void setMicroBatchSize(int value) {
+    m_MicroBatchSize = value;
+  }
+
+  /**
+   * Returns the number of instances per micro-batch when streaming.
+   *
+   * @return the size, &lt;=0 for batch mode
+   */
+  public int getMicroBatchSize() {
+    return m_MicroBatchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String microBatchSizeTipText() {
+    return "The number of instances per micro-batch when streaming with a streamable, non-blocking operation "
+      + "(<=0 for batch mode); bounds the latency until output is available.";
+  }
+
+  /**
+   * Returns whether the instances get processed in micro-batches, i.e.,
+   * whether a micro-batch size is set and the operation is streamable and
+   * non-blocking.
+   *
+   * @return true if streaming
+   */
+  public boolean isStreaming() {
+    return (m_MicroBatchSize > 0) && !ChunkedPipeline.isBlocking(m_Operation);
+  }
+
   /**
    * Returns the Capabilities of this filter.
    *
@@ -218,6 +417,20 @@ public class Tablesaw
     return true;
   }
 
+  /**
+   * Returns the template for obtaining nominal labels: the input, with the
+   * labels declared by the operation (if any) taking precedence.
+   *
+   * @param input	the input data
+   * @return		the template
+   */
+  protected Instances getTemplate(Instances input) {
+    if (m_Operation instanceof LabelledTableOperation)
+      return TablesawUtils.declareLabels(input, ((LabelledTableOperation) m_Operation).getDeclaredLabels());
+    else
+      return input;
+  }
+
   /**
    * Converts the data.
    *
@@ -232,7 +445,47 @@ public class Tablesaw
     tableIn  = TablesawUtils.instancesToTable(input);
     tableOut = m_Operation.processTable(tableIn);
 
-    return TablesawUtils.tableToInstances(tableOut);
+    // subsequent batches must adhere to the output format, labels unknown to it become missing
+    if (isFirstBatchDone() && isOutputFormatDefined())
+      return TablesawUtils.tableToInstancesWithHeader(tableOut, outputFormatPeek(), m_SparseThreshold);
+
+    // nominal labels declared by the operation or from the input
+    return TablesawUtils.tableToInstances(tableOut, getTemplate(input), m_MaxLabels, m_SparseThreshold);
+  }
+
+  /**
+   * Returns whether the output format is available straight after setting
+   * the input format, i.e., when streaming.
+   *
+   * @return		true if streaming
+   */
+  @Override
+  protected boolean hasImmediateOutputFormat() {
+    return isStreaming();
+  }
+
+  /**
+   * Determines the output format when streaming, by applying the operation
+   * to the empty input format. Nominal labels only come from the input
+   * format or get declared by the operation, other string columns become
+   * string attributes. Any parameters the operation fitted on the empty
+   * table get discarded again.
+   *
+   * @param inputFormat	the input format
+   * @return		the output format
+   */
+  protected Instances determineStreamingOutputFormat(Instances inputFormat) {
+    Instances	header;
+    Table	table;
+    Instances	result;
+
+    header = new Instances(inputFormat, 0);
+    table  = m_Operation.processTable(TablesawUtils.instancesToTable(header));
+    result = TablesawUtils.tableToInstances(table, getTemplate(header), 0, m_SparseThreshold);
+    if (m_Operation instanceof FittableTableOperation)
+      ((FittableTableOperation) m_Operation).resetFit();
+
+    return new Instances(result, 0);
   }
 
   /**
@@ -248,6 +501,9 @@ public class Tablesaw
    */
   @Override
   protected Instances determineOutputFormat(Instances inputFormat) throws Exception {
+    if (isStreaming())
+      return determineStreamingOutputFormat(inputFormat);
+
     m_Processed = convert(inputFormat);
     return new Instances(m_Processed, 0);
   }
@@ -276,6 +532,115 @@ public class Tablesaw
     return result;
   }
 
+  /**
+   * Converts the table using the output format (determined when setting the
+   * input format) and pushes the instances into the output queue.
+   *
+   * @param table	the table to push
+   */
+  protected void pushTable(Table table) {
+    Instances	data;
+    int		i;
+
+    data = TablesawUtils.tableToInstancesWithHeader(table, outputFormatPeek(), m_SparseThreshold);
+
+    for (i = 0; i < data.numInstances(); i++)
+      push(data.instance(i), false);
+  }
+
+  /**
+   * Processes the buffered instances as micro-batch.
+   *
+   * @throws Exception	if processing fails
+   */
+  protected void processMicroBatch() throws Exception {
+    StreamableTableOperation	op;
+    Table			chunk;
+
+    op = (StreamableTableOperation) m_Operation;
+    if (!m_Streaming) {
+      op.startStream();
+      m_Streaming = true;
+    }
+    chunk = TablesawUtils.instancesToTable(getInputFormat());
+    flushInput();
+    op.processChunk(chunk, new TableSink() {
+      @Override
+      public void accept(Table batch) {
+        pushTable(batch);
+      }
+    });
+  }
+
+  /**
+   * Input an instance for filtering. When streaming, the instances get
+   * processed once a micro-batch is complete.
+   *
+   * @param instance the input instance
+   * @return true if the filtered instance may now be collected with output().
+   * @throws Exception if the input instance was not of the correct format or
+   *           if there was a problem with the filtering.
+   */
+  @Override
+  public boolean input(Instance instance) throws Exception {
+    if (!isStreaming())
+      return super.input(instance);
+
+    if (getInputFormat() == null)
+      throw new IllegalStateException("No input instance format defined");
+
+    if (m_NewBatch) {
+      resetQueue();
+      m_NewBatch = false;
+    }
+
+    bufferInput(instance);
+    if (getInputFormat().numInstances() >= m_MicroBatchSize)
+      processMicroBatch();
+
+    return (numPendingOutput() > 0);
+  }
+
+  /**
+   * Signify that this batch of input to the filter is finished. When
+   * streaming, the remaining instances get processed and the operation
+   * outputs any remaining data.
+   *
+   * @return true if there are instances pending output
+   * @throws Exception if something goes wrong
+   */
+  @Override
+  public boolean batchFinished() throws Exception {
+    StreamableTableOperation	op;
+
+    if (!isStreaming())
+      return super.batchFinished();
+
+    if (getInputFormat() == null)
+      throw new IllegalStateException("No input instance format defined");
+
+    if (m_NewBatch) {
+      resetQueue();
+      m_NewBatch = false;
+    }
+
+    op = (StreamableTableOperation) m_Operation;
+    if ((getInputFormat().numInstances() > 0) || !m_Streaming)
+      processMicroBatch();
+    op.finish(new TableSink() {
+      @Override
+      public void accept(Table batch) {
+        pushTable(batch);
+      }
+    });
+    m_Streaming = false;
+
+    m_NewBatch       = true;
+    m_FirstBatchDone = true;
+
+    return (numPendingOutput() != 0);
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -0,0 +1,168 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ColumnExpressionTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+/**
+ * Tests the parsing and evaluation of column expressions.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ColumnExpressionTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public ColumnExpressionTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a table with a numeric column x (1, 2, missing) and a string
+   * column s (a, missing, c).
+   *
+   * @return		the table
+   */
+  protected Table table() {
+    return Table.create("test",
+      DoubleColumn.create("x", new double[]{1, 2, Double.NaN}),
+      StringColumn.create("s", new String[]{"a", "", "c"}));
+  }
+
+  /**
+   * Evaluates the expression on the first row of the table.
+   *
+   * @param expression	the expression
+   * @return		the value
+   */
+  protected double eval(String expression) {
+    return new ColumnExpression(expression).evaluate(table())[0];
+  }
+
+  /**
+   * Checks that parsing the expression fails.
+   *
+   * @param expression	the invalid expression
+   */
+  protected void assertInvalid(String expression) {
+    try {
+      new ColumnExpression(expression);
+      fail("Expression should be invalid: " + expression);
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Operators must bind according to their precedence and associativity.
+   */
+  public void testPrecedence() {
+    assertEquals(7.0, eval("1 + 2 * 3"));
+    assertEquals(9.0, eval("(1 + 2) * 3"));
+    assertEquals(3.0, eval("10 - 4 - 3"));
+    assertEquals(6.0, eval("7 % 4 * 2"));
+    assertEquals(512.0, eval("2 ^ 3 ^ 2"));
+    assertEquals(-4.0, eval("-2 ^ 2"));
+    assertEquals(1.0, eval("1 + 2 > 2"));
+    assertEquals(1.0, eval("1 < 2 & 0 | 1"));
+    assertEquals(0.0, eval("!0 & 0"));
+    assertEquals(0.0, eval("!(1 = 1)"));
+  }
+
+  /**
+   * Columns get evaluated row by row, with missing values propagating
+   * (apart from ismissing).
+   */
+  public void testColumns() {
+    double[]	values;
+
+    values = new ColumnExpression("x * 2 + 1").evaluate(table());
+    assertEquals(3.0, values[0]);
+    assertEquals(5.0, values[1]);
+    assertTrue(Double.isNaN(values[2]));
+
+    values = new ColumnExpression("ismissing(x) + ismissing(s)").evaluate(table());
+    assertEquals(0.0, values[0]);
+    assertEquals(1.0, values[1]);
+    assertEquals(1.0, values[2]);
+
+    values = new ColumnExpression("if([x] > 1, x, -1)").evaluate(table());
+    assertEquals(-1.0, values[0]);
+    assertEquals(2.0, values[1]);
+  }
+
+  /**
+   * Invalid expressions must be rejected when parsing, unknown columns when
+   * evaluating.
+   */
+  public void testErrors() {
+    assertInvalid("");
+    assertInvalid("1 +");
+    assertInvalid("(1 + 2");
+    assertInvalid("1 2");
+    assertInvalid("nosuchfunction(1)");
+    assertInvalid("min(1)");
+
+    try {
+      new ColumnExpression("y + 1").evaluate(table());
+      fail("Unknown column should be rejected");
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    try {
+      new ColumnExpression("s + 1").evaluate(table());
+      fail("String column should be rejected as value");
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(ColumnExpressionTest.class);
+  }
+
+  /**
+   * Runs the test from commandline.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ExternalSorterTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.Random;
+
+/**
+ * Tests the external sort.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ExternalSorterTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public ExternalSorterTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates a chunk with a string key (few distinct values, some missing),
+   * a numeric key and the overall row number.
+   *
+   * @param random	for generating the values
+   * @param offset	the row number of the first row
+   * @param rows	the number of rows
+   * @return		the chunk
+   */
+  protected Table chunk(Random random, int offset, int rows) {
+    StringColumn	key;
+    DoubleColumn	value;
+    IntColumn		id;
+    int			i;
+
+    key   = StringColumn.create("key");
+    value = DoubleColumn.create("value");
+    id    = IntColumn.create("id");
+    for (i = 0; i < rows; i++) {
+      if (random.nextInt(10) == 0)
+	key.appendMissing();
+      else
+	key.append("k" + random.nextInt(5));
+      if (random.nextInt(10) == 0)
+	value.appendMissing();
+      else
+	value.append(random.nextInt(3));
+      id.append(offset + i);
+    }
+
+    return Table.create("test", key, value, id);
+  }
+
+  /**
+   * Sorts the chunks externally, spilling each chunk as a separate run.
+   *
+   * @param keys	the sort keys
+   * @param fanIn	the maximum fan-in
+   * @param chunks	the number of chunks
+   * @param expected	for storing all the rows
+   * @return		the sorted rows
+   * @throws Exception	if sorting fails
+   */
+  protected Table sortExternally(SortKey[] keys, int fanIn, int chunks, Table expected) throws Exception {
+    ExternalSorter	sorter;
+    Random		random;
+    Table		chunk;
+    int			i;
+
+    random = new Random(1);
+    sorter = new ExternalSorter(keys, null, 1);
+    sorter.setMaxFanIn(fanIn);
+    sorter.setBatchSize(7);
+    try {
+      for (i = 0; i < chunks; i++) {
+	chunk = chunk(random, i * 20, 20);
+	expected.append(chunk);
+	sorter.add(chunk);
+      }
+      assertEquals(chunks, sorter.getNumRuns());
+      return sorter.finish();
+    }
+    finally {
+      sorter.close();
+    }
+  }
+
+  /**
+   * Merging the runs (in one or several passes) must produce the same,
+   * stable order as sorting in memory.
+   *
+   * @throws Exception	if sorting fails
+   */
+  public void testMergeMatchesInMemorySort() throws Exception {
+    SortKey[]	keys;
+    Table	all;
+    Table	expected;
+    Table	actual;
+    int		fanIn;
+    int		i;
+
+    keys = new SortKey[]{
+      new SortKey("key", false, false),
+      new SortKey("value", true, true),
+    };
+    for (fanIn = 2; fanIn <= 16; fanIn *= 2) {
+      all      = chunk(new Random(1), 0, 0);
+      actual   = sortExternally(keys, fanIn, 11, all);
+      expected = TableSorter.sort(all, keys);
+      assertEquals(all.rowCount(), actual.rowCount());
+      for (i = 0; i < expected.rowCount(); i++)
+	assertEquals("fan-in " + fanIn + ", row " + i, expected.intColumn("id").getInt(i), actual.intColumn("id").getInt(i));
+    }
+  }
+
+  /**
+   * The dictionary of string columns must be part of the size estimate.
+   */
+  public void testEstimateIncludesDictionary() {
+    StringColumn	few;
+    StringColumn	many;
+    int			i;
+
+    few  = StringColumn.create("s");
+    many = StringColumn.create("s");
+    for (i = 0; i < 1000; i++) {
+      few.append("value-" + (i % 2));
+      many.append("value-" + i);
+    }
+    assertTrue(ExternalSorter.estimateBytes(Table.create("many", many)) > ExternalSorter.estimateBytes(Table.create("few", few)) + 1000L * 12);
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(ExternalSorterTest.class);
+  }
+
+  /**
+   * Runs the test from commandline.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
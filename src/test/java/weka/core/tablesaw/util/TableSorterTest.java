@@ -0,0 +1,177 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TableSorterTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.tablesaw.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.Random;
+
+/**
+ * Tests the sorting of tables.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TableSorterTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public TableSorterTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates a table with few distinct values per key column (some of them
+   * missing) and the row number.
+   *
+   * @param rows	the number of rows
+   * @return		the table
+   */
+  protected Table table(int rows) {
+    Random		random;
+    IntColumn		ints;
+    DoubleColumn	doubles;
+    StringColumn	strings;
+    IntColumn		id;
+    int			i;
+
+    random  = new Random(42);
+    ints    = IntColumn.create("int");
+    doubles = DoubleColumn.create("double");
+    strings = StringColumn.create("string");
+    id      = IntColumn.create("id");
+    for (i = 0; i < rows; i++) {
+      if (random.nextInt(20) == 0) {
+	ints.appendMissing();
+	doubles.appendMissing();
+	strings.appendMissing();
+      }
+      else {
+	ints.append(random.nextInt(10) - 5);
+	doubles.append((random.nextInt(10) - 5) / 2.0);
+	strings.append("s" + random.nextInt(10));
+      }
+      id.append(i);
+    }
+
+    return Table.create("test", ints, doubles, strings, id);
+  }
+
+  /**
+   * Checks that the rows are sorted on the column and that rows with equal
+   * values retain their original order.
+   *
+   * @param sorted	the sorted table
+   * @param column	the key column
+   * @param descending	whether sorted descending
+   */
+  protected void assertStable(Table sorted, String column, boolean descending) {
+    int		i;
+    int		cmp;
+
+    for (i = 1; i < sorted.rowCount(); i++) {
+      if (sorted.column(column).isMissing(i) || sorted.column(column).isMissing(i - 1)) {
+	if (sorted.column(column).isMissing(i) && sorted.column(column).isMissing(i - 1))
+	  assertTrue("row " + i, sorted.intColumn("id").getInt(i - 1) < sorted.intColumn("id").getInt(i));
+	continue;
+      }
+      cmp = Double.compare(
+	sorted.numberColumn(column).getDouble(i - 1),
+	sorted.numberColumn(column).getDouble(i));
+      if (descending)
+	cmp = -cmp;
+      assertTrue("row " + i, cmp <= 0);
+      if (cmp == 0)
+	assertTrue("row " + i, sorted.intColumn("id").getInt(i - 1) < sorted.intColumn("id").getInt(i));
+    }
+  }
+
+  /**
+   * Sorting on integral keys (radix sort) must be stable.
+   */
+  public void testRadixSortStable() {
+    Table	table;
+
+    table = table(5000);
+    assertStable(TableSorter.sort(table, new SortKey[]{new SortKey("int", false, false)}), "int", false);
+    assertStable(TableSorter.sort(table, new SortKey[]{new SortKey("int", true, true)}), "int", true);
+  }
+
+  /**
+   * Sorting on floating point keys (merge sort) must be stable.
+   */
+  public void testMergeSortStable() {
+    Table	table;
+
+    table = table(50000);
+    assertStable(TableSorter.sort(table, new SortKey[]{new SortKey("double", false, false)}), "double", false);
+    assertStable(TableSorter.sort(table, new SortKey[]{new SortKey("double", true, true)}), "double", true);
+  }
+
+  /**
+   * Without an explicit placement, missing values must end up where
+   * Tablesaw's own sorting puts them.
+   */
+  public void testDefaultMissingPlacement() {
+    Table	table;
+    Table	expected;
+    Table	actual;
+    int		i;
+
+    table = table(200);
+    for (String column: new String[]{"int", "double", "string"}) {
+      for (boolean descending: new boolean[]{false, true}) {
+	expected = descending ? table.sortDescendingOn(column) : table.sortAscendingOn(column);
+	actual   = TableSorter.sort(table, new SortKey[]{new SortKey(column, descending, null)});
+	for (i = 0; i < table.rowCount(); i++)
+	  assertEquals(column + ", descending=" + descending + ", row " + i,
+	    expected.column(column).isMissing(i), actual.column(column).isMissing(i));
+      }
+    }
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(TableSorterTest.class);
+  }
+
+  /**
+   * Runs the test from commandline.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,411 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TablesawTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.filters;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.TablesawUtils;
+import weka.core.Utils;
+import weka.core.converters.ConverterUtils.DataSource;
+import weka.core.tablesaw.Bin;
+import weka.core.tablesaw.Encode;
+import weka.core.tablesaw.Impute;
+import weka.core.tablesaw.NumericTransform;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/**
+ * Tests the Tablesaw filter.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TablesawTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public TablesawTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Creates a dataset with a single nominal attribute (labels a, b).
+   *
+   * @param values	the values, null for missing
+   * @return		the dataset
+   */
+  protected Instances nominals(String... values) {
+    Instances			result;
+    ArrayList<Attribute>	atts;
+    ArrayList<String>		labels;
+    double[]			row;
+
+    labels = new ArrayList<String>();
+    labels.add("a");
+    labels.add("b");
+    atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("x", labels));
+    result = new Instances("test", atts, values.length);
+    for (String value: values) {
+      row = new double[]{(value == null) ? Utils.missingValue() : labels.indexOf(value)};
+      result.add(new DenseInstance(1.0, row));
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates a dataset with a single numeric attribute.
+   *
+   * @param values	the values
+   * @return		the dataset
+   */
+  protected Instances numerics(double... values) {
+    Instances			result;
+    ArrayList<Attribute>	atts;
+
+    atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("x"));
+    result = new Instances("test", atts, values.length);
+    for (double value: values)
+      result.add(new DenseInstance(1.0, new double[]{value}));
+
+    return result;
+  }
+
+  /**
+   * Creates a dataset with a numeric, a nominal and a string attribute.
+   *
+   * @param rows	the number of rows
+   * @return		the dataset
+   */
+  protected Instances mixed(int rows) {
+    Instances			result;
+    ArrayList<Attribute>	atts;
+    ArrayList<String>		labels;
+    double[]			row;
+    int				i;
+
+    labels = new ArrayList<String>();
+    labels.add("a");
+    labels.add("b");
+    atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("num"));
+    atts.add(new Attribute("nom", labels));
+    atts.add(new Attribute("str", (ArrayList<String>) null));
+    result = new Instances("mixed", atts, rows);
+    for (i = 0; i < rows; i++) {
+      row    = new double[3];
+      row[0] = i * 1.5;
+      row[1] = i % 2;
+      row[2] = result.attribute(2).addStringValue("s" + (i % 3));
+      result.add(new DenseInstance(1.0, row));
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes the dataset to a temporary ARFF file.
+   *
+   * @param data	the data to write
+   * @return		the file
+   * @throws IOException	if writing fails
+   */
+  protected File writeArff(Instances data) throws IOException {
+    File	result;
+    Writer	writer;
+
+    result = File.createTempFile("tablesaw-test-", ".arff");
+    result.deleteOnExit();
+    writer = new FileWriter(result);
+    try {
+      writer.write(data.toString());
+    }
+    finally {
+      writer.close();
+    }
+
+    return result;
+  }
+
+  /**
+   * When streaming, the output format must be available after setting the
+   * input format and instances become available while inputting.
+   *
+   * @throws Exception	if filtering fails
+   */
+  public void testStreamingOutputFormat() throws Exception {
+    Tablesaw	filter;
+    Instances	data;
+    boolean	available;
+    int		i;
+
+    data   = mixed(5);
+    filter = new Tablesaw();
+    filter.setMicroBatchSize(2);
+    assertTrue(filter.setInputFormat(data));
+    assertTrue(filter.getOutputFormat().attribute("nom").isNominal());
+    assertTrue(filter.getOutputFormat().attribute("str").isString());
+    available = false;
+    for (i = 0; i < data.numInstances(); i++)
+      available = filter.input(data.instance(i)) || available;
+    assertTrue(available);
+    filter.batchFinished();
+    assertEquals(5, filter.numPendingOutput());
+  }
+
+  /**
+   * Filtering a file from the command-line in streaming mode must produce
+   * the same output as batch mode (with string attributes).
+   *
+   * @throws Exception	if filtering fails
+   */
+  public void testFilterFileStreaming() throws Exception {
+    Instances	data;
+    File	input;
+    File	output;
+    Instances	streamed;
+    Instances	batch;
+    Tablesaw	filter;
+    int		i;
+
+    data   = mixed(7);
+    input  = writeArff(data);
+    output = File.createTempFile("tablesaw-test-", ".arff");
+    output.deleteOnExit();
+    Filter.filterFile(new Tablesaw(), new String[]{
+      "-i", input.getAbsolutePath(), "-o", output.getAbsolutePath(), "-micro-batch-size", "3", "-max-labels", "0"});
+    streamed = DataSource.read(output.getAbsolutePath());
+
+    filter = new Tablesaw();
+    filter.setMaxLabels(0);
+    filter.setInputFormat(data);
+    batch = Filter.useFilter(data, filter);
+
+    assertNull(streamed.equalHeadersMsg(batch));
+    assertEquals(batch.numInstances(), streamed.numInstances());
+    for (i = 0; i < batch.numInstances(); i++)
+      assertEquals(batch.instance(i).toString(), streamed.instance(i).toString());
+  }
+
+  /**
+   * Setting the input format must discard the parameters fitted on the
+   * previous data, i.e., the operation learns them again.
+   *
+   * @throws Exception	if filtering fails
+   */
+  public void testSetInputFormatResetsFit() throws Exception {
+    Tablesaw		filter;
+    NumericTransform	transform;
+    Instances		data;
+
+    transform = new NumericTransform();
+    transform.setMethod(NumericTransform.METHOD_MINMAX);
+    filter = new Tablesaw();
+    filter.setOperation(transform);
+    filter.setInputFormat(numerics());
+    data = Filter.useFilter(numerics(0, 10), filter);
+    assertEquals(1.0, data.instance(1).value(0), 1e-6);
+    assertTrue(transform.isFitted());
+
+    filter.setInputFormat(numerics());
+    assertFalse(transform.isFitted());
+    data = Filter.useFilter(numerics(0, 100, 50), filter);
+    assertEquals(1.0, data.instance(1).value(0), 1e-6);
+    assertEquals(0.5, data.instance(2).value(0), 1e-6);
+  }
+
+  /**
+   * Binned attributes must list the labels of all bins in bin order, even
+   * if the first batch does not contain all of them.
+   *
+   * @throws Exception	if filtering fails
+   */
+  public void testBinDeclaresAllLabels() throws Exception {
+    Tablesaw	filter;
+    Bin		bin;
+    Instances	train;
+    Instances	test;
+
+    bin = new Bin();
+    bin.setMethod(Bin.METHOD_CUT_POINTS);
+    bin.setCutPoints("3,6");
+    filter = new Tablesaw();
+    filter.setOperation(bin);
+    filter.setInputFormat(numerics());
+    train = Filter.useFilter(numerics(9, 1), filter);
+    assertTrue(train.attribute(0).isNominal());
+    assertEquals(3, train.attribute(0).numValues());
+    assertEquals("(-inf-3]", train.attribute(0).value(0));
+    assertEquals("(3-6]", train.attribute(0).value(1));
+    assertEquals("(6-inf)", train.attribute(0).value(2));
+    assertEquals("(6-inf)", train.instance(0).stringValue(0));
+
+    test = Filter.useFilter(numerics(5), filter);
+    assertTrue(test.equalHeaders(train));
+    assertEquals("(3-6]", test.instance(0).stringValue(0));
+  }
+
+  /**
+   * Cut points that only differ beyond 6 decimals must still result in
+   * distinct labels.
+   *
+   * @throws Exception	if filtering fails
+   */
+  public void testBinLabelsUnique() throws Exception {
+    Tablesaw	filter;
+    Bin		bin;
+    Instances	data;
+
+    bin = new Bin();
+    bin.setMethod(Bin.METHOD_CUT_POINTS);
+    bin.setCutPoints("0.10000001,0.10000002");
+    filter = new Tablesaw();
+    filter.setOperation(bin);
+    filter.setInputFormat(numerics());
+    data = Filter.useFilter(numerics(0.1, 0.100000015, 1), filter);
+    assertEquals(3, data.attribute(0).numValues());
+    assertEquals("(-inf-0.10000001]", data.attribute(0).value(0));
+    assertEquals("(0.10000001-0.10000002]", data.attribute(0).value(1));
+    assertEquals("(0.10000002-inf)", data.attribute(0).value(2));
+    assertEquals(1.0, data.instance(1).value(0));
+  }
+
+  /**
+   * Subsequent batches must use the output format of the first batch, i.e.,
+   * labels get mapped by value and ones unknown to the output format become
+   * missing, instead of deriving a different header.
+   *
+   * @throws Exception	if filtering fails
+   */
+  public void testSubsequentBatchesUseOutputFormat() throws Exception {
+    Tablesaw	filter;
+    Impute	impute;
+    Instances	train;
+    Instances	test;
+
+    impute = new Impute();
+    impute.setOptions(Utils.splitOptions("-strategy constant -constant zzz"));
+    filter = new Tablesaw();
+    filter.setOperation(impute);
+    filter.setInputFormat(nominals());
+    train = Filter.useFilter(nominals("a", "b"), filter);
+    assertTrue(train.attribute(0).isNominal());
+    assertEquals(2, train.attribute(0).numValues());
+
+    // the imputed constant is not part of the output format
+    test = Filter.useFilter(nominals("b", null, "a"), filter);
+    assertTrue(test.equalHeaders(train));
+    assertEquals("b", test.instance(0).stringValue(0));
+    assertTrue(test.instance(1).isMissing(0));
+    assertEquals("a", test.instance(2).stringValue(0));
+  }
+
+  /**
+   * By default, string attributes must stay string attributes and nominal
+   * ones nominal; nominal conversion of strings is opt-in.
+   *
+   * @throws Exception	if filtering fails
+   */
+  public void testNominalConversionOptIn() throws Exception {
+    Tablesaw	filter;
+    Instances	data;
+    Table	table;
+
+    filter = new Tablesaw();
+    filter.setInputFormat(mixed(0));
+    data = Filter.useFilter(mixed(6), filter);
+    assertTrue(data.attribute("nom").isNominal());
+    assertTrue(data.attribute("str").isString());
+    assertEquals("s2", data.instance(5).stringValue(2));
+
+    table = Table.create("test", StringColumn.create("s", new String[]{"a", "b", "a"}));
+    assertTrue(TablesawUtils.tableToInstances(table).attribute(0).isString());
+    data = TablesawUtils.tableToInstances(table, null, 2);
+    assertTrue(data.attribute(0).isNominal());
+    assertEquals(2, data.attribute(0).numValues());
+  }
+
+  /**
+   * One-hot encoding must generate one 0/1 attribute per category, which
+   * turn into sparse instances below the sparse threshold.
+   *
+   * @throws Exception	if filtering fails
+   */
+  public void testOneHotSparse() throws Exception {
+    Tablesaw	filter;
+    Encode	encode;
+    Instances	data;
+
+    encode = new Encode();
+    encode.setMethod(Encode.METHOD_ONEHOT);
+    filter = new Tablesaw();
+    filter.setOperation(encode);
+    filter.setSparseThreshold(0.7);
+    filter.setInputFormat(nominals());
+    data = Filter.useFilter(nominals("a", "b", null, "a"), filter);
+    assertEquals(2, data.numAttributes());
+    assertEquals("x=a", data.attribute(0).name());
+    assertEquals("x=b", data.attribute(1).name());
+    assertTrue(data.attribute(0).isNumeric());
+    assertTrue(data.instance(0) instanceof SparseInstance);
+    assertEquals(1, data.instance(0).numValues());
+    assertEquals(1.0, data.instance(0).value(0));
+    assertEquals(0.0, data.instance(0).value(1));
+    assertEquals(0.0, data.instance(1).value(0));
+    assertEquals(1.0, data.instance(1).value(1));
+    assertTrue(data.instance(2).isMissing(0));
+    assertTrue(data.instance(2).isMissing(1));
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(TablesawTest.class);
+  }
+
+  /**
+   * Runs the test from commandline.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}